@@ -0,0 +1,22 @@
+-- ============================================================
+-- KNDB4000 年度周次表生成 执行时间的变更（每年1月1日 → 每月1日）
+-- 理由：
+--   以前只在1月1日0:00执行1次，错过这次执行时，直到下一年都没有当年的周次记录，
+--   KNDB4010 在1月的第一个周日找不到对象周（getFixedStatusInfo 为null）而失败。
+--   UPSERT 版本（database/KNDB4000_fixedlesson_status_upsert.sql）可以重复执行，
+--   已排课的 fixed_status 保持不变，每月执行时错过的执行会在下个月补上；
+--   knbatch.kndb4000.future-years=1 时，下一年的周次记录在前一年就已经生成。
+-- 代价：每月1次、约100行的 UPSERT（已存在的行只更新周次和周结束日）。
+-- 前提：先执行 database/KNDB4000_fixedlesson_status_upsert.sql，并部署 UPSERT 版本的批处理。
+--       删除旧版本（DELETE + INSERT）前不要执行此文件，旧版本每月执行会清除排课状态！
+-- ============================================================
+-- 数据库: KNStudent
+-- ============================================================
+
+UPDATE t_batch_job_config
+SET cron_expression = '0 0 0 1 * ?',
+    cron_description = '每月1日凌晨0:00执行'
+WHERE job_id = 'KNDB4000';
+
+-- 验证
+SELECT job_id, cron_expression, cron_description FROM t_batch_job_config WHERE job_id = 'KNDB4000';
@@ -0,0 +1,28 @@
+-- ============================================================
+-- KNDB4000 年度周次表 滚动生成（UPSERT）的前提条件
+-- KNDB4000 改为按周开始日（start_week_date）UPSERT 基准年度起 N 年的周次记录，
+-- 不再删除已有记录，已排课的 fixed_status 保持不变。
+-- 1条多行 INSERT ... ON DUPLICATE KEY UPDATE 在一个事务里完成，1次往返，
+-- 其他会话不会看到空表或只生成了一部分的表（以前的"作业表 + RENAME TABLE 交换"的方法不再使用，
+-- 交换会丢掉已有的 fixed_status，也需要 DROP/CREATE 的权限）。
+-- 切换到新版本前，请先执行此文件！
+-- ============================================================
+-- 数据库: KNStudent
+-- ============================================================
+
+-- 0. 删除作业表交换版本可能留下的作业表/旧表（不存在时什么也不做）
+DROP TABLE IF EXISTS t_fixedlesson_status_new;
+DROP TABLE IF EXISTS t_fixedlesson_status_old;
+
+-- 1. 确认没有重复的周开始日（有重复时先删除多余的记录）
+SELECT start_week_date, COUNT(*)
+FROM t_fixedlesson_status
+GROUP BY start_week_date
+HAVING COUNT(*) > 1;
+
+-- 2. 周开始日的唯一索引（UPSERT 的判定键）
+ALTER TABLE t_fixedlesson_status
+    ADD UNIQUE KEY uk_fixedlesson_status_start_week_date (start_week_date);
+
+-- 验证
+SHOW INDEX FROM t_fixedlesson_status;
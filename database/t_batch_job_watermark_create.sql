@@ -0,0 +1,34 @@
+-- ============================================================
+-- 批处理水位线表 创建脚本
+-- 用途: 保存各批处理作业上一次处理到的位置（时间戳、指纹等），
+--       用于增量处理（只处理上次执行以后发生变更的数据）
+-- 首次使用增量模式前，请先执行此文件！
+-- ============================================================
+-- 数据库: KNStudent
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS t_batch_job_watermark (
+    job_id          VARCHAR(20)  NOT NULL COMMENT '作业ID（如: KNDB1010）',
+    watermark_key   VARCHAR(64)  NOT NULL COMMENT '水位线种类（如: LAST_CHANGE_TIME:2025-03）',
+    watermark_value VARCHAR(255)          COMMENT '水位线的值',
+    update_date     DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新日时',
+    PRIMARY KEY (job_id, watermark_key)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='批处理水位线表';
+
+-- ============================================================
+-- KNDB1010 增量模式的前提条件
+-- 水位线按目标月份分别保存（LAST_CHANGE_TIME:yyyy-MM / LAST_FULL_SWEEP:yyyy-MM），
+-- 首次处理的月份执行全量处理。
+-- 以前按作业保存的水位线（LAST_CHANGE_TIME / LAST_FULL_SWEEP）不再使用，可以删除：
+--   DELETE FROM t_batch_job_watermark WHERE job_id = 'KNDB1010' AND watermark_key IN ('LAST_CHANGE_TIME', 'LAST_FULL_SWEEP');
+-- 判定"上次执行以后有变更的学生"时，使用以下两个表的 update_date 列：
+--   t_info_student_document.update_date
+--   t_info_lesson.update_date
+-- 两个列都需要在数据更新时自动刷新（ON UPDATE CURRENT_TIMESTAMP），
+-- 并建议建立索引，否则增量判定本身会变成全表扫描：
+-- ============================================================
+-- CREATE INDEX idx_student_document_update_date ON t_info_student_document (update_date);
+-- CREATE INDEX idx_info_lesson_update_date ON t_info_lesson (update_date);
+
+-- 验证
+SELECT * FROM t_batch_job_watermark;
@@ -0,0 +1,37 @@
+-- ============================================================
+-- 月度课费台账表 创建脚本
+-- 用途: KNDB2020 年度月收入报告数据监视用。
+--       把视图 v_total_lsnfee_with_paid_unpaid_every_month 的结果按月份保存下来，
+--       批处理只刷新上次执行以后费用/支付有变更的月份，验证时直接读取台账表（每年12行）。
+-- 启用 knbatch.kndb2020.ledger.enabled=true 之前，请先执行此文件！
+-- （水位线保存在 t_batch_job_watermark 表，请确认 t_batch_job_watermark_create.sql 也已执行）
+-- ============================================================
+-- 数据库: KNStudent
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS t_batch_lsnfee_month_ledger (
+    lsn_month          CHAR(7)        NOT NULL COMMENT '月份（yyyy-MM）',
+    should_pay_lsn_fee DECIMAL(12, 2)          COMMENT '应收课费',
+    has_paid_lsn_fee   DECIMAL(12, 2)          COMMENT '已支付课费',
+    unpaid_lsn_fee     DECIMAL(12, 2)          COMMENT '未支付课费',
+    refresh_date       DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '刷新日时',
+    PRIMARY KEY (lsn_month)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='月度课费台账表（KNDB2020）';
+
+-- ============================================================
+-- 增量刷新的前提条件
+-- 判定"上次执行以后有变更的月份"时，使用以下三个表的 update_date 列：
+--   t_info_lesson_fee.update_date
+--   t_info_lesson_pay.update_date
+--   t_info_lesson.update_date（排课日期变更会让课费移到别的月份）
+-- 物理删除的记录无法通过 update_date 发现，所以基准月份及之前的
+-- knbatch.kndb2020.ledger.always-refresh-months 个月每次都刷新（KNDB2030 会物理删除课费记录），
+-- 并按 knbatch.kndb2020.ledger.full-rebuild-interval-days 定期全量重建。
+-- 建议建立以下索引，否则变更月份的判定本身会变成全表扫描：
+-- ============================================================
+-- CREATE INDEX idx_info_lesson_fee_update_date ON t_info_lesson_fee (update_date);
+-- CREATE INDEX idx_info_lesson_pay_update_date ON t_info_lesson_pay (update_date);
+-- CREATE INDEX idx_info_lesson_update_date ON t_info_lesson (update_date);
+
+-- 验证
+SELECT * FROM t_batch_lsnfee_month_ledger ORDER BY lsn_month;
@@ -13,6 +13,7 @@ import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.launch.JobLauncher;
 import com.liu.knbatch.config.BatchJobRegistry;
 import com.liu.knbatch.config.BatchJobInfo;
+import com.liu.knbatch.config.BatchJobOptionalParameters;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -241,11 +242,13 @@ public class KnpianoBatchApplication {
         // 动态获取Spring Bean中的Job实例
         Job job = context.getBean(jobInfo.getBeanName(), Job.class);
 
-        JobParameters jobParameters = new JobParametersBuilder()
-                .addString("baseDate", baseDate)
-                .addString("jobMode", jobName.contains("MANUAL") ? "MANUAL" : "AUTO")
-                .addString("businessModule", businessModule)
-                .addLong("timestamp", System.currentTimeMillis())
+        // 可选作业参数（例如 KNDB4010 的 --schedule.engine=java）
+        JobParameters jobParameters = context.getBean(BatchJobOptionalParameters.class).addTo(businessModule,
+                new JobParametersBuilder()
+                        .addString("baseDate", baseDate)
+                        .addString("jobMode", jobName.contains("MANUAL") ? "MANUAL" : "AUTO")
+                        .addString("businessModule", businessModule)
+                        .addLong("timestamp", System.currentTimeMillis()))
                 .toJobParameters();
 
         System.out.println("开始执行批处理作业: " + jobName);
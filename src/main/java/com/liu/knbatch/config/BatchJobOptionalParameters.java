@@ -0,0 +1,53 @@
+package com.liu.knbatch.config;
+
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批处理作业的可选作业参数
+ * 手动执行（KnpianoBatchApplication）和定时执行（DynamicSchedulerManager）共用，
+ * 把启动参数（例如 --schedule.engine=java）转成对应作业的作业参数，只传给读取该参数的作业
+ *
+ * @author liu
+ * @version 1.0.0
+ */
+@Component
+public class BatchJobOptionalParameters {
+
+    // 作业ID → (启动参数名 → 作业参数名)
+    private static final Map<String, Map<String, String>> OPTIONAL_PARAMETERS = new LinkedHashMap<>();
+
+    static {
+        // KNDB4010 排课引擎（procedure / java）
+        OPTIONAL_PARAMETERS.put("KNDB4010", Collections.singletonMap("schedule.engine", "scheduleEngine"));
+        // KNDB5000 增量备份方式时这次执行全量备份（true）
+        OPTIONAL_PARAMETERS.put("KNDB5000", Collections.singletonMap("force.full.backup", "forceFullBackup"));
+    }
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 把指定作业的可选作业参数加到作业参数里（没有指定的参数不加）
+     *
+     * @param jobId 作业ID (例如: KNDB4010)
+     * @param builder 作业参数
+     * @return 作业参数
+     */
+    public JobParametersBuilder addTo(String jobId, JobParametersBuilder builder) {
+        for (Map.Entry<String, String> parameter
+                : OPTIONAL_PARAMETERS.getOrDefault(jobId, Collections.emptyMap()).entrySet()) {
+            String value = environment.getProperty(parameter.getKey());
+            if (value != null && !value.trim().isEmpty()) {
+                builder.addString(parameter.getValue(), value.trim());
+            }
+        }
+        return builder;
+    }
+}
@@ -1,8 +1,10 @@
 package com.liu.knbatch.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
@@ -39,4 +41,20 @@ public class BatchSchedulerConfig {
         
         return scheduler;
     }
-}
\ No newline at end of file
+
+    /**
+     * KNDB2020 检查用查询的并行执行线程池
+     * 每个线程各自从连接池取得连接执行查询，线程数请保持在连接池大小以下
+     */
+    @Bean
+    public ThreadPoolTaskExecutor kndb2020QueryExecutor(@Value("${knbatch.kndb2020.query-parallelism:3}") int queryParallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(queryParallelism, 1));
+        executor.setMaxPoolSize(Math.max(queryParallelism, 1));
+        executor.setThreadNamePrefix("kndb2020-query-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
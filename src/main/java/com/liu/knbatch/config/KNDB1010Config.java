@@ -1,22 +1,47 @@
 package com.liu.knbatch.config;
 
+import com.liu.knbatch.dao.KNDB1010Dao;
+import com.liu.knbatch.entity.KNDB1010Entity;
+import com.liu.knbatch.listener.KNDB1010PartitionReportListener;
+import com.liu.knbatch.partition.KNDB1010PartitionProcessor;
+import com.liu.knbatch.partition.KNDB1010Partitioner;
 import com.liu.knbatch.tasklet.KNDB1010Tasklet;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.batch.MyBatisBatchItemWriter;
+import org.mybatis.spring.batch.MyBatisCursorItemReader;
+import org.mybatis.spring.batch.builder.MyBatisBatchItemWriterBuilder;
+import org.mybatis.spring.batch.builder.MyBatisCursorItemReaderBuilder;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.listener.JobExecutionListenerSupport;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * KNDB1010 钢琴课程级别矫正 批处理配置类
  * 
+ * 执行方式（knbatch.kndb1010.grid-size）：
+ *   1  : 单线程，KNDB1010_STEP 一个Tasklet处理整个月份（默认）
+ *   2以上: 分区并行，按学生ID范围把月份切成 grid-size 个分区，
+ *         每个分区有自己的Reader/Writer和ExecutionContext，失败时可以只重启失败的分区，
+ *         全部分区结束后（包括有分区失败时）由分区主步骤的监听器汇总结果并发送邮件，
+ *         有分区失败时作业以 FAILED 结束，重启时只重新执行失败的分区，汇总也跟着重新执行
+ * 
  * @author Liu
  * @version 1.0.0
  */
@@ -33,6 +58,24 @@ public class KNDB1010Config {
     
     @Autowired
     private KNDB1010Tasklet kndb1010Tasklet;
+
+    @Autowired
+    private KNDB1010PartitionReportListener kndb1010PartitionReportListener;
+
+    @Autowired
+    private KNDB1010Dao kndb1010Dao;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    // 分区数（1: 单线程执行）
+    // 每个分区同时占用2个数据库连接（Reader的游标 + Writer的事务），请保持在连接池大小的一半以下
+    @Value("${knbatch.kndb1010.grid-size:1}")
+    private int gridSize;
+
+    // 分区处理的提交间隔（件）
+    @Value("${knbatch.kndb1010.commit-interval:500}")
+    private int commitInterval;
     
     /**
      * KNDB1010 批处理作业配置
@@ -40,6 +83,13 @@ public class KNDB1010Config {
      */
     @Bean("kndb1010Job")
     public Job kndb1010Job() {
+        if (gridSize > 1) {
+            return jobBuilderFactory.get("KNDB1010")
+                    .incrementer(new RunIdIncrementer())
+                    .listener(new KNDB1010JobExecutionListener())
+                    .start(kndb1010PartitionStep())
+                    .build();
+        }
         return jobBuilderFactory.get("KNDB1010")
                 .incrementer(new RunIdIncrementer())
                 .listener(new KNDB1010JobExecutionListener())
@@ -57,7 +107,99 @@ public class KNDB1010Config {
                 .tasklet(kndb1010Tasklet)
                 .build();
     }
-    
+
+    /**
+     * KNDB1010 分区主步骤
+     * 按学生ID范围切分目标月份，交给线程池并行执行各分区，结束时（包括失败）汇总结果
+     */
+    @Bean("kndb1010PartitionStep")
+    public Step kndb1010PartitionStep() {
+        return stepBuilderFactory.get(KNDB1010PartitionReportListener.PARTITION_STEP_NAME)
+                .partitioner(KNDB1010PartitionReportListener.WORKER_STEP_NAME, kndb1010Partitioner(null))
+                .partitionHandler(kndb1010PartitionHandler())
+                .listener(kndb1010PartitionReportListener)
+                .build();
+    }
+
+    @Bean
+    public PartitionHandler kndb1010PartitionHandler() {
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(kndb1010WorkerStep());
+        partitionHandler.setTaskExecutor(kndb1010TaskExecutor());
+        partitionHandler.setGridSize(gridSize);
+        return partitionHandler;
+    }
+
+    @Bean
+    @StepScope
+    public KNDB1010Partitioner kndb1010Partitioner(@Value("#{jobParameters['baseDate']}") String baseDate) {
+        return new KNDB1010Partitioner(kndb1010Dao, baseDate);
+    }
+
+    /**
+     * KNDB1010 分区用线程池（线程数 = 分区数）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor kndb1010TaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(gridSize, 1));
+        executor.setMaxPoolSize(Math.max(gridSize, 1));
+        executor.setThreadNamePrefix("kndb1010-partition-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * KNDB1010 分区工作步骤
+     * 读取学生ID范围内的课程 → 内存索引判定错误级别 → 批量更新
+     */
+    @Bean("kndb1010WorkerStep")
+    public Step kndb1010WorkerStep() {
+        return stepBuilderFactory.get(KNDB1010PartitionReportListener.WORKER_STEP_NAME)
+                .<KNDB1010Entity, KNDB1010Entity>chunk(commitInterval)
+                .reader(kndb1010PartitionReader(null, null, null))
+                .processor(kndb1010PartitionProcessor(null, null))
+                .writer(kndb1010PartitionWriter())
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public MyBatisCursorItemReader<KNDB1010Entity> kndb1010PartitionReader(
+            @Value("#{stepExecutionContext['targetMonth']}") String targetMonth,
+            @Value("#{stepExecutionContext['fromStuId']}") String fromStuId,
+            @Value("#{stepExecutionContext['toStuId']}") String toStuId) {
+        Map<String, Object> parameterValues = new HashMap<>();
+        parameterValues.put("targetMonth", targetMonth);
+        parameterValues.put("fromStuId", fromStuId);
+        parameterValues.put("toStuId", toStuId);
+
+        return new MyBatisCursorItemReaderBuilder<KNDB1010Entity>()
+                .sqlSessionFactory(sqlSessionFactory)
+                .queryId("com.liu.knbatch.dao.KNDB1010Dao.selectLessonsOfStudentRange")
+                .parameterValues(parameterValues)
+                .saveState(true)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public KNDB1010PartitionProcessor kndb1010PartitionProcessor(
+            @Value("#{stepExecutionContext['fromStuId']}") String fromStuId,
+            @Value("#{stepExecutionContext['toStuId']}") String toStuId) {
+        return new KNDB1010PartitionProcessor(kndb1010Dao, fromStuId, toStuId);
+    }
+
+    @Bean
+    public MyBatisBatchItemWriter<KNDB1010Entity> kndb1010PartitionWriter() {
+        return new MyBatisBatchItemWriterBuilder<KNDB1010Entity>()
+                .sqlSessionFactory(sqlSessionFactory)
+                .statementId("com.liu.knbatch.dao.KNDB1010Dao.updateLessonSubjectSubIdByLessonId")
+                .assertUpdates(false)
+                .build();
+    }
+
     /**
      * KNDB1010 作业执行监听器
      * 监控钢琴课程级别矫正作业的执行状态
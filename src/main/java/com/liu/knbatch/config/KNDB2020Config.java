@@ -1,22 +1,41 @@
 package com.liu.knbatch.config;
 
+import com.liu.knbatch.dao.KNDB2020Dao;
+import com.liu.knbatch.partition.KNDB2020YearPartitioner;
+import com.liu.knbatch.tasklet.KNDB2020HistoryReportTasklet;
+import com.liu.knbatch.tasklet.KNDB2020LedgerTasklet;
 import com.liu.knbatch.tasklet.KNDB2020Tasklet;
+import com.liu.knbatch.tasklet.KNDB2020YearValidationTasklet;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.SimpleJobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.listener.JobExecutionListenerSupport;
 import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * KNDB2020 年度月收入报告数据监视 批处理配置类
  *
+ * knbatch.kndb2020.ledger.enabled=true 时，先执行 KNDB2020_LEDGER_STEP 刷新月度课费台账表，
+ * KNDB2020_STEP 再从台账表读取月度汇总（不再每次聚合视图）。
+ *
+ * knbatch.kndb2020.history.enabled=true 时，KNDB2020_STEP 之后执行历年验证：
+ * KNDB2020_HISTORY_STEP 把基准年度之前的每个年度作为一个分区，在线程池上并行执行 KNDB2020_YEAR_STEP，
+ * 年度指纹没有变化的年度沿用上次的验证结果；全部年度结束后（包括失败），由 KNDB2020_HISTORY_REPORT_STEP 汇总。
+ *
  * @author Liu
  * @version 1.0.0
  */
@@ -32,16 +51,52 @@ public class KNDB2020Config {
     @Autowired
     private KNDB2020Tasklet kndb2020Tasklet;
 
+    @Autowired
+    private KNDB2020LedgerTasklet kndb2020LedgerTasklet;
+
+    // 是否使用月度课费台账表（需要先执行 database/t_batch_lsnfee_month_ledger_create.sql）
+    @Value("${knbatch.kndb2020.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Autowired
+    private KNDB2020Dao kndb2020Dao;
+
+    @Autowired
+    private KNDB2020YearValidationTasklet kndb2020YearValidationTasklet;
+
+    @Autowired
+    private KNDB2020HistoryReportTasklet kndb2020HistoryReportTasklet;
+
+    // 是否执行历年验证（需要先执行 database/t_batch_job_watermark_create.sql）
+    @Value("${knbatch.kndb2020.history.enabled:false}")
+    private boolean historyEnabled;
+
+    // 同时验证的年度数上限（每个年度占用1个数据库连接）
+    @Value("${knbatch.kndb2020.history.max-parallel-years:2}")
+    private int maxParallelYears;
+
     /**
      * KNDB2020 批处理作业配置
      * 年度月收入报告数据监视作业
      */
     @Bean("kndb2020Job")
     public Job kndb2020Job() {
-        return jobBuilderFactory.get("KNDB2020")
+        SimpleJobBuilder jobBuilder = jobBuilderFactory.get("KNDB2020")
                 .incrementer(new RunIdIncrementer())
                 .listener(new KNDB2020JobExecutionListener())
-                .start(kndb2020Step())
+                .start(ledgerEnabled ? kndb2020LedgerStep() : kndb2020Step());
+        if (ledgerEnabled) {
+            jobBuilder.next(kndb2020Step());
+        }
+        if (!historyEnabled) {
+            return jobBuilder.build();
+        }
+        return jobBuilder
+                .next(kndb2020HistoryStep())
+                    .on(ExitStatus.FAILED.getExitCode()).to(kndb2020HistoryReportStep()).on("*").fail()
+                .from(kndb2020HistoryStep())
+                    .on("*").to(kndb2020HistoryReportStep())
+                .end()
                 .build();
     }
 
@@ -56,6 +111,79 @@ public class KNDB2020Config {
                 .build();
     }
 
+    /**
+     * KNDB2020 月度课费台账刷新步骤
+     */
+    @Bean("kndb2020LedgerStep")
+    public Step kndb2020LedgerStep() {
+        return stepBuilderFactory.get("KNDB2020_LEDGER_STEP")
+                .tasklet(kndb2020LedgerTasklet)
+                .build();
+    }
+
+    /**
+     * KNDB2020 历年验证 年度分区主步骤
+     * 每个已结束年度交给线程池并行执行
+     */
+    @Bean("kndb2020HistoryStep")
+    public Step kndb2020HistoryStep() {
+        return stepBuilderFactory.get("KNDB2020_HISTORY_STEP")
+                .partitioner(KNDB2020YearValidationTasklet.YEAR_STEP_NAME, kndb2020YearPartitioner(null))
+                .partitionHandler(kndb2020HistoryPartitionHandler())
+                .build();
+    }
+
+    @Bean
+    public PartitionHandler kndb2020HistoryPartitionHandler() {
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(kndb2020YearStep());
+        partitionHandler.setTaskExecutor(kndb2020HistoryTaskExecutor());
+        return partitionHandler;
+    }
+
+    @Bean
+    @StepScope
+    public KNDB2020YearPartitioner kndb2020YearPartitioner(@Value("#{jobParameters['baseDate']}") String baseDate) {
+        return new KNDB2020YearPartitioner(kndb2020Dao, baseDate);
+    }
+
+    /**
+     * KNDB2020 历年验证用线程池（线程数 = 同时验证的年度数上限，其余年度排队）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor kndb2020HistoryTaskExecutor() {
+        int poolSize = Math.max(maxParallelYears, 1);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("kndb2020-year-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * KNDB2020 年度验证步骤（每个分区验证1个年度）
+     */
+    @Bean("kndb2020YearStep")
+    public Step kndb2020YearStep() {
+        return stepBuilderFactory.get(KNDB2020YearValidationTasklet.YEAR_STEP_NAME)
+                .tasklet(kndb2020YearValidationTasklet)
+                .build();
+    }
+
+    /**
+     * KNDB2020 历年验证结果汇总步骤
+     * 重启时只重新执行失败的年度，汇总步骤也要跟着重新执行
+     */
+    @Bean("kndb2020HistoryReportStep")
+    public Step kndb2020HistoryReportStep() {
+        return stepBuilderFactory.get("KNDB2020_HISTORY_REPORT_STEP")
+                .tasklet(kndb2020HistoryReportTasklet)
+                .allowStartIfComplete(true)
+                .build();
+    }
+
     /**
      * KNDB2020 作业执行监听器
      * 监控年度月收入报告数据监视作业的执行状态
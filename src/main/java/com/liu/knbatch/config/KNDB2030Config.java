@@ -1,22 +1,57 @@
 package com.liu.knbatch.config;
 
-import com.liu.knbatch.tasklet.KNDB2030Tasklet;
+import com.liu.knbatch.entity.KNDB2030Entity;
+import com.liu.knbatch.listener.KNDB2030AdjustmentListener;
+import com.liu.knbatch.partition.KNDB2030MonthPartitioner;
+import com.liu.knbatch.tasklet.KNDB2030ReportTasklet;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.batch.MyBatisCursorItemReader;
+import org.mybatis.spring.batch.builder.MyBatisBatchItemWriterBuilder;
+import org.mybatis.spring.batch.builder.MyBatisCursorItemReaderBuilder;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.SkipListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.listener.JobExecutionListenerSupport;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.item.support.CompositeItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 /**
  * KNDB2030 课费预支付再调整 批处理配置类
  * 
+ * KNDB2030_PARTITION_STEP 从基准月份往前回溯 lookback-months 个月，每个月作为一个分区，
+ * 在线程池（最多 max-parallel-months 个线程）上并行执行 KNDB2030_STEP。
+ * 
+ * KNDB2030_STEP 是分块（chunk）步骤：
+ *   Reader : 流式读取分区月份需要再调整的预支付记录（getAdvcLsnPayList，替换用的有效课程ID一起求出）
+ *   Writer : 更新《课费预支付》表 + 删除《课费表》中失效的记录（MyBatis BATCH执行器）
+ *   每 commit-interval 件提交一次；死锁/锁等待超时按件重试，重试后仍失败或数据不整合的记录跳过并记录下来。
+ * 重启说明：已提交的分块里的记录 advc_flg 已经变成1，不会再被 getAdvcLsnPayList 读出，
+ *   所以Reader不保存读取位置，重启时重新查询就是从上次提交的分块之后继续；
+ *   调整件数/跳过记录保存在 ExecutionContext 里，重启前后累计；重启时只重新执行失败的月份。
+ * 全部月份结束后（包括失败），由 KNDB2030_REPORT_STEP 按月份汇总结果并发送邮件。
+ * 
  * @author Liu
  * @version 1.0.0
  */
@@ -32,7 +67,31 @@ public class KNDB2030Config {
     private StepBuilderFactory stepBuilderFactory;
     
     @Autowired
-    private KNDB2030Tasklet kndb2030Tasklet;
+    private KNDB2030ReportTasklet kndb2030ReportTasklet;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    // 提交间隔（件）
+    @Value("${knbatch.kndb2030.commit-interval:500}")
+    private int commitInterval;
+
+    // 死锁/锁等待超时时，每件记录的最大尝试次数
+    @Value("${knbatch.kndb2030.retry-limit:3}")
+    private int retryLimit;
+
+    // 允许跳过的记录数上限，超过时步骤失败
+    @Value("${knbatch.kndb2030.skip-limit:10}")
+    private int skipLimit;
+
+    // 回溯月数（1: 只处理基准日期所在月份）
+    @Value("${knbatch.kndb2030.lookback-months:1}")
+    private int lookbackMonths;
+
+    // 同时处理的月份数上限
+    // 每个月份同时占用2个数据库连接（Reader的游标 + Writer的事务），请保持在连接池大小的一半以下
+    @Value("${knbatch.kndb2030.max-parallel-months:2}")
+    private int maxParallelMonths;
     
     /**
      * KNDB2030 批处理作业配置
@@ -43,18 +102,123 @@ public class KNDB2030Config {
         return jobBuilderFactory.get("KNDB2030")
                 .incrementer(new RunIdIncrementer())
                 .listener(new KNDB2030JobExecutionListener())
-                .start(kndb2030Step())
+                .start(kndb2030PartitionStep())
+                    .on(ExitStatus.FAILED.getExitCode()).to(kndb2030ReportStep()).on("*").fail()
+                .from(kndb2030PartitionStep())
+                    .on("*").to(kndb2030ReportStep())
+                .end()
                 .build();
     }
     
+    /**
+     * KNDB2030 月份分区主步骤
+     * 每个回溯月份交给线程池并行执行
+     */
+    @Bean("kndb2030PartitionStep")
+    public Step kndb2030PartitionStep() {
+        return stepBuilderFactory.get("KNDB2030_PARTITION_STEP")
+                .partitioner(KNDB2030ReportTasklet.ADJUST_STEP_NAME, kndb2030Partitioner(null))
+                .partitionHandler(kndb2030PartitionHandler())
+                .build();
+    }
+
+    @Bean
+    public PartitionHandler kndb2030PartitionHandler() {
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(kndb2030Step());
+        partitionHandler.setTaskExecutor(kndb2030TaskExecutor());
+        partitionHandler.setGridSize(Math.max(lookbackMonths, 1));
+        return partitionHandler;
+    }
+
+    @Bean
+    @StepScope
+    public KNDB2030MonthPartitioner kndb2030Partitioner(@Value("#{jobParameters['baseDate']}") String baseDate) {
+        return new KNDB2030MonthPartitioner(baseDate, lookbackMonths);
+    }
+
+    /**
+     * KNDB2030 月份分区用线程池（线程数 = 同时处理的月份数上限，其余月份排队）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor kndb2030TaskExecutor() {
+        int poolSize = Math.max(Math.min(maxParallelMonths, lookbackMonths), 1);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("kndb2030-month-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
     /**
      * KNDB2030 步骤配置
-     * 课费预支付再调整步骤
+     * 课费预支付再调整步骤（分块处理，每个分区处理1个月份）
      */
     @Bean("kndb2030Step")
     public Step kndb2030Step() {
-        return stepBuilderFactory.get("KNDB2030_STEP")
-                .tasklet(kndb2030Tasklet)
+        KNDB2030AdjustmentListener adjustmentListener = new KNDB2030AdjustmentListener();
+        return stepBuilderFactory.get(KNDB2030ReportTasklet.ADJUST_STEP_NAME)
+                .<KNDB2030Entity, KNDB2030Entity>chunk(commitInterval)
+                .reader(kndb2030Reader(null))
+                .writer(kndb2030Writer())
+                .faultTolerant()
+                .retry(DeadlockLoserDataAccessException.class)
+                .retry(CannotAcquireLockException.class)
+                .retryLimit(retryLimit)
+                .skip(ConcurrencyFailureException.class)
+                .skip(DataIntegrityViolationException.class)
+                .skipLimit(skipLimit)
+                .listener((SkipListener<KNDB2030Entity, KNDB2030Entity>) adjustmentListener)
+                .listener((StepExecutionListener) adjustmentListener)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public MyBatisCursorItemReader<KNDB2030Entity> kndb2030Reader(
+            @Value("#{stepExecutionContext['yearMonth']}") String yearMonth) {
+        return new MyBatisCursorItemReaderBuilder<KNDB2030Entity>()
+                .sqlSessionFactory(sqlSessionFactory)
+                .queryId("com.liu.knbatch.dao.KNDB2030Dao.getAdvcLsnPayList")
+                .parameterValues(Collections.singletonMap("yearMonth", yearMonth))
+                // 已处理的记录不会再被查询出来，重启时不能按上次的读取件数跳过
+                .saveState(false)
+                .build();
+    }
+
+    /**
+     * ①更新《课费预支付》表，把失效的lessonId用有效的lessonId替换
+     * ②删除《课费表》中失效的lessonId记录，因为这个课程没有签到，所以把它从《课费表》中删除掉
+     * 两个Writer在同一个事务、同一个BATCH会话里执行
+     */
+    @Bean
+    public CompositeItemWriter<KNDB2030Entity> kndb2030Writer() {
+        CompositeItemWriter<KNDB2030Entity> writer = new CompositeItemWriter<>();
+        writer.setDelegates(Arrays.asList(
+                new MyBatisBatchItemWriterBuilder<KNDB2030Entity>()
+                        .sqlSessionFactory(sqlSessionFactory)
+                        .statementId("com.liu.knbatch.dao.KNDB2030Dao.updateAdvancePaymentOfItem")
+                        .assertUpdates(false)
+                        .build(),
+                new MyBatisBatchItemWriterBuilder<KNDB2030Entity>()
+                        .sqlSessionFactory(sqlSessionFactory)
+                        .statementId("com.liu.knbatch.dao.KNDB2030Dao.deleteInvalidAdvancePaymentLessonId")
+                        .assertUpdates(false)
+                        .build()));
+        return writer;
+    }
+
+    /**
+     * KNDB2030 执行结果汇总步骤
+     * 重启时 KNDB2030_STEP 会重新执行，汇总步骤也要跟着重新执行
+     */
+    @Bean("kndb2030ReportStep")
+    public Step kndb2030ReportStep() {
+        return stepBuilderFactory.get("KNDB2030_REPORT_STEP")
+                .tasklet(kndb2030ReportTasklet)
+                .allowStartIfComplete(true)
                 .build();
     }
     
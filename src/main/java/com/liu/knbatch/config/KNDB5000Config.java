@@ -8,8 +8,10 @@ import org.springframework.batch.core.configuration.annotation.JobBuilderFactory
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /**
  * KNDB5000 数据库备份 批处理配置
@@ -31,6 +33,10 @@ public class KNDB5000Config {
     @Autowired
     private KNDB5000Tasklet kndb5000Tasklet;
 
+    // 并行备份时同时执行的 mysqldump 进程数
+    @Value("${knbatch.backup.parallel.threads:4}")
+    private int parallelThreads;
+
     /**
      * KNDB5000数据库备份作业
      */
@@ -53,6 +59,21 @@ public class KNDB5000Config {
                 .build();
     }
 
+    /**
+     * KNDB5000 并行备份用线程池（线程数 = 同时执行的 mysqldump 进程数上限，其余表排队）
+     */
+    @Bean("kndb5000DumpExecutor")
+    public ThreadPoolTaskExecutor kndb5000DumpExecutor() {
+        int poolSize = Math.max(parallelThreads, 1);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("kndb5000-dump-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
     /**
      * KNDB5000作业执行监听器
      */
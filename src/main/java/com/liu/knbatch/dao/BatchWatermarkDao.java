@@ -0,0 +1,40 @@
+package com.liu.knbatch.dao;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 批处理水位线Mapper接口
+ * 对应XML文件：BatchWatermarkMapper.xml
+ * 保存各作业上一次处理到的位置，供增量处理使用
+ */
+@Mapper
+public interface BatchWatermarkDao {
+
+    /**
+     * 获取水位线的值
+     * @param jobId 作业ID
+     * @param watermarkKey 水位线种类
+     * @return 水位线的值，不存在时返回null
+     */
+    String selectWatermark(@Param("jobId") String jobId,
+                           @Param("watermarkKey") String watermarkKey);
+
+    /**
+     * 保存水位线的值（不存在时插入，存在时更新）
+     * @param jobId 作业ID
+     * @param watermarkKey 水位线种类
+     * @param watermarkValue 水位线的值
+     * @return 受影响的行数
+     */
+    int upsertWatermark(@Param("jobId") String jobId,
+                        @Param("watermarkKey") String watermarkKey,
+                        @Param("watermarkValue") String watermarkValue);
+
+    /**
+     * 获取数据库的当前时间（格式: yyyy-MM-dd HH:mm:ss）
+     * 时间类水位线统一使用数据库时间，避免NAS和MySQL容器之间的时钟误差
+     * @return 数据库的当前时间
+     */
+    String selectDatabaseNow();
+}
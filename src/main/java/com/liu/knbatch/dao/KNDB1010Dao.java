@@ -3,6 +3,7 @@ package com.liu.knbatch.dao;
 import com.liu.knbatch.entity.KNDB1010Entity;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -38,4 +39,63 @@ public interface KNDB1010Dao {
      * @return 剩余错误记录数
      */
     int countIncorrectPianoLevelLessons(@Param("targetMonth") String targetMonth);
+
+    /**
+     * 流式读取学生的最新科目级别信息（构建内存索引用）
+     * 结果集不会一次性加载到内存，每读到一行就回调一次handler
+     *
+     * @param fromStuId 学生ID下限（包含，null表示不限）
+     * @param toStuId 学生ID上限（包含，null表示不限）
+     * @param stuIds 只读取这些学生（null表示不限，增量处理用）
+     * @param handler 逐行处理回调
+     */
+    void streamLatestSubjectInfo(@Param("fromStuId") String fromStuId,
+                                 @Param("toStuId") String toStuId,
+                                 @Param("stuIds") List<String> stuIds,
+                                 ResultHandler<KNDB1010Entity> handler);
+
+    /**
+     * 流式读取目标月份的全部排课记录（按 学生ID, 科目ID, 排课日期 排序）
+     *
+     * @param targetMonth 目标月份 (格式: yyyy-MM)
+     * @param stuIds 只读取这些学生的排课（null表示全部学生，增量处理用）
+     * @param handler 逐行处理回调
+     */
+    void streamLessonsOfMonth(@Param("targetMonth") String targetMonth,
+                              @Param("stuIds") List<String> stuIds,
+                              ResultHandler<KNDB1010Entity> handler);
+
+    /**
+     * 把指定课程的级别更新成正确的级别
+     *
+     * @param subjectSubId 正确的级别ID
+     * @param lessonIds 要更新的课程ID列表
+     * @return 更新的记录数
+     */
+    int updateLessonSubjectSubId(@Param("subjectSubId") String subjectSubId,
+                                 @Param("lessonIds") List<String> lessonIds);
+
+    /**
+     * 获取目标月份有排课的学生ID一览（按学生ID排序，分区用）
+     *
+     * @param targetMonth 目标月份 (格式: yyyy-MM)
+     * @return 学生ID列表
+     */
+    List<String> selectStudentIdsOfMonth(@Param("targetMonth") String targetMonth);
+
+    /**
+     * 把1条课程的级别更新成实体里设定的级别（分区处理的Writer用，批量执行）
+     *
+     * @param lesson 课程记录（lessonId, subjectSubId）
+     * @return 更新的记录数
+     */
+    int updateLessonSubjectSubIdByLessonId(KNDB1010Entity lesson);
+
+    /**
+     * 获取指定时间以后学生档案或排课有变更的学生ID一览（增量处理用）
+     *
+     * @param changedSince 变更时间下限 (格式: yyyy-MM-dd HH:mm:ss，包含)
+     * @return 学生ID列表
+     */
+    List<String> selectTouchedStudentIds(@Param("changedSince") String changedSince);
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.liu.knbatch.dao;
 
 import com.liu.knbatch.entity.KNDB2020MonthSummaryEntity;
-import com.liu.knbatch.entity.KNDB2020ValidationSummaryEntity;
 import com.liu.knbatch.entity.KNDB2020FeeErrorEntity;
+import com.liu.knbatch.entity.KNDB2020IdPairEntity;
 import com.liu.knbatch.entity.KNDB2020PayErrorEntity;
+import com.liu.knbatch.entity.KNDB2020StudentDiscrepancyEntity;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -27,12 +29,12 @@ public interface KNDB2020Dao {
     List<KNDB2020MonthSummaryEntity> getMonthSummaryList(@Param("year") String year);
 
     /**
-     * 获取指定年度的整体验证结果汇总
+     * 从月度课费台账表获取指定年度的所有月份汇总验证数据
      *
      * @param year 年度 (格式: yyyy，如: "2025")
-     * @return 验证结果汇总，包含总月份数、正确月份数、错误月份数、最终结果
+     * @return 月度汇总验证列表（内容与 getMonthSummaryList 相同）
      */
-    KNDB2020ValidationSummaryEntity getValidationSummary(@Param("year") String year);
+    List<KNDB2020MonthSummaryEntity> getLedgerMonthSummaryList(@Param("year") String year);
 
     /**
      * 检查费用表：一个lesson_id是否对应了多个lsn_fee_id（绝对不允许）
@@ -47,4 +49,76 @@ public interface KNDB2020Dao {
      * @return 支付表错误记录列表，包含lsn_fee_id和对应的多个lsn_pay_id
      */
     List<KNDB2020PayErrorEntity> getPayErrorList();
+
+    /**
+     * 流式读取费用表的 (lesson_id, lsn_fee_id) 对（按 lesson_id, lsn_fee_id 排序）
+     * 结果集不会一次性加载到内存，每读到一行就回调一次handler
+     *
+     * @param handler 逐行处理回调
+     */
+    void streamFeeIdPairs(ResultHandler<KNDB2020IdPairEntity> handler);
+
+    /**
+     * 流式读取支付表的 (lsn_fee_id, lsn_pay_id) 对（按 lsn_fee_id, lsn_pay_id 排序）
+     *
+     * @param handler 逐行处理回调
+     */
+    void streamPayIdPairs(ResultHandler<KNDB2020IdPairEntity> handler);
+
+    /**
+     * 获取指定月份的学生别课费（该月有课费的全部学生，按学生ID排序）
+     *
+     * @param lsnMonth 月份 (格式: yyyy-MM)
+     * @return 学生别的应收、已支付、未支付课费和差额
+     */
+    List<KNDB2020StudentDiscrepancyEntity> getStudentFeeList(@Param("lsnMonth") String lsnMonth);
+
+    /**
+     * 获取指定时间以后费用/支付/排课有变更的月份（台账增量刷新用）
+     *
+     * @param changedSince 变更判定的起始时间 (格式: yyyy-MM-dd HH:mm:ss)
+     * @return 月份列表 (格式: yyyy-MM)
+     */
+    List<String> selectChangedLsnMonths(@Param("changedSince") String changedSince);
+
+    /**
+     * 删除台账的指定月份
+     *
+     * @param lsnMonths 月份列表，null表示删除全部
+     * @return 受影响的行数
+     */
+    int deleteLedgerMonths(@Param("lsnMonths") List<String> lsnMonths);
+
+    /**
+     * 从视图重新计算台账的指定月份
+     *
+     * @param lsnMonths 月份列表，null表示计算全部
+     * @return 受影响的行数
+     */
+    int insertLedgerMonths(@Param("lsnMonths") List<String> lsnMonths);
+
+    /**
+     * 获取变更指纹（费用表/支付表/排课表的件数和最大更新日时）
+     * 指纹不变表示上次检查以后，这三个表没有新增、更新、删除
+     *
+     * @return 变更指纹 (格式: fee:件数,最大更新日时|pay:...|lsn:...)
+     */
+    String selectChangeFingerprint();
+
+    /**
+     * 获取最早的排课年度（历年验证的分区用）
+     *
+     * @return 年度 (yyyy)，没有排课时为null
+     */
+    String selectFirstLessonYear();
+
+    /**
+     * 获取指定年度的指纹（按排课日期的范围统计费用/支付的件数和最大更新日时）
+     * 某个年度的指纹不变，表示该年度的课费数据没有新增、更新、删除
+     *
+     * @param yearStart 年度第一天 (yyyy-01-01)
+     * @param nextYearStart 下一年度第一天 (yyyy-01-01)
+     * @return 年度指纹 (格式: fee:件数,最大更新日时|pay:件数,最大更新日时)
+     */
+    String selectYearFingerprint(@Param("yearStart") String yearStart, @Param("nextYearStart") String nextYearStart);
 }
@@ -21,33 +21,10 @@ public interface KNDB2030Dao {
      * 
      * @param year 年度 (格式: yyyy，如: "2024") 
      * @return 预支付历史记录明细列表，包含课程信息、费用信息、支付状态等完整数据
+     *         （validLessonId 里带有替换用的有效课程ID）
      */
     public List<KNDB2030Entity> getAdvcLsnPayList(@Param("yearMonth") String yearMonth);
 
-    
-    /** 预支付再调整用
-     * 获取有效的预支付课程ID
-     * @param stuId 学生ID
-     * @param subjectId 科目ID  
-     * @param lessonId  课程ID
-     * @return 课程ID，如果没有找到返回null
-     */
-    String getValidAdvancePaymentLessonId(@Param("stuId") String stuId, 
-                                          @Param("subjectId") String subjectId,
-                                          @Param("lessonId") String lessonId);
-
-    /** 预支付再调整用
-     * 更新预支付记录
-     * @param newLessonId 新的课程ID（用于替换的有效课程ID）
-     * @param oldLessonId 原课程ID（需要被替换的课程ID）
-     * @param lsnFeeId 课费ID
-     * @param lsnPayId 支付ID
-     * @return 受影响的行数
-     */
-    int updateAdvancePayment(@Param("lessonId") String newLessonId,
-                             @Param("oldLessonId") String oldLessonId,
-                             @Param("lsnFeeId") String lsnFeeId,
-                             @Param("lsnPayId") String lsnPayId);
 
     /** 预支付再调整用
      * 从《课费表》里删除无效的预支付课程ID
@@ -4,23 +4,23 @@ import com.liu.knbatch.entity.KNDB4000Entity;
 
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.List;
+
 /**
- * KNDB4000 钢琴课程级别矫正 数据访问接口
+ * KNDB4000 年度周次表生成 数据访问接口
  * 
  * @author Liu
  * @version 1.0.0
  */
 @Mapper
 public interface KNDB4000Dao {
-    
-    /**
-     * 年度周次表生成（1年52周）
-     */
-    void insertFixedLessonStatus(KNDB4000Entity status);
 
     /**
-     * 删除年度的周次记录
+     * 周次记录一次性 UPSERT（按周开始日判定，已存在的周保留 fixed_status）
+     *
+     * @param statusList 周次记录列表
+     * @return 受影响的行数（按MySQL的 ON DUPLICATE KEY UPDATE 计数方法，日志参考用）
      */
-    int deleteAll();
+    int upsertFixedLessonStatusList(List<KNDB4000Entity> statusList);
 
-}
\ No newline at end of file
+}
@@ -1,10 +1,17 @@
 package com.liu.knbatch.dao;
 
 import com.liu.knbatch.entity.KNDB4010Entity;
+import com.liu.knbatch.entity.KNDB4010LessonEntity;
+import com.liu.knbatch.entity.KNDB4010LessonTemplateEntity;
+import com.liu.knbatch.entity.KNDB4010ProcedureStatsEntity;
+import com.liu.knbatch.entity.KNDB4010WeekLessonCountEntity;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * KNDB4010 钢琴课程级别矫正 数据访问接口
  * 
@@ -17,11 +24,81 @@ public interface KNDB4010Dao {
     /**
      * 获取一周固定排课状态表（t_fixedlesson_status）表，一周排课状态值（fixed_status 0:未排课  1:已排课）
      * 
-     * @param baseDate 日期 (格式: yyyy-MM-dd)
-     * @return 排课状态值
+     * @param startWeekDate 周开始日（周一） (格式: yyyy-MM-dd)
+     * @return 该周的排课状态信息，周次表里没有该周时返回null
      */
-    KNDB4010Entity getFixedStatusInfo(@Param("baseDate") String baseDate);
+    KNDB4010Entity getFixedStatusInfo(@Param("startWeekDate") String startWeekDate);
     
+    /**
+     * 获取指定范围内尚未排课的周（fixed_status 不是1的周，按周开始日升序）
+     *
+     * @param fromStartWeekDate 周开始日下限（包含） (格式: yyyy-MM-dd)
+     * @param toStartWeekDate 周开始日上限（包含） (格式: yyyy-MM-dd)
+     * @return 尚未排课的周列表
+     */
+    List<KNDB4010Entity> selectUnfixedWeeks(@Param("fromStartWeekDate") String fromStartWeekDate,
+                                            @Param("toStartWeekDate") String toStartWeekDate);
+
+    /**
+     * 锁定该周的排课状态记录，并返回排课状态值（需要在事务中调用）
+     *
+     * @param startWeekDate 周开始日（周一） (格式: yyyy-MM-dd)
+     * @return 排课状态值（0:未排课  1:已排课）
+     */
+    Integer selectFixedStatusForUpdate(@Param("startWeekDate") String startWeekDate);
+
+    /**
+     * 获取存储过程的累计执行统计（performance_schema）
+     *
+     * @param procedureName 存储过程名
+     * @return 累计执行统计，服务器启动以来一次也没有执行过时返回null
+     */
+    KNDB4010ProcedureStatsEntity selectProcedureStats(@Param("procedureName") String procedureName);
+
+    /**
+     * 获取该周的课程数和学生数
+     *
+     * @param weekStart 周开始日 (格式: yyyy-MM-dd)
+     * @param weekEnd 周结束日 (格式: yyyy-MM-dd)
+     * @return 该周的课程数和学生数
+     */
+    KNDB4010WeekLessonCountEntity countWeekLessons(@Param("weekStart") String weekStart,
+                                                   @Param("weekEnd") String weekEnd);
+
+    /**
+     * 获取上一条语句的警告（SHOW WARNINGS，需要和存储过程调用使用同一连接）
+     *
+     * @return 警告列表（Level, Code, Message）
+     */
+    List<Map<String, Object>> showWarnings();
+
+    /**
+     * 获取固定排课模板（Java排课引擎用）
+     *
+     * @return 固定排课模板列表（按学生ID、科目ID排序）
+     */
+    List<KNDB4010LessonTemplateEntity> selectFixedLessonTemplates();
+
+    /**
+     * 获取该周已有的课程（学生ID、科目ID、上课日时）（Java排课引擎用）
+     *
+     * @param weekStart 周开始日 (格式: yyyy-MM-dd)
+     * @param weekEnd 周结束日 (格式: yyyy-MM-dd)
+     * @return 该周已有的课程列表
+     */
+    List<KNDB4010LessonEntity> selectWeekLessonKeys(@Param("weekStart") String weekStart,
+                                                    @Param("weekEnd") String weekEnd);
+
+    /**
+     * 批量插入课程（Java排课引擎用，课程ID由序列取得）
+     *
+     * @param lessons 课程列表
+     * @param seqCode 课程ID的前缀（序列名）
+     * @return 插入的记录数
+     */
+    int insertLessonList(@Param("lessons") List<KNDB4010LessonEntity> lessons,
+                         @Param("seqCode") String seqCode);
+
     /**
      * 执行一周计划排课的Batch处理
      * 
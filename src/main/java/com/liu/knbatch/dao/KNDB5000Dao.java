@@ -5,7 +5,9 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
-// import java.util.List;
+import com.liu.knbatch.entity.KNDB5000TableEntity;
+
+import java.util.List;
 
 /**
  * KNDB5000 数据库备份 DAO
@@ -41,6 +43,18 @@ public interface KNDB5000Dao {
     @Select("SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = #{databaseName}")
     Integer getTableCount(@Param("databaseName") String databaseName);
     
+    /**
+     * 获取备份对象的表和视图（并行备份用，按大小降序）
+     * @param databaseName 数据库名称
+     * @return 表和视图的列表
+     */
+    @Select("SELECT table_name AS table_name, table_type AS table_type, table_rows AS table_rows, " +
+            "IFNULL(data_length, 0) + IFNULL(index_length, 0) AS table_size " +
+            "FROM information_schema.tables " +
+            "WHERE table_schema = #{databaseName} " +
+            "ORDER BY table_size DESC, table_name")
+    List<KNDB5000TableEntity> getBackupTables(@Param("databaseName") String databaseName);
+    
     /**
      * 获取数据库版本信息
      * @return 数据库版本
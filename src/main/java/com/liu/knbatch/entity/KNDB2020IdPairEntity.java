@@ -0,0 +1,37 @@
+package com.liu.knbatch.entity;
+
+/**
+ * ID对实体类
+ * 用于流式重复检查：(lesson_id, lsn_fee_id) 或 (lsn_fee_id, lsn_pay_id)
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB2020IdPairEntity {
+
+    private String groupId;         // 分组ID（lesson_id / lsn_fee_id）
+    private String memberId;        // 成员ID（lsn_fee_id / lsn_pay_id）
+
+    public KNDB2020IdPairEntity() {}
+
+    public KNDB2020IdPairEntity(String groupId, String memberId) {
+        this.groupId = groupId;
+        this.memberId = memberId;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(String memberId) {
+        this.memberId = memberId;
+    }
+}
@@ -0,0 +1,80 @@
+package com.liu.knbatch.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * 学生别课费差额实体类
+ * 用于存储错误月份中，每个学生的应收、已支付、未支付课费和差额
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB2020StudentDiscrepancyEntity {
+
+    private String lsnMonth;                    // 月份（YYYY-MM格式）
+    private String stuId;                       // 学生ID
+    private BigDecimal shouldPayLsnFee;         // 应收课费
+    private BigDecimal hasPaidLsnFee;           // 已支付课费
+    private BigDecimal unpaidLsnFee;            // 未支付课费
+    private BigDecimal difference;              // 差额（应收 - (已支付 + 未支付)）
+
+    public KNDB2020StudentDiscrepancyEntity() {}
+
+    public KNDB2020StudentDiscrepancyEntity(String lsnMonth, String stuId, BigDecimal shouldPayLsnFee,
+                                            BigDecimal hasPaidLsnFee, BigDecimal unpaidLsnFee) {
+        this.lsnMonth = lsnMonth;
+        this.stuId = stuId;
+        this.shouldPayLsnFee = shouldPayLsnFee;
+        this.hasPaidLsnFee = hasPaidLsnFee;
+        this.unpaidLsnFee = unpaidLsnFee;
+        this.difference = shouldPayLsnFee.subtract(hasPaidLsnFee.add(unpaidLsnFee));
+    }
+
+    public String getLsnMonth() {
+        return lsnMonth;
+    }
+
+    public void setLsnMonth(String lsnMonth) {
+        this.lsnMonth = lsnMonth;
+    }
+
+    public String getStuId() {
+        return stuId;
+    }
+
+    public void setStuId(String stuId) {
+        this.stuId = stuId;
+    }
+
+    public BigDecimal getShouldPayLsnFee() {
+        return shouldPayLsnFee;
+    }
+
+    public void setShouldPayLsnFee(BigDecimal shouldPayLsnFee) {
+        this.shouldPayLsnFee = shouldPayLsnFee;
+    }
+
+    public BigDecimal getHasPaidLsnFee() {
+        return hasPaidLsnFee;
+    }
+
+    public void setHasPaidLsnFee(BigDecimal hasPaidLsnFee) {
+        this.hasPaidLsnFee = hasPaidLsnFee;
+    }
+
+    public BigDecimal getUnpaidLsnFee() {
+        return unpaidLsnFee;
+    }
+
+    public void setUnpaidLsnFee(BigDecimal unpaidLsnFee) {
+        this.unpaidLsnFee = unpaidLsnFee;
+    }
+
+    public BigDecimal getDifference() {
+        return difference;
+    }
+
+    public void setDifference(BigDecimal difference) {
+        this.difference = difference;
+    }
+}
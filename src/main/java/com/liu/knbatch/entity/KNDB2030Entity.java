@@ -13,6 +13,7 @@ public class KNDB2030Entity {
     private String lsnFeeId;    // 课费ID
     private String lsnPayId;    // 支付ID
     private String lessonId;    // 课程ID
+    private String validLessonId; // 替换用的有效课程ID（该月最早签到的课程）
 
     public KNDB2030Entity() {}
 
@@ -72,4 +73,14 @@ public class KNDB2030Entity {
     public void setLessonId(String lessonId) {
         this.lessonId = lessonId;
     }
-}
\ No newline at end of file
+
+
+    public String getValidLessonId() {
+        return validLessonId;
+    }
+
+
+    public void setValidLessonId(String validLessonId) {
+        this.validLessonId = validLessonId;
+    }
+}
@@ -0,0 +1,78 @@
+package com.liu.knbatch.entity;
+
+/**
+ * 排课课程实体类
+ * Java排课引擎由固定排课模板展开的一节课（课程ID在INSERT时由序列取得）
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB4010LessonEntity {
+
+    private String stuId;           // 学生ID
+    private String subjectId;       // 科目ID
+    private String subjectSubId;    // 科目级别ID
+    private Integer classDuration;  // 上课时长（分钟）
+    private Integer lessonType;     // 课程种类
+    private String schedualDate;    // 上课日时 (格式: yyyy-MM-dd HH:mm)
+
+    public KNDB4010LessonEntity() {}
+
+    public KNDB4010LessonEntity(String stuId, String subjectId, String subjectSubId, Integer classDuration,
+                                Integer lessonType, String schedualDate) {
+        this.stuId = stuId;
+        this.subjectId = subjectId;
+        this.subjectSubId = subjectSubId;
+        this.classDuration = classDuration;
+        this.lessonType = lessonType;
+        this.schedualDate = schedualDate;
+    }
+
+    public String getStuId() {
+        return stuId;
+    }
+
+    public void setStuId(String stuId) {
+        this.stuId = stuId;
+    }
+
+    public String getSubjectId() {
+        return subjectId;
+    }
+
+    public void setSubjectId(String subjectId) {
+        this.subjectId = subjectId;
+    }
+
+    public String getSubjectSubId() {
+        return subjectSubId;
+    }
+
+    public void setSubjectSubId(String subjectSubId) {
+        this.subjectSubId = subjectSubId;
+    }
+
+    public Integer getClassDuration() {
+        return classDuration;
+    }
+
+    public void setClassDuration(Integer classDuration) {
+        this.classDuration = classDuration;
+    }
+
+    public Integer getLessonType() {
+        return lessonType;
+    }
+
+    public void setLessonType(Integer lessonType) {
+        this.lessonType = lessonType;
+    }
+
+    public String getSchedualDate() {
+        return schedualDate;
+    }
+
+    public void setSchedualDate(String schedualDate) {
+        this.schedualDate = schedualDate;
+    }
+}
@@ -0,0 +1,86 @@
+package com.liu.knbatch.entity;
+
+/**
+ * 固定排课模板实体类
+ * 每个学生每个科目每周固定的上课星期和时间，加上该学生该科目最新的级别等课程属性
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB4010LessonTemplateEntity {
+
+    private String stuId;           // 学生ID
+    private String subjectId;       // 科目ID
+    private String subjectSubId;    // 科目级别ID（最新）
+    private Integer classDuration;  // 上课时长（分钟）
+    private Integer lessonType;     // 课程种类
+    private String fixedWeek;       // 固定上课星期（Mon～Sun 或 1～7）
+    private Integer fixedHour;      // 固定上课时
+    private Integer fixedMinute;    // 固定上课分
+
+    public KNDB4010LessonTemplateEntity() {}
+
+    public String getStuId() {
+        return stuId;
+    }
+
+    public void setStuId(String stuId) {
+        this.stuId = stuId;
+    }
+
+    public String getSubjectId() {
+        return subjectId;
+    }
+
+    public void setSubjectId(String subjectId) {
+        this.subjectId = subjectId;
+    }
+
+    public String getSubjectSubId() {
+        return subjectSubId;
+    }
+
+    public void setSubjectSubId(String subjectSubId) {
+        this.subjectSubId = subjectSubId;
+    }
+
+    public Integer getClassDuration() {
+        return classDuration;
+    }
+
+    public void setClassDuration(Integer classDuration) {
+        this.classDuration = classDuration;
+    }
+
+    public Integer getLessonType() {
+        return lessonType;
+    }
+
+    public void setLessonType(Integer lessonType) {
+        this.lessonType = lessonType;
+    }
+
+    public String getFixedWeek() {
+        return fixedWeek;
+    }
+
+    public void setFixedWeek(String fixedWeek) {
+        this.fixedWeek = fixedWeek;
+    }
+
+    public Integer getFixedHour() {
+        return fixedHour;
+    }
+
+    public void setFixedHour(Integer fixedHour) {
+        this.fixedHour = fixedHour;
+    }
+
+    public Integer getFixedMinute() {
+        return fixedMinute;
+    }
+
+    public void setFixedMinute(Integer fixedMinute) {
+        this.fixedMinute = fixedMinute;
+    }
+}
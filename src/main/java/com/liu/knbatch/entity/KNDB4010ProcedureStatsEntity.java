@@ -0,0 +1,87 @@
+package com.liu.knbatch.entity;
+
+/**
+ * 存储过程执行统计实体类
+ * performance_schema.events_statements_summary_by_program 的累计值（服务器启动以来），
+ * 调用前后各取一次，差值就是本次调用的统计
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB4010ProcedureStatsEntity {
+
+    private long executionCount;    // 存储过程的执行次数
+    private long statementCount;    // 存储过程内执行的语句数
+    private long timerWait;         // 执行时间合计（皮秒）
+    private long lockTime;          // 锁等待时间合计（皮秒）
+    private long rowsAffected;      // 影响行数合计
+    private long rowsExamined;      // 扫描行数合计
+    private long warningCount;      // 警告数合计
+    private long errorCount;        // 错误数合计
+
+    public KNDB4010ProcedureStatsEntity() {}
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    public void setExecutionCount(long executionCount) {
+        this.executionCount = executionCount;
+    }
+
+    public long getStatementCount() {
+        return statementCount;
+    }
+
+    public void setStatementCount(long statementCount) {
+        this.statementCount = statementCount;
+    }
+
+    public long getTimerWait() {
+        return timerWait;
+    }
+
+    public void setTimerWait(long timerWait) {
+        this.timerWait = timerWait;
+    }
+
+    public long getLockTime() {
+        return lockTime;
+    }
+
+    public void setLockTime(long lockTime) {
+        this.lockTime = lockTime;
+    }
+
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    public void setRowsAffected(long rowsAffected) {
+        this.rowsAffected = rowsAffected;
+    }
+
+    public long getRowsExamined() {
+        return rowsExamined;
+    }
+
+    public void setRowsExamined(long rowsExamined) {
+        this.rowsExamined = rowsExamined;
+    }
+
+    public long getWarningCount() {
+        return warningCount;
+    }
+
+    public void setWarningCount(long warningCount) {
+        this.warningCount = warningCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(long errorCount) {
+        this.errorCount = errorCount;
+    }
+}
@@ -0,0 +1,32 @@
+package com.liu.knbatch.entity;
+
+/**
+ * 一周课程件数实体类
+ * 排课前后各取一次，用于计算存储过程新增的课程数
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB4010WeekLessonCountEntity {
+
+    private int lessonCount;        // 该周的课程数
+    private int studentCount;       // 该周有课程的学生数
+
+    public KNDB4010WeekLessonCountEntity() {}
+
+    public int getLessonCount() {
+        return lessonCount;
+    }
+
+    public void setLessonCount(int lessonCount) {
+        this.lessonCount = lessonCount;
+    }
+
+    public int getStudentCount() {
+        return studentCount;
+    }
+
+    public void setStudentCount(int studentCount) {
+        this.studentCount = studentCount;
+    }
+}
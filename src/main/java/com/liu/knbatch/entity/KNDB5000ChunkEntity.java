@@ -0,0 +1,36 @@
+package com.liu.knbatch.entity;
+
+/**
+ * KNDB5000 块存储里的一个块（备份的块一览的一项）
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB5000ChunkEntity {
+
+    private String digest;          // 块内容（压缩前）的 SHA-256 = 块的地址
+    private int size;               // 块的大小（压缩前，字节）
+
+    public KNDB5000ChunkEntity() {}
+
+    public KNDB5000ChunkEntity(String digest, int size) {
+        this.digest = digest;
+        this.size = size;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
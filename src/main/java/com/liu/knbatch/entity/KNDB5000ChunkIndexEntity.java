@@ -0,0 +1,98 @@
+package com.liu.knbatch.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KNDB5000 块存储方式的备份的块一览（<备份名>.chunks.json）
+ * 按顺序连接各块的内容（压缩前）即为 mysqldump 的输出
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB5000ChunkIndexEntity {
+
+    private String database;            // 数据库名
+    private String backupName;          // 备份名
+    private String startTime;           // 开始时间 (yyyy-MM-dd HH:mm:ss)
+    private String endTime;             // 结束时间 (yyyy-MM-dd HH:mm:ss)
+    private long rawBytes;              // mysqldump 输出的大小（字节）
+    private String sha256;              // mysqldump 输出全体的 SHA-256（恢复时的确认用）
+    private int newChunkCount;          // 这次新保存的块数（其余的块已经在块存储里）
+    private long newChunkBytes;         // 这次新保存的块文件的大小合计（压缩后，字节）
+    private List<KNDB5000ChunkEntity> chunks = new ArrayList<>();
+
+    public KNDB5000ChunkIndexEntity() {}
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public String getBackupName() {
+        return backupName;
+    }
+
+    public void setBackupName(String backupName) {
+        this.backupName = backupName;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(String startTime) {
+        this.startTime = startTime;
+    }
+
+    public String getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(String endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public void setRawBytes(long rawBytes) {
+        this.rawBytes = rawBytes;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public int getNewChunkCount() {
+        return newChunkCount;
+    }
+
+    public void setNewChunkCount(int newChunkCount) {
+        this.newChunkCount = newChunkCount;
+    }
+
+    public long getNewChunkBytes() {
+        return newChunkBytes;
+    }
+
+    public void setNewChunkBytes(long newChunkBytes) {
+        this.newChunkBytes = newChunkBytes;
+    }
+
+    public List<KNDB5000ChunkEntity> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<KNDB5000ChunkEntity> chunks) {
+        this.chunks = chunks;
+    }
+}
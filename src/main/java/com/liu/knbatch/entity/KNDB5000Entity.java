@@ -13,10 +13,13 @@ public class KNDB5000Entity {
     private String backupFileName;      // 备份文件名
     private String backupFilePath;      // 备份文件完整路径
     private Long backupFileSize;        // 备份文件大小（字节）
+    private Long backupRawSize;         // 备份内容的大小（压缩前，字节）
+    private String backupSha256;        // 备份文件的 SHA-256（单文件备份时）
     private LocalDateTime backupStartTime;  // 备份开始时间
     private LocalDateTime backupEndTime;    // 备份结束时间
     private String backupStatus;       // 备份状态：SUCCESS/FAILED
     private String errorMessage;       // 错误信息
+    private String warningMessage;     // 警告信息（备份成功，但需要注意的事项）
     
     // 构造函数
     public KNDB5000Entity() {}
@@ -53,6 +56,22 @@ public class KNDB5000Entity {
         this.backupFileSize = backupFileSize;
     }
     
+    public Long getBackupRawSize() {
+        return backupRawSize;
+    }
+    
+    public void setBackupRawSize(Long backupRawSize) {
+        this.backupRawSize = backupRawSize;
+    }
+    
+    public String getBackupSha256() {
+        return backupSha256;
+    }
+    
+    public void setBackupSha256(String backupSha256) {
+        this.backupSha256 = backupSha256;
+    }
+    
     public LocalDateTime getBackupStartTime() {
         return backupStartTime;
     }
@@ -84,4 +103,12 @@ public class KNDB5000Entity {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
+    
+    public String getWarningMessage() {
+        return warningMessage;
+    }
+    
+    public void setWarningMessage(String warningMessage) {
+        this.warningMessage = warningMessage;
+    }
 }
\ No newline at end of file
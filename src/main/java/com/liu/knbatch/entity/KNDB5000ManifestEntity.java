@@ -0,0 +1,139 @@
+package com.liu.knbatch.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KNDB5000 备份清单（manifest.json）
+ * 并行备份、增量备份时每个备份目录一个，记录快照位置和各文件的行数、大小、校验值
+ * 增量备份时，没有变化的表不导出，文件记录里指向实际保存该文件的以前的备份（见 KNDB5000BackupChain）
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB5000ManifestEntity {
+
+    public static final String MODE_PARALLEL = "parallel";
+    public static final String MODE_FULL = "full";
+    public static final String MODE_INCREMENTAL = "incremental";
+
+    private String database;            // 数据库名
+    private String backupName;          // 备份名（= 备份目录名）
+    private String mode;                // 备份方式（parallel / full / incremental）
+    private String fullBackup;          // 增量备份的基准全量备份名（full / parallel 时为null）
+    private String startTime;           // 开始时间 (yyyy-MM-dd HH:mm:ss)
+    private String endTime;             // 结束时间 (yyyy-MM-dd HH:mm:ss)
+    private boolean compressed;         // 是否 gzip 压缩
+    private boolean consistent;         // 全部文件是否来自同一时点（导出期间持有全局读锁）
+    private String binlogFile;          // 快照时的 binlog 文件（binlog 无效时为null）
+    private Long binlogPosition;        // 快照时的 binlog 位置
+    private String gtidExecuted;        // 快照时的 GTID 集合
+    private String snapshotTime;        // 快照时的数据库服务器时间 (yyyy-MM-dd HH:mm:ss，增量备份的变化判定用)
+    private List<KNDB5000ManifestFileEntity> files = new ArrayList<>();
+
+    public KNDB5000ManifestEntity() {}
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public String getBackupName() {
+        return backupName;
+    }
+
+    public void setBackupName(String backupName) {
+        this.backupName = backupName;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public String getFullBackup() {
+        return fullBackup;
+    }
+
+    public void setFullBackup(String fullBackup) {
+        this.fullBackup = fullBackup;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(String startTime) {
+        this.startTime = startTime;
+    }
+
+    public String getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(String endTime) {
+        this.endTime = endTime;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public void setConsistent(boolean consistent) {
+        this.consistent = consistent;
+    }
+
+    public String getBinlogFile() {
+        return binlogFile;
+    }
+
+    public void setBinlogFile(String binlogFile) {
+        this.binlogFile = binlogFile;
+    }
+
+    public Long getBinlogPosition() {
+        return binlogPosition;
+    }
+
+    public void setBinlogPosition(Long binlogPosition) {
+        this.binlogPosition = binlogPosition;
+    }
+
+    public String getGtidExecuted() {
+        return gtidExecuted;
+    }
+
+    public void setGtidExecuted(String gtidExecuted) {
+        this.gtidExecuted = gtidExecuted;
+    }
+
+    public String getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    public void setSnapshotTime(String snapshotTime) {
+        this.snapshotTime = snapshotTime;
+    }
+
+    public List<KNDB5000ManifestFileEntity> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<KNDB5000ManifestFileEntity> files) {
+        this.files = files;
+    }
+}
@@ -0,0 +1,107 @@
+package com.liu.knbatch.entity;
+
+/**
+ * KNDB5000 备份清单（manifest.json）里的一个文件
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB5000ManifestFileEntity {
+
+    public static final String TYPE_TABLE = "table";
+    public static final String TYPE_VIEWS = "views";
+    public static final String TYPE_ROUTINES = "routines";
+
+    private String name;            // 表名（views / routines 时为种类名）
+    private String type;            // table / views / routines
+    private String file;            // 文件名（相对于备份目录）
+    private Long rows;              // 行数（一致性快照时为准确值，否则为 information_schema 的估算值）
+    private long rawBytes;          // 压缩前大小（字节）
+    private long fileBytes;         // 文件大小（字节）
+    private String sha256;          // 文件的 SHA-256
+    private long elapsedMillis;     // 导出耗时（毫秒）
+    private String signature;       // 表的变化判定值（增量备份用，与上次备份的值相同时不导出）
+    private String baseBackup;      // 文件实际所在的备份名（没有变化、沿用以前的备份的文件时；本备份里的文件为null）
+
+    public KNDB5000ManifestFileEntity() {}
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public Long getRows() {
+        return rows;
+    }
+
+    public void setRows(Long rows) {
+        this.rows = rows;
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public void setRawBytes(long rawBytes) {
+        this.rawBytes = rawBytes;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public void setFileBytes(long fileBytes) {
+        this.fileBytes = fileBytes;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    public String getBaseBackup() {
+        return baseBackup;
+    }
+
+    public void setBaseBackup(String baseBackup) {
+        this.baseBackup = baseBackup;
+    }
+}
@@ -0,0 +1,53 @@
+package com.liu.knbatch.entity;
+
+/**
+ * KNDB5000 备份对象表实体类（information_schema.tables）
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB5000TableEntity {
+
+    private String tableName;       // 表名
+    private String tableType;       // BASE TABLE / VIEW
+    private Long tableRows;         // 行数（InnoDB为估算值）
+    private Long tableSize;         // 数据 + 索引大小（字节）
+
+    public KNDB5000TableEntity() {}
+
+    public boolean isView() {
+        return "VIEW".equalsIgnoreCase(tableType);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getTableType() {
+        return tableType;
+    }
+
+    public void setTableType(String tableType) {
+        this.tableType = tableType;
+    }
+
+    public Long getTableRows() {
+        return tableRows;
+    }
+
+    public void setTableRows(Long tableRows) {
+        this.tableRows = tableRows;
+    }
+
+    public Long getTableSize() {
+        return tableSize;
+    }
+
+    public void setTableSize(Long tableSize) {
+        this.tableSize = tableSize;
+    }
+}
@@ -0,0 +1,234 @@
+package com.liu.knbatch.listener;
+
+import com.liu.knbatch.config.BatchMailInfo;
+import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.service.SimpleEmailService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KNDB1010 钢琴课程级别矫正（分区并行模式） 执行结果汇总监听器
+ *
+ * 业务逻辑（分区主步骤结束时执行，包括有分区失败时）：
+ * 1. 收集本作业实例所有分区（学生ID范围）的执行结果（重启时包括重启前已完成的分区）
+ * 2. 汇总读取件数、矫正件数、无法矫正件数、各分区耗时
+ * 3. 发送邮件通知
+ *
+ * 汇总不作为分区主步骤之后的步骤执行：流程在失败的步骤之后继续执行其他步骤时，
+ * Spring Batch 会把失败的步骤标记为 ABANDONED，重启时失败的分区就不会再执行。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB1010PartitionReportListener implements StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB1010PartitionReportListener.class);
+
+    public static final String PARTITION_STEP_NAME = "KNDB1010_PARTITION_STEP";
+    public static final String WORKER_STEP_NAME = "KNDB1010_WORKER_STEP";
+
+    private String jobId = "KNDB1010";
+
+    @Autowired
+    private BatchMailConfigDao mailDao;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired(required = false)
+    private SimpleEmailService emailService;
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution partitionStepExecution) {
+        String batchName = "KNDB1010";
+        String description = "钢琴课程级别矫正";
+        StringBuilder logContent = new StringBuilder();
+
+        // 重启时已完成的分区不会再执行，只看本次的 JobExecution 会漏掉这些分区，
+        // 所以汇总同一 JobInstance 的全部执行
+        JobExecution jobExecution = partitionStepExecution.getJobExecution();
+        List<JobExecution> jobExecutions = new ArrayList<>();
+        for (JobExecution execution : jobExplorer.getJobExecutions(jobExecution.getJobInstance())) {
+            if (!execution.getId().equals(jobExecution.getId())) {
+                jobExecutions.add(execution);
+            }
+        }
+        // JobExplorer 按新→旧返回，改成按执行顺序；本次的执行用内存里的最新状态
+        jobExecutions.sort(Comparator.comparingLong(JobExecution::getId));
+        jobExecutions.add(jobExecution);
+        List<PartitionResult> partitions = summarizePartitions(jobExecutions);
+
+        int readCount = 0;
+        int updatedCount = 0;
+        int uncorrectableCount = 0;
+        boolean success = true;
+
+        addLog(logContent, "========== " + batchName + " 分区并行执行结果 ==========");
+        if (jobExecutions.size() > 1) {
+            addLog(logContent, "执行次数: " + jobExecutions.size() + "（包括重启前的执行）");
+        }
+        for (PartitionResult partition : partitions) {
+            readCount += partition.readCount;
+            updatedCount += partition.writeCount;
+            uncorrectableCount += partition.uncorrectableCount;
+            success &= ExitStatus.COMPLETED.getExitCode().equals(partition.exitCode);
+
+            String detailInfo = String.format("  - 分区%d [%s ~ %s] 状态: %s, 读取: %d, 矫正: %d, 无法矫正: %d, 执行次数: %d, 耗时: %d ms",
+                    partition.partitionNo, partition.fromStuId, partition.toStuId, partition.exitCode,
+                    partition.readCount, partition.writeCount, partition.uncorrectableCount,
+                    partition.executionCount, partition.executionTime);
+            addLog(logContent, detailInfo);
+            logger.info(detailInfo);
+        }
+        // 分区器本身失败时没有分区的执行记录，看分区主步骤的状态
+        success &= ExitStatus.COMPLETED.getExitCode().equals(partitionStepExecution.getExitStatus().getExitCode());
+        for (Throwable throwable : partitionStepExecution.getFailureExceptions()) {
+            addLog(logContent, "错误信息: " + throwable.getMessage());
+        }
+
+        addLog(logContent, "分区数: " + partitions.size());
+        addLog(logContent, "读取课程记录数: " + readCount);
+        addLog(logContent, "发现错误记录数: " + (updatedCount + uncorrectableCount));
+        addLog(logContent, "矫正记录数: " + updatedCount);
+        addLog(logContent, "无法矫正记录数: " + uncorrectableCount);
+        addLog(logContent, "执行结束时间: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        addLog(logContent, "================================================");
+
+        logger.info("========== {} 分区并行执行完成 - 分区数: {}, 读取: {}, 矫正: {}, 无法矫正: {} ==========",
+                batchName, partitions.size(), readCount, updatedCount, uncorrectableCount);
+
+        sendEmailNotification(batchName, description, success, logContent.toString(),
+                updatedCount + uncorrectableCount, updatedCount);
+
+        // 不改变分区主步骤的结束状态
+        return null;
+    }
+
+    /**
+     * 按分区（工作步骤名）汇总同一 JobInstance 的各次执行
+     * 读取件数/矫正件数每次执行从0开始计数，所以合计各次执行；
+     * 状态、学生ID范围、无法矫正件数（ExecutionContext 里重启前后累计）取最后一次执行的值
+     *
+     * @param jobExecutions 同一 JobInstance 的执行（按执行顺序）
+     * @return 按分区编号排列的汇总结果
+     */
+    static List<PartitionResult> summarizePartitions(List<JobExecution> jobExecutions) {
+        Map<String, PartitionResult> results = new LinkedHashMap<>();
+        for (JobExecution jobExecution : jobExecutions) {
+            for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+                if (!stepExecution.getStepName().startsWith(WORKER_STEP_NAME)) {
+                    continue;
+                }
+                // 重启时已完成的分区也会在本次的 JobExecution 里生成执行记录，但不执行也不保存（ID为null）
+                if (stepExecution.getId() == null) {
+                    continue;
+                }
+                results.computeIfAbsent(stepExecution.getStepName(), stepName -> new PartitionResult())
+                        .add(stepExecution);
+            }
+        }
+        List<PartitionResult> partitions = new ArrayList<>(results.values());
+        partitions.sort(Comparator.comparingInt((PartitionResult partition) -> partition.partitionNo));
+        return partitions;
+    }
+
+    /**
+     * 1个分区的汇总结果
+     */
+    static class PartitionResult {
+        int partitionNo;
+        String fromStuId = "";
+        String toStuId = "";
+        String exitCode = ExitStatus.UNKNOWN.getExitCode();
+        int readCount = 0;
+        int writeCount = 0;
+        int uncorrectableCount = 0;
+        int executionCount = 0;
+        long executionTime = 0;
+
+        private void add(StepExecution stepExecution) {
+            ExecutionContext executionContext = stepExecution.getExecutionContext();
+            partitionNo = executionContext.getInt("partitionNo", 0);
+            fromStuId = executionContext.getString("fromStuId", "");
+            toStuId = executionContext.getString("toStuId", "");
+            exitCode = stepExecution.getExitStatus().getExitCode();
+            uncorrectableCount = executionContext.getInt("uncorrectableCount", 0);
+            readCount += stepExecution.getReadCount();
+            writeCount += stepExecution.getWriteCount();
+            executionCount++;
+            if (stepExecution.getEndTime() != null && stepExecution.getStartTime() != null) {
+                executionTime += stepExecution.getEndTime().getTime() - stepExecution.getStartTime().getTime();
+            }
+        }
+    }
+
+    /**
+     * 添加日志条目（带时间戳）
+     */
+    private void addLog(StringBuilder logContent, String message) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        logContent.append(String.format("[%s] %s\n", timestamp, message));
+    }
+
+    /**
+     * 发送邮件通知
+     */
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent,
+                                       int incorrectCount, int updatedCount) {
+
+        // 从数据库邮件管理表提取邮件管理信息
+        BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
+
+        try {
+            if (emailService != null) {
+                // 给程序维护者发送邮件
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
+
+                // 如果用户邮件不为空，则给用户发送邮件
+                if (!mailInfo.getEmailToUser().isEmpty()){
+                    StringBuilder useMailContent = new StringBuilder();
+                    if (incorrectCount == 0) {
+                        useMailContent.append("没有发现学生排课数据异常").append(System.lineSeparator());
+                    } else {
+                        useMailContent.append("排课中发现课程级别的错误数是：")
+                                      .append(incorrectCount)
+                                      .append("个")
+                                      .append(System.lineSeparator());
+                        useMailContent.append("上述学生的课程级别，KNPiano批处理系统已更新").append(System.lineSeparator());
+                        useMailContent.append("更新件数 : ").append(updatedCount).append("个").append(System.lineSeparator());
+                    }
+                    emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getEmailToUser(), jobName, description, success, useMailContent.toString());
+                }
+
+                logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
+            } else {
+                logger.info("邮件服务未启用，跳过邮件发送 - jobName: {}", jobName);
+            }
+        } catch (Exception e) {
+            logger.error("发送邮件通知时出错 - jobName: {}, error: {}", jobName, e.getMessage(), e);
+            // 不要因为邮件发送失败而影响批处理任务的状态
+        }
+    }
+}
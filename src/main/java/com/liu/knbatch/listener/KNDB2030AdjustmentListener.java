@@ -0,0 +1,98 @@
+package com.liu.knbatch.listener;
+
+import com.liu.knbatch.entity.KNDB2030Entity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KNDB2030 课费预支付再调整 分块处理用监听器
+ *
+ * 1. 被跳过的预支付记录（重试后仍然死锁、数据不整合等）写进 StepExecution 的 ExecutionContext（skippedItems），
+ *    和分块一起提交，之后由 KNDB2030_REPORT_STEP 放进邮件，供人工确认。
+ * 2. 步骤结束时把本次的调整件数、跳过件数累加到 ExecutionContext（adjustedTotal / skippedTotal），
+ *    重启作业时 Spring Batch 会沿用上次的 ExecutionContext，所以这里是重启前后的合计。
+ *
+ * 本监听器不保存任何状态（全部放在 ExecutionContext 里），可以作为单例被并发执行的作业共用。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB2030AdjustmentListener implements SkipListener<KNDB2030Entity, KNDB2030Entity>, StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2030AdjustmentListener.class);
+
+    public static final String KEY_SKIPPED_ITEMS = "skippedItems";
+    public static final String KEY_ADJUSTED_TOTAL = "adjustedTotal";
+    public static final String KEY_SKIPPED_TOTAL = "skippedTotal";
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        if (executionContext.containsKey(KEY_ADJUSTED_TOTAL)) {
+            logger.info("KNDB2030 重启执行 - 上次为止已调整: {} 件, 已跳过: {} 件",
+                    executionContext.getInt(KEY_ADJUSTED_TOTAL), executionContext.getInt(KEY_SKIPPED_TOTAL, 0));
+        }
+    }
+
+    @Override
+    public void onSkipInRead(Throwable t) {
+        recordSkippedItem("读取时跳过", t);
+    }
+
+    @Override
+    public void onSkipInProcess(KNDB2030Entity item, Throwable t) {
+        recordSkippedItem(describe(item), t);
+    }
+
+    @Override
+    public void onSkipInWrite(KNDB2030Entity item, Throwable t) {
+        recordSkippedItem(describe(item), t);
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        executionContext.putInt(KEY_ADJUSTED_TOTAL,
+                executionContext.getInt(KEY_ADJUSTED_TOTAL, 0) + stepExecution.getWriteCount());
+        executionContext.putInt(KEY_SKIPPED_TOTAL,
+                executionContext.getInt(KEY_SKIPPED_TOTAL, 0) + stepExecution.getSkipCount());
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recordSkippedItem(String itemInfo, Throwable t) {
+        String record = itemInfo + ", 原因: " + t.getClass().getSimpleName() + " - " + t.getMessage();
+        logger.warn("KNDB2030 跳过预支付记录 - {}", record);
+
+        if (StepSynchronizationManager.getContext() == null) {
+            return;
+        }
+        ExecutionContext executionContext = StepSynchronizationManager.getContext().getStepExecution().getExecutionContext();
+        List<String> skippedItems = executionContext.containsKey(KEY_SKIPPED_ITEMS)
+                ? new ArrayList<>((List<String>) executionContext.get(KEY_SKIPPED_ITEMS))
+                : new ArrayList<>();
+        // 重启后同一条记录会被再次跳过，不重复记录
+        for (String skippedItem : skippedItems) {
+            if (skippedItem.startsWith(itemInfo + ",")) {
+                return;
+            }
+        }
+        skippedItems.add(record);
+        executionContext.put(KEY_SKIPPED_ITEMS, skippedItems);
+    }
+
+    private String describe(KNDB2030Entity item) {
+        return String.format("学生ID: %s, 科目ID: %s, 课程ID: %s, 课费ID: %s, 支付ID: %s",
+                item.getStuId(), item.getSubjectId(), item.getLessonId(), item.getLsnFeeId(), item.getLsnPayId());
+    }
+}
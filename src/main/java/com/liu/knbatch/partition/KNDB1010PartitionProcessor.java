@@ -0,0 +1,77 @@
+package com.liu.knbatch.partition;
+
+import com.liu.knbatch.dao.KNDB1010Dao;
+import com.liu.knbatch.entity.KNDB1010Entity;
+import com.liu.knbatch.service.KNDB1010LatestSubjectIndex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemProcessor;
+
+/**
+ * KNDB1010 钢琴课程级别矫正 分区处理用Processor
+ *
+ * 每个分区（学生ID范围）各持有一个实例（StepScope），
+ * 分区开始时只为本分区的学生构建最新科目级别索引。
+ * 级别正确的课程返回null（过滤掉），错误级别的课程把级别改成最新级别后交给Writer更新。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB1010PartitionProcessor implements ItemProcessor<KNDB1010Entity, KNDB1010Entity>, StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB1010PartitionProcessor.class);
+
+    private final KNDB1010Dao kndb1010Dao;
+    private final String fromStuId;
+    private final String toStuId;
+
+    private KNDB1010LatestSubjectIndex index;
+    // 学生档案里没有该科目的最新级别，无法矫正的课程数
+    private int uncorrectableCount = 0;
+
+    public KNDB1010PartitionProcessor(KNDB1010Dao kndb1010Dao, String fromStuId, String toStuId) {
+        this.kndb1010Dao = kndb1010Dao;
+        this.fromStuId = fromStuId;
+        this.toStuId = toStuId;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        index = KNDB1010LatestSubjectIndex.load(kndb1010Dao, fromStuId, toStuId);
+        // 重启时接着上次的件数累计
+        uncorrectableCount = stepExecution.getExecutionContext().getInt("uncorrectableCount", 0);
+    }
+
+    @Override
+    public KNDB1010Entity process(KNDB1010Entity lesson) {
+        if (!index.isIncorrect(lesson)) {
+            return null;
+        }
+
+        String latestSubId = index.latestSubjectSubId(lesson.getStuId(), lesson.getSubjectId());
+        if (latestSubId == null) {
+            uncorrectableCount++;
+            logger.warn("无法矫正的课程（学生档案里没有该科目的级别）- 学生ID: {}, 科目ID: {}, 课程ID: {}",
+                    lesson.getStuId(), lesson.getSubjectId(), lesson.getLessonId());
+            return null;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("错误级别课程 - 学生ID: {}, 科目ID: {}, 当前级别: {} -> 正确级别: {}, 排课日期: {}",
+                    lesson.getStuId(), lesson.getSubjectId(), lesson.getSubjectSubId(),
+                    latestSubId, lesson.getSchedualDate());
+        }
+        lesson.setSubjectSubId(latestSubId);
+        return lesson;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        stepExecution.getExecutionContext().putInt("uncorrectableCount", uncorrectableCount);
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.liu.knbatch.partition;
+
+import com.liu.knbatch.dao.KNDB1010Dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KNDB1010 钢琴课程级别矫正 分区器
+ *
+ * 把目标月份有排课的学生，按学生ID顺序切分成 gridSize 个连续的学生ID范围。
+ * 每个分区的 ExecutionContext 里保存：
+ *   targetMonth : 目标月份 (yyyy-MM)
+ *   fromStuId   : 学生ID下限（包含）
+ *   toStuId     : 学生ID上限（包含）
+ *   partitionNo : 分区编号
+ * 分区失败后重启作业时，Spring Batch 会沿用上次的分区内容，只重新执行失败的分区。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB1010Partitioner implements Partitioner {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB1010Partitioner.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    public static final String PARTITION_PREFIX = "partition";
+
+    private final KNDB1010Dao kndb1010Dao;
+    private final String targetMonth;
+
+    /**
+     * @param kndb1010Dao 数据访问接口
+     * @param baseDate 基准日期 (格式: yyyyMMdd)
+     */
+    public KNDB1010Partitioner(KNDB1010Dao kndb1010Dao, String baseDate) {
+        this.kndb1010Dao = kndb1010Dao;
+        this.targetMonth = LocalDate.parse(baseDate, DATE_FORMATTER).format(MONTH_FORMATTER);
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<String> stuIds = kndb1010Dao.selectStudentIdsOfMonth(targetMonth);
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        int partitionCount = Math.min(Math.max(gridSize, 1), stuIds.size());
+        for (int i = 0; i < partitionCount; i++) {
+            int from = i * stuIds.size() / partitionCount;
+            int to = (i + 1) * stuIds.size() / partitionCount - 1;
+
+            ExecutionContext context = new ExecutionContext();
+            context.putString("targetMonth", targetMonth);
+            context.putString("fromStuId", stuIds.get(from));
+            context.putString("toStuId", stuIds.get(to));
+            context.putInt("partitionNo", i + 1);
+            partitions.put(PARTITION_PREFIX + (i + 1), context);
+
+            logger.info("KNDB1010 分区{} - 目标月份: {}, 学生ID范围: [{} ~ {}], 学生数: {}",
+                    i + 1, targetMonth, stuIds.get(from), stuIds.get(to), to - from + 1);
+        }
+
+        logger.info("KNDB1010 分区完成 - 目标月份: {}, 学生数: {}, 分区数: {}",
+                targetMonth, stuIds.size(), partitions.size());
+        return partitions;
+    }
+}
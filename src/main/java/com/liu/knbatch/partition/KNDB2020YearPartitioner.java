@@ -0,0 +1,69 @@
+package com.liu.knbatch.partition;
+
+import com.liu.knbatch.dao.KNDB2020Dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * KNDB2020 历年验证 年度分区器
+ *
+ * 最早的排课年度到基准日期所在年度的前一年（已结束年度），每个年度作为一个分区。
+ * （基准日期所在年度由 KNDB2020_STEP 验证）
+ * 每个分区的 ExecutionContext 里保存：
+ *   year        : 目标年度 (yyyy)
+ *   partitionNo : 分区编号
+ * 分区时只取得最早的排课年度（走索引，1行），年度指纹由各分区按年度范围分别查询，
+ * 不对全部历史做聚合。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB2020YearPartitioner implements Partitioner {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020YearPartitioner.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    public static final String PARTITION_PREFIX = "year";
+
+    private final KNDB2020Dao kndb2020Dao;
+    private final String baseYear;
+
+    /**
+     * @param kndb2020Dao 数据访问接口
+     * @param baseDate 基准日期 (格式: yyyyMMdd)
+     */
+    public KNDB2020YearPartitioner(KNDB2020Dao kndb2020Dao, String baseDate) {
+        this.kndb2020Dao = kndb2020Dao;
+        this.baseYear = String.valueOf(LocalDate.parse(baseDate, DATE_FORMATTER).getYear());
+    }
+
+    /**
+     * 分区数由已结束年度的数量决定，gridSize 不使用
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        String firstYear = kndb2020Dao.selectFirstLessonYear();
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        int partitionNo = 0;
+        if (firstYear != null) {
+            for (int year = Integer.parseInt(firstYear); year < Integer.parseInt(baseYear); year++) {
+                ExecutionContext context = new ExecutionContext();
+                context.putString("year", String.valueOf(year));
+                context.putInt("partitionNo", ++partitionNo);
+                partitions.put(PARTITION_PREFIX + year, context);
+            }
+        }
+
+        logger.info("KNDB2020 历年验证分区完成 - 基准年度: {}, 对象年度: {}", baseYear, partitions.keySet());
+        return partitions;
+    }
+}
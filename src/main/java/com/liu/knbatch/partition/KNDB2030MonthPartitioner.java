@@ -0,0 +1,66 @@
+package com.liu.knbatch.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * KNDB2030 课费预支付再调整 月份分区器
+ *
+ * 从基准日期所在月份开始，往前回溯 lookbackMonths 个月，每个月作为一个分区。
+ * （NAS停机等原因漏掉的月份，在之后的执行中也能被调整）
+ * 每个分区的 ExecutionContext 里保存：
+ *   yearMonth   : 目标月份 (yyyy-MM)
+ *   partitionNo : 分区编号（1: 基准月份，2: 上个月 ...）
+ * 各月份的数据互不重叠；已调整的记录 advc_flg=1，不会再被读出，所以相邻两次执行的回溯范围重叠也没有问题。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public class KNDB2030MonthPartitioner implements Partitioner {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2030MonthPartitioner.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    public static final String PARTITION_PREFIX = "month";
+
+    private final LocalDate baseDate;
+    private final int lookbackMonths;
+
+    /**
+     * @param baseDate 基准日期 (格式: yyyyMMdd)
+     * @param lookbackMonths 回溯月数（1: 只处理基准日期所在月份）
+     */
+    public KNDB2030MonthPartitioner(String baseDate, int lookbackMonths) {
+        this.baseDate = LocalDate.parse(baseDate, DATE_FORMATTER);
+        this.lookbackMonths = Math.max(lookbackMonths, 1);
+    }
+
+    /**
+     * 分区数由回溯月数决定，gridSize 不使用
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        for (int i = 0; i < lookbackMonths; i++) {
+            String yearMonth = baseDate.minusMonths(i).format(MONTH_FORMATTER);
+
+            ExecutionContext context = new ExecutionContext();
+            context.putString("yearMonth", yearMonth);
+            context.putInt("partitionNo", i + 1);
+            partitions.put(PARTITION_PREFIX + yearMonth, context);
+        }
+
+        logger.info("KNDB2030 分区完成 - 基准日期: {}, 回溯月数: {}, 对象月份: {}",
+                baseDate, lookbackMonths, partitions.keySet());
+        return partitions;
+    }
+}
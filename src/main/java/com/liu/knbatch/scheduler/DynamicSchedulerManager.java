@@ -2,6 +2,7 @@ package com.liu.knbatch.scheduler;
 
 import com.liu.knbatch.config.BatchJobRegistry;
 import com.liu.knbatch.config.BatchJobInfo;
+import com.liu.knbatch.config.BatchJobOptionalParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
@@ -43,6 +44,9 @@ public class DynamicSchedulerManager implements SchedulingConfigurer {
     
     @Autowired
     private ApplicationContext applicationContext;
+
+    @Autowired
+    private BatchJobOptionalParameters optionalParameters;
     
     @PostConstruct
     public void init() {
@@ -123,12 +127,12 @@ public class DynamicSchedulerManager implements SchedulingConfigurer {
             // 动态获取Job实例
             Job job = applicationContext.getBean(jobInfo.getBeanName(), Job.class);
             
-            // 构建作业参数
-            JobParameters jobParameters = new JobParametersBuilder()
+            // 构建作业参数（可选作业参数取自启动参数，与手动执行相同）
+            JobParameters jobParameters = optionalParameters.addTo(jobId, new JobParametersBuilder()
                     .addString("baseDate", baseDate)
                     .addString("jobMode", "SCHEDULED")
                     .addString("businessModule", jobId)
-                    .addLong("timestamp", System.currentTimeMillis())
+                    .addLong("timestamp", System.currentTimeMillis()))
                     .toJobParameters();
             
             // 执行作业
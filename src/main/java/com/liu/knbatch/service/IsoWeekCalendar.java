@@ -0,0 +1,143 @@
+package com.liu.knbatch.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ISO周历（KNDB4000 / KNDB4010 共用）
+ *
+ * 概要：启动时把 FIRST_YEAR 年～LAST_YEAR 年的每一天属于哪个ISO周预先计算好，
+ * 保存在以 epoch-day 偏移量为下标的数组里，日期 → 周次 的换算只是一次数组访问。
+ * 周次使用ISO 8601（周一开始，包含该年第一个周四的周为第1周），与MySQL的 WEEKOFYEAR() 相同，
+ * 不受运行环境（容器）的Locale影响。
+ * 计算结果生成后不再变更，多个作业、多个线程同时使用也没有问题。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public final class IsoWeekCalendar {
+
+    private static final Logger logger = LoggerFactory.getLogger(IsoWeekCalendar.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // 周历的对象范围
+    public static final int FIRST_YEAR = 2000;
+    public static final int LAST_YEAR = 2099;
+
+    // 对象范围第一天（FIRST_YEAR 年1月1日所在周的周一）的 epoch-day
+    private final long firstEpochDay;
+    // 下标: epoch-day - firstEpochDay，值: ISO周所属年 * 100 + ISO周次
+    private final int[] isoWeekOfDay;
+
+    public IsoWeekCalendar() {
+        long startTime = System.currentTimeMillis();
+        LocalDate firstDate = LocalDate.of(FIRST_YEAR, 1, 1).with(DayOfWeek.MONDAY);
+        LocalDate lastDate = LocalDate.of(LAST_YEAR, 12, 31).with(DayOfWeek.SUNDAY);
+
+        this.firstEpochDay = firstDate.toEpochDay();
+        this.isoWeekOfDay = new int[(int) (lastDate.toEpochDay() - firstEpochDay + 1)];
+
+        // ISO周在周一切换，每周只计算一次
+        for (LocalDate monday = firstDate; !monday.isAfter(lastDate); monday = monday.plusWeeks(1)) {
+            int isoWeek = monday.get(IsoFields.WEEK_BASED_YEAR) * 100 + monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            int offset = (int) (monday.toEpochDay() - firstEpochDay);
+            for (int i = 0; i < 7; i++) {
+                isoWeekOfDay[offset + i] = isoWeek;
+            }
+        }
+
+        logger.info("ISO周历生成完成 - 对象范围: {} ～ {}, 天数: {}, 耗时: {} ms",
+                firstDate, lastDate, isoWeekOfDay.length, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 获取日期所在的ISO周
+     *
+     * @param date 日期
+     * @return 日期所在的周
+     * @throws IllegalArgumentException 日期超出周历的对象范围时
+     */
+    public Week weekOf(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        long offset = epochDay - firstEpochDay;
+        if (offset < 0 || offset >= isoWeekOfDay.length) {
+            throw new IllegalArgumentException("日期超出ISO周历的对象范围（" + FIRST_YEAR + "～" + LAST_YEAR + "年）: " + date);
+        }
+        int isoWeek = isoWeekOfDay[(int) offset];
+        // 周一开始，所以周开始日可以由星期直接算出
+        LocalDate startDate = LocalDate.ofEpochDay(epochDay - (date.getDayOfWeek().getValue() - 1));
+        return new Week(isoWeek / 100, isoWeek % 100, startDate);
+    }
+
+    /**
+     * 获取指定年度范围的全部周
+     * 从 fromYear 年1月1日所在的周开始，到周一在 toYear 年内的最后一周为止
+     *
+     * @param fromYear 开始年份
+     * @param toYear 结束年份（包含）
+     * @return 周列表（按周开始日升序）
+     */
+    public List<Week> weeksOfYears(int fromYear, int toYear) {
+        List<Week> weeks = new ArrayList<>();
+        for (LocalDate monday = weekOf(LocalDate.of(fromYear, 1, 1)).getStartDate();
+                monday.getYear() <= toYear; monday = monday.plusWeeks(1)) {
+            weeks.add(weekOf(monday));
+        }
+        return weeks;
+    }
+
+    /**
+     * ISO周（不可变）
+     */
+    public static final class Week {
+
+        private final int weekBasedYear;
+        private final int weekNumber;
+        private final LocalDate startDate;
+
+        private Week(int weekBasedYear, int weekNumber, LocalDate startDate) {
+            this.weekBasedYear = weekBasedYear;
+            this.weekNumber = weekNumber;
+            this.startDate = startDate;
+        }
+
+        public int getWeekBasedYear() {
+            return weekBasedYear;
+        }
+
+        public int getWeekNumber() {
+            return weekNumber;
+        }
+
+        public LocalDate getStartDate() {
+            return startDate;
+        }
+
+        public LocalDate getEndDate() {
+            return startDate.plusDays(6);
+        }
+
+        /**
+         * 周开始日（周一）的字符串 (格式: yyyy-MM-dd)
+         */
+        public String getStartWeekDate() {
+            return startDate.format(DATE_FORMATTER);
+        }
+
+        /**
+         * 周结束日（周日）的字符串 (格式: yyyy-MM-dd)
+         */
+        public String getEndWeekDate() {
+            return getEndDate().format(DATE_FORMATTER);
+        }
+    }
+}
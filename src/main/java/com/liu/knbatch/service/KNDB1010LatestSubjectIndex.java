@@ -0,0 +1,136 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB1010Dao;
+import com.liu.knbatch.entity.KNDB1010Entity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KNDB1010 学生最新科目级别 内存索引
+ *
+ * 概要：把视图 v_latest_subject_info_from_student_document 的内容
+ * （每个学生每个科目的最新级别）一次性流式读入内存，
+ * 以 (stu_id, subject_id) → subject_sub_id 的形式保存。
+ * 错误级别课程的判定和矫正都基于该索引进行，不再让MySQL对每条课程记录执行 NOT EXISTS 子查询。
+ *
+ * 内存说明：学生ID/科目ID/级别ID的取值种类很少，读入时通过字符串池去重，
+ * 同一个字符串值在索引中只保留一个实例。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public final class KNDB1010LatestSubjectIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB1010LatestSubjectIndex.class);
+
+    // 复合键的分隔符（学生ID和科目ID里不会出现的字符）
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    private final Map<String, String> latestSubIds;
+    private final Map<String, String> stringPool;
+    private int duplicateCount = 0;
+
+    private KNDB1010LatestSubjectIndex() {
+        this.latestSubIds = new HashMap<>();
+        this.stringPool = new HashMap<>();
+    }
+
+    /**
+     * 从数据库流式读取最新科目级别信息，构建索引（每次执行只读一次）
+     *
+     * @param kndb1010Dao 数据访问接口
+     * @return 构建好的索引
+     */
+    public static KNDB1010LatestSubjectIndex load(KNDB1010Dao kndb1010Dao) {
+        return load(kndb1010Dao, null, null, null);
+    }
+
+    /**
+     * 只为指定的学生构建索引（增量处理用）
+     *
+     * @param kndb1010Dao 数据访问接口
+     * @param stuIds 学生ID列表
+     * @return 构建好的索引
+     */
+    public static KNDB1010LatestSubjectIndex load(KNDB1010Dao kndb1010Dao, List<String> stuIds) {
+        return load(kndb1010Dao, null, null, stuIds);
+    }
+
+    /**
+     * 从数据库流式读取指定学生ID范围内的最新科目级别信息，构建索引（分区并行处理用）
+     *
+     * @param kndb1010Dao 数据访问接口
+     * @param fromStuId 学生ID下限（包含，null表示不限）
+     * @param toStuId 学生ID上限（包含，null表示不限）
+     * @return 构建好的索引
+     */
+    public static KNDB1010LatestSubjectIndex load(KNDB1010Dao kndb1010Dao, String fromStuId, String toStuId) {
+        return load(kndb1010Dao, fromStuId, toStuId, null);
+    }
+
+    private static KNDB1010LatestSubjectIndex load(KNDB1010Dao kndb1010Dao, String fromStuId, String toStuId,
+                                                   List<String> stuIds) {
+        long startTime = System.currentTimeMillis();
+        KNDB1010LatestSubjectIndex index = new KNDB1010LatestSubjectIndex();
+
+        kndb1010Dao.streamLatestSubjectInfo(fromStuId, toStuId, stuIds, context -> index.put(context.getResultObject()));
+
+        logger.info("最新科目级别索引构建完成 - 学生ID范围: [{} ~ {}], 索引件数: {}, 重复件数: {}, 耗时: {} ms",
+                fromStuId, toStuId, index.size(), index.duplicateCount, System.currentTimeMillis() - startTime);
+        return index;
+    }
+
+    private void put(KNDB1010Entity doc) {
+        String key = key(doc.getStuId(), doc.getSubjectId());
+        String subId = intern(doc.getSubjectSubId());
+        String previous = latestSubIds.putIfAbsent(key, subId);
+        if (previous != null && !previous.equals(subId)) {
+            // 视图理论上每个学生每个科目只有1条，出现多条时保留先读到的那一条
+            duplicateCount++;
+        }
+    }
+
+    /**
+     * 判定课程的级别是否错误（等价于原SQL的 NOT EXISTS 判定）
+     *
+     * @param lesson 课程记录
+     * @return true: 错误级别课程
+     */
+    public boolean isIncorrect(KNDB1010Entity lesson) {
+        String latest = latestSubIds.get(key(lesson.getStuId(), lesson.getSubjectId()));
+        return latest == null || !latest.equals(lesson.getSubjectSubId());
+    }
+
+    /**
+     * 获取学生该科目的最新级别
+     *
+     * @param stuId 学生ID
+     * @param subjectId 科目ID
+     * @return 最新级别ID，没有档案记录时返回null
+     */
+    public String latestSubjectSubId(String stuId, String subjectId) {
+        return latestSubIds.get(key(stuId, subjectId));
+    }
+
+    public int size() {
+        return latestSubIds.size();
+    }
+
+    private String key(String stuId, String subjectId) {
+        return new StringBuilder(stuId.length() + subjectId.length() + 1)
+                .append(stuId).append(KEY_SEPARATOR).append(subjectId).toString();
+    }
+
+    private String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = stringPool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
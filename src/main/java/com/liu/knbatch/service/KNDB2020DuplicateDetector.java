@@ -0,0 +1,131 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB2020Dao;
+import com.liu.knbatch.entity.KNDB2020FeeErrorEntity;
+import com.liu.knbatch.entity.KNDB2020IdPairEntity;
+import com.liu.knbatch.entity.KNDB2020PayErrorEntity;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * KNDB2020 费用表/支付表 流式重复检查
+ *
+ * 概要：按 (分组ID, 成员ID) 排序流式读取ID对，相同分组ID的行是连续的，
+ * 所以逐行读取时只要保存当前分组的成员ID，分组ID变化时判定该分组的成员数是否大于1。
+ *   费用表：一个lesson_id对应了多个lsn_fee_id（成员ID去重后计数，与 getFeeErrorList 相同）
+ *   支付表：一个lsn_fee_id对应了多个lsn_pay_id（成员ID不去重计数，与 getPayErrorList 相同）
+ * 和 GROUP BY + GROUP_CONCAT 的SQL版相比：
+ *   不需要数据库对整个表分组排序（有索引时按索引顺序读取）；
+ *   ID列表不受 group_concat_max_len 的限制，不会被截断。
+ *
+ * 内存说明：只保存当前分组的成员ID和检出的错误记录，与表的件数无关。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public final class KNDB2020DuplicateDetector implements ResultHandler<KNDB2020IdPairEntity> {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020DuplicateDetector.class);
+
+    // 成员ID是否去重后计数
+    private final boolean distinctMembers;
+    private final List<String> currentMembers = new ArrayList<>();
+    private final List<Violation> violations = new ArrayList<>();
+    private String currentGroupId;
+    private long pairCount = 0;
+
+    private KNDB2020DuplicateDetector(boolean distinctMembers) {
+        this.distinctMembers = distinctMembers;
+    }
+
+    /**
+     * 检查费用表：一个lesson_id是否对应了多个lsn_fee_id（getFeeErrorList 的流式版）
+     *
+     * @param kndb2020Dao 数据访问接口
+     * @return 费用表错误记录列表（费用ID列表完整，不截断）
+     */
+    public static List<KNDB2020FeeErrorEntity> detectFeeErrors(KNDB2020Dao kndb2020Dao) {
+        long startTime = System.currentTimeMillis();
+        KNDB2020DuplicateDetector detector = new KNDB2020DuplicateDetector(true);
+        kndb2020Dao.streamFeeIdPairs(detector);
+        detector.flush();
+
+        List<KNDB2020FeeErrorEntity> feeErrorList = new ArrayList<>(detector.violations.size());
+        for (Violation violation : detector.violations) {
+            feeErrorList.add(new KNDB2020FeeErrorEntity(violation.groupId, violation.memberIds.size(),
+                    String.join(",", violation.memberIds)));
+        }
+
+        logger.info("费用表流式重复检查完成 - 读取件数: {}, 错误件数: {}, 耗时: {} ms",
+                detector.pairCount, feeErrorList.size(), System.currentTimeMillis() - startTime);
+        return feeErrorList;
+    }
+
+    /**
+     * 检查支付表：一个lsn_fee_id是否对应了多个lsn_pay_id（getPayErrorList 的流式版）
+     *
+     * @param kndb2020Dao 数据访问接口
+     * @return 支付表错误记录列表（支付ID列表完整，不截断）
+     */
+    public static List<KNDB2020PayErrorEntity> detectPayErrors(KNDB2020Dao kndb2020Dao) {
+        long startTime = System.currentTimeMillis();
+        KNDB2020DuplicateDetector detector = new KNDB2020DuplicateDetector(false);
+        kndb2020Dao.streamPayIdPairs(detector);
+        detector.flush();
+
+        List<KNDB2020PayErrorEntity> payErrorList = new ArrayList<>(detector.violations.size());
+        for (Violation violation : detector.violations) {
+            payErrorList.add(new KNDB2020PayErrorEntity(violation.groupId, violation.memberIds.size(),
+                    String.join(",", violation.memberIds)));
+        }
+
+        logger.info("支付表流式重复检查完成 - 读取件数: {}, 错误件数: {}, 耗时: {} ms",
+                detector.pairCount, payErrorList.size(), System.currentTimeMillis() - startTime);
+        return payErrorList;
+    }
+
+    @Override
+    public void handleResult(ResultContext<? extends KNDB2020IdPairEntity> context) {
+        KNDB2020IdPairEntity pair = context.getResultObject();
+        pairCount++;
+
+        if (!Objects.equals(pair.getGroupId(), currentGroupId)) {
+            flush();
+            currentGroupId = pair.getGroupId();
+        }
+
+        // 成员ID是排好序的，去重时只要和上一个比较（COUNT(DISTINCT) 不计NULL）
+        if (distinctMembers && (pair.getMemberId() == null || (!currentMembers.isEmpty()
+                && currentMembers.get(currentMembers.size() - 1).equals(pair.getMemberId())))) {
+            return;
+        }
+        currentMembers.add(pair.getMemberId());
+    }
+
+    /**
+     * 判定当前分组，成员数大于1时记录为错误
+     */
+    private void flush() {
+        if (currentMembers.size() > 1) {
+            violations.add(new Violation(currentGroupId, new ArrayList<>(currentMembers)));
+        }
+        currentMembers.clear();
+    }
+
+    private static final class Violation {
+        private final String groupId;
+        private final List<String> memberIds;
+
+        private Violation(String groupId, List<String> memberIds) {
+            this.groupId = groupId;
+            this.memberIds = memberIds;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.entity.KNDB2020MonthSummaryEntity;
+import com.liu.knbatch.entity.KNDB2020StudentDiscrepancyEntity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * KNDB2020 错误月份的学生别差额明细
+ *
+ * 概要：月度汇总视图只有月份粒度，学生别的课费由 getStudentFeeList 从课费表/支付表另外求出。
+ * 两者的计算方法不同时，学生别的差额就不能说明该月的差额，所以先把该月全部学生的合计
+ * 与月度汇总比较（应收、已支付、未支付分别比较，误差小于0.01），一致时才采用学生别明细：
+ *   - 一致：差额绝对值≥0.01的学生按差额绝对值降序，取前 row-cap 件
+ *   - 不一致：不采用明细（isConsistent() 为 false），由调用方报告合计的差异
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public final class KNDB2020StudentBreakdown {
+
+    // 与月度汇总的判定相同（差额小于该值视为0）
+    private static final BigDecimal TOLERANCE = new BigDecimal("0.01");
+
+    private final KNDB2020MonthSummaryEntity monthTotal;
+    private final KNDB2020MonthSummaryEntity studentTotal;
+    private final boolean consistent;
+    private final int discrepancyCount;
+    private final List<KNDB2020StudentDiscrepancyEntity> discrepancies;
+
+    private KNDB2020StudentBreakdown(KNDB2020MonthSummaryEntity monthTotal, KNDB2020MonthSummaryEntity studentTotal,
+                                     boolean consistent, int discrepancyCount,
+                                     List<KNDB2020StudentDiscrepancyEntity> discrepancies) {
+        this.monthTotal = monthTotal;
+        this.studentTotal = studentTotal;
+        this.consistent = consistent;
+        this.discrepancyCount = discrepancyCount;
+        this.discrepancies = discrepancies;
+    }
+
+    /**
+     * 由该月全部学生的课费求出差额明细
+     *
+     * @param monthTotal 该月的月度汇总（视图或台账）
+     * @param students 该月全部学生的课费（getStudentFeeList 的结果）
+     * @param rowCap 最多采用的件数
+     * @return 差额明细
+     */
+    public static KNDB2020StudentBreakdown of(KNDB2020MonthSummaryEntity monthTotal,
+                                              List<KNDB2020StudentDiscrepancyEntity> students, int rowCap) {
+        BigDecimal should = BigDecimal.ZERO;
+        BigDecimal paid = BigDecimal.ZERO;
+        BigDecimal unpaid = BigDecimal.ZERO;
+        List<KNDB2020StudentDiscrepancyEntity> discrepancies = new ArrayList<>();
+        for (KNDB2020StudentDiscrepancyEntity student : students) {
+            should = should.add(nvl(student.getShouldPayLsnFee()));
+            paid = paid.add(nvl(student.getHasPaidLsnFee()));
+            unpaid = unpaid.add(nvl(student.getUnpaidLsnFee()));
+            if (student.getDifference() != null && student.getDifference().abs().compareTo(TOLERANCE) >= 0) {
+                discrepancies.add(student);
+            }
+        }
+        KNDB2020MonthSummaryEntity studentTotal = new KNDB2020MonthSummaryEntity(monthTotal.getLsnMonth(),
+                should, paid, unpaid, paid.add(unpaid), should.subtract(paid.add(unpaid)), null);
+
+        boolean consistent = matches(monthTotal.getShouldPayLsnFee(), should)
+                && matches(monthTotal.getHasPaidLsnFee(), paid)
+                && matches(monthTotal.getUnpaidLsnFee(), unpaid);
+        if (!consistent) {
+            return new KNDB2020StudentBreakdown(monthTotal, studentTotal, false, discrepancies.size(), new ArrayList<>());
+        }
+
+        discrepancies.sort(Comparator.comparing(
+                (KNDB2020StudentDiscrepancyEntity discrepancy) -> discrepancy.getDifference().abs()).reversed());
+        int discrepancyCount = discrepancies.size();
+        List<KNDB2020StudentDiscrepancyEntity> capped = discrepancyCount > rowCap
+                ? new ArrayList<>(discrepancies.subList(0, Math.max(rowCap, 0))) : discrepancies;
+        return new KNDB2020StudentBreakdown(monthTotal, studentTotal, true, discrepancyCount, capped);
+    }
+
+    private static boolean matches(BigDecimal monthValue, BigDecimal studentSum) {
+        return nvl(monthValue).subtract(studentSum).abs().compareTo(TOLERANCE) < 0;
+    }
+
+    private static BigDecimal nvl(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * 学生别合计与月度汇总是否一致（不一致时不采用明细）
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    /**
+     * 有差额的学生数（截断前）
+     */
+    public int getDiscrepancyCount() {
+        return discrepancyCount;
+    }
+
+    /**
+     * 采用的差额明细（按差额绝对值降序，最多 row-cap 件；不一致时为空）
+     */
+    public List<KNDB2020StudentDiscrepancyEntity> getDiscrepancies() {
+        return discrepancies;
+    }
+
+    /**
+     * 月度汇总（视图或台账）
+     */
+    public KNDB2020MonthSummaryEntity getMonthTotal() {
+        return monthTotal;
+    }
+
+    /**
+     * 全部学生的合计（月份、应收、已支付、未支付、合计、差额）
+     */
+    public KNDB2020MonthSummaryEntity getStudentTotal() {
+        return studentTotal;
+    }
+}
@@ -0,0 +1,180 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB4010Dao;
+import com.liu.knbatch.entity.KNDB4010LessonEntity;
+import com.liu.knbatch.entity.KNDB4010LessonTemplateEntity;
+import com.liu.knbatch.entity.KNDB4010WeekLessonCountEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * KNDB4010 一周排课引擎（Java版）
+ *
+ * 概要：代替存储过程 sp_execute_weekly_batch_lsn_schedule，在JVM里完成一周排课：
+ *   1. 读取固定排课模板（固定排课表 × 学生档案的最新科目级别）
+ *   2. 按模板的上课星期和时间，展开成该周的课程（该周已有的同一学生、科目、日时的课程跳过）
+ *   3. 按上课日时、学生ID、科目ID的顺序，分批多行INSERT（课程ID = 前缀 + 序列值，与存储过程同一序列）
+ * 展开处理（expandWeek）不访问数据库，可以单独调用确认展开结果。
+ *
+ * 未验证：存储过程的定义不在本工程里，KNDB4010Mapper.xml 里模板和课程的表名、列名、上课星期的格式、
+ * 课程ID的序列函数都是推定的，还没有与存储过程核对。所以只有 knbatch.kndb4010.java-engine.enabled=true 时
+ * 才注册本引擎（默认不注册，指定 java 时作业失败），生产环境只使用存储过程。
+ * 打开前的确认：按存储过程的定义修改映射文件后，在测试库执行 KNDB4010ScheduleEngineComparisonTest，
+ * 确认同一周两个引擎排出的 (stu_id, subject_id, subject_sub_id, schedual_date) 的集合相同，
+ * 并且本引擎的耗时不比存储过程长（测试日志里输出两个引擎的耗时）。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "knbatch.kndb4010.java-engine", name = "enabled", havingValue = "true")
+public class KNDB4010JavaScheduleEngine implements KNDB4010ScheduleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB4010JavaScheduleEngine.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    public static final String ENGINE_NAME = "java";
+
+    // 课程的排序（决定课程ID的分配顺序）
+    private static final Comparator<KNDB4010LessonEntity> LESSON_ORDER = Comparator
+            .comparing(KNDB4010LessonEntity::getSchedualDate)
+            .thenComparing(KNDB4010LessonEntity::getStuId)
+            .thenComparing(KNDB4010LessonEntity::getSubjectId);
+
+    @Autowired
+    private KNDB4010Dao kndb4010Dao;
+
+    // 一条INSERT语句插入的最大课程数
+    @Value("${knbatch.kndb4010.java-engine.insert-batch-size:500}")
+    private int insertBatchSize;
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public KNDB4010ScheduleResult schedule(String weekStart, String weekEnd, String seqCode) {
+        long startNanos = System.nanoTime();
+        List<String> warnings = new ArrayList<>();
+        int insertedCount = 0;
+
+        try {
+            List<KNDB4010LessonTemplateEntity> templates = kndb4010Dao.selectFixedLessonTemplates();
+            Set<String> existingKeys = new HashSet<>();
+            for (KNDB4010LessonEntity lesson : kndb4010Dao.selectWeekLessonKeys(weekStart, weekEnd)) {
+                existingKeys.add(lessonKey(lesson));
+            }
+
+            List<KNDB4010LessonEntity> lessons = expandWeek(templates, LocalDate.parse(weekStart, DATE_FORMATTER),
+                    existingKeys, warnings);
+
+            int batchSize = Math.max(insertBatchSize, 1);
+            for (int from = 0; from < lessons.size(); from += batchSize) {
+                insertedCount += kndb4010Dao.insertLessonList(
+                        lessons.subList(from, Math.min(from + batchSize, lessons.size())), seqCode);
+            }
+
+            logger.debug("Java排课引擎 - 排课周期: {} 至 {}, 模板: {} 件, 插入: {} 件",
+                    weekStart, weekEnd, templates.size(), insertedCount);
+        } catch (RuntimeException e) {
+            KNDB4010ScheduleResult.recordFailure(ENGINE_NAME, System.nanoTime() - startNanos);
+            throw e;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+
+        KNDB4010WeekLessonCountEntity countAfter = kndb4010Dao.countWeekLessons(weekStart, weekEnd);
+        KNDB4010ScheduleResult result = new KNDB4010ScheduleResult(ENGINE_NAME, insertedCount,
+                countAfter.getLessonCount(), countAfter.getStudentCount(), durationNanos, null, warnings);
+        result.recordMetrics();
+        return result;
+    }
+
+    /**
+     * 把固定排课模板展开成一周的课程（不访问数据库）
+     *
+     * @param templates 固定排课模板
+     * @param weekStartDate 周开始日（周一）
+     * @param existingKeys 该周已有课程的键（学生ID、科目ID、上课日时），这些课程不再生成
+     * @param warnings 无法展开的模板等警告的输出目标
+     * @return 该周要插入的课程（按上课日时、学生ID、科目ID排序）
+     */
+    static List<KNDB4010LessonEntity> expandWeek(List<KNDB4010LessonTemplateEntity> templates, LocalDate weekStartDate,
+                                                 Set<String> existingKeys, List<String> warnings) {
+        List<KNDB4010LessonEntity> lessons = new ArrayList<>(templates.size());
+        Set<String> keys = new HashSet<>(existingKeys);
+        int skippedCount = 0;
+
+        for (KNDB4010LessonTemplateEntity template : templates) {
+            DayOfWeek dayOfWeek = parseDayOfWeek(template.getFixedWeek());
+            Integer hour = template.getFixedHour();
+            Integer minute = template.getFixedMinute();
+            if (dayOfWeek == null || hour == null || minute == null) {
+                warnings.add("固定排课模板的上课时间不正确，跳过 - 学生: " + template.getStuId() + ", 科目: "
+                        + template.getSubjectId() + ", 星期: " + template.getFixedWeek() + ", 时间: " + hour + ":" + minute);
+                continue;
+            }
+
+            String schedualDate = weekStartDate.plusDays(dayOfWeek.getValue() - 1L).format(DATE_FORMATTER)
+                    + String.format(" %02d:%02d", hour, minute);
+            KNDB4010LessonEntity lesson = new KNDB4010LessonEntity(template.getStuId(), template.getSubjectId(),
+                    template.getSubjectSubId(), template.getClassDuration(), template.getLessonType(), schedualDate);
+
+            // 已有的课程和模板重复的课程都不重复生成
+            if (!keys.add(lessonKey(lesson))) {
+                skippedCount++;
+                continue;
+            }
+            lessons.add(lesson);
+        }
+
+        if (skippedCount > 0) {
+            warnings.add("该周已有同一学生、科目、日时的课程，跳过 " + skippedCount + " 节");
+        }
+        lessons.sort(LESSON_ORDER);
+        return lessons;
+    }
+
+    /**
+     * 固定上课星期的解析（Mon～Sun、Monday～Sunday 或 1～7（1: 周一））
+     * ※ 推定的格式，t_info_fixedlesson 的实际格式（例如 1 是否为周日）要与存储过程核对
+     *
+     * @return 星期，无法解析时返回null
+     */
+    static DayOfWeek parseDayOfWeek(String fixedWeek) {
+        if (fixedWeek == null) {
+            return null;
+        }
+        String value = fixedWeek.trim().toUpperCase(Locale.ROOT);
+        if (value.length() == 1 && value.charAt(0) >= '1' && value.charAt(0) <= '7') {
+            return DayOfWeek.of(value.charAt(0) - '0');
+        }
+        if (value.length() >= 3) {
+            for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+                if (dayOfWeek.name().startsWith(value)) {
+                    return dayOfWeek;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String lessonKey(KNDB4010LessonEntity lesson) {
+        return lesson.getStuId() + '\u0001' + lesson.getSubjectId() + '\u0001' + lesson.getSchedualDate();
+    }
+}
@@ -0,0 +1,139 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB4010Dao;
+import com.liu.knbatch.entity.KNDB4010ProcedureStatsEntity;
+import com.liu.knbatch.entity.KNDB4010WeekLessonCountEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KNDB4010 一周排课引擎（存储过程版，带统计的执行）
+ *
+ * 概要：存储过程 sp_execute_weekly_batch_lsn_schedule 只有IN参数，调用方不知道它做了多少事情。
+ * 这里在调用前后取得以下信息，作为排课结果返回，同时记录到 Micrometer（指标见 KNDB4010ScheduleResult）：
+ *   该周的课程数/学生数：调用前后各数一次 t_info_lesson，差值为新增的课程数
+ *   执行时间：调用的经过时间（JVM侧测量）
+ *   警告：调用后立即执行 SHOW WARNINGS（同一连接）
+ *   内部统计：performance_schema 里该存储过程的累计统计，调用前后的差值
+ *            （内部语句数、锁等待时间、影响行数、扫描行数、警告数、错误数）
+ * 必须在事务中调用（课程数的计数、存储过程调用、SHOW WARNINGS 要在同一连接上执行）。
+ *
+ * performance_schema 的统计是服务器全体的累计值，同一时间有其他连接调用同一存储过程时差值会包含对方的部分
+ * （执行次数的差值不是1时在报告里注明）。没有 performance_schema 的权限等原因取不到时，只是不输出内部统计。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB4010ProcedureScheduleEngine implements KNDB4010ScheduleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB4010ProcedureScheduleEngine.class);
+
+    public static final String ENGINE_NAME = "procedure";
+    public static final String PROCEDURE_NAME = "sp_execute_weekly_batch_lsn_schedule";
+
+    @Autowired
+    private KNDB4010Dao kndb4010Dao;
+
+    // 是否取得 performance_schema 的内部统计
+    @Value("${knbatch.kndb4010.procedure-stats.enabled:true}")
+    private boolean procedureStatsEnabled;
+
+    // 报告里输出的警告信息的最大条数
+    @Value("${knbatch.kndb4010.procedure-stats.max-warnings:5}")
+    private int maxWarnings;
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public KNDB4010ScheduleResult schedule(String weekStart, String weekEnd, String seqCode) {
+        KNDB4010WeekLessonCountEntity countBefore = kndb4010Dao.countWeekLessons(weekStart, weekEnd);
+        KNDB4010ProcedureStatsEntity statsBefore = selectProcedureStats();
+
+        long startNanos = System.nanoTime();
+        try {
+            kndb4010Dao.doLsnWeeklySchedual(weekStart, weekEnd, seqCode);
+        } catch (RuntimeException e) {
+            KNDB4010ScheduleResult.recordFailure(ENGINE_NAME, System.nanoTime() - startNanos);
+            throw e;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+
+        // SHOW WARNINGS 必须紧接在调用之后（访问表的语句会清除警告）
+        List<String> warnings = showWarnings();
+        KNDB4010ProcedureStatsEntity statsAfter = selectProcedureStats();
+        KNDB4010WeekLessonCountEntity countAfter = kndb4010Dao.countWeekLessons(weekStart, weekEnd);
+
+        KNDB4010ScheduleResult result = new KNDB4010ScheduleResult(ENGINE_NAME,
+                countAfter.getLessonCount() - countBefore.getLessonCount(),
+                countAfter.getLessonCount(), countAfter.getStudentCount(), durationNanos,
+                difference(statsBefore, statsAfter), warnings);
+        result.recordMetrics();
+
+        logger.debug("{} 执行完成 - 排课周期: {} 至 {}, {}", PROCEDURE_NAME, weekStart, weekEnd, result.toReportText());
+        return result;
+    }
+
+    /**
+     * 取得存储过程的累计统计，取不到时返回null（不影响排课）
+     */
+    private KNDB4010ProcedureStatsEntity selectProcedureStats() {
+        if (!procedureStatsEnabled) {
+            return null;
+        }
+        try {
+            KNDB4010ProcedureStatsEntity stats = kndb4010Dao.selectProcedureStats(PROCEDURE_NAME);
+            // 服务器启动以来一次也没有执行过时没有记录，相当于全部为0
+            return stats != null ? stats : new KNDB4010ProcedureStatsEntity();
+        } catch (RuntimeException e) {
+            logger.warn("performance_schema 的存储过程统计取得失败，不输出内部统计: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private List<String> showWarnings() {
+        try {
+            List<Map<String, Object>> rows = kndb4010Dao.showWarnings();
+            List<String> warnings = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                if (warnings.size() >= maxWarnings) {
+                    break;
+                }
+                warnings.add(row.get("Level") + " " + row.get("Code") + ": " + row.get("Message"));
+            }
+            return warnings;
+        } catch (RuntimeException e) {
+            logger.warn("存储过程的警告取得失败: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private static KNDB4010ProcedureStatsEntity difference(KNDB4010ProcedureStatsEntity before,
+                                                           KNDB4010ProcedureStatsEntity after) {
+        if (before == null || after == null) {
+            return null;
+        }
+        KNDB4010ProcedureStatsEntity delta = new KNDB4010ProcedureStatsEntity();
+        delta.setExecutionCount(after.getExecutionCount() - before.getExecutionCount());
+        delta.setStatementCount(after.getStatementCount() - before.getStatementCount());
+        delta.setTimerWait(after.getTimerWait() - before.getTimerWait());
+        delta.setLockTime(after.getLockTime() - before.getLockTime());
+        delta.setRowsAffected(after.getRowsAffected() - before.getRowsAffected());
+        delta.setRowsExamined(after.getRowsExamined() - before.getRowsExamined());
+        delta.setWarningCount(after.getWarningCount() - before.getWarningCount());
+        delta.setErrorCount(after.getErrorCount() - before.getErrorCount());
+        return delta;
+    }
+}
@@ -0,0 +1,32 @@
+package com.liu.knbatch.service;
+
+/**
+ * KNDB4010 一周排课引擎
+ *
+ * 概要：把固定排课（每个学生每个科目每周固定的上课星期和时间）展开成该周的课程记录（t_info_lesson）。
+ *   procedure : 调用存储过程 sp_execute_weekly_batch_lsn_schedule（KNDB4010ProcedureScheduleEngine，默认）
+ *   java      : 在JVM里展开课程，批量INSERT（KNDB4010JavaScheduleEngine，未验证，
+ *               只有 knbatch.kndb4010.java-engine.enabled=true 时才能使用）
+ * 使用哪个引擎由 knbatch.kndb4010.schedule-engine 或作业参数 scheduleEngine 指定。
+ * 两个引擎的课程ID都使用同一个序列（前缀 + 序号，例如 kn-lsn-12345）。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public interface KNDB4010ScheduleEngine {
+
+    /**
+     * 引擎名（knbatch.kndb4010.schedule-engine 的取值）
+     */
+    String getName();
+
+    /**
+     * 执行一周排课（需要在事务中调用，排课和排课状态更新一起提交）
+     *
+     * @param weekStart 周开始日 (格式: yyyy-MM-dd)
+     * @param weekEnd 周结束日 (格式: yyyy-MM-dd)
+     * @param seqCode 课程ID的前缀
+     * @return 排课结果
+     */
+    KNDB4010ScheduleResult schedule(String weekStart, String weekEnd, String seqCode);
+}
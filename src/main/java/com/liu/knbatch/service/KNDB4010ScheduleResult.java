@@ -0,0 +1,147 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.entity.KNDB4010ProcedureStatsEntity;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KNDB4010 一周排课的结果（不可变）
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public final class KNDB4010ScheduleResult {
+
+    // Micrometer 的指标名（标签 engine: 引擎名）
+    static final String METRIC_DURATION = "knbatch.kndb4010.schedule.duration";
+    static final String METRIC_LOCK_WAIT = "knbatch.kndb4010.schedule.lock.wait";
+    static final String METRIC_LESSONS = "knbatch.kndb4010.schedule.lessons.created";
+    static final String METRIC_WARNINGS = "knbatch.kndb4010.schedule.warnings";
+
+    // 皮秒 → 纳秒
+    private static final long PICOS_PER_NANO = 1000L;
+
+    private final String engineName;
+    private final int createdLessonCount;
+    private final int weekLessonCount;
+    private final int weekStudentCount;
+    private final long durationNanos;
+    private final KNDB4010ProcedureStatsEntity procedureStats;
+    private final List<String> warnings;
+
+    KNDB4010ScheduleResult(String engineName, int createdLessonCount, int weekLessonCount, int weekStudentCount,
+                           long durationNanos, KNDB4010ProcedureStatsEntity procedureStats, List<String> warnings) {
+        this.engineName = engineName;
+        this.createdLessonCount = createdLessonCount;
+        this.weekLessonCount = weekLessonCount;
+        this.weekStudentCount = weekStudentCount;
+        this.durationNanos = durationNanos;
+        this.procedureStats = procedureStats;
+        this.warnings = Collections.unmodifiableList(warnings);
+    }
+
+    /**
+     * 记录排课失败时的执行时间
+     */
+    static void recordFailure(String engineName, long durationNanos) {
+        Metrics.timer(METRIC_DURATION, Tags.of("engine", engineName, "result", "failure"))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 把结果记录到 Micrometer（Metrics.globalRegistry）
+     */
+    void recordMetrics() {
+        Metrics.timer(METRIC_DURATION, Tags.of("engine", engineName, "result", "success"))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        Metrics.counter(METRIC_LESSONS, Tags.of("engine", engineName)).increment(Math.max(createdLessonCount, 0));
+        Metrics.counter(METRIC_WARNINGS, Tags.of("engine", engineName)).increment(getWarningCount());
+        if (procedureStats != null) {
+            Metrics.timer(METRIC_LOCK_WAIT, Tags.of("engine", engineName))
+                    .record(procedureStats.getLockTime() / PICOS_PER_NANO, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * 新增的课程数
+     */
+    public int getCreatedLessonCount() {
+        return createdLessonCount;
+    }
+
+    /**
+     * 排课后该周的课程数
+     */
+    public int getWeekLessonCount() {
+        return weekLessonCount;
+    }
+
+    /**
+     * 排课后该周有课程的学生数
+     */
+    public int getWeekStudentCount() {
+        return weekStudentCount;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * performance_schema 的内部统计（存储过程引擎，本次调用的差值），没有时为null
+     */
+    public KNDB4010ProcedureStatsEntity getProcedureStats() {
+        return procedureStats;
+    }
+
+    /**
+     * 警告数（有内部统计时取内部统计的值，SHOW WARNINGS 只能取到最后一条内部语句的警告，且最多 max-warnings 条）
+     */
+    public long getWarningCount() {
+        return procedureStats != null ? procedureStats.getWarningCount() : warnings.size();
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * 报告用的一行文字
+     */
+    public String toReportText() {
+        StringBuilder text = new StringBuilder();
+        text.append("[").append(engineName).append("] ")
+                .append("新增课程 ").append(createdLessonCount).append(" 节")
+                .append("（该周课程 ").append(weekLessonCount).append(" 节，学生 ").append(weekStudentCount).append(" 人）")
+                .append("，排课耗时 ").append(getDurationMillis()).append(" ms");
+        if (procedureStats != null) {
+            text.append("，内部语句 ").append(procedureStats.getStatementCount()).append(" 条")
+                    .append("，锁等待 ").append(String.format("%.3f", procedureStats.getLockTime() / 1_000_000_000.0)).append(" ms")
+                    .append("，影响行数 ").append(procedureStats.getRowsAffected())
+                    .append("，扫描行数 ").append(procedureStats.getRowsExamined())
+                    .append("，错误 ").append(procedureStats.getErrorCount());
+            if (procedureStats.getExecutionCount() != 1) {
+                text.append("（统计期间存储过程被执行了 ").append(procedureStats.getExecutionCount())
+                        .append(" 次，内部统计包含其他连接的执行）");
+            }
+        }
+        text.append("，警告 ").append(getWarningCount());
+        for (String warning : warnings) {
+            text.append("\n      ").append(warning);
+        }
+        return text.toString();
+    }
+}
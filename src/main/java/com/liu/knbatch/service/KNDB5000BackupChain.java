@@ -0,0 +1,210 @@
+package com.liu.knbatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liu.knbatch.entity.KNDB5000ManifestEntity;
+import com.liu.knbatch.entity.KNDB5000ManifestFileEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * KNDB5000 增量备份的备份链
+ *
+ * 概要：增量备份（knbatch.backup.mode=incremental）的备份目录里只有变化了的表的文件，
+ * 没有变化的表在清单里指向实际保存该文件的以前的备份（baseBackup）。这里负责：
+ *   - 找出上次的备份清单，判断这次是全量还是增量（距离全量备份超过 full-interval-days 天时全量）
+ *   - 恢复时按清单解析出各文件的实际位置（restore chain），确认文件都存在
+ *   - 清理过期备份时，找出仍被保留的备份引用的以前的备份（这些备份不删除）
+ * 增量备份只引用同一全量备份以后的备份，所以恢复时最多需要 full-interval-days 天内的备份目录。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB5000BackupChain {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000BackupChain.class);
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // 恢复时的文件顺序（视图依赖表，最后执行）
+    private static final List<String> RESTORE_ORDER = Arrays.asList(
+            KNDB5000ManifestFileEntity.TYPE_TABLE,
+            KNDB5000ManifestFileEntity.TYPE_ROUTINES,
+            KNDB5000ManifestFileEntity.TYPE_VIEWS);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 全量备份的间隔天数（距离上次全量备份达到该天数时执行全量备份）
+    @Value("${knbatch.backup.incremental.full-interval-days:7}")
+    private int fullIntervalDays;
+
+    /**
+     * 读取备份清单
+     *
+     * @param backupDir 备份目录
+     * @return 备份清单（不是备份目录、没有清单时为null）
+     * @throws IOException 读取失败时
+     */
+    public KNDB5000ManifestEntity readManifest(Path backupDir) throws IOException {
+        Path manifestFile = backupDir.resolve(KNDB5000ParallelDumper.MANIFEST_FILE_NAME);
+        if (!Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+        return objectMapper.readValue(manifestFile.toFile(), KNDB5000ManifestEntity.class);
+    }
+
+    /**
+     * 找出上次的增量备份（全量或增量）的清单
+     *
+     * @param backupPath 备份路径
+     * @param databaseName 数据库名
+     * @return 最新的增量备份的清单（没有时为null）
+     * @throws IOException 读取失败时
+     */
+    public KNDB5000ManifestEntity findPreviousManifest(Path backupPath, String databaseName) throws IOException {
+        if (!Files.isDirectory(backupPath)) {
+            return null;
+        }
+        List<Path> backupDirs;
+        try (Stream<Path> paths = Files.list(backupPath)) {
+            // 备份名里的时间戳是 yyyyMMdd_HHmmss，按名称排序即按时间排序
+            backupDirs = paths
+                    .filter(Files::isDirectory)
+                    .filter(path -> path.getFileName().toString().startsWith(databaseName + "_bk_"))
+                    .filter(path -> !path.getFileName().toString().endsWith(".part"))
+                    .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                    .collect(Collectors.toList());
+        }
+        for (Path backupDir : backupDirs) {
+            KNDB5000ManifestEntity manifest = readManifest(backupDir);
+            if (manifest != null && (KNDB5000ManifestEntity.MODE_FULL.equals(manifest.getMode())
+                    || KNDB5000ManifestEntity.MODE_INCREMENTAL.equals(manifest.getMode()))) {
+                return manifest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 判断这次是否需要全量备份
+     *
+     * @param backupPath 备份路径
+     * @param previous 上次的增量备份的清单
+     * @param today 基准日
+     * @return 需要全量备份的理由；可以增量备份时为null
+     */
+    public String getFullBackupReason(Path backupPath, KNDB5000ManifestEntity previous, LocalDate today) {
+        if (previous == null) {
+            return "没有以前的增量备份";
+        }
+        // 不持有全局读锁的备份也可以作为增量的基准（判定值在导出开始之前取得，没有判定值的表每次导出）
+        String fullBackupName = previous.getFullBackup() != null ? previous.getFullBackup() : previous.getBackupName();
+        KNDB5000ManifestEntity fullManifest;
+        try {
+            fullManifest = fullBackupName.equals(previous.getBackupName())
+                    ? previous : readManifest(backupPath.resolve(fullBackupName));
+        } catch (IOException e) {
+            logger.warn("全量备份的清单读取失败: {}", e.getMessage());
+            fullManifest = null;
+        }
+        if (fullManifest == null) {
+            return "全量备份 " + fullBackupName + " 不存在";
+        }
+        LocalDate fullDate = LocalDateTime.parse(fullManifest.getStartTime(), DATETIME_FORMATTER).toLocalDate();
+        if (!fullDate.plusDays(Math.max(fullIntervalDays, 1)).isAfter(today)) {
+            return "距离全量备份 " + fullBackupName + " 已达到 " + fullIntervalDays + " 天";
+        }
+        return null;
+    }
+
+    /**
+     * 解析恢复用的文件一览（restore chain）
+     * 按 表 → 存储过程/函数 → 视图 的顺序，返回各文件的实际位置（沿用的文件指向以前的备份目录）
+     *
+     * @param backupDir 备份目录
+     * @return 按恢复顺序排列的文件
+     * @throws IOException 清单读取失败时
+     * @throws IllegalStateException 没有清单、文件不存在或大小与清单不一致时
+     */
+    public List<Path> resolveRestoreFiles(Path backupDir) throws IOException {
+        KNDB5000ManifestEntity manifest = readManifest(backupDir);
+        if (manifest == null) {
+            throw new IllegalStateException("备份清单不存在: " + backupDir);
+        }
+
+        List<KNDB5000ManifestFileEntity> files = new ArrayList<>(manifest.getFiles());
+        files.sort(Comparator.comparingInt((KNDB5000ManifestFileEntity file) -> RESTORE_ORDER.indexOf(file.getType())));
+
+        List<Path> restoreFiles = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        for (KNDB5000ManifestFileEntity file : files) {
+            Path path = resolveFile(backupDir, file);
+            if (!Files.isRegularFile(path)) {
+                problems.add(path + " 不存在");
+            } else if (Files.size(path) != file.getFileBytes()) {
+                problems.add(path + " 的大小与清单不一致");
+            } else {
+                restoreFiles.add(path);
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("恢复用的文件不完整: " + problems);
+        }
+        return restoreFiles;
+    }
+
+    /**
+     * 清单里的文件的实际位置
+     */
+    public static Path resolveFile(Path backupDir, KNDB5000ManifestFileEntity file) {
+        Path dir = file.getBaseBackup() != null ? backupDir.resolveSibling(file.getBaseBackup()) : backupDir;
+        return dir.resolve(file.getFile());
+    }
+
+    /**
+     * 被指定的备份引用的以前的备份名（清理时不删除）
+     *
+     * @param backupDirs 保留的备份目录
+     * @return 被引用的备份名
+     */
+    public Set<String> getReferencedBackups(Collection<Path> backupDirs) {
+        Set<String> referenced = new LinkedHashSet<>();
+        for (Path backupDir : backupDirs) {
+            try {
+                KNDB5000ManifestEntity manifest = readManifest(backupDir);
+                if (manifest == null) {
+                    continue;
+                }
+                if (manifest.getFullBackup() != null) {
+                    referenced.add(manifest.getFullBackup());
+                }
+                for (KNDB5000ManifestFileEntity file : manifest.getFiles()) {
+                    if (file.getBaseBackup() != null) {
+                        referenced.add(file.getBaseBackup());
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("备份清单读取失败: {}: {}", backupDir.getFileName(), e.getMessage());
+            }
+        }
+        return referenced;
+    }
+}
@@ -0,0 +1,148 @@
+package com.liu.knbatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liu.knbatch.entity.KNDB5000ManifestEntity;
+import com.liu.knbatch.entity.KNDB5000ManifestFileEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KNDB5000 备份的校验
+ *
+ * 概要：备份文件的 SHA-256 在写入时已经计算（见 KNDB5000DumpStreamer），这里负责保存和再校验：
+ *   - 单文件备份：写入校验文件 "<备份文件>.sha256"（sha256sum 的格式，可以用 sha256sum -c 确认）
+ *   - 并行备份：各文件的 SHA-256 记录在备份清单 manifest.json 里（不另外生成校验文件）
+ *   - 清理过期备份时，对保留的以前的备份重新计算 SHA-256，与校验文件或备份清单比较，
+ *     发现 NAS 上的文件损坏、被截断等问题（当天的备份不再读一遍）
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB5000BackupVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000BackupVerifier.class);
+
+    public static final String CHECKSUM_SUFFIX = ".sha256";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 再校验时的读取缓冲区的大小（字节）
+    @Value("${knbatch.backup.stream.buffer-size:1048576}")
+    private int bufferSize;
+
+    /**
+     * 校验文件的路径（<备份文件>.sha256）
+     */
+    public static Path getChecksumFile(Path backupFile) {
+        return backupFile.resolveSibling(backupFile.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    /**
+     * 写入单文件备份的校验文件
+     *
+     * @param backupFile 备份文件
+     * @param sha256 写入时计算的 SHA-256
+     * @return 校验文件
+     * @throws IOException 写入失败时
+     */
+    public Path writeChecksumFile(Path backupFile, String sha256) throws IOException {
+        Path checksumFile = getChecksumFile(backupFile);
+        // sha256sum 的格式：<SHA-256><空格2个><文件名>
+        Files.write(checksumFile, (sha256 + "  " + backupFile.getFileName() + "\n").getBytes(StandardCharsets.UTF_8));
+        return checksumFile;
+    }
+
+    /**
+     * 再校验以前的备份（单文件备份与校验文件比较，并行备份与备份清单比较）
+     *
+     * @param backup 备份文件或备份目录
+     * @return 校验不通过的内容（通过时为空）；没有校验文件、备份清单时（本功能之前的备份）返回null
+     * @throws IOException 读取失败时
+     */
+    public List<String> verify(Path backup) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<String> problems = Files.isDirectory(backup) ? verifyDirectory(backup) : verifyFile(backup);
+        if (problems != null) {
+            logger.info("备份再校验 - {}: {}, 耗时: {} ms", backup.getFileName(),
+                    problems.isEmpty() ? "正常" : problems, System.currentTimeMillis() - startTime);
+        }
+        return problems;
+    }
+
+    private List<String> verifyFile(Path backupFile) throws IOException {
+        Path checksumFile = getChecksumFile(backupFile);
+        if (!Files.exists(checksumFile)) {
+            return null;
+        }
+        String line = new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8).trim();
+        String expected = line.split("\\s+")[0];
+
+        List<String> problems = new ArrayList<>();
+        String actual = sha256(backupFile);
+        if (!expected.equalsIgnoreCase(actual)) {
+            problems.add(backupFile.getFileName() + " 的 SHA-256 不一致");
+        }
+        return problems;
+    }
+
+    private List<String> verifyDirectory(Path backupDir) throws IOException {
+        Path manifestFile = backupDir.resolve(KNDB5000ParallelDumper.MANIFEST_FILE_NAME);
+        if (!Files.exists(manifestFile)) {
+            return null;
+        }
+        KNDB5000ManifestEntity manifest = objectMapper.readValue(manifestFile.toFile(), KNDB5000ManifestEntity.class);
+
+        List<String> problems = new ArrayList<>();
+        for (KNDB5000ManifestFileEntity file : manifest.getFiles()) {
+            // 增量备份沿用的文件在以前的备份目录里（SHA-256 在校验该备份时确认，这里只确认大小）
+            Path path = KNDB5000BackupChain.resolveFile(backupDir, file);
+            if (!Files.exists(path)) {
+                problems.add(backupDir.relativize(path) + " 不存在");
+            } else if (Files.size(path) != file.getFileBytes()) {
+                // 大小不一致时不需要计算 SHA-256
+                problems.add(file.getFile() + " 的大小不一致（清单: " + file.getFileBytes() + ", 实际: " + Files.size(path) + "）");
+            } else if (file.getBaseBackup() == null && file.getSha256() != null
+                    && !file.getSha256().equalsIgnoreCase(sha256(path))) {
+                problems.add(file.getFile() + " 的 SHA-256 不一致");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * 计算文件的 SHA-256（16进制小写）
+     */
+    private String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(bufferSize, 8192));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return KNDB5000DumpStreamer.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,395 @@
+package com.liu.knbatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liu.knbatch.entity.KNDB5000ChunkEntity;
+import com.liu.knbatch.entity.KNDB5000ChunkIndexEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * KNDB5000 块存储（去重备份）
+ *
+ * 概要：每天的全量备份大部分内容与前一天相同。这里把 mysqldump 的输出（压缩前）按内容切分成块，
+ * 相同内容的块只保存一次，每个备份只记录块的一览（<备份名>.chunks.json）。
+ *   切分：滚动哈希（Gear 哈希）的高位为0的位置作为块的边界（content-defined chunking），
+ *         平均 avg-size 字节，最小 min-size、最大 max-size。某处的行增删只影响附近的块，
+ *         后面的内容的边界不会错位，所以变化少的表的块每天相同
+ *   保存：块的地址 = 块内容的 SHA-256，块文件 <块存储>/chunks/<前2位>/<SHA-256>.gz（gzip 压缩），
+ *         已有的块不再写入，所以写入量只有新的块
+ *   清理：删除过期的块一览后，统计剩下的块一览对各块的引用数，删除引用数为0的块（collectGarbage）
+ *   恢复：按块一览的顺序解压连接，确认各块和全体的 SHA-256（restore）
+ * 块存储目录（<数据库名>_chunk_store）在备份路径下，不被按文件名清理的处理删除。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB5000ChunkStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000ChunkStore.class);
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static final String INDEX_SUFFIX = ".chunks.json";
+    private static final String STORE_DIR_SUFFIX = "_chunk_store";
+    private static final String CHUNKS_DIR_NAME = "chunks";
+    private static final String CHUNK_SUFFIX = ".gz";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // Gear 哈希的字节→随机值表（固定种子，块的边界在每次执行、每台机器上都相同；改变种子则以前的块全部不能复用）
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x4B4E44423530L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private KNDB5000DumpStreamer dumpStreamer;
+
+    @Value("${knbatch.backup.compress.level:6}")
+    private int compressLevel;
+
+    // 块的平均大小（字节，2的幂）、最小、最大
+    @Value("${knbatch.backup.chunk.avg-size:65536}")
+    private int avgSize;
+
+    @Value("${knbatch.backup.chunk.min-size:16384}")
+    private int minSize;
+
+    @Value("${knbatch.backup.chunk.max-size:262144}")
+    private int maxSize;
+
+    /**
+     * 块存储目录
+     */
+    public static Path getStoreDir(Path backupPath, String databaseName) {
+        return backupPath.resolve(databaseName + STORE_DIR_SUFFIX);
+    }
+
+    /**
+     * 执行 mysqldump，输出按块保存到块存储，写入块一览
+     *
+     * @param command mysqldump 命令行
+     * @param databaseName 数据库名
+     * @param indexFile 块一览文件（<备份路径>/<备份名>.chunks.json，正常结束时生成）
+     * @return 块一览
+     * @throws Exception mysqldump 异常结束、结构检查不通过、写入失败时
+     *                   （已写入的块在下次清理时作为没有引用的块删除）
+     */
+    public KNDB5000ChunkIndexEntity backup(List<String> command, String databaseName, Path indexFile) throws Exception {
+        Path storeDir = getStoreDir(indexFile.getParent(), databaseName);
+        Files.createDirectories(storeDir.resolve(CHUNKS_DIR_NAME));
+
+        KNDB5000ChunkIndexEntity index = new KNDB5000ChunkIndexEntity();
+        index.setDatabase(databaseName);
+        index.setBackupName(indexFile.getFileName().toString());
+        index.setStartTime(LocalDateTime.now().format(DATETIME_FORMATTER));
+
+        ChunkWriter writer = new ChunkWriter(storeDir, index);
+        KNDB5000DumpStreamer.DumpResult result;
+        try (OutputStream out = writer) {
+            result = dumpStreamer.dump(command, indexFile.getFileName().toString(), out);
+        }
+        if (!result.getStderr().trim().isEmpty()) {
+            logger.warn("mysqldump 标准错误输出: {}", result.getStderr().trim());
+        }
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getProblems().isEmpty()
+                    ? "mysqldump 退出代码: " + result.getExitCode() + ", " + result.getStderr().trim()
+                    : "结构检查不通过: " + result.getProblems());
+        }
+
+        index.setRawBytes(result.getRawBytes());
+        index.setSha256(KNDB5000DumpStreamer.toHex(writer.streamDigest.digest()));
+        index.setEndTime(LocalDateTime.now().format(DATETIME_FORMATTER));
+
+        Path partFile = indexFile.resolveSibling(indexFile.getFileName() + TMP_SUFFIX);
+        objectMapper.writeValue(partFile.toFile(), index);
+        Files.move(partFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("块存储备份完成 - {}, 原始大小: {} 字节, 块数: {}, 新的块: {} 个 / {} 字节, 耗时: {} ms",
+                indexFile.getFileName(), index.getRawBytes(), index.getChunks().size(), index.getNewChunkCount(),
+                index.getNewChunkBytes(), result.getElapsedMillis());
+        return index;
+    }
+
+    /**
+     * 读取块一览
+     */
+    public KNDB5000ChunkIndexEntity readIndex(Path indexFile) throws IOException {
+        return objectMapper.readValue(indexFile.toFile(), KNDB5000ChunkIndexEntity.class);
+    }
+
+    /**
+     * 确认块一览里的块都在块存储里（只确认文件存在，不读内容）
+     *
+     * @return 不存在的块的 SHA-256
+     */
+    public List<String> findMissingChunks(Path indexFile, String databaseName) throws IOException {
+        Path storeDir = getStoreDir(indexFile.getParent(), databaseName);
+        return readIndex(indexFile).getChunks().stream()
+                .map(KNDB5000ChunkEntity::getDigest)
+                .distinct()
+                .filter(digest -> !Files.exists(chunkFile(storeDir, digest)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 恢复：按块一览的顺序连接各块，写出 mysqldump 的输出
+     *
+     * @param indexFile 块一览文件
+     * @param databaseName 数据库名
+     * @param out 输出目标（调用方负责关闭）
+     * @return 写出的字节数
+     * @throws IOException 块的读取失败、输出失败时
+     * @throws IllegalStateException 块或全体的 SHA-256 不一致时
+     */
+    public long restore(Path indexFile, String databaseName, OutputStream out) throws IOException {
+        Path storeDir = getStoreDir(indexFile.getParent(), databaseName);
+        KNDB5000ChunkIndexEntity index = readIndex(indexFile);
+        MessageDigest streamDigest = newSha256();
+        MessageDigest chunkDigest = newSha256();
+
+        long restoredBytes = 0;
+        for (KNDB5000ChunkEntity chunk : index.getChunks()) {
+            byte[] content;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(chunkFile(storeDir, chunk.getDigest())))) {
+                content = in.readAllBytes();
+            }
+            if (content.length != chunk.getSize()
+                    || !chunk.getDigest().equals(KNDB5000DumpStreamer.toHex(chunkDigest.digest(content)))) {
+                throw new IllegalStateException("块的内容不一致: " + chunk.getDigest());
+            }
+            out.write(content);
+            streamDigest.update(content);
+            restoredBytes += content.length;
+        }
+        if (!index.getSha256().equals(KNDB5000DumpStreamer.toHex(streamDigest.digest()))) {
+            throw new IllegalStateException("恢复内容的 SHA-256 与块一览不一致: " + indexFile.getFileName());
+        }
+        return restoredBytes;
+    }
+
+    /**
+     * 删除没有被任何块一览引用的块（过期的块一览删除后执行）
+     *
+     * @param backupPath 备份路径
+     * @param databaseName 数据库名
+     * @return 清理结果（块存储不存在时为null）
+     * @throws IOException 读取、删除失败时
+     */
+    public GcResult collectGarbage(Path backupPath, String databaseName) throws IOException {
+        Path storeDir = getStoreDir(backupPath, databaseName);
+        if (!Files.isDirectory(storeDir)) {
+            return null;
+        }
+
+        // 各块的引用数
+        Map<String, Integer> refCounts = new HashMap<>();
+        List<Path> indexFiles;
+        try (Stream<Path> paths = Files.list(backupPath)) {
+            indexFiles = paths
+                    .filter(path -> path.getFileName().toString().startsWith(databaseName + "_bk_"))
+                    .filter(path -> path.getFileName().toString().endsWith(INDEX_SUFFIX))
+                    .collect(Collectors.toList());
+        }
+        for (Path indexFile : indexFiles) {
+            for (KNDB5000ChunkEntity chunk : readIndex(indexFile).getChunks()) {
+                refCounts.merge(chunk.getDigest(), 1, Integer::sum);
+            }
+        }
+
+        long staleTime = System.currentTimeMillis() - 24L * 60L * 60L * 1000L;
+        GcResult result = new GcResult();
+        result.indexCount = indexFiles.size();
+        List<Path> chunkFiles;
+        try (Stream<Path> paths = Files.walk(storeDir.resolve(CHUNKS_DIR_NAME))) {
+            chunkFiles = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path chunkFile : chunkFiles) {
+            String fileName = chunkFile.getFileName().toString();
+            long size = Files.size(chunkFile);
+            if (fileName.endsWith(TMP_SUFFIX)) {
+                // 中断时残留的临时文件（1天以上）
+                if (Files.getLastModifiedTime(chunkFile).toMillis() < staleTime) {
+                    Files.deleteIfExists(chunkFile);
+                }
+                continue;
+            }
+            String digest = fileName.substring(0, fileName.length() - CHUNK_SUFFIX.length());
+            if (refCounts.containsKey(digest)) {
+                result.liveChunkCount++;
+                result.liveChunkBytes += size;
+            } else {
+                Files.deleteIfExists(chunkFile);
+                result.deletedChunkCount++;
+                result.deletedChunkBytes += size;
+            }
+        }
+        logger.info("块存储清理完成 - 块一览: {} 个, 保留的块: {} 个 / {} 字节, 删除的块: {} 个 / {} 字节",
+                result.indexCount, result.liveChunkCount, result.liveChunkBytes,
+                result.deletedChunkCount, result.deletedChunkBytes);
+        return result;
+    }
+
+    private static Path chunkFile(Path storeDir, String digest) {
+        return storeDir.resolve(CHUNKS_DIR_NAME).resolve(digest.substring(0, 2)).resolve(digest + CHUNK_SUFFIX);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 按内容切分的输出流（close() 时保存最后的块）
+     */
+    private final class ChunkWriter extends OutputStream {
+
+        private final Path storeDir;
+        private final KNDB5000ChunkIndexEntity index;
+        private final MessageDigest streamDigest = newSha256();
+        private final MessageDigest chunkDigest = newSha256();
+        private final int chunkMinSize;
+        private final int chunkMaxSize;
+        private final long boundaryMask;
+        private final byte[] buffer;
+        private int length;
+        private long hash;
+
+        private ChunkWriter(Path storeDir, KNDB5000ChunkIndexEntity index) {
+            this.storeDir = storeDir;
+            this.index = index;
+            this.chunkMaxSize = Math.max(maxSize, 4096);
+            this.chunkMinSize = Math.min(Math.max(minSize, 0), chunkMaxSize);
+            // 哈希的高位 log2(avg-size) 位全为0的位置作为边界（Gear 哈希的低位只取决于最后几个字节）
+            int bits = Integer.numberOfTrailingZeros(Integer.highestOneBit(Math.max(avgSize, 2)));
+            this.boundaryMask = -1L << (64 - bits);
+            this.buffer = new byte[chunkMaxSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            streamDigest.update(bytes, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                byte b = bytes[i];
+                buffer[length++] = b;
+                hash = (hash << 1) + GEAR[b & 0xFF];
+                if ((length >= chunkMinSize && (hash & boundaryMask) == 0) || length >= chunkMaxSize) {
+                    flushChunk();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        /**
+         * 保存缓冲区的内容为一个块（块存储里已有时不写入）
+         */
+        private void flushChunk() throws IOException {
+            if (length == 0) {
+                return;
+            }
+            chunkDigest.update(buffer, 0, length);
+            String digest = KNDB5000DumpStreamer.toHex(chunkDigest.digest());
+            Path chunkFile = chunkFile(storeDir, digest);
+            if (!Files.exists(chunkFile)) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+                int level = Math.min(Math.max(compressLevel, 1), 9);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+                    {
+                        def.setLevel(level);
+                    }
+                }) {
+                    gzip.write(buffer, 0, length);
+                }
+                Files.createDirectories(chunkFile.getParent());
+                Path tmpFile = chunkFile.resolveSibling(chunkFile.getFileName() + TMP_SUFFIX);
+                Files.write(tmpFile, compressed.toByteArray());
+                Files.move(tmpFile, chunkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                index.setNewChunkCount(index.getNewChunkCount() + 1);
+                index.setNewChunkBytes(index.getNewChunkBytes() + compressed.size());
+            }
+            index.getChunks().add(new KNDB5000ChunkEntity(digest, length));
+            length = 0;
+            hash = 0;
+        }
+    }
+
+    /**
+     * 块存储的清理结果
+     */
+    public static final class GcResult {
+
+        private int indexCount;
+        private long liveChunkCount;
+        private long liveChunkBytes;
+        private long deletedChunkCount;
+        private long deletedChunkBytes;
+
+        /**
+         * 保留的块一览（备份）的数量
+         */
+        public int getIndexCount() {
+            return indexCount;
+        }
+
+        public long getLiveChunkCount() {
+            return liveChunkCount;
+        }
+
+        /**
+         * 保留的块文件的大小合计（= 块存储的使用量，字节）
+         */
+        public long getLiveChunkBytes() {
+            return liveChunkBytes;
+        }
+
+        public long getDeletedChunkCount() {
+            return deletedChunkCount;
+        }
+
+        public long getDeletedChunkBytes() {
+            return deletedChunkBytes;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.liu.knbatch.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * KNDB5000 并行备份用 一致性快照
+ *
+ * 概要：多个 mysqldump 进程各自开始事务，快照的时点各不相同。
+ * 这里在专用连接上执行 FLUSH TABLES WITH READ LOCK（全局读锁），持有到全部导出结束为止，
+ * 导出期间没有写入，所以各表的导出结果是同一时点的数据；同时记录该时点的 binlog 位置和 GTID。
+ * 持有锁的期间写入会等待，所以只在夜间等写入很少的时间段使用。
+ *
+ * 取得全局读锁需要 RELOAD 权限，取不到时不加锁继续（各表各自的时点，清单里 consistent=false）。
+ * 连接来自连接池，本连接上改变的会话变量在 close() 里恢复后才还给连接池。
+ * 必须用 close() 释放（try-with-resources）。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+public final class KNDB5000ConsistentSnapshot implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000ConsistentSnapshot.class);
+
+    private final Connection connection;
+    private final boolean locked;
+    // 本连接上改变了 information_schema_stats_expiry（close() 时恢复）
+    private boolean statsExpiryChanged;
+    private String binlogFile;
+    private Long binlogPosition;
+    private String gtidExecuted;
+    private String serverTime;
+
+    private KNDB5000ConsistentSnapshot(Connection connection, boolean locked) {
+        this.connection = connection;
+        this.locked = locked;
+    }
+
+    /**
+     * 取得快照（lockEnabled=false 或取得全局读锁失败时，只记录当前的 binlog 位置）
+     *
+     * @param dataSource 数据源
+     * @param lockEnabled 是否取得全局读锁
+     * @return 快照
+     * @throws SQLException 连接取得失败时
+     */
+    public static KNDB5000ConsistentSnapshot acquire(DataSource dataSource, boolean lockEnabled) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        boolean locked = false;
+        if (lockEnabled) {
+            try (Statement statement = connection.createStatement()) {
+                long startTime = System.currentTimeMillis();
+                statement.execute("FLUSH TABLES WITH READ LOCK");
+                locked = true;
+                logger.info("全局读锁取得完成 - 等待时间: {} ms", System.currentTimeMillis() - startTime);
+            } catch (SQLException e) {
+                logger.warn("全局读锁取得失败，不加锁继续（各表的导出时点不一致）: {}", e.getMessage());
+            }
+        }
+
+        KNDB5000ConsistentSnapshot snapshot = new KNDB5000ConsistentSnapshot(connection, locked);
+        snapshot.readPosition();
+        return snapshot;
+    }
+
+    /**
+     * 读取 binlog 位置、GTID 和服务器时间（binlog 无效、没有权限时为null）
+     */
+    private void readPosition() {
+        // MySQL 8.4 以后是 SHOW BINARY LOG STATUS
+        for (String sql : new String[] {"SHOW MASTER STATUS", "SHOW BINARY LOG STATUS"}) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(sql)) {
+                if (resultSet.next()) {
+                    binlogFile = resultSet.getString(1);
+                    binlogPosition = resultSet.getLong(2);
+                }
+                break;
+            } catch (SQLException e) {
+                logger.debug("{} 执行失败: {}", sql, e.getMessage());
+            }
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+            if (resultSet.next()) {
+                gtidExecuted = resultSet.getString(1);
+            }
+        } catch (SQLException e) {
+            logger.debug("gtid_executed 取得失败: {}", e.getMessage());
+        }
+        // 与 information_schema 的 UPDATE_TIME 相同的时区、格式
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT DATE_FORMAT(NOW(), '%Y-%m-%d %H:%i:%s')")) {
+            if (resultSet.next()) {
+                serverTime = resultSet.getString(1);
+            }
+        } catch (SQLException e) {
+            logger.debug("服务器时间取得失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 取得表的行数（持有全局读锁时是快照时点的准确值）
+     *
+     * @param databaseName 数据库名
+     * @param tableName 表名
+     * @return 行数
+     * @throws SQLException 查询失败时
+     */
+    public synchronized long countRows(String databaseName, String tableName) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT COUNT(*) FROM " + quote(databaseName) + "." + quote(tableName))) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * 取得各表的创建时间和更新时间（增量备份的变化判定用）
+     * MySQL 8 的 information_schema 的统计值有缓存（information_schema_stats_expiry），本连接上设为0，取得最新的值
+     * （close() 时恢复为全局的设定）。
+     *
+     * @param databaseName 数据库名
+     * @return 表名 → "创建时间|更新时间"（yyyy-MM-dd HH:mm:ss，更新时间为null时（服务器重启后没有写入的表等）值为null）
+     * @throws SQLException 查询失败时
+     */
+    public synchronized Map<String, String> readTableTimes(String databaseName) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION information_schema_stats_expiry = 0");
+            statsExpiryChanged = true;
+        } catch (SQLException e) {
+            // MySQL 5.7、MariaDB 没有该变量（没有缓存）
+            logger.debug("information_schema_stats_expiry 设定失败: {}", e.getMessage());
+        }
+
+        Map<String, String> tableTimes = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT TABLE_NAME, DATE_FORMAT(CREATE_TIME, '%Y-%m-%d %H:%i:%s'), DATE_FORMAT(UPDATE_TIME, '%Y-%m-%d %H:%i:%s')"
+                        + " FROM information_schema.TABLES"
+                        + " WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE'")) {
+            statement.setString(1, databaseName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String updateTime = resultSet.getString(3);
+                    tableTimes.put(resultSet.getString(1),
+                            updateTime == null ? null : resultSet.getString(2) + "|" + updateTime);
+                }
+            }
+        }
+        return tableTimes;
+    }
+
+    /**
+     * 取得各表的触发器定义（增量备份的变化判定用，按表导出的文件里包含触发器）
+     *
+     * @param databaseName 数据库名
+     * @return 表名 → 该表全部触发器的定义（没有触发器的表不包含）
+     * @throws SQLException 查询失败时
+     */
+    public synchronized Map<String, String> readTriggerDefinitions(String databaseName) throws SQLException {
+        Map<String, String> triggers = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT EVENT_OBJECT_TABLE, TRIGGER_NAME, ACTION_TIMING, EVENT_MANIPULATION, ACTION_ORDER, ACTION_STATEMENT"
+                        + " FROM information_schema.TRIGGERS WHERE TRIGGER_SCHEMA = ?"
+                        + " ORDER BY EVENT_OBJECT_TABLE, TRIGGER_NAME")) {
+            statement.setString(1, databaseName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String definition = resultSet.getString(2) + " " + resultSet.getString(3) + " " + resultSet.getString(4)
+                            + " " + resultSet.getString(5) + " " + resultSet.getString(6) + "\n";
+                    triggers.merge(resultSet.getString(1), definition, String::concat);
+                }
+            }
+        }
+        return triggers;
+    }
+
+    /**
+     * 取得表的校验和（CHECKSUM TABLE，读取全部行）
+     *
+     * @param databaseName 数据库名
+     * @param tableName 表名
+     * @return 校验和（表不存在时为null）
+     * @throws SQLException 查询失败时
+     */
+    public synchronized Long checksumTable(String databaseName, String tableName) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "CHECKSUM TABLE " + quote(databaseName) + "." + quote(tableName))) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            long checksum = resultSet.getLong(2);
+            return resultSet.wasNull() ? null : checksum;
+        }
+    }
+
+    /**
+     * 取得表的定义（SHOW CREATE TABLE）
+     *
+     * @param databaseName 数据库名
+     * @param tableName 表名
+     * @return CREATE TABLE 语句
+     * @throws SQLException 查询失败时
+     */
+    public synchronized String showCreateTable(String databaseName, String tableName) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SHOW CREATE TABLE " + quote(databaseName) + "." + quote(tableName))) {
+            resultSet.next();
+            return resultSet.getString(2);
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    public boolean isLocked() {
+        return locked;
+    }
+
+    public String getBinlogFile() {
+        return binlogFile;
+    }
+
+    public Long getBinlogPosition() {
+        return binlogPosition;
+    }
+
+    public String getGtidExecuted() {
+        return gtidExecuted;
+    }
+
+    /**
+     * 快照时的服务器时间 (yyyy-MM-dd HH:mm:ss，取不到时为null)
+     */
+    public String getServerTime() {
+        return serverTime;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (locked) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("UNLOCK TABLES");
+                    logger.info("全局读锁释放完成");
+                }
+            }
+            if (statsExpiryChanged) {
+                // 还给连接池之前恢复，其他处理不会使用没有缓存的 information_schema
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET SESSION information_schema_stats_expiry = DEFAULT");
+                }
+            }
+            connection.close();
+        } catch (SQLException e) {
+            // 锁没有释放、会话变量没有恢复的连接不能还给连接池，直接废弃物理连接（连接断开时服务器释放锁）
+            logger.warn("全局读锁释放或会话变量恢复失败，废弃该连接: {}", e.getMessage());
+            try {
+                connection.abort(Runnable::run);
+            } catch (SQLException abortException) {
+                logger.error("快照用连接废弃失败: {}", abortException.getMessage());
+            }
+        }
+    }
+}
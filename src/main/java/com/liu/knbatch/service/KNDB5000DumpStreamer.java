@@ -0,0 +1,416 @@
+package com.liu.knbatch.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * KNDB5000 mysqldump 流式输出
+ *
+ * 概要：启动 mysqldump，把标准输出在JVM里经过压缩直接写入备份文件，不生成未压缩的中间文件。
+ *   标准输出：按 buffer-size 大小的缓冲区读取 → （压缩）→ FileChannel
+ *   标准错误：由单独的线程读取，不混入备份文件（mysqldump 的警告、错误信息放到执行结果里）
+ * 写入文件的字节（压缩后）在写入的同时计算 SHA-256，不需要为了校验再读一遍文件。
+ * 写入时先写到 ".part" 临时文件，mysqldump 正常结束后才改名为正式文件名，
+ * 中途失败时不会留下看起来像是备份文件的不完整文件。
+ *
+ * 结构检查（改名前执行，不再读一遍文件）：
+ *   - 输出的开头是 mysqldump 的文件头，结尾有 "-- Dump completed" （被中断的导出没有这一行）
+ *   - 压缩时，文件末尾的 gzip 尾部（CRC32 + 原始大小）与写入时计算的值一致（只读最后8字节）
+ * 检查不通过时与 mysqldump 异常结束同样处理（不生成备份文件）。
+ *
+ * 压缩方式：knbatch.backup.compress.enabled=true 时为 gzip（文件名 .sql.gz），
+ * 压缩级别由 knbatch.backup.compress.level 指定（1: 最快 ～ 9: 最小）。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB5000DumpStreamer {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000DumpStreamer.class);
+
+    // 执行结果里保留的标准错误的最大字符数
+    private static final int MAX_STDERR_CHARS = 8 * 1024;
+    private static final String PART_SUFFIX = ".part";
+    // 结构检查用 保留的输出开头和结尾的字节数
+    private static final int HEAD_BYTES = 64;
+    private static final int TAIL_BYTES = 512;
+    private static final String[] DUMP_HEADERS = {"-- MySQL dump", "-- MariaDB dump"};
+    private static final String DUMP_TRAILER = "-- Dump completed";
+
+    @Value("${knbatch.backup.compress.enabled:false}")
+    private boolean compressEnabled;
+
+    @Value("${knbatch.backup.compress.level:6}")
+    private int compressLevel;
+
+    // 标准输出的读取缓冲区和文件写入缓冲区的大小（字节）
+    @Value("${knbatch.backup.stream.buffer-size:1048576}")
+    private int bufferSize;
+
+    /**
+     * 备份文件的扩展名（压缩时为 .sql.gz）
+     */
+    public String getFileExtension() {
+        return compressEnabled ? ".sql.gz" : ".sql";
+    }
+
+    /**
+     * 备份文件名（名称 + 扩展名）
+     */
+    public String getFileName(String name) {
+        return name + getFileExtension();
+    }
+
+    public boolean isCompressEnabled() {
+        return compressEnabled;
+    }
+
+    /**
+     * 执行 mysqldump，把输出写入备份文件
+     *
+     * @param command mysqldump 命令行
+     * @param targetFile 备份文件（正常结束时生成）
+     * @return 执行结果（异常结束、结构检查不通过时备份文件不生成，临时文件也被删除）
+     * @throws IOException 进程启动失败、文件写入失败时
+     * @throws InterruptedException 等待进程结束时被中断
+     */
+    public DumpResult dump(List<String> command, Path targetFile) throws IOException, InterruptedException {
+        Path partFile = targetFile.resolveSibling(targetFile.getFileName() + PART_SUFFIX);
+        long startTime = System.currentTimeMillis();
+
+        boolean completed = false;
+        MessageDigest digest = newSha256();
+        DumpOutput output = new DumpOutput(compressEnabled);
+        try {
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream fileStream = new DigestOutputStream(Channels.newOutputStream(channel), digest);
+                 OutputStream out = wrap(fileStream)) {
+                pump(command, targetFile.getFileName().toString(), out, output);
+            }
+
+            List<String> problems = new ArrayList<>();
+            if (output.exitCode == 0) {
+                problems.addAll(output.checkStructure());
+                if (compressEnabled) {
+                    problems.addAll(checkGzipTrailer(partFile, output.crc.getValue(), output.rawBytes));
+                }
+            }
+            DumpResult result = new DumpResult(output.exitCode, output.rawBytes, output.exitCode == 0 ? Files.size(partFile) : 0,
+                    toHex(digest.digest()), output.stderr, System.currentTimeMillis() - startTime, problems);
+            if (result.isSuccess()) {
+                Files.move(partFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                completed = true;
+            } else if (!problems.isEmpty()) {
+                logger.error("备份文件结构检查不通过 - 文件: {}, {}", targetFile.getFileName(), problems);
+            }
+            logger.info("mysqldump 输出完成 - 文件: {}, 退出代码: {}, 原始大小: {} 字节, 文件大小: {} 字节, 耗时: {} ms",
+                    targetFile.getFileName(), output.exitCode, result.getRawBytes(), result.getFileBytes(), result.getElapsedMillis());
+            return result;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    /**
+     * 执行 mysqldump，把未压缩的输出原样写入指定的输出流（备份文件以外的保存方式用，见 KNDB5000ChunkStore）
+     * 输出流的关闭、失败时的后处理由调用方负责。执行结果的文件大小为0、SHA-256 为null。
+     *
+     * @param command mysqldump 命令行
+     * @param name 名称（日志、线程名用）
+     * @param sink 输出目标
+     * @return 执行结果（包括文件头、结尾的结构检查）
+     * @throws IOException 进程启动失败、写入失败时
+     * @throws InterruptedException 等待进程结束时被中断
+     */
+    public DumpResult dump(List<String> command, String name, OutputStream sink) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        DumpOutput output = new DumpOutput(false);
+        pump(command, name, sink, output);
+
+        List<String> problems = output.exitCode == 0 ? output.checkStructure() : Collections.<String>emptyList();
+        DumpResult result = new DumpResult(output.exitCode, output.rawBytes, 0, null, output.stderr,
+                System.currentTimeMillis() - startTime, problems);
+        if (!problems.isEmpty()) {
+            logger.error("备份输出结构检查不通过 - {}: {}", name, problems);
+        }
+        logger.info("mysqldump 输出完成 - {}, 退出代码: {}, 原始大小: {} 字节, 耗时: {} ms",
+                name, output.exitCode, result.getRawBytes(), result.getElapsedMillis());
+        return result;
+    }
+
+    /**
+     * 启动 mysqldump，把标准输出写入 out，等待进程结束
+     */
+    private void pump(List<String> command, String name, OutputStream out, DumpOutput output)
+            throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).start();
+        StderrCollector stderrCollector = new StderrCollector(process.getErrorStream());
+        Thread stderrThread = new Thread(stderrCollector, "mysqldump-stderr-" + name);
+        stderrThread.setDaemon(true);
+        stderrThread.start();
+
+        try (InputStream dumpStream = process.getInputStream()) {
+            byte[] buffer = new byte[Math.max(bufferSize, 8192)];
+            int read;
+            while ((read = dumpStream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                output.update(buffer, read);
+            }
+        } catch (IOException e) {
+            process.destroy();
+            throw e;
+        }
+
+        output.exitCode = process.waitFor();
+        stderrThread.join(10_000L);
+        output.stderr = stderrCollector.getText();
+    }
+
+    /**
+     * gzip 尾部的检查：CRC32（4字节）+ 原始大小 mod 2^32（4字节），小端序
+     *
+     * @return 检查不通过的内容（通过时为空）
+     */
+    private static List<String> checkGzipTrailer(Path file, long crc, long rawBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < 18 || channel.read(trailer, channel.size() - 8) != 8) {
+                return Collections.singletonList("gzip 文件过短");
+            }
+            long fileCrc = trailer.getInt(0) & 0xFFFFFFFFL;
+            long fileSize = trailer.getInt(4) & 0xFFFFFFFFL;
+            if (fileCrc != crc || fileSize != (rawBytes & 0xFFFFFFFFL)) {
+                return Collections.singletonList("gzip 尾部与写入的内容不一致");
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 按压缩设定包装输出流
+     */
+    private OutputStream wrap(OutputStream fileStream) throws IOException {
+        int size = Math.max(bufferSize, 8192);
+        if (!compressEnabled) {
+            return new BufferedOutputStream(fileStream, size);
+        }
+        int level = Math.min(Math.max(compressLevel, 1), 9);
+        return new GZIPOutputStream(fileStream, size) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * mysqldump 的输出的统计（字节数、开头和结尾的字节、CRC32）和进程的结果
+     */
+    private static final class DumpOutput {
+
+        private final boolean crcEnabled;
+        private final CRC32 crc = new CRC32();
+        private final byte[] head = new byte[HEAD_BYTES];
+        private final byte[] tail = new byte[TAIL_BYTES];
+        private int tailLength;
+        private long rawBytes;
+        private int exitCode;
+        private String stderr = "";
+
+        private DumpOutput(boolean crcEnabled) {
+            this.crcEnabled = crcEnabled;
+        }
+
+        private void update(byte[] buffer, int read) {
+            if (crcEnabled) {
+                crc.update(buffer, 0, read);
+            }
+            if (rawBytes < HEAD_BYTES) {
+                System.arraycopy(buffer, 0, head, (int) rawBytes, (int) Math.min(read, HEAD_BYTES - rawBytes));
+            }
+            // 保留最后 TAIL_BYTES 字节
+            if (read >= tail.length) {
+                System.arraycopy(buffer, read - tail.length, tail, 0, tail.length);
+                tailLength = tail.length;
+            } else {
+                int keep = Math.min(tailLength, tail.length - read);
+                System.arraycopy(tail, tailLength - keep, tail, 0, keep);
+                System.arraycopy(buffer, 0, tail, keep, read);
+                tailLength = keep + read;
+            }
+            rawBytes += read;
+        }
+
+        /**
+         * 结构检查（文件头、结尾的完成标记）
+         *
+         * @return 检查不通过的内容（通过时为空）
+         */
+        private List<String> checkStructure() {
+            List<String> problems = new ArrayList<>();
+            String headText = new String(head, 0, (int) Math.min(rawBytes, HEAD_BYTES), StandardCharsets.ISO_8859_1);
+            if (Arrays.stream(DUMP_HEADERS).noneMatch(headText::startsWith)) {
+                problems.add("输出的开头不是 mysqldump 的文件头");
+            }
+            if (!new String(tail, 0, tailLength, StandardCharsets.ISO_8859_1).contains(DUMP_TRAILER)) {
+                problems.add("输出的结尾没有 \"" + DUMP_TRAILER + "\"（导出被中断）");
+            }
+            return problems;
+        }
+    }
+
+    /**
+     * 标准错误的读取（保留开头的 MAX_STDERR_CHARS 字符，其余读取后丢弃，防止进程因管道满而阻塞）
+     */
+    private static final class StderrCollector implements Runnable {
+
+        private final InputStream stderr;
+        private final StringBuilder text = new StringBuilder();
+
+        private StderrCollector(InputStream stderr) {
+            this.stderr = stderr;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[4096];
+            try (InputStream in = stderr) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    synchronized (text) {
+                        if (text.length() < MAX_STDERR_CHARS) {
+                            text.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("mysqldump 标准错误读取失败: {}", e.getMessage());
+            }
+        }
+
+        private String getText() {
+            synchronized (text) {
+                return text.length() > MAX_STDERR_CHARS ? text.substring(0, MAX_STDERR_CHARS) : text.toString();
+            }
+        }
+    }
+
+    /**
+     * mysqldump 的执行结果（不可变）
+     */
+    public static final class DumpResult {
+
+        private final int exitCode;
+        private final long rawBytes;
+        private final long fileBytes;
+        private final String sha256;
+        private final String stderr;
+        private final long elapsedMillis;
+        private final List<String> problems;
+
+        private DumpResult(int exitCode, long rawBytes, long fileBytes, String sha256, String stderr, long elapsedMillis,
+                           List<String> problems) {
+            this.exitCode = exitCode;
+            this.rawBytes = rawBytes;
+            this.fileBytes = fileBytes;
+            this.sha256 = sha256;
+            this.stderr = stderr;
+            this.elapsedMillis = elapsedMillis;
+            this.problems = Collections.unmodifiableList(new ArrayList<>(problems));
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * mysqldump 正常结束，并且结构检查通过
+         */
+        public boolean isSuccess() {
+            return exitCode == 0 && problems.isEmpty();
+        }
+
+        /**
+         * mysqldump 输出的字节数（压缩前）
+         */
+        public long getRawBytes() {
+            return rawBytes;
+        }
+
+        /**
+         * 备份文件的字节数（压缩后）
+         */
+        public long getFileBytes() {
+            return fileBytes;
+        }
+
+        /**
+         * 备份文件（压缩后）的 SHA-256（16进制小写）
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * 标准错误的内容（警告、错误信息）
+         */
+        public String getStderr() {
+            return stderr;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * 结构检查不通过的内容（通过时为空）
+         */
+        public List<String> getProblems() {
+            return problems;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.liu.knbatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.liu.knbatch.dao.KNDB5000Dao;
+import com.liu.knbatch.entity.KNDB5000ManifestEntity;
+import com.liu.knbatch.entity.KNDB5000ManifestFileEntity;
+import com.liu.knbatch.entity.KNDB5000TableEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * KNDB5000 并行备份（按表导出 + 备份清单）
+ *
+ * 概要：从 information_schema 取得表一览，每个表由一个 mysqldump 进程导出到各自的文件，
+ * 在 kndb5000DumpExecutor 线程池上并行执行（同时执行的进程数 = knbatch.backup.parallel.threads），
+ * 大的表先开始，总耗时接近最大的表的导出时间。
+ *
+ * 备份目录的构成（<备份名> = <数据库名>_bk_<时间戳>）：
+ *   <备份名>/tables/<表名>.sql(.gz)   各表的结构、数据、触发器
+ *   <备份名>/views.sql(.gz)           视图定义（恢复时在全部表之后执行）
+ *   <备份名>/routines.sql(.gz)        存储过程、函数
+ *   <备份名>/manifest.json            备份清单（快照位置、各文件的行数、大小、SHA-256）
+ * 导出中写到 "<备份名>.part" 目录，全部成功后才改名，失败时删除。
+ *
+ * 一致性：global-read-lock=true 时，导出期间持有全局读锁（见 KNDB5000ConsistentSnapshot），
+ * 各表的导出结果是同一时点的数据，清单里记录该时点的 binlog 位置。
+ * 锁要持有到最后一个表的导出开始为止（线程池的进程数少于表数时，后面的表在前面的表导出完之后才开始），
+ * 没有办法确认外部的 mysqldump 进程已经开始了事务，所以持有到全部导出结束，期间写入全部等待。
+ * 因此并行备份默认不加锁（各表各自的时点，清单里 consistent=false），增量备份也一样。
+ * global-read-lock=true 时取不到全局读锁（没有 RELOAD 权限等）则备份失败，不生成设定上不应该有的不一致的备份。
+ *
+ * 增量备份（trackChanges=true）：在快照连接上取得各表的变化判定值（signature）记录到清单里，
+ * 与上次备份的清单比较，值相同的表不导出，文件记录指向实际保存该文件的以前的备份（baseBackup）。
+ * 变化判定值 = 数据的变化（change-detection=update-time: information_schema 的更新时间；
+ * checksum: CHECKSUM TABLE）+ 表定义和触发器的 SHA-256。
+ * 判定值在全部导出开始之前取得，不需要全局读锁：取得判定值以后的写入在文件里也许有、也许没有，
+ * 但一定会改变下次的判定值，下次导出该表，所以沿用的文件不会漏掉变更。
+ * 更新时间只精确到秒，上次快照的同一秒内、快照之后的写入不会改变更新时间，
+ * 所以 update-time 时，更新时间 ≥ 上次快照时间（数据库服务器的时间，取得判定值之前记录）的表一定导出。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB5000ParallelDumper {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000ParallelDumper.class);
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static final String MANIFEST_FILE_NAME = "manifest.json";
+    public static final String TABLES_DIR_NAME = "tables";
+    private static final String PART_SUFFIX = ".part";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Autowired
+    private KNDB5000Dao kndb5000Dao;
+    @Autowired
+    private KNDB5000DumpStreamer dumpStreamer;
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("kndb5000DumpExecutor")
+    private ThreadPoolTaskExecutor dumpExecutor;
+
+    // 导出期间是否持有全局读锁（false: 各表各自的时点）
+    @Value("${knbatch.backup.parallel.global-read-lock:false}")
+    private boolean globalReadLock;
+
+    // 按表导出时追加的 mysqldump 选项（空格分隔）
+    // 不能指定 --compact、--skip-comments（不输出结尾的 "-- Dump completed"，结构检查不通过）
+    // 每个文件都写 SET @@GLOBAL.GTID_PURGED 的话，恢复第2个文件时会出错，所以默认不输出（MariaDB 的 mysqldump 没有该选项，设为空）
+    @Value("${knbatch.backup.parallel.extra-options:--set-gtid-purged=OFF}")
+    private String extraOptions;
+
+    // 增量备份的数据变化判定方式（update-time: 更新时间，不读数据；checksum: CHECKSUM TABLE，读取全部行）
+    @Value("${knbatch.backup.incremental.change-detection:update-time}")
+    private String changeDetection;
+
+    /**
+     * 并行导出数据库
+     *
+     * @param databaseName 数据库名
+     * @param connectionArgs mysqldump 命令和连接选项（mysqldump --host=... --port=... --user=... --password=...）
+     * @param backupDir 备份目录（正常结束时生成）
+     * @return 备份清单（也写入备份目录的 manifest.json）
+     * @throws Exception 任何一个文件导出失败时（备份目录不生成）
+     */
+    public KNDB5000ManifestEntity dump(String databaseName, List<String> connectionArgs, Path backupDir) throws Exception {
+        return dump(databaseName, connectionArgs, backupDir, false, null);
+    }
+
+    /**
+     * 并行导出数据库（增量备份）
+     *
+     * @param databaseName 数据库名
+     * @param connectionArgs mysqldump 命令和连接选项
+     * @param backupDir 备份目录（正常结束时生成，与以前的备份在同一目录下）
+     * @param trackChanges 是否记录各表的变化判定值（增量备份的全量、增量时为true）
+     * @param previous 上次备份的清单（null 时全量备份）
+     * @return 备份清单（也写入备份目录的 manifest.json）
+     * @throws Exception 任何一个文件导出失败时（备份目录不生成）
+     */
+    public KNDB5000ManifestEntity dump(String databaseName, List<String> connectionArgs, Path backupDir,
+                                       boolean trackChanges, KNDB5000ManifestEntity previous) throws Exception {
+        long startTime = System.currentTimeMillis();
+        Path partDir = backupDir.resolveSibling(backupDir.getFileName() + PART_SUFFIX);
+        Files.createDirectories(partDir.resolve(TABLES_DIR_NAME));
+
+        KNDB5000ManifestEntity manifest = new KNDB5000ManifestEntity();
+        manifest.setDatabase(databaseName);
+        manifest.setBackupName(backupDir.getFileName().toString());
+        manifest.setMode(KNDB5000ManifestEntity.MODE_PARALLEL);
+        manifest.setCompressed(dumpStreamer.isCompressEnabled());
+        manifest.setStartTime(LocalDateTime.now().format(DATETIME_FORMATTER));
+
+        boolean completed = false;
+        try {
+            List<KNDB5000TableEntity> tables = new ArrayList<>();
+            List<String> views = new ArrayList<>();
+            for (KNDB5000TableEntity table : kndb5000Dao.getBackupTables(databaseName)) {
+                if (table.isView()) {
+                    views.add(table.getTableName());
+                } else {
+                    tables.add(table);
+                }
+            }
+            // 大的表先开始
+            tables.sort(Comparator.comparing((KNDB5000TableEntity table) ->
+                    table.getTableSize() == null ? 0L : table.getTableSize()).reversed());
+
+            try (KNDB5000ConsistentSnapshot snapshot = KNDB5000ConsistentSnapshot.acquire(dataSource, globalReadLock)) {
+                if (globalReadLock && !snapshot.isLocked()) {
+                    throw new IllegalStateException("设定了全局读锁（global-read-lock=true）但没有取得，中止备份（需要 RELOAD 权限）");
+                }
+                manifest.setConsistent(snapshot.isLocked());
+                manifest.setBinlogFile(snapshot.getBinlogFile());
+                manifest.setBinlogPosition(snapshot.getBinlogPosition());
+                manifest.setGtidExecuted(snapshot.getGtidExecuted());
+                manifest.setSnapshotTime(snapshot.getServerTime());
+
+                // 增量备份的判定（在全部导出开始之前取得判定值）
+                KNDB5000ManifestEntity base = previous;
+                if (trackChanges) {
+                    manifest.setMode(base == null ? KNDB5000ManifestEntity.MODE_FULL : KNDB5000ManifestEntity.MODE_INCREMENTAL);
+                    if (base != null) {
+                        manifest.setFullBackup(base.getFullBackup() != null ? base.getFullBackup() : base.getBackupName());
+                    }
+                }
+                Set<String> updatedSinceBase = new HashSet<>();
+                Map<String, String> signatures = trackChanges
+                        ? readSignatures(snapshot, databaseName, tables, base, updatedSinceBase)
+                        : Collections.emptyMap();
+                Map<String, KNDB5000ManifestFileEntity> previousFiles = new LinkedHashMap<>();
+                if (base != null) {
+                    for (KNDB5000ManifestFileEntity file : base.getFiles()) {
+                        if (KNDB5000ManifestFileEntity.TYPE_TABLE.equals(file.getType())) {
+                            previousFiles.put(file.getName(), file);
+                        }
+                    }
+                }
+
+                Map<String, Future<KNDB5000ManifestFileEntity>> futures = new LinkedHashMap<>();
+                List<KNDB5000ManifestFileEntity> reusedFiles = new ArrayList<>();
+                String routines = KNDB5000ManifestFileEntity.TYPE_ROUTINES;
+                futures.put(routines, submit(routines, routines, partDir, dumpStreamer.getFileName(routines),
+                        command(connectionArgs, Arrays.asList("--no-data", "--no-create-info", "--skip-triggers",
+                                "--routines", databaseName))));
+                if (!views.isEmpty()) {
+                    String viewsName = KNDB5000ManifestFileEntity.TYPE_VIEWS;
+                    List<String> viewArgs = new ArrayList<>(Arrays.asList("--no-data", "--skip-triggers",
+                            "--single-transaction", databaseName));
+                    viewArgs.addAll(views);
+                    futures.put(viewsName, submit(viewsName, viewsName, partDir, dumpStreamer.getFileName(viewsName),
+                            command(connectionArgs, viewArgs)));
+                }
+                for (KNDB5000TableEntity table : tables) {
+                    KNDB5000ManifestFileEntity reused = updatedSinceBase.contains(table.getTableName()) ? null
+                            : reuse(backupDir, base, previousFiles.get(table.getTableName()), signatures.get(table.getTableName()));
+                    if (reused != null) {
+                        reusedFiles.add(reused);
+                        continue;
+                    }
+                    futures.put(table.getTableName(), submit(table.getTableName(), KNDB5000ManifestFileEntity.TYPE_TABLE,
+                            partDir, TABLES_DIR_NAME + "/" + dumpStreamer.getFileName(table.getTableName()),
+                            command(connectionArgs, Arrays.asList("--single-transaction", "--quick", "--triggers",
+                                    "--lock-tables=false", databaseName, table.getTableName()))));
+                }
+
+                // 导出进行中，在快照连接上数各表的行数（持有全局读锁时是准确值，不持有时是估算值）
+                Map<String, Long> rowCounts = new LinkedHashMap<>();
+                for (KNDB5000TableEntity table : tables) {
+                    rowCounts.put(table.getTableName(), countRows(snapshot, databaseName, table));
+                }
+
+                List<String> failures = collect(futures, rowCounts, signatures, manifest);
+                if (!failures.isEmpty()) {
+                    throw new IllegalStateException("并行备份失败的文件: " + failures);
+                }
+                manifest.getFiles().addAll(reusedFiles);
+            }
+
+            manifest.setEndTime(LocalDateTime.now().format(DATETIME_FORMATTER));
+            objectMapper.writeValue(partDir.resolve(MANIFEST_FILE_NAME).toFile(), manifest);
+            Files.move(partDir, backupDir, StandardCopyOption.ATOMIC_MOVE);
+            completed = true;
+
+            logger.info("并行备份完成 - 备份目录: {}, 方式: {}, 文件数: {}, 一致性快照: {}, 耗时: {} ms", backupDir,
+                    manifest.getMode(), manifest.getFiles().size(), manifest.isConsistent(), System.currentTimeMillis() - startTime);
+            return manifest;
+        } finally {
+            if (!completed) {
+                deleteRecursively(partDir);
+            }
+        }
+    }
+
+    /**
+     * 表的行数（没有全局读锁、或者计数失败时为 information_schema 的估算值）
+     */
+    private Long countRows(KNDB5000ConsistentSnapshot snapshot, String databaseName, KNDB5000TableEntity table) {
+        if (!snapshot.isLocked()) {
+            return table.getTableRows();
+        }
+        try {
+            return snapshot.countRows(databaseName, table.getTableName());
+        } catch (SQLException e) {
+            logger.warn("表的行数取得失败，使用估算值 - {}: {}", table.getTableName(), e.getMessage());
+            return table.getTableRows();
+        }
+    }
+
+    /**
+     * 取得各表的变化判定值（必须在导出开始之前调用）
+     *
+     * @param base 上次备份的清单（全量备份时为null）
+     * @param updatedSinceBase 更新时间 ≥ 上次快照时间的表的输出目标（update-time 时，判定值相同也要导出）
+     * @return 表名 → 变化判定值（无法判定的表不包含，这些表每次都导出）
+     */
+    private Map<String, String> readSignatures(KNDB5000ConsistentSnapshot snapshot, String databaseName,
+                                               List<KNDB5000TableEntity> tables, KNDB5000ManifestEntity base,
+                                               Set<String> updatedSinceBase)
+            throws SQLException {
+        long startTime = System.currentTimeMillis();
+        boolean useChecksum = "checksum".equalsIgnoreCase(changeDetection.trim());
+        Map<String, String> tableTimes = useChecksum ? Collections.emptyMap() : snapshot.readTableTimes(databaseName);
+        Map<String, String> triggers = snapshot.readTriggerDefinitions(databaseName);
+
+        Map<String, String> signatures = new LinkedHashMap<>();
+        for (KNDB5000TableEntity table : tables) {
+            String tableName = table.getTableName();
+            try {
+                String data;
+                if (useChecksum) {
+                    Long checksum = snapshot.checksumTable(databaseName, tableName);
+                    data = checksum == null ? null : "checksum:" + checksum;
+                } else {
+                    String times = tableTimes.get(tableName);
+                    data = times == null ? null : "time:" + times;
+                    if (base != null && times != null && isUpdatedSince(times, base.getSnapshotTime())) {
+                        updatedSinceBase.add(tableName);
+                    }
+                }
+                if (data == null) {
+                    continue;
+                }
+                String definition = snapshot.showCreateTable(databaseName, tableName) + "\n"
+                        + triggers.getOrDefault(tableName, "");
+                signatures.put(tableName, data + "|ddl:" + sha256(definition));
+            } catch (SQLException e) {
+                logger.warn("表的变化判定值取得失败，该表导出 - {}: {}", tableName, e.getMessage());
+            }
+        }
+        logger.info("变化判定值取得完成 - 方式: {}, 可判定的表: {} / {}, 耗时: {} ms", useChecksum ? "checksum" : "update-time",
+                signatures.size(), tables.size(), System.currentTimeMillis() - startTime);
+        return signatures;
+    }
+
+    /**
+     * 更新时间是否 ≥ 上次快照时间（同一秒内的写入也算，上次快照时间不明时（以前的清单）也视为有变化）
+     *
+     * @param times "创建时间|更新时间"
+     * @param baseSnapshotTime 上次快照时间 (yyyy-MM-dd HH:mm:ss)
+     */
+    static boolean isUpdatedSince(String times, String baseSnapshotTime) {
+        if (baseSnapshotTime == null) {
+            return true;
+        }
+        String updateTime = times.substring(times.indexOf('|') + 1);
+        return updateTime.compareTo(baseSnapshotTime) >= 0;
+    }
+
+    /**
+     * 沿用以前的备份的文件（变化判定值与上次相同、并且文件存在时）
+     *
+     * @return 沿用的文件记录；需要导出时返回null
+     */
+    private KNDB5000ManifestFileEntity reuse(Path backupDir, KNDB5000ManifestEntity base,
+                                             KNDB5000ManifestFileEntity previousFile, String signature) throws IOException {
+        if (base == null || previousFile == null || signature == null || !signature.equals(previousFile.getSignature())) {
+            return null;
+        }
+        String baseBackup = previousFile.getBaseBackup() != null ? previousFile.getBaseBackup() : base.getBackupName();
+        Path basePath = backupDir.resolveSibling(baseBackup).resolve(previousFile.getFile());
+        if (!Files.exists(basePath) || Files.size(basePath) != previousFile.getFileBytes()) {
+            logger.warn("沿用的文件不存在或大小不一致，该表导出 - {}", basePath);
+            return null;
+        }
+
+        KNDB5000ManifestFileEntity file = new KNDB5000ManifestFileEntity();
+        file.setName(previousFile.getName());
+        file.setType(previousFile.getType());
+        file.setFile(previousFile.getFile());
+        file.setRows(previousFile.getRows());
+        file.setRawBytes(previousFile.getRawBytes());
+        file.setFileBytes(previousFile.getFileBytes());
+        file.setSha256(previousFile.getSha256());
+        file.setSignature(signature);
+        file.setBaseBackup(baseBackup);
+        return file;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return KNDB5000DumpStreamer.toHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private Future<KNDB5000ManifestFileEntity> submit(String name, String type, Path partDir, String fileName,
+                                                      List<String> command) {
+        return dumpExecutor.submit(() -> {
+            KNDB5000DumpStreamer.DumpResult result = dumpStreamer.dump(command, partDir.resolve(fileName));
+            if (!result.isSuccess()) {
+                throw new IllegalStateException(result.getProblems().isEmpty()
+                        ? "mysqldump 退出代码: " + result.getExitCode() + ", " + result.getStderr().trim()
+                        : "结构检查不通过: " + result.getProblems());
+            }
+            if (!result.getStderr().trim().isEmpty()) {
+                logger.warn("mysqldump 标准错误输出 - {}: {}", name, result.getStderr().trim());
+            }
+
+            KNDB5000ManifestFileEntity file = new KNDB5000ManifestFileEntity();
+            file.setName(name);
+            file.setType(type);
+            file.setFile(fileName);
+            file.setRawBytes(result.getRawBytes());
+            file.setFileBytes(result.getFileBytes());
+            file.setSha256(result.getSha256());
+            file.setElapsedMillis(result.getElapsedMillis());
+            return file;
+        });
+    }
+
+    /**
+     * 等待全部导出结束，结果写入清单
+     *
+     * @return 失败的文件（名称: 错误信息）
+     */
+    private List<String> collect(Map<String, Future<KNDB5000ManifestFileEntity>> futures, Map<String, Long> rowCounts,
+                                 Map<String, String> signatures, KNDB5000ManifestEntity manifest) throws InterruptedException {
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Future<KNDB5000ManifestFileEntity>> entry : futures.entrySet()) {
+            try {
+                KNDB5000ManifestFileEntity file = entry.getValue().get();
+                if (KNDB5000ManifestFileEntity.TYPE_TABLE.equals(file.getType())) {
+                    file.setRows(rowCounts.get(file.getName()));
+                    file.setSignature(signatures.get(file.getName()));
+                }
+                manifest.getFiles().add(file);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failures.add(entry.getKey() + ": " + cause.getMessage());
+                logger.error("并行备份失败 - {}", entry.getKey(), cause);
+            }
+        }
+        return failures;
+    }
+
+    private List<String> command(List<String> connectionArgs, List<String> args) {
+        List<String> command = new ArrayList<>(connectionArgs);
+        for (String option : extraOptions.trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.addAll(args);
+        return command;
+    }
+
+    /**
+     * 删除目录（包括子目录和文件）
+     */
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> sorted = new ArrayList<>();
+            paths.forEach(sorted::add);
+            sorted.sort(Comparator.reverseOrder());
+            for (Path path : sorted) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -21,19 +21,6 @@ public class SimpleEmailService {
     @Autowired
     private JavaMailSender mailSender;
     
-    // @Value("${knbatch.email.from:}")
-    private String fromEmail;
-    public void setFromEmail(String fromEmail) {
-        this.fromEmail = fromEmail;
-    }
-
-    // 修改：改为String类型，支持逗号分隔的多个邮箱
-    // @Value("${knbatch.email.to}")
-    private String toEmails;
-    public void setToEmails(String toEmails) {
-        this.toEmails = toEmails;
-    }
-
     @Value("${knbatch.email.send-on-success:true}")
     private boolean sendOnSuccess;
     
@@ -45,8 +32,15 @@ public class SimpleEmailService {
 
     /**
      * 发送批处理执行结果邮件（日志内容直接在邮件正文中）
+     *
+     * 本服务是单例，多个作业可能同时发送邮件，
+     * 所以发件人/收件人不保存在成员变量里，每次调用时作为参数传入。
+     *
+     * @param fromEmail 发件人邮箱
+     * @param toEmails 收件人邮箱（支持逗号分隔的多个邮箱）
      */
-    public void sendBatchNotification(String jobName, String jobDiscription, boolean success, String logContent) {
+    public void sendBatchNotification(String fromEmail, String toEmails, String jobName, String jobDiscription,
+                                      boolean success, String logContent) {
         try {
             // 检查必要配置
             if (fromEmail == null || fromEmail.trim().isEmpty() || 
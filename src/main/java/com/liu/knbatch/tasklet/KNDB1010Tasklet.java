@@ -2,8 +2,10 @@ package com.liu.knbatch.tasklet;
 
 import com.liu.knbatch.config.BatchMailInfo;
 import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.dao.BatchWatermarkDao;
 import com.liu.knbatch.dao.KNDB1010Dao;
 import com.liu.knbatch.entity.KNDB1010Entity;
+import com.liu.knbatch.service.KNDB1010LatestSubjectIndex;
 import com.liu.knbatch.service.SimpleEmailService;
 
 import org.slf4j.Logger;
@@ -13,12 +15,17 @@ import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * KNDB1010 钢琴课程级别矫正 业务处理任务
@@ -29,6 +36,18 @@ import java.util.List;
  * 3. 如果记录数大于0，则执行数据矫正操作
  * 4. 验证矫正结果
  * 
+ * 判定方式（knbatch.kndb1010.detect-mode）：
+ *   INDEX: 一次流式读取学生最新科目级别，构建内存索引，用索引判定和矫正（默认）
+ *   SQL  : 原来的方式，由MySQL执行 NOT EXISTS 子查询判定和矫正
+ * 
+ * 增量处理（knbatch.kndb1010.incremental.enabled，仅INDEX方式 + 非手动执行时有效）：
+ *   只有学生档案或排课发生变更的学生才可能新出现错误级别的课程，
+ *   所以只处理上次执行（水位线 LAST_CHANGE_TIME）以后有变更的学生。
+ *   水位线保存在 t_batch_job_watermark 表，按目标月份分别保存（如: LAST_CHANGE_TIME:2025-03），批处理成功时才推进。
+ *   某个月份的执行推进了水位线，其他月份的变更也不会被跳过：其他月份有自己的水位线，
+ *   首次处理的月份没有水位线，执行全量处理。
+ *   距离该月份上次全量处理超过 full-sweep-interval-days 天时，也执行全量处理作为保险。
+ * 
  * @author Liu
  * @version 1.0.0
  */
@@ -38,6 +57,12 @@ public class KNDB1010Tasklet implements Tasklet {
     private static final Logger logger = LoggerFactory.getLogger(KNDB1010Tasklet.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
     private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+    // IN 条件里一次最多放入的课程ID数
+    private static final int UPDATE_BATCH_SIZE = 500;
+    private static final DateTimeFormatter WATERMARK_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // 水位线种类（后面加上 ":目标月份"，按月份分别保存）
+    private static final String WATERMARK_LAST_CHANGE_TIME = "LAST_CHANGE_TIME";
+    private static final String WATERMARK_LAST_FULL_SWEEP = "LAST_FULL_SWEEP";
 
     private String jobId = "KNDB1010";
     
@@ -45,14 +70,24 @@ public class KNDB1010Tasklet implements Tasklet {
     private KNDB1010Dao kndb1010Dao;
     @Autowired
     private BatchMailConfigDao mailDao;
+    @Autowired
+    private BatchWatermarkDao watermarkDao;
 
     @Autowired(required = false)
     private SimpleEmailService emailService;
 
-    private int incorrectCount = 0;
-    private int updatedCount = 0;
-    List<KNDB1010Entity> incorrectLessons;
-    
+    // 错误级别的判定方式 INDEX / SQL
+    @Value("${knbatch.kndb1010.detect-mode:INDEX}")
+    private String detectMode;
+
+    // 是否启用增量处理
+    @Value("${knbatch.kndb1010.incremental.enabled:false}")
+    private boolean incrementalEnabled;
+
+    // 全量处理的间隔天数（增量处理的保险）
+    @Value("${knbatch.kndb1010.incremental.full-sweep-interval-days:7}")
+    private int fullSweepIntervalDays;
+
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
         long startTime = System.currentTimeMillis();
@@ -60,6 +95,10 @@ public class KNDB1010Tasklet implements Tasklet {
         String description = "钢琴课程级别矫正";
         boolean success = false; 
         StringBuilder logContent = new StringBuilder();
+        // 执行结果（本Tasklet是单例，同一作业可能被并发启动，所以不保存在成员变量里）
+        int incorrectCount = 0;
+        int updatedCount = 0;
+        List<KNDB1010Entity> incorrectLessons = Collections.emptyList();
         
         addLog(logContent, "========== " + batchName + " 批处理开始执行 ==========");
         logger.info("========== {} 批处理开始执行 ==========", batchName);
@@ -78,14 +117,49 @@ public class KNDB1010Tasklet implements Tasklet {
             LocalDate date = LocalDate.parse(baseDate, DATE_FORMATTER);
             String targetMonth = date.format(MONTH_FORMATTER);
             
-            addLog(logContent, "目标处理月份: " + targetMonth);
-            logger.info("目标处理月份: {}", targetMonth);
+            boolean useIndex = !"SQL".equalsIgnoreCase(detectMode);
+            addLog(logContent, "目标处理月份: " + targetMonth + ", 判定方式: " + (useIndex ? "INDEX" : "SQL"));
+            logger.info("目标处理月份: {}, 判定方式: {}", targetMonth, useIndex ? "INDEX" : "SQL");
+            
+            // 增量处理判定：确定本次要处理的学生范围
+            String runStartTime = null;
+            boolean fullSweep = true;
+            List<String> touchedStuIds = null;
+            if (useIndex && incrementalEnabled && !"MANUAL".equals(jobMode)) {
+                runStartTime = watermarkDao.selectDatabaseNow();
+                String changedSince = watermarkDao.selectWatermark(jobId, watermarkKey(WATERMARK_LAST_CHANGE_TIME, targetMonth));
+                String lastFullSweep = watermarkDao.selectWatermark(jobId, watermarkKey(WATERMARK_LAST_FULL_SWEEP, targetMonth));
+                fullSweep = changedSince == null || isFullSweepDue(lastFullSweep, runStartTime);
+                
+                if (fullSweep) {
+                    addLog(logContent, "增量处理: 执行全量处理 - " + targetMonth + " 的上次全量处理: " + lastFullSweep);
+                    logger.info("增量处理: 执行全量处理 - {} 的上次全量处理: {}", targetMonth, lastFullSweep);
+                } else {
+                    touchedStuIds = kndb1010Dao.selectTouchedStudentIds(changedSince);
+                    addLog(logContent, "增量处理: " + changedSince + " 以后有变更的学生数: " + touchedStuIds.size());
+                    logger.info("增量处理: {} 以后有变更的学生数: {}", changedSince, touchedStuIds.size());
+                }
+                contribution.getStepExecution().getExecutionContext().putString("sweepMode", fullSweep ? "FULL" : "INCREMENTAL");
+                contribution.getStepExecution().getExecutionContext().putString("watermarkTo", runStartTime);
+            }
             
             // 步骤1: 获取排课钢琴错误级别的课程记录
             addLog(logContent, "步骤1: 开始获取排课钢琴错误级别的课程记录...");
             logger.info("步骤1: 开始获取排课钢琴错误级别的课程记录...");
             
-            incorrectLessons = kndb1010Dao.selectIncorrectPianoLevelLessons(targetMonth);
+            KNDB1010LatestSubjectIndex index = null;
+            if (touchedStuIds != null && touchedStuIds.isEmpty()) {
+                // 上次执行以后没有任何变更，不需要读取索引和排课
+                incorrectLessons = Collections.emptyList();
+            } else if (useIndex) {
+                index = touchedStuIds == null
+                        ? KNDB1010LatestSubjectIndex.load(kndb1010Dao)
+                        : KNDB1010LatestSubjectIndex.load(kndb1010Dao, touchedStuIds);
+                addLog(logContent, "步骤1: 最新科目级别索引构建完成 - 索引件数: " + index.size());
+                incorrectLessons = selectIncorrectLessonsByIndex(index, targetMonth, touchedStuIds);
+            } else {
+                incorrectLessons = kndb1010Dao.selectIncorrectPianoLevelLessons(targetMonth);
+            }
             incorrectCount = incorrectLessons.size();
             
             addLog(logContent, "步骤1: 完成 - 发现错误级别课程记录数: " + incorrectCount);
@@ -95,6 +169,7 @@ public class KNDB1010Tasklet implements Tasklet {
                 addLog(logContent, "未发现错误的钢琴级别课程记录，批处理正常结束");
                 logger.info("未发现错误的钢琴级别课程记录，批处理正常结束");
                 
+                advanceWatermark(targetMonth, runStartTime, fullSweep, logContent);
                 success = true;
                 logExecutionResult(batchName, "SUCCESS", 0, 0, startTime, logContent);
                 return RepeatStatus.FINISHED;
@@ -124,7 +199,11 @@ public class KNDB1010Tasklet implements Tasklet {
             addLog(logContent, "步骤2: 开始执行钢琴级别课程数据矫正...");
             logger.info("步骤2: 开始执行钢琴级别课程数据矫正...");
             
-            updatedCount = kndb1010Dao.updateIncorrectPianoLevelLessons(targetMonth);
+            if (useIndex) {
+                updatedCount = updateIncorrectLessonsByIndex(index, incorrectLessons);
+            } else {
+                updatedCount = kndb1010Dao.updateIncorrectPianoLevelLessons(targetMonth);
+            }
             
             addLog(logContent, "步骤2: 完成 - 成功矫正课程记录数: " + updatedCount);
             logger.info("步骤2: 完成 - 成功矫正课程记录数: {}", updatedCount);
@@ -133,7 +212,10 @@ public class KNDB1010Tasklet implements Tasklet {
             addLog(logContent, "验证: 开始验证矫正结果...");
             logger.info("验证: 开始验证矫正结果...");
             
-            int remainingIncorrectCount = kndb1010Dao.countIncorrectPianoLevelLessons(targetMonth);
+            // INDEX方式也重新从数据库读取排课再判定，没有实际更新的课程会作为剩余错误被发现
+            int remainingIncorrectCount = useIndex
+                    ? selectIncorrectLessonsByIndex(index, targetMonth, touchedStuIds).size()
+                    : kndb1010Dao.countIncorrectPianoLevelLessons(targetMonth);
             
             if (remainingIncorrectCount == 0) {
                 addLog(logContent, "验证: 成功 - 所有错误级别课程已完成矫正");
@@ -149,6 +231,12 @@ public class KNDB1010Tasklet implements Tasklet {
                 logExecutionResult(batchName, "WARNING", incorrectCount, updatedCount, startTime, logContent);
             }
             
+            advanceWatermark(targetMonth, runStartTime, fullSweep, logContent);
+            
+            // 执行结果保存到 StepExecution 的 ExecutionContext
+            contribution.getStepExecution().getExecutionContext().putInt("incorrectCount", incorrectCount);
+            contribution.getStepExecution().getExecutionContext().putInt("updatedCount", updatedCount);
+            
             // 更新贡献统计
             contribution.incrementReadCount();
             contribution.incrementWriteCount(updatedCount);
@@ -165,10 +253,95 @@ public class KNDB1010Tasklet implements Tasklet {
             throw e;
         } finally {
             // 发送邮件通知
-            sendEmailNotification(batchName, description, success, logContent.toString());
+            sendEmailNotification(batchName, description, success, logContent.toString(),
+                    incorrectCount, updatedCount, incorrectLessons);
         }
     }
     
+    /**
+     * 用内存索引判定目标月份的错误级别课程
+     * 排课记录是流式读取的，内存里只保留判定为错误的记录
+     */
+    private List<KNDB1010Entity> selectIncorrectLessonsByIndex(KNDB1010LatestSubjectIndex index, String targetMonth,
+                                                               List<String> stuIds) {
+        List<KNDB1010Entity> result = new ArrayList<>();
+        kndb1010Dao.streamLessonsOfMonth(targetMonth, stuIds, context -> {
+            KNDB1010Entity lesson = context.getResultObject();
+            if (index.isIncorrect(lesson)) {
+                result.add(lesson);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 用内存索引矫正错误级别课程
+     * 按正确级别把课程ID分组，每组用一条 UPDATE ... IN (...) 更新
+     * 学生档案里没有该科目记录的课程无法矫正（与原SQL的 INNER JOIN 行为一致）
+     */
+    private int updateIncorrectLessonsByIndex(KNDB1010LatestSubjectIndex index, List<KNDB1010Entity> lessons) {
+        Map<String, List<String>> lessonIdsBySubId = new LinkedHashMap<>();
+        for (KNDB1010Entity lesson : lessons) {
+            String latestSubId = index.latestSubjectSubId(lesson.getStuId(), lesson.getSubjectId());
+            if (latestSubId != null) {
+                lessonIdsBySubId.computeIfAbsent(latestSubId, k -> new ArrayList<>()).add(lesson.getLessonId());
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<String, List<String>> entry : lessonIdsBySubId.entrySet()) {
+            List<String> lessonIds = entry.getValue();
+            for (int from = 0; from < lessonIds.size(); from += UPDATE_BATCH_SIZE) {
+                int to = Math.min(from + UPDATE_BATCH_SIZE, lessonIds.size());
+                count += kndb1010Dao.updateLessonSubjectSubId(entry.getKey(), lessonIds.subList(from, to));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 判定是否到了执行全量处理的时候
+     */
+    private boolean isFullSweepDue(String lastFullSweep, String runStartTime) {
+        if (lastFullSweep == null) {
+            return true;
+        }
+        LocalDateTime last = LocalDateTime.parse(lastFullSweep, WATERMARK_FORMATTER);
+        LocalDateTime now = LocalDateTime.parse(runStartTime, WATERMARK_FORMATTER);
+        return !last.plusDays(fullSweepIntervalDays).isAfter(now);
+    }
+
+    /**
+     * 水位线种类 + 目标月份
+     * 水位线只对处理过的月份有效，所以按月份分别保存
+     */
+    private static String watermarkKey(String kind, String targetMonth) {
+        return kind + ":" + targetMonth;
+    }
+
+    /**
+     * 推进目标月份的水位线（批处理成功时才调用，和矫正结果在同一个事务里提交）
+     * 
+     * @param targetMonth 目标月份 (yyyy-MM)
+     * @param runStartTime 本次执行开始时的数据库时间，null表示本次不是增量处理对象
+     * @param fullSweep 本次是否执行了全量处理
+     * @param logContent 日志内容收集器
+     */
+    private void advanceWatermark(String targetMonth, String runStartTime, boolean fullSweep, StringBuilder logContent) {
+        if (runStartTime == null) {
+            return;
+        }
+        String changeTimeKey = watermarkKey(WATERMARK_LAST_CHANGE_TIME, targetMonth);
+        String fullSweepKey = watermarkKey(WATERMARK_LAST_FULL_SWEEP, targetMonth);
+        watermarkDao.upsertWatermark(jobId, changeTimeKey, runStartTime);
+        if (fullSweep) {
+            watermarkDao.upsertWatermark(jobId, fullSweepKey, runStartTime);
+        }
+        addLog(logContent, "水位线更新: " + changeTimeKey + " = " + runStartTime
+                + (fullSweep ? ", " + fullSweepKey + " = " + runStartTime : ""));
+        logger.info("水位线更新: {} = {}, 全量处理: {}", changeTimeKey, runStartTime, fullSweep);
+    }
+
     /**
      * 添加日志条目（带时间戳）
      */
@@ -213,28 +386,26 @@ public class KNDB1010Tasklet implements Tasklet {
     /**
      * 发送邮件通知
      */
-    private void sendEmailNotification(String jobName, String description, boolean success, String logContent) {
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent,
+                                       int incorrectCount, int updatedCount, List<KNDB1010Entity> incorrectLessons) {
 
         // 从数据库邮件管理表提取邮件管理信息
         BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
 
         try {
             if (emailService != null) {
-                emailService.setFromEmail(mailInfo.getEmailFrom());
                 // 给程序维护者发送邮件
-                emailService.setToEmails(mailInfo.getMailToDevloper());
-                emailService.sendBatchNotification(jobName, description, success, logContent);
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
 
                 // 如果用户邮件不为空，则给用户发送邮件
                 if (!mailInfo.getEmailToUser().isEmpty()){
-                    emailService.setToEmails(mailInfo.getEmailToUser());
                     StringBuilder useMailContent = new StringBuilder();
-                    if (this.incorrectCount == 0) {
+                    if (incorrectCount == 0) {
                         useMailContent.append("没有发现学生排课数据异常")
                                       .append(System.lineSeparator()); // 追加换行符
                     } else {
                         useMailContent.append("排课中发现课程级别的错误数是：")
-                                      .append(this.incorrectCount)
+                                      .append(incorrectCount)
                                       .append("个")
                                       .append(System.lineSeparator());
                         useMailContent.append("详细记录信息如下：").append(System.lineSeparator());
@@ -246,12 +417,12 @@ public class KNDB1010Tasklet implements Tasklet {
                             useMailContent.append(System.lineSeparator()); // 追加换行符                            
                         }
                         useMailContent.append("上述学生的课程级别，KNPiano批处理系统已更新").append(System.lineSeparator());
-                        useMailContent.append("更新件数 : ").append(this.updatedCount).append("个").append(System.lineSeparator());
+                        useMailContent.append("更新件数 : ").append(updatedCount).append("个").append(System.lineSeparator());
                     }
 
 
 
-                    emailService.sendBatchNotification(jobName, description, success, useMailContent.toString());
+                    emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getEmailToUser(), jobName, description, success, useMailContent.toString());
                 }
 
                 logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
@@ -0,0 +1,151 @@
+package com.liu.knbatch.tasklet;
+
+import com.liu.knbatch.config.BatchMailInfo;
+import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.service.SimpleEmailService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * KNDB2020 历年验证 执行结果汇总任务
+ *
+ * 业务逻辑：
+ * 1. 收集本次作业各年度分区 KNDB2020_YEAR_STEP 的验证结果
+ * 2. 按年度列出月份数、错误月份、是否沿用了上次的验证结果
+ * 3. 有错误年度、有重新验证的年度、或者分区失败时发送邮件通知
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB2020HistoryReportTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020HistoryReportTasklet.class);
+
+    private String jobId = "KNDB2020";
+
+    @Autowired
+    private BatchMailConfigDao mailDao;
+
+    @Autowired(required = false)
+    private SimpleEmailService emailService;
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        String batchName = "KNDB2020";
+        String description = "年度月收入报告数据监视（历年验证）";
+        StringBuilder logContent = new StringBuilder();
+
+        List<StepExecution> partitions = new ArrayList<>();
+        for (StepExecution stepExecution : chunkContext.getStepContext().getStepExecution()
+                .getJobExecution().getStepExecutions()) {
+            if (stepExecution.getStepName().startsWith(KNDB2020YearValidationTasklet.YEAR_STEP_NAME)) {
+                partitions.add(stepExecution);
+            }
+        }
+        partitions.sort(Comparator.comparing(
+                (StepExecution stepExecution) -> stepExecution.getExecutionContext().getString("year", "")));
+
+        int rescannedYearCount = 0;
+        List<String> errorYears = new ArrayList<>();
+        boolean success = true;
+
+        addLog(logContent, "========== " + batchName + " 历年验证执行完成 ==========");
+        addLog(logContent, "对象年度数: " + partitions.size());
+        for (StepExecution partition : partitions) {
+            ExecutionContext executionContext = partition.getExecutionContext();
+            String year = executionContext.getString("year", "");
+            boolean partitionSuccess = ExitStatus.COMPLETED.getExitCode().equals(partition.getExitStatus().getExitCode());
+            boolean cached = Boolean.TRUE.equals(executionContext.get(KNDB2020YearValidationTasklet.KEY_CACHED));
+            int errorMonthCount = executionContext.getInt(KNDB2020YearValidationTasklet.KEY_ERROR_MONTH_COUNT, 0);
+            long executionTime = partition.getEndTime() != null && partition.getStartTime() != null
+                    ? partition.getEndTime().getTime() - partition.getStartTime().getTime() : 0;
+
+            success &= partitionSuccess;
+            if (partitionSuccess && !cached) {
+                rescannedYearCount++;
+            }
+            if (errorMonthCount > 0) {
+                errorYears.add(year);
+            }
+
+            String detailInfo = String.format("  - %s 年度 状态: %s, 总月份数: %d, 正确: %d, 错误: %d, %s, 耗时: %d ms",
+                    year, partition.getExitStatus().getExitCode(),
+                    executionContext.getInt(KNDB2020YearValidationTasklet.KEY_TOTAL_MONTH_COUNT, 0),
+                    executionContext.getInt(KNDB2020YearValidationTasklet.KEY_CORRECT_MONTH_COUNT, 0),
+                    errorMonthCount, cached ? "数据无变更（沿用上次结果）" : "重新验证", executionTime);
+            if (errorMonthCount > 0) {
+                detailInfo += " 错误月份: " + executionContext.getString(KNDB2020YearValidationTasklet.KEY_ERROR_MONTHS, "");
+            }
+            addLog(logContent, detailInfo);
+            logger.info(detailInfo);
+
+            for (Throwable throwable : partition.getFailureExceptions()) {
+                addLog(logContent, "  " + year + " 年度 错误信息: " + throwable.getMessage());
+            }
+        }
+
+        addLog(logContent, "执行状态: " + (success ? "SUCCESS" : "ERROR"));
+        addLog(logContent, "重新验证年度数: " + rescannedYearCount);
+        addLog(logContent, "验证结果: " + (errorYears.isEmpty() ? "✓ 全部正确！" : "✗ 有错误月份的年度: " + errorYears));
+        addLog(logContent, "执行结束时间: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        addLog(logContent, "================================================");
+
+        logger.info("========== {} 历年验证执行完成 - 年度数: {}, 重新验证: {}, 错误年度: {} ==========",
+                batchName, partitions.size(), rescannedYearCount, errorYears);
+
+        // 全部年度都沿用上次的"全部正确"结果时不发送邮件
+        if (!success || rescannedYearCount > 0 || !errorYears.isEmpty()) {
+            sendEmailNotification(batchName, description, success, logContent.toString());
+        } else {
+            logger.info("历年验证数据无变更且全部正确，无需发送邮件通知");
+        }
+
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * 添加日志条目（带时间戳）
+     */
+    private void addLog(StringBuilder logContent, String message) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        logContent.append(String.format("[%s] %s\n", timestamp, message));
+    }
+
+    /**
+     * 发送邮件通知（历年验证的结果只发给程序维护者）
+     */
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent) {
+
+        // 从数据库邮件管理表提取邮件管理信息
+        BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
+
+        try {
+            if (emailService != null) {
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
+                logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
+            } else {
+                logger.info("邮件服务未启用，跳过邮件发送 - jobName: {}", jobName);
+            }
+        } catch (Exception e) {
+            logger.error("发送邮件通知时出错 - jobName: {}, error: {}", jobName, e.getMessage(), e);
+            // 不要因为邮件发送失败而影响批处理任务的状态
+        }
+    }
+}
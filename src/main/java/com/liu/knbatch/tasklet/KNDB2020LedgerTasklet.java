@@ -0,0 +1,196 @@
+package com.liu.knbatch.tasklet;
+
+import com.liu.knbatch.config.BatchMailInfo;
+import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.dao.BatchWatermarkDao;
+import com.liu.knbatch.dao.KNDB2020Dao;
+import com.liu.knbatch.service.SimpleEmailService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * KNDB2020 月度课费台账刷新 业务处理任务
+ *
+ * 业务逻辑：
+ * 1. 根据水位线判定本次是增量刷新还是全量重建
+ *    - 全量重建：首次执行、MANUAL执行（修复用）、距上次全量重建超过 full-rebuild-interval-days 天
+ *    - 增量刷新：只刷新上次执行以后费用/支付/排课有变更的月份，
+ *      以及基准月份往前 always-refresh-months 个月（物理删除的记录无法通过更新日时发现）
+ * 2. 从视图 v_total_lsnfee_with_paid_unpaid_every_month 重新计算对象月份，写入 t_batch_lsnfee_month_ledger
+ * 3. 推进水位线（和台账在同一个事务里提交）
+ *
+ * 之后的 KNDB2020_STEP 从台账表读取月度汇总（在独立的连接上并行查询，所以台账刷新放在单独的步骤里先提交）。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB2020LedgerTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020LedgerTasklet.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter WATERMARK_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // 水位线种类
+    private static final String WATERMARK_LEDGER_CHANGE_TIME = "LEDGER_CHANGE_TIME";
+    private static final String WATERMARK_LEDGER_FULL_REBUILD = "LEDGER_FULL_REBUILD";
+
+    // 台账刷新结果（放在作业的 ExecutionContext 里，供 KNDB2020_STEP 写进报告）
+    public static final String KEY_LEDGER_SUMMARY = "ledgerSummary";
+
+    private String jobId = "KNDB2020";
+
+    @Autowired
+    private KNDB2020Dao kndb2020Dao;
+    @Autowired
+    private BatchWatermarkDao watermarkDao;
+    @Autowired
+    private BatchMailConfigDao mailDao;
+
+    @Autowired(required = false)
+    private SimpleEmailService emailService;
+
+    // 每次都刷新的月份数（基准月份往前）
+    @Value("${knbatch.kndb2020.ledger.always-refresh-months:2}")
+    private int alwaysRefreshMonths;
+
+    // 全量重建的间隔天数（增量刷新的保险）
+    @Value("${knbatch.kndb2020.ledger.full-rebuild-interval-days:7}")
+    private int fullRebuildIntervalDays;
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        long startTime = System.currentTimeMillis();
+        String batchName = "KNDB2020";
+        String description = "月度课费台账刷新";
+        StringBuilder logContent = new StringBuilder();
+
+        addLog(logContent, "========== " + batchName + " " + description + " 开始执行 ==========");
+        logger.info("========== {} {} 开始执行 ==========", batchName, description);
+
+        try {
+            // 获取作业参数
+            String baseDate = (String) chunkContext.getStepContext()
+                    .getJobParameters().get("baseDate");
+            String jobMode = (String) chunkContext.getStepContext()
+                    .getJobParameters().get("jobMode");
+
+            String runStartTime = watermarkDao.selectDatabaseNow();
+            String changedSince = watermarkDao.selectWatermark(jobId, WATERMARK_LEDGER_CHANGE_TIME);
+            String lastFullRebuild = watermarkDao.selectWatermark(jobId, WATERMARK_LEDGER_FULL_REBUILD);
+            boolean fullRebuild = "MANUAL".equals(jobMode) || changedSince == null
+                    || isFullRebuildDue(lastFullRebuild, runStartTime);
+
+            String ledgerSummary;
+            int deletedCount;
+            int insertedCount;
+            if (fullRebuild) {
+                addLog(logContent, "台账全量重建 - 执行模式: " + jobMode + ", 上次全量重建: " + lastFullRebuild);
+                logger.info("台账全量重建 - 执行模式: {}, 上次全量重建: {}", jobMode, lastFullRebuild);
+
+                deletedCount = kndb2020Dao.deleteLedgerMonths(null);
+                insertedCount = kndb2020Dao.insertLedgerMonths(null);
+                ledgerSummary = "全量重建, " + insertedCount + " 个月份";
+            } else {
+                TreeSet<String> lsnMonths = new TreeSet<>(kndb2020Dao.selectChangedLsnMonths(changedSince));
+                addLog(logContent, "台账增量刷新 - " + changedSince + " 以后有变更的月份: " + lsnMonths);
+                logger.info("台账增量刷新 - {} 以后有变更的月份: {}", changedSince, lsnMonths);
+
+                LocalDate baseMonth = LocalDate.parse(baseDate, DATE_FORMATTER);
+                for (int i = 0; i < alwaysRefreshMonths; i++) {
+                    lsnMonths.add(baseMonth.minusMonths(i).format(MONTH_FORMATTER));
+                }
+
+                List<String> refreshMonths = new ArrayList<>(lsnMonths);
+                deletedCount = refreshMonths.isEmpty() ? 0 : kndb2020Dao.deleteLedgerMonths(refreshMonths);
+                insertedCount = refreshMonths.isEmpty() ? 0 : kndb2020Dao.insertLedgerMonths(refreshMonths);
+                ledgerSummary = "增量刷新, 对象月份: " + refreshMonths;
+            }
+
+            addLog(logContent, "台账更新完成 - 删除: " + deletedCount + " 行, 写入: " + insertedCount + " 行");
+            logger.info("台账更新完成 - 删除: {} 行, 写入: {} 行", deletedCount, insertedCount);
+
+            // 推进水位线
+            watermarkDao.upsertWatermark(jobId, WATERMARK_LEDGER_CHANGE_TIME, runStartTime);
+            if (fullRebuild) {
+                watermarkDao.upsertWatermark(jobId, WATERMARK_LEDGER_FULL_REBUILD, runStartTime);
+            }
+            addLog(logContent, "水位线更新: " + WATERMARK_LEDGER_CHANGE_TIME + " = " + runStartTime);
+            logger.info("水位线更新: {} = {}, 全量重建: {}", WATERMARK_LEDGER_CHANGE_TIME, runStartTime, fullRebuild);
+
+            chunkContext.getStepContext().getStepExecution().getJobExecution().getExecutionContext()
+                    .putString(KEY_LEDGER_SUMMARY, ledgerSummary + " (" + (System.currentTimeMillis() - startTime) + " ms)");
+
+            // 更新贡献统计
+            contribution.incrementWriteCount(insertedCount);
+
+            logger.info("========== {} {} 执行完成 - {}, 耗时: {} ms ==========",
+                    batchName, description, ledgerSummary, System.currentTimeMillis() - startTime);
+            return RepeatStatus.FINISHED;
+
+        } catch (Exception e) {
+            addLog(logContent, "========== " + batchName + " " + description + " 执行异常 ==========");
+            addLog(logContent, "错误信息: " + e.getMessage());
+            addLog(logContent, "执行时间: " + (System.currentTimeMillis() - startTime) + " ms");
+            logger.error("========== {} {} 执行异常 ==========", batchName, description, e);
+
+            // 台账刷新失败时，之后的验证步骤不会执行，在这里发送邮件通知
+            sendEmailNotification(batchName, description, false, logContent.toString());
+            throw e;
+        }
+    }
+
+    /**
+     * 判定是否到了执行全量重建的时候
+     */
+    private boolean isFullRebuildDue(String lastFullRebuild, String runStartTime) {
+        if (lastFullRebuild == null) {
+            return true;
+        }
+        LocalDateTime last = LocalDateTime.parse(lastFullRebuild, WATERMARK_FORMATTER);
+        LocalDateTime now = LocalDateTime.parse(runStartTime, WATERMARK_FORMATTER);
+        return !last.plusDays(fullRebuildIntervalDays).isAfter(now);
+    }
+
+    /**
+     * 添加日志条目（带时间戳）
+     */
+    private void addLog(StringBuilder logContent, String message) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        logContent.append(String.format("[%s] %s\n", timestamp, message));
+    }
+
+    /**
+     * 发送邮件通知（只给程序维护者）
+     */
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent) {
+        try {
+            if (emailService != null) {
+                // 从数据库邮件管理表提取邮件管理信息
+                BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
+                logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
+            } else {
+                logger.info("邮件服务未启用，跳过邮件发送 - jobName: {}", jobName);
+            }
+        } catch (Exception e) {
+            logger.error("发送邮件通知时出错 - jobName: {}, error: {}", jobName, e.getMessage(), e);
+            // 不要因为邮件发送失败而影响批处理任务的状态
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.liu.knbatch.tasklet;
 
 import com.liu.knbatch.config.BatchMailInfo;
 import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.dao.BatchWatermarkDao;
 import com.liu.knbatch.dao.KNDB2020Dao;
 import com.liu.knbatch.entity.KNDB2020MonthSummaryEntity;
 import com.liu.knbatch.entity.KNDB2020ValidationSummaryEntity;
 import com.liu.knbatch.entity.KNDB2020FeeErrorEntity;
 import com.liu.knbatch.entity.KNDB2020PayErrorEntity;
+import com.liu.knbatch.entity.KNDB2020StudentDiscrepancyEntity;
+import com.liu.knbatch.service.KNDB2020DuplicateDetector;
+import com.liu.knbatch.service.KNDB2020StudentBreakdown;
 import com.liu.knbatch.service.SimpleEmailService;
 
 import org.slf4j.Logger;
@@ -16,12 +20,25 @@ import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * KNDB2020 年度月收入报告数据监视 业务处理任务
@@ -29,7 +46,20 @@ import java.util.List;
  * 业务逻辑：
  * 1. 验证指定年度的所有月份课费数据（应收 = 已支付 + 未支付）
  * 2. 如果发现数据不一致，检查费用表和支付表的错误记录
- * 3. 发送邮件通知包含验证结果和错误详情
+ * 3. 有错误月份时，并行求出每个错误月份的学生别差额明细（按差额绝对值排序，每个月份最多 row-cap 件；
+ *    学生别合计与月度汇总不一致的月份不采用明细）
+ * 4. 发送邮件通知包含验证结果和错误详情
+ *
+ * 年度验证结果汇总由月度汇总列表在Java里求出，不再重复扫描视图。
+ * 有错误月份时，费用表检查、支付表检查、差额明细在专用线程池上并行执行（各自使用独立的数据库连接）；
+ * 全部正确时不执行这些查询。检查用查询的超时由映射文件的 timeout（knbatch.kndb2020.query-timeout-seconds）
+ * 在MySQL上中止，不只是Java侧放弃等待。
+ * knbatch.kndb2020.streaming-duplicate-check=true 时，费用表/支付表检查改用流式重复检查（KNDB2020DuplicateDetector），
+ * ID列表不会被 group_concat_max_len 截断。
+ *
+ * 变更指纹（knbatch.kndb2020.fingerprint.enabled=true）：
+ * 费用表/支付表/排课表的件数和最大更新日时，与上次"全部正确"时保存的指纹相同时，
+ * 直接沿用上次的验证结果，不执行检查用查询；每隔 full-scan-interval-days 天、以及MANUAL执行时一定执行完整检查。
  *
  * @author Liu
  * @version 1.0.0
@@ -39,16 +69,59 @@ public class KNDB2020Tasklet implements Tasklet {
 
     private static final Logger logger = LoggerFactory.getLogger(KNDB2020Tasklet.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    // 应收与(已支付+未支付)的差额小于该值时视为正确（与原SQL的判定相同）
+    private static final BigDecimal TOLERANCE = new BigDecimal("0.01");
+    private static final DateTimeFormatter WATERMARK_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // 水位线种类（后面接年度）
+    private static final String WATERMARK_CLEAN_FINGERPRINT = "CLEAN_FINGERPRINT_";
+    private static final String WATERMARK_CLEAN_MONTH_COUNT = "CLEAN_MONTH_COUNT_";
+    private static final String WATERMARK_CLEAN_SCAN_TIME = "CLEAN_SCAN_TIME_";
+    // 等待查询结果时，在语句超时之外多等的时间（毫秒）
+    private static final long AWAIT_GRACE_MILLIS = 30_000;
     private String jobId = "KNDB2020";
 
     @Autowired
     private KNDB2020Dao kndb2020Dao;
     @Autowired
     private BatchMailConfigDao mailDao;
+    @Autowired
+    private BatchWatermarkDao watermarkDao;
 
     @Autowired(required = false)
     private SimpleEmailService emailService;
 
+    @Autowired
+    @Qualifier("kndb2020QueryExecutor")
+    private ThreadPoolTaskExecutor queryExecutor;
+
+    // 每个查询的超时时间（秒）
+    @Value("${knbatch.kndb2020.query-timeout-seconds:300}")
+    private long queryTimeoutSeconds;
+
+    // 月度汇总从月度课费台账表读取（台账由 KNDB2020_LEDGER_STEP 刷新）
+    @Value("${knbatch.kndb2020.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    // 错误月份的学生别差额明细
+    @Value("${knbatch.kndb2020.drilldown.enabled:true}")
+    private boolean drillDownEnabled;
+
+    // 差额明细每个月份最多取得的件数
+    @Value("${knbatch.kndb2020.drilldown.row-cap:20}")
+    private int drillDownRowCap;
+
+    // 费用表/支付表检查使用流式重复检查（不使用 GROUP BY + GROUP_CONCAT）
+    @Value("${knbatch.kndb2020.streaming-duplicate-check:false}")
+    private boolean streamingDuplicateCheck;
+
+    // 数据没有变更时沿用上次的验证结果（需要先执行 database/t_batch_job_watermark_create.sql）
+    @Value("${knbatch.kndb2020.fingerprint.enabled:false}")
+    private boolean fingerprintEnabled;
+
+    // 沿用验证结果的最长天数，超过时执行完整检查
+    @Value("${knbatch.kndb2020.fingerprint.full-scan-interval-days:7}")
+    private int fullScanIntervalDays;
+
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
         long startTime = System.currentTimeMillis();
@@ -77,55 +150,111 @@ public class KNDB2020Tasklet implements Tasklet {
             addLog(logContent, "目标验证年度: " + year);
             logger.info("目标验证年度: {}", year);
 
-            // 步骤1: 获取指定年度的整体验证结果汇总
-            addLog(logContent, "步骤1: 开始获取年度汇总验证结果...");
-            logger.info("步骤1: 开始获取年度汇总验证结果...");
+            if (ledgerEnabled) {
+                String ledgerSummary = chunkContext.getStepContext().getStepExecution().getJobExecution()
+                        .getExecutionContext().getString(KNDB2020LedgerTasklet.KEY_LEDGER_SUMMARY, "");
+                addLog(logContent, "数据来源: 月度课费台账表 - " + ledgerSummary);
+                logger.info("数据来源: 月度课费台账表 - {}", ledgerSummary);
+            }
+
+            // 变更指纹判定：数据和上次"全部正确"时相同，则沿用上次的验证结果
+            String fingerprint = null;
+            String scanTime = null;
+            if (fingerprintEnabled) {
+                fingerprint = kndb2020Dao.selectChangeFingerprint();
+                scanTime = watermarkDao.selectDatabaseNow();
+                KNDB2020ValidationSummaryEntity cachedSummary = loadCachedCleanVerdict(year, fingerprint, scanTime, jobMode, logContent);
+                if (cachedSummary != null) {
+                    contribution.incrementReadCount();
+
+                    success = true;
+                    logExecutionResult(batchName, "SUCCESS", cachedSummary, startTime, logContent);
+
+                    sendEmailNotification(batchName, description, success, logContent.toString(),
+                            cachedSummary, Collections.emptyList(), null, null, null);
+                    return RepeatStatus.FINISHED;
+                }
+            }
+
+            addLog(logContent, "检查用查询的超时时间: " + queryTimeoutSeconds + " 秒");
+            logger.info("检查用查询的超时时间: {} 秒", queryTimeoutSeconds);
+
+            List<KNDB2020MonthSummaryEntity> monthSummaryList;
+            List<KNDB2020FeeErrorEntity> feeErrorList = null;
+            List<KNDB2020PayErrorEntity> payErrorList = null;
+            List<KNDB2020StudentDiscrepancyEntity> studentDiscrepancyList = null;
+            KNDB2020ValidationSummaryEntity validationSummary;
+
+            // 步骤1: 获取月度汇总明细
+            addLog(logContent, "步骤1: 开始获取月度汇总明细...");
+            logger.info("步骤1: 开始获取月度汇总明细...");
+
+            long submitTime = System.currentTimeMillis();
+            monthSummaryList = ledgerEnabled
+                    ? kndb2020Dao.getLedgerMonthSummaryList(year)
+                    : kndb2020Dao.getMonthSummaryList(year);
 
-            KNDB2020ValidationSummaryEntity validationSummary = kndb2020Dao.getValidationSummary(year);
+            addLog(logContent, "步骤1: 完成 - 获取到 " + monthSummaryList.size() + " 个月份的数据 ("
+                    + (System.currentTimeMillis() - submitTime) + " ms)");
+            logger.info("步骤1: 完成 - 获取到 {} 个月份的数据 ({} ms)", monthSummaryList.size(), System.currentTimeMillis() - submitTime);
 
-            addLog(logContent, "步骤1: 完成 - 验证结果汇总:");
+            // 步骤2: 由月度汇总明细求出年度验证结果汇总
+            validationSummary = summarize(monthSummaryList);
+
+            addLog(logContent, "步骤2: 完成 - 验证结果汇总:");
             addLog(logContent, "  总月份数: " + validationSummary.getTotalMonthCount());
             addLog(logContent, "  正确月份数: " + validationSummary.getCorrectMonthCount());
             addLog(logContent, "  错误月份数: " + validationSummary.getErrorMonthCount());
             addLog(logContent, "  最终结果: " + validationSummary.getFinalResult());
 
-            logger.info("步骤1: 完成 - 总月份数: {}, 正确月份数: {}, 错误月份数: {}, 最终结果: {}",
+            logger.info("步骤2: 完成 - 总月份数: {}, 正确月份数: {}, 错误月份数: {}, 最终结果: {}",
                     validationSummary.getTotalMonthCount(),
                     validationSummary.getCorrectMonthCount(),
                     validationSummary.getErrorMonthCount(),
                     validationSummary.getFinalResult());
 
-            // 步骤2: 获取月度汇总明细
-            addLog(logContent, "步骤2: 开始获取月度汇总明细...");
-            logger.info("步骤2: 开始获取月度汇总明细...");
-
-            List<KNDB2020MonthSummaryEntity> monthSummaryList = kndb2020Dao.getMonthSummaryList(year);
-
-            addLog(logContent, "步骤2: 完成 - 获取到 " + monthSummaryList.size() + " 个月份的数据");
-            logger.info("步骤2: 完成 - 获取到 {} 个月份的数据", monthSummaryList.size());
-
-            // 步骤3: 如果有错误月份，检查费用表和支付表的错误记录
-            List<KNDB2020FeeErrorEntity> feeErrorList = null;
-            List<KNDB2020PayErrorEntity> payErrorList = null;
-
+            // 步骤3: 如果有错误月份，并行取得费用表和支付表的检查结果（全部正确时不执行这两个查询）
             if (validationSummary.getErrorMonthCount() > 0) {
-                addLog(logContent, "步骤3: 发现错误月份，开始检查费用表和支付表...");
-                logger.info("步骤3: 发现错误月份，开始检查费用表和支付表...");
-
-                // 检查费用表错误
-                feeErrorList = kndb2020Dao.getFeeErrorList();
-                addLog(logContent, "步骤3-1: 费用表错误记录数: " + feeErrorList.size());
-                logger.info("步骤3-1: 费用表错误记录数: {}", feeErrorList.size());
-
-                // 检查支付表错误
-                payErrorList = kndb2020Dao.getPayErrorList();
-                addLog(logContent, "步骤3-2: 支付表错误记录数: " + payErrorList.size());
-                logger.info("步骤3-2: 支付表错误记录数: {}", payErrorList.size());
+                addLog(logContent, "步骤3: 发现错误月份，并行取得费用表和支付表的检查结果...");
+                logger.info("步骤3: 发现错误月份，并行取得费用表和支付表的检查结果...");
+
+                submitTime = System.currentTimeMillis();
+                Future<List<KNDB2020FeeErrorEntity>> feeErrorFuture = queryExecutor.submit(() -> streamingDuplicateCheck
+                        ? KNDB2020DuplicateDetector.detectFeeErrors(kndb2020Dao)
+                        : kndb2020Dao.getFeeErrorList());
+                Future<List<KNDB2020PayErrorEntity>> payErrorFuture = queryExecutor.submit(() -> streamingDuplicateCheck
+                        ? KNDB2020DuplicateDetector.detectPayErrors(kndb2020Dao)
+                        : kndb2020Dao.getPayErrorList());
+                try {
+                    // 检查费用表错误
+                    feeErrorList = awaitQuery("getFeeErrorList", feeErrorFuture, submitTime);
+                    addLog(logContent, "步骤3-1: 费用表错误记录数: " + feeErrorList.size());
+                    logger.info("步骤3-1: 费用表错误记录数: {}", feeErrorList.size());
+
+                    // 检查支付表错误
+                    payErrorList = awaitQuery("getPayErrorList", payErrorFuture, submitTime);
+                    addLog(logContent, "步骤3-2: 支付表错误记录数: " + payErrorList.size());
+                    logger.info("步骤3-2: 支付表错误记录数: {}", payErrorList.size());
+                } finally {
+                    // 异常时不再等待另一个查询（执行中的语句由映射文件的 timeout 中止，cancel 不会停止MySQL上的语句）
+                    feeErrorFuture.cancel(false);
+                    payErrorFuture.cancel(false);
+                }
+
+                // 步骤4: 错误月份的学生别差额明细
+                if (drillDownEnabled) {
+                    studentDiscrepancyList = drillDown(monthSummaryList, logContent);
+                }
             } else {
                 addLog(logContent, "步骤3: 所有月份数据正确，无需检查错误表");
                 logger.info("步骤3: 所有月份数据正确，无需检查错误表");
             }
 
+            // 全部正确时保存本次的变更指纹（检查开始前取得的指纹，检查中发生的变更会在下次被发现）
+            if (fingerprint != null && validationSummary.getErrorMonthCount() == 0) {
+                saveCleanVerdict(year, fingerprint, scanTime, validationSummary);
+            }
+
             // 更新贡献统计
             contribution.incrementReadCount();
 
@@ -134,7 +263,7 @@ public class KNDB2020Tasklet implements Tasklet {
 
             // 发送邮件通知（无论是否有错误都发送）
             sendEmailNotification(batchName, description, success, logContent.toString(),
-                    validationSummary, monthSummaryList, feeErrorList, payErrorList);
+                    validationSummary, monthSummaryList, feeErrorList, payErrorList, studentDiscrepancyList);
 
             return RepeatStatus.FINISHED;
 
@@ -150,11 +279,181 @@ public class KNDB2020Tasklet implements Tasklet {
 
             // 异常情况下也发送邮件通知
             sendEmailNotification(batchName, description, success, logContent.toString(),
-                    null, null, null, null);
+                    null, null, null, null, null);
+            throw e;
+        }
+    }
+
+    /**
+     * 等待并行查询的结果
+     * 语句的超时由映射文件的 timeout 在MySQL上中止（驱动抛出超时异常）；
+     * Java侧的等待比它多 AWAIT_GRACE_MILLIS，只是连接本身没有响应时的保险。超时时间从查询提交时开始计算
+     *
+     * @param queryName 查询名（日志用）
+     * @param future 查询结果
+     * @param submitTime 查询提交时间
+     * @return 查询结果
+     */
+    private <T> T awaitQuery(String queryName, Future<T> future, long submitTime) throws Exception {
+        long remainingMillis = TimeUnit.SECONDS.toMillis(queryTimeoutSeconds) + AWAIT_GRACE_MILLIS
+                - (System.currentTimeMillis() - submitTime);
+        try {
+            return future.get(Math.max(remainingMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException(queryName + " 查询超时（" + queryTimeoutSeconds + " 秒）");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
             throw e;
         }
     }
 
+    /**
+     * 并行求出各错误月份的学生别差额明细（每个月份1个查询，在查询用线程池上执行）
+     * 学生别合计与该月的月度汇总不一致时，明细不能说明该月的差额，不采用（只记录合计的差异）
+     * 明细只是调查用的参考信息，取得失败的月份只记录日志，不影响验证结果
+     *
+     * @return 全部错误月份的差额明细（按差额绝对值降序）
+     */
+    private List<KNDB2020StudentDiscrepancyEntity> drillDown(List<KNDB2020MonthSummaryEntity> monthSummaryList,
+            StringBuilder logContent) {
+        addLog(logContent, "步骤4: 取得错误月份的学生别差额明细（每个月份最多 " + drillDownRowCap + " 件）...");
+        logger.info("步骤4: 取得错误月份的学生别差额明细（每个月份最多 {} 件）...", drillDownRowCap);
+
+        long submitTime = System.currentTimeMillis();
+        Map<KNDB2020MonthSummaryEntity, Future<List<KNDB2020StudentDiscrepancyEntity>>> drillDownFutures = new LinkedHashMap<>();
+        for (KNDB2020MonthSummaryEntity monthSummary : monthSummaryList) {
+            if (isErrorMonth(monthSummary)) {
+                String lsnMonth = monthSummary.getLsnMonth();
+                drillDownFutures.put(monthSummary, queryExecutor.submit(() -> kndb2020Dao.getStudentFeeList(lsnMonth)));
+            }
+        }
+
+        List<KNDB2020StudentDiscrepancyEntity> studentDiscrepancyList = new ArrayList<>();
+        try {
+            for (Map.Entry<KNDB2020MonthSummaryEntity, Future<List<KNDB2020StudentDiscrepancyEntity>>> entry
+                    : drillDownFutures.entrySet()) {
+                String lsnMonth = entry.getKey().getLsnMonth();
+                try {
+                    List<KNDB2020StudentDiscrepancyEntity> studentList = awaitQuery(
+                            "getStudentFeeList(" + lsnMonth + ")", entry.getValue(), submitTime);
+                    KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(
+                            entry.getKey(), studentList, drillDownRowCap);
+
+                    if (!breakdown.isConsistent()) {
+                        KNDB2020MonthSummaryEntity studentTotal = breakdown.getStudentTotal();
+                        String mismatch = String.format("应收 %.2f/%.2f, 已支付 %.2f/%.2f, 未支付 %.2f/%.2f",
+                                studentTotal.getShouldPayLsnFee(), entry.getKey().getShouldPayLsnFee(),
+                                studentTotal.getHasPaidLsnFee(), entry.getKey().getHasPaidLsnFee(),
+                                studentTotal.getUnpaidLsnFee(), entry.getKey().getUnpaidLsnFee());
+                        addLog(logContent, "步骤4: " + lsnMonth + " 学生别合计与月度汇总不一致，不采用明细（学生别合计/月度汇总: "
+                                + mismatch + "）");
+                        logger.warn("步骤4: {} 学生别合计与月度汇总不一致，不采用明细（学生别合计/月度汇总: {}）", lsnMonth, mismatch);
+                        continue;
+                    }
+                    studentDiscrepancyList.addAll(breakdown.getDiscrepancies());
+
+                    int discrepancyCount = breakdown.getDiscrepancyCount();
+                    int takenCount = breakdown.getDiscrepancies().size();
+                    addLog(logContent, "步骤4: " + lsnMonth + " 有差额的学生数: " + discrepancyCount
+                            + (discrepancyCount > takenCount ? "（取得前 " + takenCount + " 件）" : ""));
+                    logger.info("步骤4: {} 学生数: {}, 有差额的学生数: {}, 取得件数: {}",
+                            lsnMonth, studentList.size(), discrepancyCount, takenCount);
+                } catch (Exception e) {
+                    addLog(logContent, "步骤4: " + lsnMonth + " 差额明细取得失败: " + e.getMessage());
+                    logger.warn("步骤4: {} 差额明细取得失败", lsnMonth, e);
+                }
+            }
+        } finally {
+            // 只是不再等待（执行中的语句由映射文件的 timeout 中止）
+            for (Future<List<KNDB2020StudentDiscrepancyEntity>> future : drillDownFutures.values()) {
+                future.cancel(false);
+            }
+        }
+
+        studentDiscrepancyList.sort(Comparator.comparing(
+                (KNDB2020StudentDiscrepancyEntity discrepancy) -> discrepancy.getDifference().abs()).reversed());
+        return studentDiscrepancyList;
+    }
+
+    /**
+     * 取得可以沿用的上次验证结果
+     *
+     * @return 上次"全部正确"的验证结果；指纹有变更、到了完整检查的时候、MANUAL执行时返回null
+     */
+    private KNDB2020ValidationSummaryEntity loadCachedCleanVerdict(String year, String fingerprint, String scanTime,
+            String jobMode, StringBuilder logContent) {
+        String cleanFingerprint = watermarkDao.selectWatermark(jobId, WATERMARK_CLEAN_FINGERPRINT + year);
+        String cleanMonthCount = watermarkDao.selectWatermark(jobId, WATERMARK_CLEAN_MONTH_COUNT + year);
+        String cleanScanTime = watermarkDao.selectWatermark(jobId, WATERMARK_CLEAN_SCAN_TIME + year);
+
+        String reason = null;
+        if ("MANUAL".equals(jobMode)) {
+            reason = "MANUAL执行";
+        } else if (cleanFingerprint == null || cleanMonthCount == null || cleanScanTime == null) {
+            reason = "没有上次全部正确的验证结果";
+        } else if (!cleanFingerprint.equals(fingerprint)) {
+            reason = "数据有变更";
+        } else if (!LocalDateTime.parse(cleanScanTime, WATERMARK_FORMATTER).plusDays(fullScanIntervalDays)
+                .isAfter(LocalDateTime.parse(scanTime, WATERMARK_FORMATTER))) {
+            reason = "距上次完整检查已超过 " + fullScanIntervalDays + " 天";
+        }
+
+        if (reason != null) {
+            addLog(logContent, "变更指纹判定: 执行完整检查（" + reason + "）");
+            logger.info("变更指纹判定: 执行完整检查（{}）- 指纹: {}", reason, fingerprint);
+            return null;
+        }
+
+        int monthCount = Integer.parseInt(cleanMonthCount);
+        addLog(logContent, "变更指纹判定: 数据无变更，沿用 " + cleanScanTime + " 的验证结果（全部正确，" + monthCount + " 个月份）");
+        logger.info("变更指纹判定: 数据无变更，沿用 {} 的验证结果 - 指纹: {}", cleanScanTime, fingerprint);
+        return new KNDB2020ValidationSummaryEntity(monthCount, monthCount, 0, "✓ 全部正确！");
+    }
+
+    /**
+     * 保存"全部正确"的验证结果和当时的变更指纹
+     */
+    private void saveCleanVerdict(String year, String fingerprint, String scanTime,
+            KNDB2020ValidationSummaryEntity validationSummary) {
+        watermarkDao.upsertWatermark(jobId, WATERMARK_CLEAN_FINGERPRINT + year, fingerprint);
+        watermarkDao.upsertWatermark(jobId, WATERMARK_CLEAN_MONTH_COUNT + year,
+                String.valueOf(validationSummary.getTotalMonthCount()));
+        watermarkDao.upsertWatermark(jobId, WATERMARK_CLEAN_SCAN_TIME + year, scanTime);
+        logger.info("变更指纹保存 - 年度: {}, 指纹: {}", year, fingerprint);
+    }
+
+    /**
+     * 由月度汇总明细求出年度验证结果汇总（与原 getValidationSummary 的SQL判定相同）
+     * 历年验证（KNDB2020YearValidationTasklet）也使用同一个判定
+     */
+    static KNDB2020ValidationSummaryEntity summarize(List<KNDB2020MonthSummaryEntity> monthSummaryList) {
+        int correctMonthCount = 0;
+        int errorMonthCount = 0;
+        for (KNDB2020MonthSummaryEntity monthSummary : monthSummaryList) {
+            if (monthSummary.getDifference() == null) {
+                continue;
+            }
+            if (isErrorMonth(monthSummary)) {
+                errorMonthCount++;
+            } else {
+                correctMonthCount++;
+            }
+        }
+        String finalResult = errorMonthCount == 0 ? "✓ 全部正确！" : "✗ 仍有错误月份";
+        return new KNDB2020ValidationSummaryEntity(monthSummaryList.size(), correctMonthCount, errorMonthCount, finalResult);
+    }
+
+    /**
+     * 判定月份的应收与(已支付+未支付)是否不一致（差额为null的月份不判定）
+     */
+    static boolean isErrorMonth(KNDB2020MonthSummaryEntity monthSummary) {
+        return monthSummary.getDifference() != null
+                && monthSummary.getDifference().abs().compareTo(TOLERANCE) >= 0;
+    }
+
     /**
      * 添加日志条目（带时间戳）
      */
@@ -195,7 +494,8 @@ public class KNDB2020Tasklet implements Tasklet {
             String logContent, KNDB2020ValidationSummaryEntity validationSummary,
             List<KNDB2020MonthSummaryEntity> monthSummaryList,
             List<KNDB2020FeeErrorEntity> feeErrorList,
-            List<KNDB2020PayErrorEntity> payErrorList) {
+            List<KNDB2020PayErrorEntity> payErrorList,
+            List<KNDB2020StudentDiscrepancyEntity> studentDiscrepancyList) {
 
         // 从数据库邮件管理表提取邮件管理信息
         BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
@@ -204,21 +504,17 @@ public class KNDB2020Tasklet implements Tasklet {
             if (emailService != null) {
                 // 构建友好的邮件内容
                 String emailContent = buildEmailContent(success, logContent, validationSummary,
-                        monthSummaryList, feeErrorList, payErrorList);
-
-                emailService.setFromEmail(mailInfo.getEmailFrom());
+                        monthSummaryList, feeErrorList, payErrorList, studentDiscrepancyList);
 
                 // 给程序维护者发送邮件
-                emailService.setToEmails(mailInfo.getMailToDevloper());
-                emailService.sendBatchNotification(jobName, description, success, emailContent);
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, emailContent);
 
                 // 如果用户邮件不为空，则给用户发送邮件
                 if (!mailInfo.getEmailToUser().isEmpty()){
-                    emailService.setToEmails(mailInfo.getEmailToUser());
                     // 给用户发送更简洁的内容
                     String userEmailContent = buildUserEmailContent(success, validationSummary,
                             monthSummaryList, feeErrorList, payErrorList);
-                    emailService.sendBatchNotification(jobName, description, success, userEmailContent);
+                    emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getEmailToUser(), jobName, description, success, userEmailContent);
                 }
 
                 logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
@@ -238,7 +534,8 @@ public class KNDB2020Tasklet implements Tasklet {
             KNDB2020ValidationSummaryEntity validationSummary,
             List<KNDB2020MonthSummaryEntity> monthSummaryList,
             List<KNDB2020FeeErrorEntity> feeErrorList,
-            List<KNDB2020PayErrorEntity> payErrorList) {
+            List<KNDB2020PayErrorEntity> payErrorList,
+            List<KNDB2020StudentDiscrepancyEntity> studentDiscrepancyList) {
 
         StringBuilder content = new StringBuilder();
 
@@ -276,6 +573,25 @@ public class KNDB2020Tasklet implements Tasklet {
             content.append("\n");
         }
 
+        // 显示错误月份的学生别差额明细
+        if (studentDiscrepancyList != null && !studentDiscrepancyList.isEmpty()) {
+            content.append("【学生别差额明细】按差额绝对值降序（每个月份最多 ").append(drillDownRowCap).append(" 件）\n");
+            content.append(String.format("%-10s %-15s %12s %12s %12s %12s\n",
+                    "月份", "学生ID", "应收", "已支付", "未支付", "差额"));
+            content.append("─".repeat(85)).append("\n");
+
+            for (KNDB2020StudentDiscrepancyEntity discrepancy : studentDiscrepancyList) {
+                content.append(String.format("%-10s %-15s %12.2f %12.2f %12.2f %12.2f\n",
+                        discrepancy.getLsnMonth(),
+                        discrepancy.getStuId(),
+                        discrepancy.getShouldPayLsnFee(),
+                        discrepancy.getHasPaidLsnFee(),
+                        discrepancy.getUnpaidLsnFee(),
+                        discrepancy.getDifference()));
+            }
+            content.append("\n");
+        }
+
         // 显示费用表错误记录
         if (feeErrorList != null && !feeErrorList.isEmpty()) {
             content.append("【费用表错误记录】一个lesson_id对应了多个lsn_fee_id【正确的业务逻辑：t_info_lesson_fee表里，一个lsn_fee_id可以对应多个lesson_id；但是，一个lesson_id只能对应一个lsn_fee_id】\n");
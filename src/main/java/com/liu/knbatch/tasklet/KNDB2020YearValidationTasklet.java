@@ -0,0 +1,122 @@
+package com.liu.knbatch.tasklet;
+
+import com.liu.knbatch.dao.BatchWatermarkDao;
+import com.liu.knbatch.dao.KNDB2020Dao;
+import com.liu.knbatch.entity.KNDB2020MonthSummaryEntity;
+import com.liu.knbatch.entity.KNDB2020ValidationSummaryEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * KNDB2020 历年验证 年度验证任务（每个分区验证1个已结束年度）
+ *
+ * 业务逻辑：
+ * 1. 按年度范围查询该年度的指纹（走排课日期索引，只读该年度的数据），和上次验证时保存的指纹比较
+ * 2. 指纹相同：该年度的课费数据没有变更，直接沿用上次的验证结果（不查询视图）
+ * 3. 指纹不同（或者没有上次的结果）：查询该年度的月度汇总并验证，保存验证结果和指纹
+ * 验证结果保存在分区的 ExecutionContext 里，由 KNDB2020HistoryReportTasklet 汇总。
+ *
+ * 已结束年度的数据原则上不再变更，所以缓存没有有效期，只有指纹变化时才重新验证。
+ * 保存的是验证前取得的指纹，验证中发生的变更会在下次执行时被发现。
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB2020YearValidationTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020YearValidationTasklet.class);
+
+    public static final String YEAR_STEP_NAME = "KNDB2020_YEAR_STEP";
+
+    // 分区 ExecutionContext 的键
+    public static final String KEY_TOTAL_MONTH_COUNT = "totalMonthCount";
+    public static final String KEY_CORRECT_MONTH_COUNT = "correctMonthCount";
+    public static final String KEY_ERROR_MONTH_COUNT = "errorMonthCount";
+    public static final String KEY_ERROR_MONTHS = "errorMonths";
+    public static final String KEY_CACHED = "cached";
+
+    // 水位线种类（后面接年度）
+    private static final String WATERMARK_YEAR_FINGERPRINT = "YEAR_FINGERPRINT_";
+    private static final String WATERMARK_YEAR_RESULT = "YEAR_RESULT_";
+    private static final String WATERMARK_YEAR_ERROR_MONTHS = "YEAR_ERROR_MONTHS_";
+    private String jobId = "KNDB2020";
+
+    @Autowired
+    private KNDB2020Dao kndb2020Dao;
+    @Autowired
+    private BatchWatermarkDao watermarkDao;
+
+    // 月度汇总从月度课费台账表读取（台账由 KNDB2020_LEDGER_STEP 刷新）
+    @Value("${knbatch.kndb2020.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        long startTime = System.currentTimeMillis();
+        ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        String year = executionContext.getString("year");
+        String fingerprint = kndb2020Dao.selectYearFingerprint(year + "-01-01", (Integer.parseInt(year) + 1) + "-01-01");
+
+        // 指纹没有变化时沿用上次的验证结果
+        String cachedFingerprint = watermarkDao.selectWatermark(jobId, WATERMARK_YEAR_FINGERPRINT + year);
+        String cachedResult = watermarkDao.selectWatermark(jobId, WATERMARK_YEAR_RESULT + year);
+        if (fingerprint.equals(cachedFingerprint) && cachedResult != null) {
+            String[] counts = cachedResult.split(",");
+            String errorMonths = watermarkDao.selectWatermark(jobId, WATERMARK_YEAR_ERROR_MONTHS + year);
+
+            putResult(executionContext, Integer.parseInt(counts[0]), Integer.parseInt(counts[1]),
+                    Integer.parseInt(counts[2]), errorMonths == null ? "" : errorMonths, true);
+            logger.info("KNDB2020 历年验证 {} 年度 - 数据无变更，沿用上次的验证结果: {} - 指纹: {}", year, cachedResult, fingerprint);
+            return RepeatStatus.FINISHED;
+        }
+
+        List<KNDB2020MonthSummaryEntity> monthSummaryList = ledgerEnabled
+                ? kndb2020Dao.getLedgerMonthSummaryList(year)
+                : kndb2020Dao.getMonthSummaryList(year);
+        KNDB2020ValidationSummaryEntity validationSummary = KNDB2020Tasklet.summarize(monthSummaryList);
+
+        StringJoiner errorMonths = new StringJoiner(",");
+        for (KNDB2020MonthSummaryEntity monthSummary : monthSummaryList) {
+            if (KNDB2020Tasklet.isErrorMonth(monthSummary)) {
+                errorMonths.add(monthSummary.getLsnMonth());
+            }
+        }
+
+        // 指纹最后保存：中途失败时指纹不一致，下次会重新验证
+        watermarkDao.upsertWatermark(jobId, WATERMARK_YEAR_RESULT + year, validationSummary.getTotalMonthCount()
+                + "," + validationSummary.getCorrectMonthCount() + "," + validationSummary.getErrorMonthCount());
+        watermarkDao.upsertWatermark(jobId, WATERMARK_YEAR_ERROR_MONTHS + year, errorMonths.toString());
+        watermarkDao.upsertWatermark(jobId, WATERMARK_YEAR_FINGERPRINT + year, fingerprint);
+
+        putResult(executionContext, validationSummary.getTotalMonthCount(), validationSummary.getCorrectMonthCount(),
+                validationSummary.getErrorMonthCount(), errorMonths.toString(), false);
+        contribution.incrementReadCount();
+
+        logger.info("KNDB2020 历年验证 {} 年度 - 重新验证完成 - 总月份数: {}, 错误月份数: {}, 耗时: {} ms",
+                year, validationSummary.getTotalMonthCount(), validationSummary.getErrorMonthCount(),
+                System.currentTimeMillis() - startTime);
+        return RepeatStatus.FINISHED;
+    }
+
+    private void putResult(ExecutionContext executionContext, int totalMonthCount, int correctMonthCount,
+            int errorMonthCount, String errorMonths, boolean cached) {
+        executionContext.putInt(KEY_TOTAL_MONTH_COUNT, totalMonthCount);
+        executionContext.putInt(KEY_CORRECT_MONTH_COUNT, correctMonthCount);
+        executionContext.putInt(KEY_ERROR_MONTH_COUNT, errorMonthCount);
+        executionContext.putString(KEY_ERROR_MONTHS, errorMonths);
+        executionContext.put(KEY_CACHED, cached);
+    }
+}
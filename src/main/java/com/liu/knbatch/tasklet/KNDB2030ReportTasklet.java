@@ -0,0 +1,172 @@
+package com.liu.knbatch.tasklet;
+
+import com.liu.knbatch.config.BatchMailInfo;
+import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.listener.KNDB2030AdjustmentListener;
+import com.liu.knbatch.service.SimpleEmailService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * KNDB2030 课费预支付再调整 执行结果汇总任务
+ *
+ * 业务逻辑：
+ * 1. 收集本次作业各月份分区 KNDB2030_STEP（分块处理）的执行结果
+ * 2. 按月份汇总读取件数、调整件数、跳过件数、耗时，列出被跳过的预支付记录
+ * 3. 有调整记录、有跳过记录、或者分块处理失败时发送邮件通知
+ *
+ * @author Liu
+ * @version 1.0.0
+ */
+@Component
+public class KNDB2030ReportTasklet implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2030ReportTasklet.class);
+
+    public static final String ADJUST_STEP_NAME = "KNDB2030_STEP";
+
+    private String jobId = "KNDB2030";
+
+    @Autowired
+    private BatchMailConfigDao mailDao;
+
+    @Autowired(required = false)
+    private SimpleEmailService emailService;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        String batchName = "KNDB2030";
+        String description = "预支付课费再调整";
+        StringBuilder logContent = new StringBuilder();
+
+        List<StepExecution> partitions = new ArrayList<>();
+        for (StepExecution stepExecution : chunkContext.getStepContext().getStepExecution()
+                .getJobExecution().getStepExecutions()) {
+            if (stepExecution.getStepName().startsWith(ADJUST_STEP_NAME)) {
+                partitions.add(stepExecution);
+            }
+        }
+        partitions.sort(Comparator.comparing(
+                (StepExecution stepExecution) -> stepExecution.getExecutionContext().getString("yearMonth", "")));
+
+        int readCount = 0;
+        int adjustedCount = 0;
+        int skippedCount = 0;
+        boolean success = true;
+        List<String> skippedItems = new ArrayList<>();
+
+        addLog(logContent, "========== " + batchName + " 批处理执行完成 ==========");
+        addLog(logContent, "批处理名称: " + batchName);
+        addLog(logContent, "对象月份数: " + partitions.size());
+        for (StepExecution partition : partitions) {
+            ExecutionContext executionContext = partition.getExecutionContext();
+            String yearMonth = executionContext.getString("yearMonth", "");
+            int adjustedTotal = executionContext.getInt(KNDB2030AdjustmentListener.KEY_ADJUSTED_TOTAL, partition.getWriteCount());
+            int skippedTotal = executionContext.getInt(KNDB2030AdjustmentListener.KEY_SKIPPED_TOTAL, partition.getSkipCount());
+            long executionTime = partition.getEndTime() != null && partition.getStartTime() != null
+                    ? partition.getEndTime().getTime() - partition.getStartTime().getTime() : 0;
+
+            readCount += partition.getReadCount();
+            adjustedCount += partition.getWriteCount();
+            skippedCount += partition.getSkipCount();
+            success &= ExitStatus.COMPLETED.getExitCode().equals(partition.getExitStatus().getExitCode());
+
+            String detailInfo = String.format("  - %s 状态: %s, 发现: %d, 调整: %d, 跳过: %d, 提交: %d, 回滚: %d, 耗时: %d ms",
+                    yearMonth, partition.getExitStatus().getExitCode(), partition.getReadCount(),
+                    partition.getWriteCount(), partition.getSkipCount(),
+                    partition.getCommitCount(), partition.getRollbackCount(), executionTime);
+            if (adjustedTotal != partition.getWriteCount() || skippedTotal != partition.getSkipCount()) {
+                detailInfo += String.format("（重启前后合计 调整: %d, 跳过: %d）", adjustedTotal, skippedTotal);
+            }
+            addLog(logContent, detailInfo);
+            logger.info(detailInfo);
+
+            if (executionContext.containsKey(KNDB2030AdjustmentListener.KEY_SKIPPED_ITEMS)) {
+                for (String skippedItem : (List<String>) executionContext.get(KNDB2030AdjustmentListener.KEY_SKIPPED_ITEMS)) {
+                    skippedItems.add(yearMonth + " " + skippedItem);
+                }
+            }
+            for (Throwable throwable : partition.getFailureExceptions()) {
+                addLog(logContent, "  " + yearMonth + " 错误信息: " + throwable.getMessage());
+            }
+        }
+
+        addLog(logContent, "执行状态: " + (success ? "SUCCESS" : "ERROR"));
+        addLog(logContent, "发现预支付再调整记录数: " + readCount);
+        addLog(logContent, "执行预支付再调整记录数: " + adjustedCount);
+        addLog(logContent, "跳过记录数: " + skippedCount);
+        if (!skippedItems.isEmpty()) {
+            addLog(logContent, "被跳过的预支付记录（请人工确认）:");
+            for (String skippedItem : skippedItems) {
+                addLog(logContent, "  - " + skippedItem);
+            }
+        }
+        addLog(logContent, "执行结束时间: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        addLog(logContent, "================================================");
+
+        logger.info("========== {} 批处理执行完成 - 月份数: {}, 读取: {}, 调整: {}, 跳过: {} ==========",
+                batchName, partitions.size(), readCount, adjustedCount, skippedCount);
+
+        // 只有当调整/跳过记录数大于0，或者处理失败时才发送邮件通知
+        if (!success || adjustedCount > 0 || !skippedItems.isEmpty()) {
+            sendEmailNotification(batchName, description, success, logContent.toString());
+        } else {
+            logger.info("预支付再调整记录数 = 0，无需发送邮件通知");
+        }
+
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * 添加日志条目（带时间戳）
+     */
+    private void addLog(StringBuilder logContent, String message) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        logContent.append(String.format("[%s] %s\n", timestamp, message));
+    }
+
+    /**
+     * 发送邮件通知
+     */
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent) {
+
+        // 从数据库邮件管理表提取邮件管理信息
+        BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
+
+        try {
+            if (emailService != null) {
+                // 给程序维护者发送邮件
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
+
+                // 如果用户邮件不为空，则给用户发送邮件
+                if (!mailInfo.getEmailToUser().isEmpty()){
+                    emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getEmailToUser(), jobName, description, success, logContent);
+                }
+
+                logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
+            } else {
+                logger.info("邮件服务未启用，跳过邮件发送 - jobName: {}", jobName);
+            }
+        } catch (Exception e) {
+            logger.error("发送邮件通知时出错 - jobName: {}, error: {}", jobName, e.getMessage(), e);
+            // 不要因为邮件发送失败而影响批处理任务的状态
+        }
+    }
+}
@@ -4,14 +4,14 @@ import com.liu.knbatch.config.BatchMailInfo;
 import com.liu.knbatch.dao.BatchMailConfigDao;
 import com.liu.knbatch.dao.KNDB4000Dao;
 import com.liu.knbatch.entity.KNDB4000Entity;
+import com.liu.knbatch.service.IsoWeekCalendar;
 import com.liu.knbatch.service.SimpleEmailService;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.WeekFields;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +20,7 @@ import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 
@@ -30,6 +31,11 @@ import org.springframework.stereotype.Component;
  * 1. 获取自动排课更新记录
  * 2. 如果对象周已经排课了，则停止处理
  * 3. 如果对象周尚未排课，则执行对象周自动排课操作
+ *
+ * 年度周次表的滚动生成：基准日期所在年度起 future-years 年后为止的全部周次记录，
+ * 按周开始日一次性 UPSERT（1条多行INSERT ... ON DUPLICATE KEY UPDATE）。
+ * 已存在的周保留排课状态（fixed_status），可以重复执行；错过某次执行时下次执行会补上，
+ * KNDB4010 和主程序也不会读到空表或只生成了一部分的表。
  * 
  * @author Liu
  * @version 1.0.0
@@ -44,9 +50,15 @@ public class KNDB4000Tasklet implements Tasklet {
     private KNDB4000Dao kndb4000Dao;
     @Autowired
     private BatchMailConfigDao mailDao;
+    @Autowired
+    private IsoWeekCalendar isoWeekCalendar;
 
     @Autowired(required = false)
     private SimpleEmailService emailService;
+
+    // 基准年度之后再生成的年数（0: 只生成基准年度）
+    @Value("${knbatch.kndb4000.future-years:1}")
+    private int futureYears;
     
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
@@ -54,8 +66,9 @@ public class KNDB4000Tasklet implements Tasklet {
         String batchName = "KNDB4000";
         String description = "年度周次表生成";
         boolean success = false;
-        int deletedCount = 0;
-        int insertedCount = 0;
+        int weekCount = 0;
+        int upsertedCount = 0;
+        int baseYear = LocalDate.now().getYear();
         StringBuilder logContent = new StringBuilder();
         
         addLog(logContent, "========== " + batchName + " 批处理开始执行 ==========");
@@ -71,27 +84,29 @@ public class KNDB4000Tasklet implements Tasklet {
             addLog(logContent, "批处理参数 - 基准日期: " + baseDate + ", 执行模式: " + jobMode);
             logger.info("批处理参数 - 基准日期: {}, 执行模式: {}", baseDate, jobMode);
             
-            // 步骤1: 删除去年的年度周次表生成记录
-            addLog(logContent, "步骤1: 查看该日期所在的星期的排课状态信息...");
-            logger.info("步骤1: 查看该日期所在的星期的排课状态信息...");
-            
-            deletedCount = kndb4000Dao.deleteAll();
-        
-            addLog(logContent, "步骤1: 删除年度周次表记录 - : " + deletedCount + " 条");
-            logger.info("步骤1: 删除年度周次表记录 - : {} 条", deletedCount);
-            
-            // 步骤2: 执行新年度的年度周次表生成
-            int year = LocalDate.now().getYear(); // 获取年份部分
-            addLog(logContent, "步骤2: 新年度周次表生成开始 - 当前年度 : " + year + " 年");
-            logger.info("步骤2: 新年度周次表生成开始 - 当前年度 : {} 年", year);
-            
-            insertedCount = insertWeeksForYear(year, logContent);
+            // 步骤1: 生成基准年度起的周次记录
+            baseYear = LocalDate.parse(baseDate, DateTimeFormatter.ofPattern("yyyyMMdd")).getYear();
+            int lastYear = baseYear + Math.max(futureYears, 0);
+            addLog(logContent, "步骤1: 年度周次表生成开始 - 对象年度 : " + baseYear + " 年 ～ " + lastYear + " 年");
+            logger.info("步骤1: 年度周次表生成开始 - 对象年度 : {} 年 ～ {} 年", baseYear, lastYear);
+
+            List<KNDB4000Entity> statusList = buildWeeks(baseYear, lastYear, logContent);
+            weekCount = statusList.size();
+
+            addLog(logContent, "步骤1: 年度周次表生成结束  - 生成周次 : " + weekCount + " 条");
+            logger.info("步骤1: 年度周次表生成结束  - 生成周次 : {} 条", weekCount);
+
+            // 步骤2: 按周开始日一次性 UPSERT（已排课状态保持不变）
+            addLog(logContent, "步骤2: 年度周次表 UPSERT 开始...");
+            logger.info("步骤2: 年度周次表 UPSERT 开始...");
+
+            upsertedCount = kndb4000Dao.upsertFixedLessonStatusList(statusList);
+
+            addLog(logContent, "步骤2: 年度周次表 UPSERT 完成 - 受影响行数 : " + upsertedCount);
+            logger.info("步骤2: 年度周次表 UPSERT 完成 - 受影响行数 : {}", upsertedCount);
 
-            addLog(logContent, "步骤2: 新年度周次表生成结束  - 生成记录 : " + insertedCount + " 条");
-            logger.info("步骤2: 新年度周次表生成结束  - 生成记录 : {} 条", insertedCount);
-            
             success = true;
-            logExecutionResult(batchName, "SUCCESS", deletedCount, insertedCount, startTime, logContent);
+            logExecutionResult(batchName, "SUCCESS", weekCount, upsertedCount, startTime, logContent);
             
             return RepeatStatus.FINISHED;
             
@@ -101,11 +116,11 @@ public class KNDB4000Tasklet implements Tasklet {
             logger.error("========== {} 批处理执行异常 ==========", batchName, e);
             
             success = false;
-            logExecutionResult(batchName, "ERROR", deletedCount, insertedCount, startTime, logContent);
+            logExecutionResult(batchName, "ERROR", weekCount, upsertedCount, startTime, logContent);
             throw e;
         } finally {
             // 发送邮件通知
-            sendEmailNotification(batchName, description, success, logContent.toString());
+            sendEmailNotification(batchName, description, success, logContent.toString(), baseYear);
         }
     }
     
@@ -122,8 +137,8 @@ public class KNDB4000Tasklet implements Tasklet {
      * 
      * @param batchName 批处理名称
      * @param status 执行状态
-     * @param readCount 读取记录数
-     * @param writeCount 写入记录数
+     * @param readCount 生成周次数
+     * @param writeCount UPSERT受影响行数
      * @param startTime 开始时间
      * @param logContent 日志内容收集器
      */
@@ -134,8 +149,8 @@ public class KNDB4000Tasklet implements Tasklet {
         addLog(logContent, "========== " + batchName + " 批处理执行完成 ==========");
         addLog(logContent, "批处理名称: " + batchName);
         addLog(logContent, "执行状态: " + status);
-        addLog(logContent, "删除记录数: " + readCount);
-        addLog(logContent, "插入记录数: " + writeCount);
+        addLog(logContent, "生成周次数: " + readCount);
+        addLog(logContent, "UPSERT受影响行数: " + writeCount);
         addLog(logContent, "执行时间: " + executionTime + " ms (" + (executionTime / 1000.0) + " 秒)");
         addLog(logContent, "执行结束时间: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
         addLog(logContent, "================================================");
@@ -143,85 +158,65 @@ public class KNDB4000Tasklet implements Tasklet {
         logger.info("========== {} 批处理执行完成 ==========", batchName);
         logger.info("批处理名称: {}", batchName);
         logger.info("执行状态: {}", status);
-        logger.info("删除记录数: {}", readCount);
-        logger.info("插入记录数: {}", writeCount);
+        logger.info("生成周次数: {}", readCount);
+        logger.info("UPSERT受影响行数: {}", writeCount);
         logger.info("执行时间: {} ms ({} 秒)", executionTime, executionTime / 1000.0);
         logger.info("执行结束时间: {}", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
         logger.info("================================================");
     }
 
     /**
-     * 为指定年份插入周次记录
+     * 生成指定年度范围的周次记录（周次是ISO周次，与MySQL的 WEEKOFYEAR() 相同）
+     * 从 fromYear 年1月1日所在周的周一开始，到周一在 toYear 年内的最后一周为止
      * 
-     * @param year 年份
+     * @param fromYear 开始年份
+     * @param toYear 结束年份（包含）
      * @param logContent 日志内容收集器
-     * @return 插入的记录数
+     * @return 周次记录列表
      */
-    private int insertWeeksForYear(int year, StringBuilder logContent) {
-        LocalDate date = LocalDate.of(year, 1, 1);
-        WeekFields weekFields = WeekFields.of(Locale.getDefault());
-        int cnt = 0;
+    private List<KNDB4000Entity> buildWeeks(int fromYear, int toYear, StringBuilder logContent) {
+        List<KNDB4000Entity> statusList = new ArrayList<>();
         
-        addLog(logContent, "开始为 " + year + " 年生成周次表...");
+        addLog(logContent, "开始为 " + fromYear + " 年 ～ " + toYear + " 年生成周次表...");
         
-        while (date.getYear() == year) {
-            int weekNumber = date.get(weekFields.weekOfWeekBasedYear());
-            LocalDate weekStart = date.with(DayOfWeek.MONDAY);
-            LocalDate weekEnd = date.with(DayOfWeek.SUNDAY);
-
-            // 将 LocalDate 转换成"yyyy-MM-dd"的字符串日期格式
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String weekStartStr = weekStart.format(formatter);
-            String weekEndStr = weekEnd.format(formatter);
-
-            if (weekStart.getYear() < year) {
-                date = date.plusWeeks(1);
-                continue;
-            }
-
+        for (IsoWeekCalendar.Week week : isoWeekCalendar.weeksOfYears(fromYear, toYear)) {
             KNDB4000Entity status = new KNDB4000Entity();
-            status.setWeekNumber(weekNumber);
-            status.setStartWeekDate(weekStartStr);
-            status.setEndWeekDate(weekEndStr);
-
-            kndb4000Dao.insertFixedLessonStatus(status);
+            status.setWeekNumber(week.getWeekNumber());
+            status.setStartWeekDate(week.getStartWeekDate());
+            status.setEndWeekDate(week.getEndWeekDate());
+            statusList.add(status);
             
-            // 每10条记录记录一次进度
-            if (cnt % 10 == 0) {
-                addLog(logContent, "已生成第 " + (cnt + 1) + " 周记录: 第" + weekNumber + "周 (" + weekStartStr + " 至 " + weekEndStr + ")");
+            // 每个年度的第1周记录一次进度
+            if (week.getWeekNumber() == 1) {
+                addLog(logContent, "已生成第 " + statusList.size() + " 周记录: 第" + week.getWeekNumber() + "周 ("
+                        + week.getStartWeekDate() + " 至 " + week.getEndWeekDate() + ")");
             }
-
-            date = date.plusWeeks(1);
-            cnt++;
         }
         
-        addLog(logContent, "年度周次表生成完成，共生成 " + cnt + " 条记录");
-        return cnt;
+        addLog(logContent, "年度周次表生成完成，共生成 " + statusList.size() + " 条记录");
+        return statusList;
     }
     
     /**
      * 发送邮件通知
      */
-    private void sendEmailNotification(String jobName, String description, boolean success, String logContent) {
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent,
+                                       int baseYear) {
 
         // 从数据库邮件管理表提取邮件管理信息
         BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
 
         try {
             if (emailService != null) {
-                emailService.setFromEmail(mailInfo.getEmailFrom());
                 // 给程序维护者发送邮件
-                emailService.setToEmails(mailInfo.getMailToDevloper());
-                emailService.sendBatchNotification(jobName, description, success, logContent);
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
 
                 // 如果用户邮件不为空，则给用户发送邮件
                 if (!mailInfo.getEmailToUser().isEmpty()){
-                    emailService.setToEmails(mailInfo.getEmailToUser());
-                    String mailContent = mailInfo.getMailContentForUser();
-                    String currentYear = String.valueOf(LocalDate.now().getYear());
-                    mailContent.replace("YYYY", currentYear);
+                    String mailContent = mailInfo.getMailContentForUser()
+                            .replace("YYYY", String.valueOf(baseYear));
                 
-                    emailService.sendBatchNotification(jobName, description, success, mailContent);
+                    emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getEmailToUser(), jobName, description, success, mailContent);
                 }
 
                 logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
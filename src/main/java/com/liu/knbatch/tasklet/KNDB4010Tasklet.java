@@ -4,6 +4,10 @@ import com.liu.knbatch.config.BatchMailInfo;
 import com.liu.knbatch.dao.BatchMailConfigDao;
 import com.liu.knbatch.dao.KNDB4010Dao;
 import com.liu.knbatch.entity.KNDB4010Entity;
+import com.liu.knbatch.service.IsoWeekCalendar;
+import com.liu.knbatch.service.KNDB4010JavaScheduleEngine;
+import com.liu.knbatch.service.KNDB4010ScheduleEngine;
+import com.liu.knbatch.service.KNDB4010ScheduleResult;
 import com.liu.knbatch.service.SimpleEmailService;
 
 import org.slf4j.Logger;
@@ -13,19 +17,29 @@ import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * KNDB4010 次周自动排课正 业务处理任务
  * 概要：观妮通常在每周日的晚上对下一周的课程进行一周排课，此Batch处理就是替代她执行一周排课
  * 业务逻辑：
- * 1. 获取自动排课更新记录
- * 2. 如果对象周已经排课了，则停止处理
- * 3. 如果对象周尚未排课，则执行对象周自动排课操作
+ * 1. 获取对象范围（次日所在周的前 catch-up-weeks 周 ～ 后 lookahead-weeks 周）内尚未排课的周
+ * 2. 如果对象范围的周都已经排课了，则停止处理
+ * 3. 按星期从早到晚执行自动排课操作，每个星期一个事务，排课完成后更新该星期的排课状态
+ *    （错过了周日执行的星期，下次执行时会被补排；某个星期失败时其他星期继续处理，最后作业失败）
+ * 4. 每个星期的新增课程数、排课耗时、锁等待、警告等统计输出到报告
+ * 排课由排课引擎执行（KNDB4010ScheduleEngine：procedure 存储过程 / java Java版），
+ * 作业参数 scheduleEngine（启动参数 --schedule.engine）优先，没有时使用 knbatch.kndb4010.schedule-engine 的设定
  * 
  * @author Liu
  * @version 1.0.0
@@ -35,17 +49,40 @@ public class KNDB4010Tasklet implements Tasklet {
     
     private static final Logger logger = LoggerFactory.getLogger(KNDB4010Tasklet.class);
     private String jobId = "KNDB4010";
-    private String startWeekDate;
-    private String endWeekDate;
 
 
     @Autowired
     private KNDB4010Dao kndb4010Dao;
     @Autowired
     private BatchMailConfigDao mailDao;
+    @Autowired
+    private IsoWeekCalendar isoWeekCalendar;
+    @Autowired
+    private List<KNDB4010ScheduleEngine> scheduleEngines;
 
     @Autowired(required = false)
     private SimpleEmailService emailService;
+
+    // 每个星期的排课在独立的事务里执行（和步骤的事务分开提交）
+    private final TransactionTemplate weekTransactionTemplate;
+
+    // 往前补排的周数（0: 不补排，只处理次日所在的周以后；1: 也处理基准日期所在的周）
+    // 默认不补排：补排会为已经过去的日期生成课程，需要确认后再打开
+    @Value("${knbatch.kndb4010.catch-up-weeks:0}")
+    private int catchUpWeeks;
+
+    // 预排的周数（1: 只处理次日所在的周）
+    @Value("${knbatch.kndb4010.lookahead-weeks:1}")
+    private int lookaheadWeeks;
+
+    // 排课引擎（procedure: 存储过程；java: Java版）
+    @Value("${knbatch.kndb4010.schedule-engine:procedure}")
+    private String defaultScheduleEngine;
+
+    public KNDB4010Tasklet(PlatformTransactionManager transactionManager) {
+        this.weekTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.weekTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
     
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
@@ -55,6 +92,11 @@ public class KNDB4010Tasklet implements Tasklet {
         boolean success = false;
         int processedCount = 0;
         int updatedCount = 0;
+        int createdLessonCount = 0;
+        long procedureMillis = 0;
+        // 排课周期（本Tasklet是单例，同一作业可能被并发启动，所以不保存在成员变量里）
+        String startWeekDate = "";
+        String endWeekDate = "";
         StringBuilder logContent = new StringBuilder();
         
         addLog(logContent, "========== " + batchName + " 批处理开始执行 ==========");
@@ -66,6 +108,8 @@ public class KNDB4010Tasklet implements Tasklet {
                     .getJobParameters().get("baseDate");
             String jobMode = (String) chunkContext.getStepContext()
                     .getJobParameters().get("jobMode");
+            KNDB4010ScheduleEngine scheduleEngine = resolveScheduleEngine(
+                    (String) chunkContext.getStepContext().getJobParameters().get("scheduleEngine"));
 
             // 日期格式化器（yyyyMMdd）
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
@@ -79,59 +123,117 @@ public class KNDB4010Tasklet implements Tasklet {
             // 转回字符串格式（yyyyMMdd）
             baseDate = nextDate.format(formatter);
             
-            addLog(logContent, "批处理参数 - 基准日期: " + baseDate + ", 执行模式: " + jobMode);
-            logger.info("批处理参数 - 基准日期: {}, 执行模式: {}", baseDate, jobMode);
-            
-            // 步骤1: 获取排课钢琴错误级别的课程记录
-            addLog(logContent, "步骤1: 查看该日期所在的星期的排课状态信息...");
-            logger.info("步骤1: 查看该日期所在的星期的排课状态信息...");
+            addLog(logContent, "批处理参数 - 基准日期: " + baseDate + ", 执行模式: " + jobMode + ", 排课引擎: " + scheduleEngine.getName());
+            logger.info("批处理参数 - 基准日期: {}, 执行模式: {}, 排课引擎: {}", baseDate, jobMode, scheduleEngine.getName());
             
-            KNDB4010Entity kndb4010Entity = kndb4010Dao.getFixedStatusInfo(baseDate.replaceAll("(\\d{4})(\\d{2})(\\d{2})", "$1-$2-$3"));
-        
-            int fixedStatus = kndb4010Entity.getFixedStatus();
+            // 步骤1: 获取对象范围内尚未排课的周
+            addLog(logContent, "步骤1: 查看对象范围内各星期的排课状态信息...");
+            logger.info("步骤1: 查看对象范围内各星期的排课状态信息...");
             
-            addLog(logContent, "步骤1: 查实该星期的排课状态是 - : " + fixedStatus);
-            logger.info("步骤1: 查实该星期的排课状态是 - : {}", fixedStatus);
+            // 次日所在周的周开始日由ISO周历求出，周次表按周开始日查找
+            IsoWeekCalendar.Week targetWeek = isoWeekCalendar.weekOf(nextDate);
+            KNDB4010Entity kndb4010Entity = kndb4010Dao.getFixedStatusInfo(targetWeek.getStartWeekDate());
+            if (kndb4010Entity == null) {
+                throw new IllegalStateException("年度周次表里没有该星期（" + targetWeek.getStartWeekDate() + "至"
+                        + targetWeek.getEndWeekDate() + "）的记录，请先执行KNDB4000生成年度周次表");
+            }
+
+            // 对象范围：往前补排 catch-up-weeks 周（错过执行的周），往后预排到 lookahead-weeks 周为止
+            String fromStartWeekDate = isoWeekCalendar.weekOf(
+                    targetWeek.getStartDate().minusWeeks(Math.max(catchUpWeeks, 0))).getStartWeekDate();
+            String toStartWeekDate = isoWeekCalendar.weekOf(
+                    targetWeek.getStartDate().plusWeeks(Math.max(lookaheadWeeks, 1) - 1)).getStartWeekDate();
+            List<KNDB4010Entity> unfixedWeeks = kndb4010Dao.selectUnfixedWeeks(fromStartWeekDate, toStartWeekDate);
+
+            addLog(logContent, "步骤1: 对象范围 " + fromStartWeekDate + " ～ " + toStartWeekDate
+                    + " 的星期中，尚未排课的星期数 - : " + unfixedWeeks.size());
+            logger.info("步骤1: 对象范围 {} ～ {} 的星期中，尚未排课的星期数 - : {}",
+                    fromStartWeekDate, toStartWeekDate, unfixedWeeks.size());
             
-            if (fixedStatus == 1) {
-                String message = "该星期的课程，即" + kndb4010Entity.getStartWeekDate() + "至" + kndb4010Entity.getEndWeekDate() + "的课程已经排课完了.";
+            if (unfixedWeeks.isEmpty()) {
+                String message = "对象范围的课程，即" + fromStartWeekDate + "开始的星期至" + toStartWeekDate + "开始的星期的课程已经排课完了.";
                 addLog(logContent, message);
                 logger.info(message);
                 
                 success = true;
-                logExecutionResult(batchName, "SUCCESS", processedCount, updatedCount, startTime, logContent);
+                logExecutionResult(batchName, "SUCCESS", processedCount, createdLessonCount, startTime, logContent);
                 return RepeatStatus.FINISHED;
             }
             
-            // 步骤2: 执行下一周的一周排课作业
-            String startDate = kndb4010Entity.getStartWeekDate();
-            String endDate = kndb4010Entity.getEndWeekDate();
+            // 步骤2: 按星期从早到晚执行一周排课作业，每个星期一个事务（排课和排课状态更新一起提交）
+            addLog(logContent, "步骤2: 开始执行一周排课作业...");
+            logger.info("步骤2: 开始执行一周排课作业...");
 
-            // 给成员变量赋值
-            this.startWeekDate = startDate;
-            this.endWeekDate = endDate;
-            
-            addLog(logContent, "步骤2: 开始执行下一周的一周排课作业...");
-            addLog(logContent, "排课周期: " + startDate + " 至 " + endDate);
-            logger.info("步骤2: 开始执行下一周的一周排课作业...");
-            
-            kndb4010Dao.doLsnWeeklySchedual(startDate, endDate,"kn-lsn-");
-            processedCount = 1; // 执行了一次排课操作
+            List<String> failedWeeks = new ArrayList<>();
+            Exception firstFailure = null;
+            for (KNDB4010Entity week : unfixedWeeks) {
+                String startDate = week.getStartWeekDate();
+                String endDate = week.getEndWeekDate();
+                long weekStartTime = System.currentTimeMillis();
 
-            addLog(logContent, "步骤2: 下一周的一周排课作业完成");
-            logger.info("步骤2: 下一周的一周排课作业完成");
-            
-            // 更新对象排课周的排课状态
-            addLog(logContent, "更新: 排课状态表更新开始...");
-            logger.info("更新: 排课状态表更新开始...");
-            
-            updatedCount = kndb4010Dao.updateWeeklyBatchStatus(startDate, endDate);
-            
-            addLog(logContent, "更新: 完成，有" + updatedCount + "条记录被更新");
-            logger.info("更新: 完成，有{}条记录被更新", updatedCount);
+                try {
+                    int[] weekUpdatedCount = new int[1];
+                    KNDB4010ScheduleResult scheduleResult = weekTransactionTemplate.execute(status -> {
+                        // 同一周被其他执行排完了的话，不再重复排课
+                        Integer currentStatus = kndb4010Dao.selectFixedStatusForUpdate(startDate);
+                        if (currentStatus != null && currentStatus == 1) {
+                            return null;
+                        }
+                        KNDB4010ScheduleResult weekResult = scheduleEngine.schedule(startDate, endDate, "kn-lsn-");
+                        weekUpdatedCount[0] = kndb4010Dao.updateWeeklyBatchStatus(startDate, endDate);
+                        return weekResult;
+                    });
+
+                    long weekTime = System.currentTimeMillis() - weekStartTime;
+                    if (scheduleResult == null) {
+                        addLog(logContent, "  - 排课周期: " + startDate + " 至 " + endDate + " 已由其他执行排课完了，跳过 (" + weekTime + " ms)");
+                        logger.info("  - 排课周期: {} 至 {} 已由其他执行排课完了，跳过 ({} ms)", startDate, endDate, weekTime);
+                        continue;
+                    }
+
+                    processedCount++;
+                    updatedCount += weekUpdatedCount[0];
+                    createdLessonCount += scheduleResult.getCreatedLessonCount();
+                    procedureMillis += scheduleResult.getDurationMillis();
+                    // 用户邮件的排课周期：排课完成的第一周的开始日 ～ 最后一周的结束日
+                    if (startWeekDate.isEmpty()) {
+                        startWeekDate = startDate;
+                    }
+                    endWeekDate = endDate;
+
+                    addLog(logContent, "  - 排课周期: " + startDate + " 至 " + endDate + " 排课完成，排课状态更新 " + weekUpdatedCount[0] + " 条 (" + weekTime + " ms)");
+                    addLog(logContent, "    " + scheduleResult.toReportText());
+                    logger.info("  - 排课周期: {} 至 {} 排课完成，排课状态更新 {} 条 ({} ms)", startDate, endDate, weekUpdatedCount[0], weekTime);
+                    logger.info("    {}", scheduleResult.toReportText());
+                } catch (Exception e) {
+                    // 失败的星期已经回滚，其他星期继续处理
+                    long weekTime = System.currentTimeMillis() - weekStartTime;
+                    failedWeeks.add(startDate + "至" + endDate);
+                    if (firstFailure == null) {
+                        firstFailure = e;
+                    }
+                    addLog(logContent, "  - 排课周期: " + startDate + " 至 " + endDate + " 排课失败 (" + weekTime + " ms): " + e.getMessage());
+                    logger.error("  - 排课周期: {} 至 {} 排课失败 ({} ms)", startDate, endDate, weekTime, e);
+                }
+            }
+
+            contribution.getStepExecution().getExecutionContext().putString("startWeekDate", startWeekDate);
+            contribution.getStepExecution().getExecutionContext().putString("endWeekDate", endWeekDate);
+            contribution.getStepExecution().getExecutionContext().putInt("createdLessonCount", createdLessonCount);
+            contribution.getStepExecution().getExecutionContext().putLong("procedureMillis", procedureMillis);
+            contribution.incrementWriteCount(createdLessonCount);
+
+            addLog(logContent, "步骤2: 一周排课作业完成 - 排课完成 " + processedCount + " 周，失败 " + failedWeeks.size()
+                    + " 周，新增课程 " + createdLessonCount + " 节，排课状态更新 " + updatedCount + " 条，存储过程耗时合计 " + procedureMillis + " ms");
+            logger.info("步骤2: 一周排课作业完成 - 排课完成 {} 周，失败 {} 周，新增课程 {} 节，排课状态更新 {} 条，存储过程耗时合计 {} ms",
+                    processedCount, failedWeeks.size(), createdLessonCount, updatedCount, procedureMillis);
+
+            if (firstFailure != null) {
+                throw new IllegalStateException("一周排课失败的星期: " + failedWeeks, firstFailure);
+            }
             
             success = true;
-            logExecutionResult(batchName, "SUCCESS", processedCount, updatedCount, startTime, logContent);
+            logExecutionResult(batchName, "SUCCESS", processedCount, createdLessonCount, startTime, logContent);
             
         } catch (Exception e) {
             addLog(logContent, "========== " + batchName + " 批处理执行异常 ==========");
@@ -139,16 +241,36 @@ public class KNDB4010Tasklet implements Tasklet {
             logger.error("========== {} 批处理执行异常 ==========", batchName, e);
             
             success = false;
-            logExecutionResult(batchName, "ERROR", processedCount, updatedCount, startTime, logContent);
+            logExecutionResult(batchName, "ERROR", processedCount, createdLessonCount, startTime, logContent);
             throw e;
         } finally {
             // 发送邮件通知
-            sendEmailNotification(batchName, description, success, logContent.toString());
+            sendEmailNotification(batchName, description, success, logContent.toString(), startWeekDate, endWeekDate);
         }
 
         return RepeatStatus.FINISHED;
     }
     
+    /**
+     * 取得本次执行使用的排课引擎
+     *
+     * @param engineParameter 作业参数 scheduleEngine（可以为null）
+     */
+    private KNDB4010ScheduleEngine resolveScheduleEngine(String engineParameter) {
+        String engineName = engineParameter != null && !engineParameter.trim().isEmpty()
+                ? engineParameter.trim() : defaultScheduleEngine;
+        for (KNDB4010ScheduleEngine engine : scheduleEngines) {
+            if (engine.getName().equalsIgnoreCase(engineName)) {
+                return engine;
+            }
+        }
+        if (KNDB4010JavaScheduleEngine.ENGINE_NAME.equalsIgnoreCase(engineName)) {
+            throw new IllegalArgumentException("Java排课引擎没有启用（knbatch.kndb4010.java-engine.enabled=false），"
+                    + "与存储过程的排课结果核对之前不能使用");
+        }
+        throw new IllegalArgumentException("不支持的排课引擎: " + engineName);
+    }
+
     /**
      * 添加日志条目（带时间戳）
      */
@@ -162,8 +284,8 @@ public class KNDB4010Tasklet implements Tasklet {
      * 
      * @param batchName 批处理名称
      * @param status 执行状态
-     * @param readCount 读取记录数
-     * @param writeCount 写入记录数
+     * @param readCount 读取记录数（排课完成的周数）
+     * @param writeCount 写入记录数（新增的课程数）
      * @param startTime 开始时间
      * @param logContent 日志内容收集器
      */
@@ -193,7 +315,8 @@ public class KNDB4010Tasklet implements Tasklet {
     /**
      * 发送邮件通知
      */
-    private void sendEmailNotification(String jobName, String description, boolean success, String logContent) {
+    private void sendEmailNotification(String jobName, String description, boolean success, String logContent,
+                                       String startWeekDate, String endWeekDate) {
 
         // 从数据库邮件管理表提取邮件管理信息
         BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
@@ -201,19 +324,14 @@ public class KNDB4010Tasklet implements Tasklet {
         try {
             if (emailService != null) {
                 // 给程序维护者发送邮件
-                emailService.setFromEmail(mailInfo.getEmailFrom());
-                emailService.setToEmails(mailInfo.getMailToDevloper());
-
-                emailService.sendBatchNotification(jobName, description, success, logContent);
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description, success, logContent);
 
                 // 如果用户邮件不为空，则给用户发送邮件
                 if (!mailInfo.getEmailToUser().isEmpty()){
-                    emailService.setFromEmail(mailInfo.getEmailFrom());
-                    emailService.setToEmails(mailInfo.getEmailToUser());
                     String mailContent = mailInfo.getMailContentForUser();
-                    mailContent = mailContent.replace("FROMDATE", this.startWeekDate)
-                        .replace("TODATE", this.endWeekDate);
-                    emailService.sendBatchNotification(jobName, description, success, mailContent);
+                    mailContent = mailContent.replace("FROMDATE", startWeekDate)
+                        .replace("TODATE", endWeekDate);
+                    emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getEmailToUser(), jobName, description, success, mailContent);
                 }
 
                 logger.info("邮件通知发送完成 - jobName: {}, success: {}", jobName, success);
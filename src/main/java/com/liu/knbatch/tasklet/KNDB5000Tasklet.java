@@ -3,7 +3,15 @@ package com.liu.knbatch.tasklet;
 import com.liu.knbatch.config.BatchMailInfo;
 import com.liu.knbatch.dao.BatchMailConfigDao;
 import com.liu.knbatch.dao.KNDB5000Dao;
+import com.liu.knbatch.entity.KNDB5000ChunkIndexEntity;
 import com.liu.knbatch.entity.KNDB5000Entity;
+import com.liu.knbatch.entity.KNDB5000ManifestEntity;
+import com.liu.knbatch.entity.KNDB5000ManifestFileEntity;
+import com.liu.knbatch.service.KNDB5000BackupChain;
+import com.liu.knbatch.service.KNDB5000BackupVerifier;
+import com.liu.knbatch.service.KNDB5000ChunkStore;
+import com.liu.knbatch.service.KNDB5000DumpStreamer;
+import com.liu.knbatch.service.KNDB5000ParallelDumper;
 import com.liu.knbatch.service.SimpleEmailService;
 
 import org.slf4j.Logger;
@@ -17,12 +25,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,9 +45,12 @@ import java.util.stream.Stream;
  * 业务逻辑：
  * 1. 检查数据库连接状态
  * 2. 创建备份目录（如果不存在）
- * 3. 执行mysqldump命令备份数据库
- * 4. 验证备份文件完整性
- * 5. 清理过期备份文件（保留最近30天）
+ * 3. 执行mysqldump命令备份数据库（输出在JVM里流式压缩后写入文件，见 KNDB5000DumpStreamer）
+ *    knbatch.backup.mode=parallel 时按表并行导出到备份目录，并生成备份清单（见 KNDB5000ParallelDumper）
+ *    knbatch.backup.mode=incremental 时只导出上次备份以后有变化的表，定期全量备份（见 KNDB5000BackupChain）
+ *    knbatch.backup.mode=chunk 时输出按内容切分成块，只保存新的块，备份记录为块一览（见 KNDB5000ChunkStore）
+ * 4. 验证备份文件完整性（结构检查在写入时完成，这里确认文件大小，写入 SHA-256 校验文件）
+ * 5. 清理过期备份文件（保留最近30天），再校验保留的以前的备份（见 KNDB5000BackupVerifier）
  * 6. 发送备份结果邮件通知
  * 
  * @author Liu
@@ -51,6 +67,16 @@ public class KNDB5000Tasklet implements Tasklet {
     private KNDB5000Dao kndb5000Dao;
     @Autowired
     private BatchMailConfigDao mailDao;
+    @Autowired
+    private KNDB5000DumpStreamer dumpStreamer;
+    @Autowired
+    private KNDB5000ParallelDumper parallelDumper;
+    @Autowired
+    private KNDB5000BackupVerifier backupVerifier;
+    @Autowired
+    private KNDB5000BackupChain backupChain;
+    @Autowired
+    private KNDB5000ChunkStore chunkStore;
 
     @Autowired(required = false)
     private SimpleEmailService emailService;
@@ -79,6 +105,18 @@ public class KNDB5000Tasklet implements Tasklet {
     @Value("${knbatch.deploy.enviroment}")
     private String deployEnvironment;
     
+    // 备份方式（single: 整个数据库一个文件；parallel: 按表并行导出到备份目录；incremental: 按表增量备份；chunk: 块存储）
+    @Value("${knbatch.backup.mode:single}")
+    private String backupMode;
+    
+    // 清理时是否再校验保留的以前的备份（重新计算 SHA-256）
+    @Value("${knbatch.backup.verify.retained.enabled:true}")
+    private boolean verifyRetainedEnabled;
+    
+    // 块存储方式时，验证步骤里是否从块存储恢复一遍（确认可以恢复，并测量恢复速度）
+    @Value("${knbatch.backup.chunk.verify-restore:false}")
+    private boolean chunkVerifyRestore;
+    
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
         long startTime = System.currentTimeMillis();
@@ -97,9 +135,13 @@ public class KNDB5000Tasklet implements Tasklet {
                     .getJobParameters().get("baseDate");
             String jobMode = (String) chunkContext.getStepContext()
                     .getJobParameters().get("jobMode");
+            // 增量备份方式时，指定 forceFullBackup=true（启动参数 --force.full.backup=true）则这次执行全量备份
+            boolean forceFullBackup = "true".equalsIgnoreCase((String) chunkContext.getStepContext()
+                    .getJobParameters().get("forceFullBackup"));
             
-            addLog(logContent, "批处理参数 - 基准日期: " + baseDate + ", 执行模式: " + jobMode);
-            logger.info("批处理参数 - 基准日期: {}, 执行模式: {}", baseDate, jobMode);
+            addLog(logContent, "批处理参数 - 基准日期: " + baseDate + ", 执行模式: " + jobMode
+                    + (forceFullBackup ? ", 强制全量备份" : ""));
+            logger.info("批处理参数 - 基准日期: {}, 执行模式: {}, 强制全量备份: {}", baseDate, jobMode, forceFullBackup);
             
             // 步骤1: 检查数据库连接
             addLog(logContent, "步骤1: 检查数据库连接状态...");
@@ -127,7 +169,14 @@ public class KNDB5000Tasklet implements Tasklet {
             
             String backupPath = determineBackupPath();
             String timestamp = LocalDateTime.now().format(DATETIME_FORMATTER);
-            String backupFileName = String.format("%s_bk_%s.sql", databaseName, timestamp);
+            boolean incrementalMode = "incremental".equalsIgnoreCase(backupMode);
+            boolean parallelMode = incrementalMode || "parallel".equalsIgnoreCase(backupMode);
+            boolean chunkMode = "chunk".equalsIgnoreCase(backupMode);
+            // 并行备份时是备份目录名（不带扩展名），块存储时是块一览的文件名
+            String backupFileName = parallelMode
+                    ? String.format("%s_bk_%s", databaseName, timestamp)
+                    : String.format("%s_bk_%s%s", databaseName, timestamp,
+                            chunkMode ? KNDB5000ChunkStore.INDEX_SUFFIX : dumpStreamer.getFileExtension());
             String fullBackupPath = Paths.get(backupPath, backupFileName).toString();
             
             backupInfo = new KNDB5000Entity(backupFileName, fullBackupPath);
@@ -154,7 +203,17 @@ public class KNDB5000Tasklet implements Tasklet {
             addLog(logContent, "步骤4: 开始执行数据库备份...");
             logger.info("步骤4: 开始执行数据库备份...");
             
-            boolean backupResult = performDatabaseBackup(databaseName, fullBackupPath, logContent);
+            boolean backupResult;
+            if (incrementalMode) {
+                KNDB5000ManifestEntity previous = selectIncrementalBase(backupPath, databaseName, forceFullBackup, logContent);
+                backupResult = performParallelBackup(databaseName, fullBackupPath, true, previous, backupInfo, logContent);
+            } else if (parallelMode) {
+                backupResult = performParallelBackup(databaseName, fullBackupPath, false, null, backupInfo, logContent);
+            } else if (chunkMode) {
+                backupResult = performChunkBackup(databaseName, fullBackupPath, backupInfo, logContent);
+            } else {
+                backupResult = performDatabaseBackup(databaseName, fullBackupPath, backupInfo, logContent);
+            }
             
             if (!backupResult) {
                 throw new RuntimeException("数据库备份执行失败");
@@ -164,24 +223,54 @@ public class KNDB5000Tasklet implements Tasklet {
             addLog(logContent, "步骤5: 验证备份文件...");
             logger.info("步骤5: 验证备份文件...");
             
+            // 内容的结构检查和 SHA-256 在写入时已完成（不再读一遍文件），这里确认写入后的文件大小没有变化
             File backupFile = new File(fullBackupPath);
-            if (!backupFile.exists() || backupFile.length() == 0) {
-                throw new RuntimeException("备份文件不存在或为空");
+            if (parallelMode) {
+                // 并行备份：备份目录和备份清单存在（各文件的 SHA-256 记录在备份清单里）
+                if (!backupFile.isDirectory() || !new File(backupFile, KNDB5000ParallelDumper.MANIFEST_FILE_NAME).exists()) {
+                    throw new RuntimeException("备份目录或备份清单不存在");
+                }
+                // 按清单解析恢复用的文件（增量备份时包括沿用的以前的备份里的文件），确认全部存在
+                List<Path> restoreFiles = backupChain.resolveRestoreFiles(backupFile.toPath());
+                long linkedCount = restoreFiles.stream().filter(path -> !path.startsWith(backupFile.toPath())).count();
+                addLog(logContent, "恢复用文件: " + restoreFiles.size() + " 个（沿用以前的备份: " + linkedCount + " 个）");
+                logger.info("恢复用文件: {} 个（沿用以前的备份: {} 个）", restoreFiles.size(), linkedCount);
+            } else if (chunkMode) {
+                // 块存储：块一览里的块全部存在（块的内容在写入时已计算 SHA-256）
+                List<String> missingChunks = chunkStore.findMissingChunks(backupFile.toPath(), databaseName);
+                if (!missingChunks.isEmpty()) {
+                    throw new RuntimeException("块存储里缺少块: " + missingChunks.size() + " 个");
+                }
+                if (chunkVerifyRestore) {
+                    verifyChunkRestore(backupFile.toPath(), databaseName, logContent);
+                }
+                addLog(logContent, "SHA-256: " + backupInfo.getBackupSha256() + "（mysqldump 的输出全体）");
+            } else {
+                if (!backupFile.exists() || backupFile.length() == 0) {
+                    throw new RuntimeException("备份文件不存在或为空");
+                }
+                if (backupFile.length() != backupInfo.getBackupFileSize()) {
+                    throw new RuntimeException("备份文件大小与写入的大小不一致（写入: " + backupInfo.getBackupFileSize()
+                            + ", 实际: " + backupFile.length() + "）");
+                }
+                Path checksumFile = backupVerifier.writeChecksumFile(backupFile.toPath(), backupInfo.getBackupSha256());
+                addLog(logContent, "SHA-256: " + backupInfo.getBackupSha256() + "（校验文件: " + checksumFile.getFileName() + "）");
+                logger.info("SHA-256: {}, 校验文件: {}", backupInfo.getBackupSha256(), checksumFile);
             }
             
-            backupInfo.setBackupFileSize(backupFile.length());
             backupInfo.setBackupEndTime(LocalDateTime.now());
             backupInfo.setBackupStatus("SUCCESS");
             
             addLog(logContent, "备份文件验证成功");
-            addLog(logContent, "备份文件大小: " + formatBytes(backupFile.length()));
-            logger.info("备份文件验证成功，大小: {}", formatBytes(backupFile.length()));
+            addLog(logContent, "备份文件大小: " + formatBytes(backupInfo.getBackupFileSize())
+                    + (dumpStreamer.isCompressEnabled() || chunkMode ? "（压缩前: " + formatBytes(backupInfo.getBackupRawSize()) + "）" : ""));
+            logger.info("备份文件验证成功，大小: {}（压缩前: {}）", formatBytes(backupInfo.getBackupFileSize()), formatBytes(backupInfo.getBackupRawSize()));
             
             // 步骤6: 清理过期备份文件
             addLog(logContent, "步骤6: 清理过期备份文件...");
             logger.info("步骤6: 清理过期备份文件...");
             
-            int deletedFiles = cleanupOldBackups(backupPath, databaseName,logContent);
+            int deletedFiles = cleanupOldBackups(backupPath, databaseName, backupFileName, logContent);
             addLog(logContent, "清理过期备份文件数量: " + deletedFiles);
             logger.info("清理过期备份文件数量: {}", deletedFiles);
             
@@ -255,46 +344,45 @@ public class KNDB5000Tasklet implements Tasklet {
     /**
      * 执行数据库备份
      */
-    private boolean performDatabaseBackup(String databaseName, String backupFilePath, StringBuilder logContent) {
+    private boolean performDatabaseBackup(String databaseName, String backupFilePath, KNDB5000Entity backupInfo,
+                                          StringBuilder logContent) {
         try {
             // 从URL中提取主机和端口
             String host = extractHostFromUrl(datasourceUrl);
             String port = extractPortFromUrl(datasourceUrl);
             
             // 构建mysqldump命令
-            String[] command = {
-                "mysqldump",
-                "--host=" + host,
-                "--port=" + port,
-                "--user=" + dbUsername,
-                "--password=" + dbPassword,
-                "--single-transaction",
-                "--routines",
-                "--triggers",
-                "--quick",
-                "--lock-tables=false",
-                databaseName
-            };
+            List<String> command = buildFullDumpCommand(host, port, databaseName);
             
             addLog(logContent, "执行备份命令: mysqldump --host=" + host + " --port=" + port + " --user=" + dbUsername + " " + databaseName);
             logger.info("执行备份命令: mysqldump --host={} --port={} --user={} {}", host, port, dbUsername, databaseName);
             
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-            processBuilder.redirectOutput(new File(backupFilePath));
-            processBuilder.redirectErrorStream(true);
+            addLog(logContent, "输出方式: " + (dumpStreamer.isCompressEnabled() ? "gzip 流式压缩" : "不压缩"));
             
-            Process process = processBuilder.start();
+            // 标准输出流式写入备份文件，标准错误单独取得（不混入备份文件）
+            KNDB5000DumpStreamer.DumpResult dumpResult = dumpStreamer.dump(command, Paths.get(backupFilePath));
+            backupInfo.setBackupRawSize(dumpResult.getRawBytes());
+            backupInfo.setBackupFileSize(dumpResult.getFileBytes());
+            backupInfo.setBackupSha256(dumpResult.getSha256());
             
-            // 等待备份完成
-            int exitCode = process.waitFor();
+            String stderr = dumpResult.getStderr().trim();
+            if (!stderr.isEmpty()) {
+                addLog(logContent, "mysqldump 标准错误输出:\n" + stderr);
+                logger.warn("mysqldump 标准错误输出: {}", stderr);
+            }
             
-            if (exitCode == 0) {
-                addLog(logContent, "mysqldump执行成功");
+            if (dumpResult.isSuccess()) {
+                addLog(logContent, "mysqldump执行成功 - 原始大小: " + formatBytes(dumpResult.getRawBytes())
+                        + ", 文件大小: " + formatBytes(dumpResult.getFileBytes()) + ", 耗时: " + dumpResult.getElapsedMillis() + " ms");
                 logger.info("mysqldump执行成功");
                 return true;
+            } else if (!dumpResult.getProblems().isEmpty()) {
+                addLog(logContent, "备份文件结构检查不通过: " + String.join("; ", dumpResult.getProblems()));
+                logger.error("备份文件结构检查不通过: {}", dumpResult.getProblems());
+                return false;
             } else {
-                addLog(logContent, "mysqldump执行失败，退出代码: " + exitCode);
-                logger.error("mysqldump执行失败，退出代码: {}", exitCode);
+                addLog(logContent, "mysqldump执行失败，退出代码: " + dumpResult.getExitCode());
+                logger.error("mysqldump执行失败，退出代码: {}", dumpResult.getExitCode());
                 return false;
             }
             
@@ -305,6 +393,181 @@ public class KNDB5000Tasklet implements Tasklet {
         }
     }
     
+    /**
+     * 执行块存储方式的备份（输出按块去重保存）
+     */
+    private boolean performChunkBackup(String databaseName, String indexFilePath, KNDB5000Entity backupInfo,
+                                       StringBuilder logContent) {
+        try {
+            String host = extractHostFromUrl(datasourceUrl);
+            String port = extractPortFromUrl(datasourceUrl);
+            
+            addLog(logContent, "备份方式: 块存储 - mysqldump --host=" + host + " --port=" + port + " --user=" + dbUsername + " " + databaseName);
+            logger.info("备份方式: 块存储 - mysqldump --host={} --port={} --user={} {}", host, port, dbUsername, databaseName);
+            
+            long startTime = System.currentTimeMillis();
+            KNDB5000ChunkIndexEntity index = chunkStore.backup(buildFullDumpCommand(host, port, databaseName),
+                    databaseName, Paths.get(indexFilePath));
+            long elapsedMillis = System.currentTimeMillis() - startTime;
+            
+            // 文件大小是这次新写入的块的合计
+            backupInfo.setBackupRawSize(index.getRawBytes());
+            backupInfo.setBackupFileSize(index.getNewChunkBytes());
+            backupInfo.setBackupSha256(index.getSha256());
+            
+            addLog(logContent, String.format("块存储备份成功 - 原始大小: %s, 块数: %d, 新的块: %d 个（写入: %s）, 耗时: %d ms",
+                    formatBytes(index.getRawBytes()), index.getChunks().size(), index.getNewChunkCount(),
+                    formatBytes(index.getNewChunkBytes()), elapsedMillis));
+            logger.info("块存储备份成功 - 块数: {}, 新的块: {}, 写入: {} 字节", index.getChunks().size(),
+                    index.getNewChunkCount(), index.getNewChunkBytes());
+            return true;
+            
+        } catch (Exception e) {
+            addLog(logContent, "块存储备份时发生异常: " + e.getMessage());
+            logger.error("块存储备份时发生异常", e);
+            return false;
+        }
+    }
+    
+    /**
+     * 从块存储恢复一遍（输出丢弃），确认各块和全体的 SHA-256，测量恢复速度
+     */
+    private void verifyChunkRestore(Path indexFile, String databaseName, StringBuilder logContent) throws Exception {
+        long startTime = System.nanoTime();
+        long restoredBytes;
+        try (OutputStream out = OutputStream.nullOutputStream()) {
+            restoredBytes = chunkStore.restore(indexFile, databaseName, out);
+        }
+        double seconds = Math.max(System.nanoTime() - startTime, 1L) / 1_000_000_000.0;
+        double megabytesPerSecond = restoredBytes / (1024.0 * 1024.0) / seconds;
+        addLog(logContent, String.format("块存储恢复确认成功 - 恢复大小: %s, 耗时: %.2f 秒, 恢复速度: %.1f MB/s",
+                formatBytes(restoredBytes), seconds, megabytesPerSecond));
+        logger.info("块存储恢复确认成功 - 恢复大小: {} 字节, 耗时: {} 秒, 恢复速度: {} MB/s",
+                restoredBytes, String.format("%.2f", seconds), String.format("%.1f", megabytesPerSecond));
+    }
+    
+    /**
+     * 选择增量备份的基准（上次的备份清单）
+     *
+     * @return 上次的备份清单；需要全量备份时为null
+     */
+    private KNDB5000ManifestEntity selectIncrementalBase(String backupPath, String databaseName, boolean forceFullBackup,
+                                                         StringBuilder logContent) throws Exception {
+        KNDB5000ManifestEntity previous = backupChain.findPreviousManifest(Paths.get(backupPath), databaseName);
+        String fullReason = forceFullBackup ? "作业参数指定了全量备份"
+                : backupChain.getFullBackupReason(Paths.get(backupPath), previous, LocalDate.now());
+        if (fullReason != null) {
+            addLog(logContent, "备份种类: 全量备份（" + fullReason + "）");
+            logger.info("备份种类: 全量备份（{}）", fullReason);
+            return null;
+        }
+        addLog(logContent, "备份种类: 增量备份（上次备份: " + previous.getBackupName() + "）");
+        logger.info("备份种类: 增量备份（上次备份: {}）", previous.getBackupName());
+        return previous;
+    }
+    
+    /**
+     * 执行并行备份（按表导出到备份目录）
+     * trackChanges=true 时记录各表的变化判定值，previous 不为null时只导出有变化的表（增量备份）
+     */
+    private boolean performParallelBackup(String databaseName, String backupDirPath, boolean trackChanges,
+                                          KNDB5000ManifestEntity previous, KNDB5000Entity backupInfo,
+                                          StringBuilder logContent) {
+        try {
+            String host = extractHostFromUrl(datasourceUrl);
+            String port = extractPortFromUrl(datasourceUrl);
+            
+            addLog(logContent, "备份方式: 按表并行导出 - mysqldump --host=" + host + " --port=" + port + " --user=" + dbUsername + " " + databaseName);
+            logger.info("备份方式: 按表并行导出 - mysqldump --host={} --port={} --user={} {}", host, port, dbUsername, databaseName);
+            
+            long startTime = System.currentTimeMillis();
+            KNDB5000ManifestEntity manifest = parallelDumper.dump(databaseName, buildConnectionArgs(host, port),
+                    Paths.get(backupDirPath), trackChanges, previous);
+            long elapsedMillis = System.currentTimeMillis() - startTime;
+            
+            // 文件大小是这次写入的文件的合计（增量备份沿用的文件不计入）
+            long rawBytes = 0;
+            long fileBytes = 0;
+            long reusedBytes = 0;
+            int reusedCount = 0;
+            long sumElapsedMillis = 0;
+            for (KNDB5000ManifestFileEntity file : manifest.getFiles()) {
+                if (file.getBaseBackup() != null) {
+                    reusedBytes += file.getFileBytes();
+                    reusedCount++;
+                    addLog(logContent, String.format("  - %s 没有变化，沿用 %s", file.getFile(), file.getBaseBackup()));
+                    continue;
+                }
+                rawBytes += file.getRawBytes();
+                fileBytes += file.getFileBytes();
+                sumElapsedMillis += file.getElapsedMillis();
+                addLog(logContent, String.format("  - %s 行数: %s, 大小: %s, 耗时: %d ms",
+                        file.getFile(), file.getRows() == null ? "-" : file.getRows(), formatBytes(file.getFileBytes()), file.getElapsedMillis()));
+            }
+            backupInfo.setBackupRawSize(rawBytes);
+            backupInfo.setBackupFileSize(fileBytes);
+            
+            if (trackChanges) {
+                addLog(logContent, "备份种类: " + (KNDB5000ManifestEntity.MODE_INCREMENTAL.equals(manifest.getMode())
+                        ? "增量备份（全量备份: " + manifest.getFullBackup() + "）" : "全量备份")
+                        + " - 导出: " + (manifest.getFiles().size() - reusedCount) + " 个, 沿用: " + reusedCount
+                        + " 个（节省: " + formatBytes(reusedBytes) + "）");
+                logger.info("备份种类: {} - 导出: {} 个, 沿用: {} 个", manifest.getMode(),
+                        manifest.getFiles().size() - reusedCount, reusedCount);
+            }
+            addLog(logContent, "并行备份成功 - 文件数: " + manifest.getFiles().size()
+                    + ", 一致性快照: " + (manifest.isConsistent() ? "是" : "否")
+                    + (manifest.getBinlogFile() != null ? ", binlog位置: " + manifest.getBinlogFile() + ":" + manifest.getBinlogPosition() : ""));
+            if (!manifest.isConsistent()) {
+                // 备份本身成功，但恢复后表之间可能不一致，邮件的开头显示警告
+                backupInfo.setWarningMessage("不是一致性快照 - 各表的导出时点不同，恢复后表之间的数据可能不一致"
+                        + "（需要一致的备份时，设定 knbatch.backup.parallel.global-read-lock=true 或使用 single 方式）");
+                addLog(logContent, "【警告】" + backupInfo.getWarningMessage());
+                logger.warn("并行备份不是一致性快照，各表的导出时点不同");
+            }
+            // 各文件导出耗时的合计 ÷ 实际耗时 = 平均同时导出的文件数（不是与整库1个 mysqldump 相比的加速倍数）
+            addLog(logContent, String.format("各文件耗时合计: %d ms, 实际耗时: %d ms, 并行度: %.2f",
+                    sumElapsedMillis, elapsedMillis, elapsedMillis > 0 ? sumElapsedMillis / (double) elapsedMillis : 1.0));
+            logger.info("并行备份成功 - 文件数: {}, 各文件耗时合计: {} ms, 实际耗时: {} ms",
+                    manifest.getFiles().size(), sumElapsedMillis, elapsedMillis);
+            return true;
+            
+        } catch (Exception e) {
+            addLog(logContent, "并行备份时发生异常: " + e.getMessage());
+            logger.error("并行备份时发生异常", e);
+            return false;
+        }
+    }
+    
+    /**
+     * 整个数据库导出的 mysqldump 命令
+     */
+    private List<String> buildFullDumpCommand(String host, String port, String databaseName) {
+        List<String> command = new ArrayList<>(buildConnectionArgs(host, port));
+        command.addAll(Arrays.asList(
+            "--single-transaction",
+            "--routines",
+            "--triggers",
+            "--quick",
+            "--lock-tables=false",
+            databaseName
+        ));
+        return command;
+    }
+    
+    /**
+     * mysqldump 命令和连接选项
+     */
+    private List<String> buildConnectionArgs(String host, String port) {
+        return Arrays.asList(
+            "mysqldump",
+            "--host=" + host,
+            "--port=" + port,
+            "--user=" + dbUsername,
+            "--password=" + dbPassword
+        );
+    }
+    
     /**
      * 从URL中提取主机地址
      */
@@ -326,8 +589,9 @@ public class KNDB5000Tasklet implements Tasklet {
     
     /**
      * 清理过期备份文件 - 修复资源泄漏问题
+     * 清理后再校验保留的以前的备份（当天的备份 currentBackupName 除外）
      */
-    private int cleanupOldBackups(String backupPath, String databaseName, StringBuilder logContent) {
+    private int cleanupOldBackups(String backupPath, String databaseName, String currentBackupName, StringBuilder logContent) {
         int deletedCount = 0;
         try {
             Path backupDir = Paths.get(backupPath);
@@ -340,9 +604,13 @@ public class KNDB5000Tasklet implements Tasklet {
             
             // 使用 try-with-resources 确保资源正确关闭，修复连接泄漏问题
             try (Stream<Path> files = Files.list(backupDir)) {
-                List<Path> oldBackups = files
-                    .filter(path -> path.toString().contains(databaseName + "_bk_"))
-                    .filter(path -> path.toString().endsWith(".sql"))
+                List<Path> backups = files
+                    .filter(path -> path.getFileName().toString().startsWith(databaseName + "_bk_"))
+                    .filter(path -> path.toString().endsWith(".sql") || path.toString().endsWith(".sql.gz")
+                            || path.toString().endsWith(KNDB5000ChunkStore.INDEX_SUFFIX)
+                            || (Files.isDirectory(path) && !path.toString().endsWith(".part")))
+                    .collect(Collectors.toList());
+                List<Path> oldBackups = backups.stream()
                     .filter(path -> {
                         try {
                             long lastModified = Files.getLastModifiedTime(path).toMillis();
@@ -353,10 +621,28 @@ public class KNDB5000Tasklet implements Tasklet {
                         }
                     })
                     .collect(Collectors.toList());
+                
+                // 仍被保留的增量备份引用的备份（沿用的文件所在的备份）暂不删除
+                Set<String> referencedBackups = backupChain.getReferencedBackups(backups.stream()
+                    .filter(path -> Files.isDirectory(path) && !oldBackups.contains(path))
+                    .collect(Collectors.toList()));
+                oldBackups.removeIf(path -> {
+                    if (!referencedBackups.contains(path.getFileName().toString())) {
+                        return false;
+                    }
+                    addLog(logContent, "被保留的增量备份引用，暂不删除: " + path.getFileName());
+                    logger.info("被保留的增量备份引用，暂不删除: {}", path.getFileName());
+                    return true;
+                });
                     
                 for (Path path : oldBackups) {
                     try {
-                        Files.delete(path);
+                        if (Files.isDirectory(path)) {
+                            KNDB5000ParallelDumper.deleteRecursively(path);
+                        } else {
+                            Files.delete(path);
+                            Files.deleteIfExists(KNDB5000BackupVerifier.getChecksumFile(path));
+                        }
                         deletedCount++;
                         addLog(logContent, "删除过期备份文件: " + path.getFileName());
                         logger.info("删除过期备份文件: {}", path.getFileName());
@@ -367,6 +653,23 @@ public class KNDB5000Tasklet implements Tasklet {
                 }
                 
                 addLog(logContent, "清理完成，删除文件数: " + deletedCount);
+                
+                // 块存储：删除不再被任何块一览引用的块
+                KNDB5000ChunkStore.GcResult gcResult = chunkStore.collectGarbage(backupDir, databaseName);
+                if (gcResult != null) {
+                    addLog(logContent, String.format("块存储清理完成 - 保留的备份: %d 个, 块存储使用量: %s（%d 个块）, 删除的块: %d 个（%s）",
+                            gcResult.getIndexCount(), formatBytes(gcResult.getLiveChunkBytes()), gcResult.getLiveChunkCount(),
+                            gcResult.getDeletedChunkCount(), formatBytes(gcResult.getDeletedChunkBytes())));
+                }
+                
+                if (verifyRetainedEnabled) {
+                    List<Path> retainedBackups = backups.stream()
+                        .filter(path -> !oldBackups.contains(path))
+                        .filter(path -> !path.getFileName().toString().equals(currentBackupName))
+                        .sorted()
+                        .collect(Collectors.toList());
+                    verifyRetainedBackups(retainedBackups, databaseName, logContent);
+                }
             }
                 
         } catch (Exception e) {
@@ -376,6 +679,44 @@ public class KNDB5000Tasklet implements Tasklet {
         return deletedCount;
     }
     
+    /**
+     * 再校验保留的以前的备份（校验不通过不影响批处理的结果，在日志和邮件里报告）
+     */
+    private void verifyRetainedBackups(List<Path> retainedBackups, String databaseName, StringBuilder logContent) {
+        long startTime = System.currentTimeMillis();
+        int verifiedCount = 0;
+        int skippedCount = 0;
+        List<String> corrupted = new ArrayList<>();
+        
+        for (Path path : retainedBackups) {
+            try {
+                // 块一览：只确认块存在（块存储的内容不按备份重复读取）
+                List<String> problems = path.toString().endsWith(KNDB5000ChunkStore.INDEX_SUFFIX)
+                        ? chunkStore.findMissingChunks(path, databaseName).stream()
+                                .map(digest -> "缺少块 " + digest).collect(Collectors.toList())
+                        : backupVerifier.verify(path);
+                if (problems == null) {
+                    skippedCount++;
+                } else if (problems.isEmpty()) {
+                    verifiedCount++;
+                } else {
+                    corrupted.add(path.getFileName().toString());
+                    addLog(logContent, "⚠️ 备份校验不通过: " + path.getFileName() + " - " + String.join("; ", problems));
+                    logger.error("备份校验不通过: {} - {}", path.getFileName(), problems);
+                }
+            } catch (Exception e) {
+                corrupted.add(path.getFileName().toString());
+                addLog(logContent, "⚠️ 备份校验失败: " + path.getFileName() + ", 错误: " + e.getMessage());
+                logger.error("备份校验失败: {}", path.getFileName(), e);
+            }
+        }
+        
+        addLog(logContent, String.format("保留备份再校验完成 - 正常: %d, 异常: %d, 无校验信息: %d, 耗时: %d ms",
+                verifiedCount, corrupted.size(), skippedCount, System.currentTimeMillis() - startTime));
+        logger.info("保留备份再校验完成 - 正常: {}, 异常: {} {}, 无校验信息: {}",
+                verifiedCount, corrupted.size(), corrupted, skippedCount);
+    }
+    
     /**
      * 格式化字节数
      */
@@ -428,11 +769,8 @@ public class KNDB5000Tasklet implements Tasklet {
                 // 从数据库邮件管理表提取邮件管理信息
                 BatchMailInfo mailInfo = mailDao.selectMailInfo(jobId);
                 // 给程序维护者发送邮件
-                emailService.setFromEmail(mailInfo.getEmailFrom());
-                emailService.setToEmails(mailInfo.getMailToDevloper());
-
                 String content = buildEmailContent(success, logContent, backupInfo);
-                emailService.sendBatchNotification(jobName, description,success, content);
+                emailService.sendBatchNotification(mailInfo.getEmailFrom(), mailInfo.getMailToDevloper(), jobName, description,success, content);
 
                 // 如果用户邮件不为空，则给用户发送邮件 Testing...
                 // if (!mailInfo.getEmailToUser().isEmpty()){
@@ -460,6 +798,9 @@ public class KNDB5000Tasklet implements Tasklet {
         content.append("数据库备份执行结果通知\n");
         content.append("========================================\n");
         content.append("执行状态: ").append(success ? "成功" : "失败").append("\n");
+        if (backupInfo != null && backupInfo.getWarningMessage() != null) {
+            content.append("【警告】").append(backupInfo.getWarningMessage()).append("\n");
+        }
         
         if (backupInfo != null) {
             content.append("备份文件: ").append(backupInfo.getBackupFileName()).append("\n");
@@ -467,6 +808,13 @@ public class KNDB5000Tasklet implements Tasklet {
             if (backupInfo.getBackupFileSize() != null) {
                 content.append("文件大小: ").append(formatBytes(backupInfo.getBackupFileSize())).append("\n");
             }
+            if (backupInfo.getBackupRawSize() != null && backupInfo.getBackupFileSize() != null
+                    && !backupInfo.getBackupRawSize().equals(backupInfo.getBackupFileSize())) {
+                content.append("压缩前大小: ").append(formatBytes(backupInfo.getBackupRawSize())).append("\n");
+            }
+            if (backupInfo.getBackupSha256() != null) {
+                content.append("SHA-256: ").append(backupInfo.getBackupSha256()).append("\n");
+            }
             if (backupInfo.getBackupStartTime() != null) {
                 content.append("开始时间: ").append(backupInfo.getBackupStartTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n");
             }
@@ -0,0 +1,201 @@
+package com.liu.knbatch.config;
+
+import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.dao.BatchWatermarkDao;
+import com.liu.knbatch.dao.KNDB1010Dao;
+import com.liu.knbatch.dao.MapperTestSupport;
+import com.liu.knbatch.listener.KNDB1010PartitionReportListener;
+import com.liu.knbatch.service.SimpleEmailService;
+import com.liu.knbatch.tasklet.KNDB1010Tasklet;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB1010Config 的分区并行作业的重启测试
+ *
+ * 用内存的 JobRepository 执行分区并行的作业（分区的工作步骤换成不访问数据库的Tasklet）：
+ * 第1次执行分区2失败 → 汇总后作业失败；重启时只重新执行分区2（失败的分区主步骤不能是 ABANDONED），
+ * 汇总也重新执行，汇总内容包括重启前已完成的分区1。
+ */
+class KNDB1010ConfigTest {
+
+    // 分区的执行次数（分区编号 → 次数），分区2第1次执行失败
+    private static final Map<Integer, AtomicInteger> ATTEMPTS = new ConcurrentHashMap<>();
+    private static final Queue<SimpleMailMessage> SENT = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void restartReRunsFailedPartitionAndReportsEarlierPartitions() throws Exception {
+        ATTEMPTS.clear();
+        SENT.clear();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("knbatch.kndb1010.grid-size", "2");
+            properties.put("knbatch.deploy.enviroment", "test");
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+            context.register(TestBatchConfig.class, TestKNDB1010Config.class);
+            context.refresh();
+
+            JobLauncher jobLauncher = context.getBean(JobLauncher.class);
+            Job job = context.getBean("kndb1010Job", Job.class);
+            JobParameters jobParameters = new JobParametersBuilder()
+                    .addString("baseDate", "20250315")
+                    .addString("jobMode", "AUTO")
+                    .toJobParameters();
+
+            JobExecution first = jobLauncher.run(job, jobParameters);
+            assertEquals(BatchStatus.FAILED, first.getStatus());
+            assertEquals(1, SENT.size());
+            assertTrue(SENT.peek().getText().contains("分区2 [S003 ~ S004] 状态: FAILED"), SENT.peek().getText());
+
+            JobExecution restart = jobLauncher.run(job, jobParameters);
+            assertEquals(BatchStatus.COMPLETED, restart.getStatus());
+            assertEquals(first.getJobInstance().getId(), restart.getJobInstance().getId());
+            // 完成的分区1不再执行
+            assertEquals(1, ATTEMPTS.get(1).get());
+            assertEquals(2, ATTEMPTS.get(2).get());
+
+            assertEquals(2, SENT.size());
+            String report = new ArrayList<>(SENT).get(1).getText();
+            assertTrue(report.contains("执行次数: 2（包括重启前的执行）"), report);
+            assertTrue(report.contains("分区1 [S001 ~ S002] 状态: COMPLETED, 读取: 1, 矫正: 1, 无法矫正: 0, 执行次数: 1"), report);
+            assertTrue(report.contains("分区2 [S003 ~ S004] 状态: COMPLETED"), report);
+            assertTrue(report.contains("矫正记录数: 3"), report);
+        }
+    }
+
+    /**
+     * 分区的工作步骤换成不访问数据库的Tasklet（矫正件数 = 分区编号）
+     */
+    @Configuration
+    static class TestKNDB1010Config extends KNDB1010Config {
+
+        @Autowired
+        private StepBuilderFactory steps;
+
+        @Bean("kndb1010WorkerStep")
+        @Override
+        public Step kndb1010WorkerStep() {
+            return steps.get(KNDB1010PartitionReportListener.WORKER_STEP_NAME)
+                    .tasklet((contribution, chunkContext) -> {
+                        int partitionNo = chunkContext.getStepContext().getStepExecution()
+                                .getExecutionContext().getInt("partitionNo");
+                        int attempt = ATTEMPTS.computeIfAbsent(partitionNo, k -> new AtomicInteger()).incrementAndGet();
+                        if (partitionNo == 2 && attempt == 1) {
+                            throw new IllegalStateException("分区2 第1次执行失败");
+                        }
+                        contribution.incrementReadCount();
+                        contribution.incrementWriteCount(partitionNo);
+                        return RepeatStatus.FINISHED;
+                    })
+                    .build();
+        }
+    }
+
+    /**
+     * 内存的 JobRepository（没有 DataSource 时 @EnableBatchProcessing 使用 Map）和 KNDB1010 的依赖
+     */
+    @Configuration
+    @EnableBatchProcessing
+    static class TestBatchConfig {
+
+        @Bean
+        public KNDB1010Dao kndb1010Dao() {
+            return proxy(KNDB1010Dao.class, "selectStudentIdsOfMonth", Arrays.asList("S001", "S002", "S003", "S004"));
+        }
+
+        @Bean
+        public BatchMailConfigDao batchMailConfigDao() {
+            return proxy(BatchMailConfigDao.class, "selectMailInfo",
+                    new BatchMailInfo("KNDB1010", "batch@from.example", "dev@to.example", "", ""));
+        }
+
+        @Bean
+        public BatchWatermarkDao batchWatermarkDao() {
+            return proxy(BatchWatermarkDao.class, null, null);
+        }
+
+        @Bean
+        public SqlSessionFactory sqlSessionFactory() throws Exception {
+            // 工作步骤换掉了，不会连接数据库
+            return MapperTestSupport.sqlSessionFactory(new DriverManagerDataSource("jdbc:mysql://127.0.0.1:1/none"));
+        }
+
+        @Bean
+        public JavaMailSender javaMailSender() {
+            return (JavaMailSender) Proxy.newProxyInstance(JavaMailSender.class.getClassLoader(),
+                    new Class<?>[] {JavaMailSender.class}, (proxy, method, args) -> {
+                        if ("send".equals(method.getName()) && args.length == 1 && args[0] instanceof SimpleMailMessage) {
+                            SENT.add((SimpleMailMessage) args[0]);
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        @Bean
+        public SimpleEmailService simpleEmailService() {
+            return new SimpleEmailService();
+        }
+
+        @Bean
+        public KNDB1010Tasklet kndb1010Tasklet() {
+            return new KNDB1010Tasklet();
+        }
+
+        @Bean
+        public KNDB1010PartitionReportListener kndb1010PartitionReportListener() {
+            return new KNDB1010PartitionReportListener();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, String methodName, Object result) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+                if (method.getName().equals(methodName)) {
+                    return result;
+                }
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                }
+                if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                if ("toString".equals(method.getName())) {
+                    return type.getSimpleName();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+    }
+}
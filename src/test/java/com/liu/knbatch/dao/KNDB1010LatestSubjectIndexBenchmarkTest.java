@@ -0,0 +1,483 @@
+package com.liu.knbatch.dao;
+
+import com.liu.knbatch.entity.KNDB1010Entity;
+import com.liu.knbatch.partition.KNDB1010PartitionProcessor;
+import com.liu.knbatch.partition.KNDB1010Partitioner;
+import com.liu.knbatch.service.KNDB1010LatestSubjectIndex;
+
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * KNDB1010 错误级别判定的基准测试（1万件 / 10万件 / 100万件）
+ *
+ * 比较原来的SQL方式（NOT EXISTS 子查询执行3次：抽出、矫正、验证）
+ * 与内存索引方式（最新级别流式读取1次 → 排课流式判定 → 按级别分组更新 → 重新流式读取验证）。
+ * 正式的视图里放不进这么多数据，所以建立基准用的表（bench_kndb1010_*）：
+ *   bench_kndb1010_doc    : 学生档案（每个学生每个科目3个级别的履历）
+ *   bench_kndb1010_latest : 每个学生每个科目的最新级别（视图，ROW_NUMBER 取最新的1条）
+ *   bench_kndb1010_lesson : 排课（20件里1件是上一个级别，即错误级别），bench_kndb1010_lesson_v 是它的视图
+ * 两种方式都执行映射文件里的SQL（只把视图名、表名换成基准用的表），确认发现的课程相同、
+ * 矫正后剩余错误为0，并输出执行时间。
+ * 另外按分区数 1/2/4/8 执行分区并行处理（与 KNDB1010Config 的工作步骤相同：分区器切分学生ID范围 →
+ * 各分区用自己的连接流式读取 → KNDB1010PartitionProcessor 判定 → 每500件批量更新并提交），
+ * 输出各分区数的执行时间和与1分区相比的倍率。
+ * 会建立和删除表，只能对测试用的数据库执行。
+ * 件数可以用环境变量 KNBATCH_DB_TEST_ROWS 指定（逗号分隔）。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB1010LatestSubjectIndexBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB1010LatestSubjectIndexBenchmarkTest.class);
+
+    private static final String NAMESPACE = "com.liu.knbatch.dao.KNDB1010Dao.";
+    private static final String TARGET_MONTH = "2025-03";
+    private static final int LESSONS_PER_SUBJECT = 5;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    // 与 KNDB1010Tasklet 相同
+    private static final int UPDATE_BATCH_SIZE = 500;
+    // 与 knbatch.kndb1010.commit-interval 的默认值相同
+    private static final int COMMIT_INTERVAL = 500;
+    private static final int[] GRID_SIZES = {1, 2, 4, 8};
+
+    @Test
+    void indexVersusNotExists() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.sqlSessionFactory();
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            Connection connection = session.getConnection();
+            try {
+                createTables(connection);
+                for (int rows : targetRows()) {
+                    loadDocuments(connection, rows);
+
+                    int expected = loadLessons(connection, rows);
+                    long startTime = System.currentTimeMillis();
+                    List<String> bySql = runSql(session);
+                    long sql = System.currentTimeMillis() - startTime;
+                    assertEquals(0, countIncorrect(session));
+
+                    loadLessons(connection, rows);
+                    startTime = System.currentTimeMillis();
+                    List<String> byIndex = runIndex(session);
+                    long index = System.currentTimeMillis() - startTime;
+                    assertEquals(0, countIncorrect(session));
+
+                    assertEquals(expected, bySql.size());
+                    assertEquals(bySql, byIndex);
+                    logger.info("KNDB1010 判定基准 - 排课件数: {}, 错误级别: {}, NOT EXISTS: {} ms, 内存索引: {} ms, 倍率: {}",
+                            rows, byIndex.size(), sql, index, String.format("%.1f", (double) sql / Math.max(index, 1)));
+                }
+            } finally {
+                dropTables(connection);
+            }
+        }
+    }
+
+    @Test
+    void partitionSpeedup() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.sqlSessionFactory();
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            Connection connection = session.getConnection();
+            try {
+                createTables(connection);
+                for (int rows : targetRows()) {
+                    loadDocuments(connection, rows);
+                    long single = 0;
+                    for (int gridSize : GRID_SIZES) {
+                        int expected = loadLessons(connection, rows);
+                        long startTime = System.currentTimeMillis();
+                        int updated = runPartitions(sqlSessionFactory, session, gridSize);
+                        long elapsed = System.currentTimeMillis() - startTime;
+                        assertEquals(expected, updated);
+                        assertEquals(0, countIncorrect(session));
+
+                        if (gridSize == 1) {
+                            single = elapsed;
+                        }
+                        logger.info("KNDB1010 分区基准 - 排课件数: {}, 分区数: {}, 矫正: {}, 耗时: {} ms, 与1分区相比的倍率: {}",
+                                rows, gridSize, updated, elapsed,
+                                String.format("%.1f", (double) single / Math.max(elapsed, 1)));
+                    }
+                }
+            } finally {
+                dropTables(connection);
+            }
+        }
+    }
+
+    /**
+     * 分区并行处理（与 KNDB1010Config 的分区工作步骤相同的步骤，每个分区1个线程）
+     *
+     * @return 矫正件数
+     */
+    private int runPartitions(SqlSessionFactory sqlSessionFactory, SqlSession session, int gridSize) throws Exception {
+        Map<String, ExecutionContext> partitions =
+                new KNDB1010Partitioner(streamingDao(session), TARGET_MONTH.replace("-", "") + "15").partition(gridSize);
+        ExecutorService executor = Executors.newFixedThreadPool(gridSize);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (ExecutionContext partition : partitions.values()) {
+                futures.add(executor.submit(() -> runPartition(sqlSessionFactory,
+                        partition.getString("fromStuId"), partition.getString("toStuId"))));
+            }
+            int updated = 0;
+            for (Future<Integer> future : futures) {
+                updated += future.get();
+            }
+            return updated;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 1个分区：Reader的游标和Writer的事务各用1个连接（与分区工作步骤相同）
+     */
+    private int runPartition(SqlSessionFactory sqlSessionFactory, String fromStuId, String toStuId) throws Exception {
+        try (SqlSession readSession = sqlSessionFactory.openSession(true);
+             SqlSession writeSession = sqlSessionFactory.openSession(false)) {
+            KNDB1010PartitionProcessor processor =
+                    new KNDB1010PartitionProcessor(streamingDao(readSession), fromStuId, toStuId);
+            processor.beforeStep(new StepExecution("bench", new JobExecution(1L)));
+
+            Map<String, Object> parameter = new HashMap<>();
+            parameter.put("targetMonth", TARGET_MONTH);
+            parameter.put("fromStuId", fromStuId);
+            parameter.put("toStuId", toStuId);
+            List<KNDB1010Entity> chunk = new ArrayList<>();
+            int[] updated = new int[1];
+            stream(readSession, "selectLessonsOfStudentRange", parameter, context -> {
+                KNDB1010Entity lesson = processor.process(context.getResultObject());
+                if (lesson == null) {
+                    return;
+                }
+                chunk.add(lesson);
+                if (chunk.size() == COMMIT_INTERVAL) {
+                    updated[0] += write(writeSession, chunk);
+                    chunk.clear();
+                }
+            });
+            updated[0] += write(writeSession, chunk);
+            return updated[0];
+        }
+    }
+
+    /**
+     * 1个提交单位的批量更新（与 MyBatisBatchItemWriter 相同，1条语句 addBatch 后执行并提交）
+     */
+    private int write(SqlSession session, List<KNDB1010Entity> lessons) {
+        if (lessons.isEmpty()) {
+            return 0;
+        }
+        MappedStatement mappedStatement = session.getConfiguration()
+                .getMappedStatement(NAMESPACE + "updateLessonSubjectSubIdByLessonId");
+        String sql = mappedStatement.getBoundSql(lessons.get(0)).getSql().replace("t_info_lesson", "bench_kndb1010_lesson");
+        try (PreparedStatement statement = session.getConnection().prepareStatement(sql)) {
+            for (KNDB1010Entity lesson : lessons) {
+                new DefaultParameterHandler(mappedStatement, lesson, mappedStatement.getBoundSql(lesson))
+                        .setParameters(statement);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            session.getConnection().commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return lessons.size();
+    }
+
+    /**
+     * 原来的SQL方式：抽出 → 矫正 → 验证（各执行1次 NOT EXISTS）
+     */
+    private List<String> runSql(SqlSession session) throws SQLException {
+        List<String> lessonIds = new ArrayList<>();
+        try (PreparedStatement statement = prepare(session, "selectIncorrectPianoLevelLessons", TARGET_MONTH);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                lessonIds.add(resultSet.getString("lesson_id"));
+            }
+        }
+        try (PreparedStatement statement = prepare(session, "updateIncorrectPianoLevelLessons", TARGET_MONTH)) {
+            assertEquals(lessonIds.size(), statement.executeUpdate());
+        }
+        assertEquals(0, countIncorrect(session));
+        Collections.sort(lessonIds);
+        return lessonIds;
+    }
+
+    /**
+     * 内存索引方式（与 KNDB1010Tasklet 的 INDEX 方式相同的步骤）
+     */
+    private List<String> runIndex(SqlSession session) throws SQLException {
+        KNDB1010Dao dao = streamingDao(session);
+        KNDB1010LatestSubjectIndex index = KNDB1010LatestSubjectIndex.load(dao);
+
+        List<KNDB1010Entity> incorrectLessons = new ArrayList<>();
+        dao.streamLessonsOfMonth(TARGET_MONTH, null, context -> {
+            if (index.isIncorrect(context.getResultObject())) {
+                incorrectLessons.add(context.getResultObject());
+            }
+        });
+
+        Map<String, List<String>> lessonIdsBySubId = new LinkedHashMap<>();
+        for (KNDB1010Entity lesson : incorrectLessons) {
+            lessonIdsBySubId.computeIfAbsent(index.latestSubjectSubId(lesson.getStuId(), lesson.getSubjectId()),
+                    k -> new ArrayList<>()).add(lesson.getLessonId());
+        }
+        int updated = 0;
+        for (Map.Entry<String, List<String>> entry : lessonIdsBySubId.entrySet()) {
+            List<String> lessonIds = entry.getValue();
+            for (int from = 0; from < lessonIds.size(); from += UPDATE_BATCH_SIZE) {
+                Map<String, Object> parameter = new HashMap<>();
+                parameter.put("subjectSubId", entry.getKey());
+                parameter.put("lessonIds", lessonIds.subList(from, Math.min(from + UPDATE_BATCH_SIZE, lessonIds.size())));
+                try (PreparedStatement statement = prepare(session, "updateLessonSubjectSubId", parameter)) {
+                    updated += statement.executeUpdate();
+                }
+            }
+        }
+        assertEquals(incorrectLessons.size(), updated);
+
+        int[] remaining = new int[1];
+        dao.streamLessonsOfMonth(TARGET_MONTH, null, context -> {
+            if (index.isIncorrect(context.getResultObject())) {
+                remaining[0]++;
+            }
+        });
+        assertEquals(0, remaining[0]);
+
+        List<String> lessonIds = new ArrayList<>();
+        for (KNDB1010Entity lesson : incorrectLessons) {
+            lessonIds.add(lesson.getLessonId());
+        }
+        Collections.sort(lessonIds);
+        return lessonIds;
+    }
+
+    private int countIncorrect(SqlSession session) throws SQLException {
+        try (PreparedStatement statement = prepare(session, "countIncorrectPianoLevelLessons", TARGET_MONTH);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * 只实现2个流式读取方法和分区用的学生ID一览的DAO（映射文件的SQL换成基准用的表，逐行交给 ResultHandler）
+     */
+    @SuppressWarnings("unchecked")
+    private KNDB1010Dao streamingDao(SqlSession session) {
+        return (KNDB1010Dao) Proxy.newProxyInstance(KNDB1010Dao.class.getClassLoader(),
+                new Class<?>[] {KNDB1010Dao.class}, (proxy, method, args) -> {
+                    Map<String, Object> parameter = new HashMap<>();
+                    ResultHandler<KNDB1010Entity> handler;
+                    if ("selectStudentIdsOfMonth".equals(method.getName())) {
+                        List<String> stuIds = new ArrayList<>();
+                        try (PreparedStatement statement = prepare(session, method.getName(), args[0]);
+                             ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                stuIds.add(resultSet.getString(1));
+                            }
+                        }
+                        return stuIds;
+                    } else if ("streamLatestSubjectInfo".equals(method.getName())) {
+                        parameter.put("fromStuId", args[0]);
+                        parameter.put("toStuId", args[1]);
+                        parameter.put("stuIds", args[2]);
+                        handler = (ResultHandler<KNDB1010Entity>) args[3];
+                    } else if ("streamLessonsOfMonth".equals(method.getName())) {
+                        parameter.put("targetMonth", args[0]);
+                        parameter.put("stuIds", args[1]);
+                        handler = (ResultHandler<KNDB1010Entity>) args[2];
+                    } else {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    stream(session, method.getName(), parameter, handler);
+                    return null;
+                });
+    }
+
+    private void stream(SqlSession session, String statementId, Map<String, Object> parameter,
+                        ResultHandler<KNDB1010Entity> handler) throws SQLException {
+        DefaultResultContext<KNDB1010Entity> context = new DefaultResultContext<>();
+        try (PreparedStatement statement = prepare(session, statementId, parameter);
+             ResultSet resultSet = statement.executeQuery()) {
+            boolean hasLessonId = resultSet.getMetaData().getColumnCount() > 3;
+            while (resultSet.next()) {
+                KNDB1010Entity row = new KNDB1010Entity(resultSet.getString("stu_id"),
+                        resultSet.getString("subject_id"), resultSet.getString("subject_sub_id"));
+                if (hasLessonId) {
+                    row.setLessonId(resultSet.getString("lesson_id"));
+                }
+                context.nextResultObject(row);
+                handler.handleResult(context);
+            }
+        }
+    }
+
+    /**
+     * 映射文件的语句换成基准用的表后准备（参数的设定由 MyBatis 进行）
+     */
+    private PreparedStatement prepare(SqlSession session, String statementId, Object parameter) throws SQLException {
+        MappedStatement mappedStatement = session.getConfiguration().getMappedStatement(NAMESPACE + statementId);
+        BoundSql boundSql = mappedStatement.getBoundSql(parameter);
+        String sql = boundSql.getSql()
+                .replace("v_latest_subject_info_from_student_document", "bench_kndb1010_latest")
+                .replace("v_info_lesson", "bench_kndb1010_lesson_v")
+                .replace("t_info_lesson", "bench_kndb1010_lesson");
+        PreparedStatement statement = mappedStatement.getFetchSize() != null
+                ? session.getConnection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)
+                : session.getConnection().prepareStatement(sql);
+        if (mappedStatement.getFetchSize() != null) {
+            statement.setFetchSize(mappedStatement.getFetchSize());
+        }
+        new DefaultParameterHandler(mappedStatement, parameter, boundSql).setParameters(statement);
+        return statement;
+    }
+
+    private static void createTables(Connection connection) throws SQLException {
+        dropTables(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE bench_kndb1010_doc ("
+                    + " stu_id VARCHAR(32) NOT NULL, subject_id VARCHAR(32) NOT NULL, subject_sub_id VARCHAR(32) NOT NULL,"
+                    + " adjusted_date DATE NOT NULL, PRIMARY KEY (stu_id, subject_id, adjusted_date))");
+            statement.execute("CREATE VIEW bench_kndb1010_latest AS"
+                    + " SELECT stu_id, subject_id, subject_sub_id FROM ("
+                    + "  SELECT stu_id, subject_id, subject_sub_id,"
+                    + "   ROW_NUMBER() OVER (PARTITION BY stu_id, subject_id ORDER BY adjusted_date DESC) AS row_no"
+                    + "  FROM bench_kndb1010_doc) doc"
+                    + " WHERE row_no = 1");
+            statement.execute("CREATE TABLE bench_kndb1010_lesson ("
+                    + " lesson_id VARCHAR(32) NOT NULL PRIMARY KEY, stu_id VARCHAR(32) NOT NULL,"
+                    + " subject_id VARCHAR(32) NOT NULL, subject_sub_id VARCHAR(32) NOT NULL,"
+                    + " schedual_date DATETIME NOT NULL, KEY idx_stu_subject (stu_id, subject_id))");
+            statement.execute("CREATE VIEW bench_kndb1010_lesson_v AS SELECT * FROM bench_kndb1010_lesson");
+        }
+    }
+
+    private static void dropTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP VIEW IF EXISTS bench_kndb1010_latest");
+            statement.execute("DROP VIEW IF EXISTS bench_kndb1010_lesson_v");
+            statement.execute("DROP TABLE IF EXISTS bench_kndb1010_lesson");
+            statement.execute("DROP TABLE IF EXISTS bench_kndb1010_doc");
+        }
+    }
+
+    /**
+     * 学生档案：每个学生2个科目，各3个级别的履历（最新是 Lv3）
+     */
+    private static void loadDocuments(Connection connection, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE bench_kndb1010_doc");
+        }
+        int students = rows / (2 * LESSONS_PER_SUBJECT);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bench_kndb1010_doc VALUES (?, ?, ?, ?)")) {
+            int count = 0;
+            for (int stu = 0; stu < students; stu++) {
+                for (int subject = 1; subject <= 2; subject++) {
+                    for (int level = 1; level <= 3; level++) {
+                        statement.setString(1, studentId(stu));
+                        statement.setString(2, "SUB-" + subject);
+                        statement.setString(3, "SUB-" + subject + "-Lv" + level);
+                        statement.setString(4, "2024-0" + (level * 3) + "-01");
+                        statement.addBatch();
+                        if (++count % INSERT_BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * 排课：每个学生每个科目5件，通算20件里1件是上一个级别（错误级别）
+     *
+     * @return 错误级别的件数
+     */
+    private static int loadLessons(Connection connection, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE bench_kndb1010_lesson");
+        }
+        int students = rows / (2 * LESSONS_PER_SUBJECT);
+        int incorrect = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bench_kndb1010_lesson VALUES (?, ?, ?, ?, ?)")) {
+            int count = 0;
+            for (int stu = 0; stu < students; stu++) {
+                for (int subject = 1; subject <= 2; subject++) {
+                    for (int lesson = 0; lesson < LESSONS_PER_SUBJECT; lesson++) {
+                        int level = 3;
+                        if (count % 20 == 0) {
+                            level = 2;
+                            incorrect++;
+                        }
+                        statement.setString(1, String.format("BENCH-%08d", count));
+                        statement.setString(2, studentId(stu));
+                        statement.setString(3, "SUB-" + subject);
+                        statement.setString(4, "SUB-" + subject + "-Lv" + level);
+                        statement.setString(5, TARGET_MONTH + "-" + String.format("%02d", lesson * 6 + 1) + " 10:00:00");
+                        statement.addBatch();
+                        if (++count % INSERT_BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                }
+            }
+            statement.executeBatch();
+        }
+        return incorrect;
+    }
+
+    private static String studentId(int stu) {
+        return String.format("BENCH-STU-%07d", stu);
+    }
+
+    private static List<Integer> targetRows() {
+        String rows = System.getenv("KNBATCH_DB_TEST_ROWS");
+        List<Integer> targetRows = new ArrayList<>();
+        if (rows != null && !rows.trim().isEmpty()) {
+            for (String row : rows.split(",")) {
+                targetRows.add(Integer.parseInt(row.trim()));
+            }
+            return targetRows;
+        }
+        targetRows.add(10_000);
+        targetRows.add(100_000);
+        targetRows.add(1_000_000);
+        return targetRows;
+    }
+}
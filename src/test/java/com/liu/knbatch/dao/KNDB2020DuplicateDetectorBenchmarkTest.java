@@ -0,0 +1,241 @@
+package com.liu.knbatch.dao;
+
+import com.liu.knbatch.entity.KNDB2020FeeErrorEntity;
+import com.liu.knbatch.entity.KNDB2020IdPairEntity;
+import com.liu.knbatch.entity.KNDB2020PayErrorEntity;
+import com.liu.knbatch.service.KNDB2020DuplicateDetector;
+
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * KNDB2020 重复检查的基准测试（10万件 / 100万件）：流式重复检查 与 原来的 GROUP BY 查询
+ *
+ * 建立基准用的表（bench_kndb2020_fee / bench_kndb2020_pay，与正式的表一样有 (分组ID, 成员ID) 的索引），
+ * 每1000个分组里1个分组有2个成员（重复），另外每100件有1件逻辑删除的重复（不算错误）：
+ *   GROUP BY : 映射文件的 getFeeErrorList / getPayErrorList
+ *   流式     : KNDB2020DuplicateDetector（映射文件的 streamFeeIdPairs / streamPayIdPairs 逐行读取）
+ * 两种方式都执行映射文件里的SQL（只把表名换成基准用的表），确认检出的错误记录相同，并输出执行时间。
+ * 会建立和删除表，只能对测试用的数据库执行。
+ * 件数可以用环境变量 KNBATCH_DB_TEST_ROWS 指定（逗号分隔）。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB2020DuplicateDetectorBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020DuplicateDetectorBenchmarkTest.class);
+
+    private static final String NAMESPACE = "com.liu.knbatch.dao.KNDB2020Dao.";
+    private static final int DUPLICATE_INTERVAL = 1000;
+    private static final int DELETED_INTERVAL = 100;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    @Test
+    void streamingVersusGroupBy() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.sqlSessionFactory();
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            Connection connection = session.getConnection();
+            KNDB2020Dao streamingDao = streamingDao(session);
+            try {
+                createTables(connection);
+                for (int rows : targetRows()) {
+                    int expected = loadTables(connection, rows);
+
+                    long startTime = System.currentTimeMillis();
+                    List<String> feeByGroupBy = selectGroupBy(session, "getFeeErrorList", "lesson_id", "fee_count", "fee_ids");
+                    List<String> payByGroupBy = selectGroupBy(session, "getPayErrorList", "lsn_fee_id", "pay_count", "pay_ids");
+                    long groupBy = System.currentTimeMillis() - startTime;
+
+                    startTime = System.currentTimeMillis();
+                    List<String> feeByStreaming = new ArrayList<>();
+                    for (KNDB2020FeeErrorEntity feeError : KNDB2020DuplicateDetector.detectFeeErrors(streamingDao)) {
+                        feeByStreaming.add(key(feeError.getLessonId(), String.valueOf(feeError.getFeeCount()), feeError.getFeeIds()));
+                    }
+                    List<String> payByStreaming = new ArrayList<>();
+                    for (KNDB2020PayErrorEntity payError : KNDB2020DuplicateDetector.detectPayErrors(streamingDao)) {
+                        payByStreaming.add(key(payError.getLsnFeeId(), String.valueOf(payError.getPayCount()), payError.getPayIds()));
+                    }
+                    long streaming = System.currentTimeMillis() - startTime;
+                    Collections.sort(feeByStreaming);
+                    Collections.sort(payByStreaming);
+
+                    assertEquals(expected, feeByGroupBy.size());
+                    assertEquals(expected, payByGroupBy.size());
+                    assertEquals(feeByGroupBy, feeByStreaming);
+                    assertEquals(payByGroupBy, payByStreaming);
+                    logger.info("KNDB2020 重复检查基准 - 件数: {}, 错误记录: 费用表 {} / 支付表 {}, GROUP BY: {} ms, 流式: {} ms, 倍率: {}",
+                            rows, feeByStreaming.size(), payByStreaming.size(), groupBy, streaming,
+                            String.format("%.1f", (double) groupBy / Math.max(streaming, 1)));
+                }
+            } finally {
+                dropTables(connection);
+            }
+        }
+    }
+
+    /**
+     * 原来的 GROUP BY 查询（映射文件的 getFeeErrorList / getPayErrorList）
+     */
+    private List<String> selectGroupBy(SqlSession session, String statementId, String groupColumn,
+            String countColumn, String idsColumn) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (PreparedStatement statement = prepare(session, statementId);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows.add(key(resultSet.getString(groupColumn), resultSet.getString(countColumn), resultSet.getString(idsColumn)));
+            }
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    /**
+     * 流式读取ID对的DAO（映射文件的 streamFeeIdPairs / streamPayIdPairs 换成基准用的表）
+     */
+    private KNDB2020Dao streamingDao(SqlSession session) {
+        return (KNDB2020Dao) Proxy.newProxyInstance(KNDB2020Dao.class.getClassLoader(),
+                new Class<?>[] {KNDB2020Dao.class}, (proxy, method, args) -> {
+                    if ("streamFeeIdPairs".equals(method.getName()) || "streamPayIdPairs".equals(method.getName())) {
+                        @SuppressWarnings("unchecked")
+                        ResultHandler<KNDB2020IdPairEntity> handler = (ResultHandler<KNDB2020IdPairEntity>) args[0];
+                        streamIdPairs(session, method.getName(), handler);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private void streamIdPairs(SqlSession session, String statementId, ResultHandler<KNDB2020IdPairEntity> handler)
+            throws SQLException {
+        DefaultResultContext<KNDB2020IdPairEntity> context = new DefaultResultContext<>();
+        try (PreparedStatement statement = prepare(session, statementId);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                context.nextResultObject(new KNDB2020IdPairEntity(resultSet.getString("group_id"), resultSet.getString("member_id")));
+                handler.handleResult(context);
+            }
+        }
+    }
+
+    /**
+     * 映射文件的语句换成基准用的表后准备（流式的语句与映射文件相同，fetchSize = Integer.MIN_VALUE）
+     */
+    private PreparedStatement prepare(SqlSession session, String statementId) throws SQLException {
+        MappedStatement mappedStatement = session.getConfiguration().getMappedStatement(NAMESPACE + statementId);
+        BoundSql boundSql = mappedStatement.getBoundSql(null);
+        String sql = boundSql.getSql()
+                .replace("t_info_lesson_fee", "bench_kndb2020_fee")
+                .replace("t_info_lesson_pay", "bench_kndb2020_pay");
+        PreparedStatement statement = session.getConnection().prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (mappedStatement.getFetchSize() != null) {
+            statement.setFetchSize(mappedStatement.getFetchSize());
+        }
+        new DefaultParameterHandler(mappedStatement, null, boundSql).setParameters(statement);
+        return statement;
+    }
+
+    private static void createTables(Connection connection) throws SQLException {
+        dropTables(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE bench_kndb2020_fee ("
+                    + " lsn_fee_id VARCHAR(32) NOT NULL PRIMARY KEY, lesson_id VARCHAR(32) NOT NULL,"
+                    + " del_flg INT NOT NULL DEFAULT 0, KEY idx_lesson_fee (lesson_id, lsn_fee_id))");
+            statement.execute("CREATE TABLE bench_kndb2020_pay ("
+                    + " lsn_pay_id VARCHAR(32) NOT NULL PRIMARY KEY, lsn_fee_id VARCHAR(32) NOT NULL,"
+                    + " del_flg INT NOT NULL DEFAULT 0, KEY idx_fee_pay (lsn_fee_id, lsn_pay_id))");
+        }
+    }
+
+    private static void dropTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_kndb2020_fee");
+            statement.execute("DROP TABLE IF EXISTS bench_kndb2020_pay");
+        }
+    }
+
+    /**
+     * 费用表/支付表各约 rows 件：1个分组1个成员，每1000个分组1个重复，每100个分组1个逻辑删除的重复
+     *
+     * @return 每个表的错误记录数
+     */
+    private static int loadTables(Connection connection, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE bench_kndb2020_fee");
+            statement.execute("TRUNCATE TABLE bench_kndb2020_pay");
+        }
+        int duplicates = 0;
+        try (PreparedStatement fee = connection.prepareStatement("INSERT INTO bench_kndb2020_fee VALUES (?, ?, ?)");
+             PreparedStatement pay = connection.prepareStatement("INSERT INTO bench_kndb2020_pay VALUES (?, ?, ?)")) {
+            int count = 0;
+            for (int group = 0; group < rows; group++) {
+                String groupId = String.format("BENCH-%08d", group);
+                int members = 1;
+                if (group % DUPLICATE_INTERVAL == 0) {
+                    members = 2;
+                    duplicates++;
+                }
+                for (int member = 0; member < members; member++) {
+                    addRow(fee, groupId + "-" + member, groupId, 0);
+                    addRow(pay, groupId + "-" + member, groupId, 0);
+                }
+                if (group % DELETED_INTERVAL == 1) {
+                    addRow(fee, groupId + "-D", groupId, 1);
+                    addRow(pay, groupId + "-D", groupId, 1);
+                }
+                if (++count % INSERT_BATCH_SIZE == 0) {
+                    fee.executeBatch();
+                    pay.executeBatch();
+                }
+            }
+            fee.executeBatch();
+            pay.executeBatch();
+        }
+        return duplicates;
+    }
+
+    private static void addRow(PreparedStatement statement, String id, String groupId, int delFlg) throws SQLException {
+        statement.setString(1, id);
+        statement.setString(2, groupId);
+        statement.setInt(3, delFlg);
+        statement.addBatch();
+    }
+
+    private static List<Integer> targetRows() {
+        String rows = System.getenv("KNBATCH_DB_TEST_ROWS");
+        List<Integer> targetRows = new ArrayList<>();
+        if (rows != null && !rows.trim().isEmpty()) {
+            for (String row : rows.split(",")) {
+                targetRows.add(Integer.parseInt(row.trim()));
+            }
+            return targetRows;
+        }
+        targetRows.add(100_000);
+        targetRows.add(1_000_000);
+        return targetRows;
+    }
+
+    private static String key(String... values) {
+        return String.join("|", values);
+    }
+}
@@ -0,0 +1,70 @@
+package com.liu.knbatch.dao;
+
+import com.liu.knbatch.entity.KNDB2020MonthSummaryEntity;
+import com.liu.knbatch.entity.KNDB2020StudentDiscrepancyEntity;
+import com.liu.knbatch.service.KNDB2020StudentBreakdown;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * getStudentFeeList 与月度汇总视图的核对
+ *
+ * 视图 v_total_lsnfee_with_paid_unpaid_every_month 没有学生ID，学生别课费由课费表/支付表另外求出。
+ * 对今年和去年的全部月份（或环境变量 KNBATCH_DB_TEST_YEARS 指定的年度，逗号分隔），
+ * 确认全部学生的应收/已支付/未支付合计与视图一致（误差小于0.01）。只读，不改变数据。
+ * 不一致时说明 getStudentFeeList 的计算方法与视图的定义不同。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB2020StudentFeeListReconcileTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2020StudentFeeListReconcileTest.class);
+
+    @Test
+    void studentSumsMatchMonthSummaryView() throws Exception {
+        List<String> mismatches = new ArrayList<>();
+        try (SqlSession session = MapperTestSupport.sqlSessionFactory().openSession()) {
+            KNDB2020Dao dao = session.getMapper(KNDB2020Dao.class);
+            for (String year : targetYears()) {
+                for (KNDB2020MonthSummaryEntity monthSummary : dao.getMonthSummaryList(year)) {
+                    List<KNDB2020StudentDiscrepancyEntity> students = dao.getStudentFeeList(monthSummary.getLsnMonth());
+                    KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(monthSummary, students, 0);
+                    KNDB2020MonthSummaryEntity studentTotal = breakdown.getStudentTotal();
+                    logger.info("学生别合计核对 - 月份: {}, 学生数: {}, 应收 {}/{}, 已支付 {}/{}, 未支付 {}/{}",
+                            monthSummary.getLsnMonth(), students.size(),
+                            studentTotal.getShouldPayLsnFee(), monthSummary.getShouldPayLsnFee(),
+                            studentTotal.getHasPaidLsnFee(), monthSummary.getHasPaidLsnFee(),
+                            studentTotal.getUnpaidLsnFee(), monthSummary.getUnpaidLsnFee());
+                    if (!breakdown.isConsistent()) {
+                        mismatches.add(monthSummary.getLsnMonth());
+                    }
+                }
+            }
+        }
+        assertTrue(mismatches.isEmpty(), "学生别合计与视图不一致的月份: " + mismatches);
+    }
+
+    private static List<String> targetYears() {
+        String years = System.getenv("KNBATCH_DB_TEST_YEARS");
+        List<String> targetYears = new ArrayList<>();
+        if (years != null && !years.trim().isEmpty()) {
+            for (String year : years.split(",")) {
+                targetYears.add(year.trim());
+            }
+            return targetYears;
+        }
+        Year current = Year.now();
+        targetYears.add(current.minusYears(1).toString());
+        targetYears.add(current.toString());
+        return targetYears;
+    }
+}
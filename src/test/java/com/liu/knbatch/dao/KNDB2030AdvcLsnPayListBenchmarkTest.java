@@ -0,0 +1,131 @@
+package com.liu.knbatch.dao;
+
+import com.liu.knbatch.entity.KNDB2030Entity;
+
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * getAdvcLsnPayList 的新旧SQL比较（结果一致性 + 执行时间）
+ *
+ * 旧SQL：对每条预支付记录执行关联 EXISTS 子查询判断该月是否有签到
+ * 新SQL：映射文件里的 getAdvcLsnPayList（该月签到的（学生, 科目）只聚合一次）
+ * 对最近 12 个月（或环境变量 KNBATCH_DB_TEST_MONTHS 指定的月份，逗号分隔 yyyy-MM）分别执行，
+ * 确认两者返回相同的记录，并输出执行时间。只读，不改变数据。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB2030AdvcLsnPayListBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2030AdvcLsnPayListBenchmarkTest.class);
+
+    // 改成一次聚合之前的 getAdvcLsnPayList
+    private static final String CORRELATED_EXISTS_SQL =
+            "WITH advcAdjustedData AS ("
+            + " SELECT advc.lesson_id, advc.lsn_fee_id, advc.lsn_pay_id, lsn.stu_id, lsn.subject_id, lsn.schedual_date,"
+            + "  CASE"
+            + "   WHEN advc.advc_flg = 1 THEN 0"
+            + "   WHEN advc.advc_flg = 0 AND EXISTS ("
+            + "    SELECT 1 FROM t_info_lesson t_check"
+            + "    WHERE t_check.stu_id = lsn.stu_id"
+            + "    AND t_check.subject_id = lsn.subject_id"
+            + "    AND LEFT(t_check.schedual_date, 7) = LEFT(lsn.schedual_date, 7)"
+            + "    AND t_check.scanqr_date IS NOT NULL"
+            + "   ) THEN 1"
+            + "   WHEN advc.advc_flg = 0 THEN 0"
+            + "   ELSE -1"
+            + "  END AS data_status"
+            + " FROM v_info_lesson lsn"
+            + " INNER JOIN t_info_lsn_fee_advc_pay advc ON lsn.lesson_id = advc.lesson_id"
+            + " INNER JOIN t_info_lesson_pay pay ON pay.lsn_pay_id = advc.lsn_pay_id AND advc.lsn_fee_id = pay.lsn_fee_id"
+            + "),"
+            + " signedLessonData AS ("
+            + " SELECT stu_id, subject_id, lesson_id,"
+            + "  ROW_NUMBER() OVER (PARTITION BY stu_id, subject_id ORDER BY schedual_date ASC, lesson_id ASC) AS row_no"
+            + " FROM v_info_lesson"
+            + " WHERE LEFT(schedual_date, 7) = ? AND scanqr_date IS NOT NULL"
+            + ")"
+            + " SELECT adjusted.*, signed.lesson_id AS valid_lesson_id"
+            + " FROM advcAdjustedData adjusted"
+            + " LEFT JOIN signedLessonData signed ON signed.stu_id = adjusted.stu_id"
+            + "  AND signed.subject_id = adjusted.subject_id AND signed.row_no = 1"
+            + " WHERE adjusted.data_status = 1 AND LEFT(adjusted.schedual_date, 7) = ?";
+
+    @Test
+    void oneShotAggregationMatchesCorrelatedExists() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.sqlSessionFactory();
+        long correlatedTotal = 0;
+        long aggregatedTotal = 0;
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            for (String yearMonth : targetMonths()) {
+                long startTime = System.currentTimeMillis();
+                List<String> expected = selectCorrelated(session, yearMonth);
+                long correlated = System.currentTimeMillis() - startTime;
+
+                startTime = System.currentTimeMillis();
+                List<String> actual = new ArrayList<>();
+                for (KNDB2030Entity entity : session.<KNDB2030Entity>selectList(
+                        "com.liu.knbatch.dao.KNDB2030Dao.getAdvcLsnPayList", yearMonth)) {
+                    actual.add(key(entity.getLessonId(), entity.getLsnFeeId(), entity.getLsnPayId(), entity.getValidLessonId()));
+                }
+                long aggregated = System.currentTimeMillis() - startTime;
+                Collections.sort(actual);
+
+                assertEquals(expected, actual, yearMonth);
+                correlatedTotal += correlated;
+                aggregatedTotal += aggregated;
+                logger.info("getAdvcLsnPayList 基准 - 月份: {}, 件数: {}, 关联EXISTS: {} ms, 一次聚合: {} ms",
+                        yearMonth, actual.size(), correlated, aggregated);
+            }
+        }
+        logger.info("getAdvcLsnPayList 基准 合计 - 关联EXISTS: {} ms, 一次聚合: {} ms", correlatedTotal, aggregatedTotal);
+    }
+
+    private static List<String> selectCorrelated(SqlSession session, String yearMonth) throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (PreparedStatement statement = session.getConnection().prepareStatement(CORRELATED_EXISTS_SQL)) {
+            statement.setString(1, yearMonth);
+            statement.setString(2, yearMonth);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(key(resultSet.getString("lesson_id"), resultSet.getString("lsn_fee_id"),
+                            resultSet.getString("lsn_pay_id"), resultSet.getString("valid_lesson_id")));
+                }
+            }
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static List<String> targetMonths() {
+        String months = System.getenv("KNBATCH_DB_TEST_MONTHS");
+        List<String> targetMonths = new ArrayList<>();
+        if (months != null && !months.trim().isEmpty()) {
+            for (String month : months.split(",")) {
+                targetMonths.add(month.trim());
+            }
+            return targetMonths;
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 11; i >= 0; i--) {
+            targetMonths.add(current.minusMonths(i).toString());
+        }
+        return targetMonths;
+    }
+
+    private static String key(String... values) {
+        return String.join("|", values);
+    }
+}
@@ -0,0 +1,92 @@
+package com.liu.knbatch.dao;
+
+import com.liu.knbatch.entity.KNDB2030Entity;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * KNDB2030 预支付再调整的Writer 基准测试（1千件 / 5万件）
+ *
+ * 比较逐件执行（SIMPLE执行器，每件2次往返：更新预支付 + 删除课费）
+ * 与分块步骤的Writer（BATCH执行器 + rewriteBatchedStatements，每个语句1次批量发送）。
+ * 使用不存在的课程ID（BENCH-xxxxxx），语句不命中任何记录，只测量语句的往返成本；
+ * 全部在事务里执行，最后回滚，不改变数据。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB2030WriterBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB2030WriterBenchmarkTest.class);
+
+    private static final String UPDATE_STATEMENT = "com.liu.knbatch.dao.KNDB2030Dao.updateAdvancePaymentOfItem";
+    private static final String DELETE_STATEMENT = "com.liu.knbatch.dao.KNDB2030Dao.deleteInvalidAdvancePaymentLessonId";
+
+    @Test
+    void batchWriterVersusRowByRow() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.sqlSessionFactory();
+        // 预热（连接、语句准备）
+        runBatch(sqlSessionFactory, items(100));
+
+        for (int rows : new int[] {1_000, 50_000}) {
+            List<KNDB2030Entity> items = items(rows);
+            long rowByRow = runRowByRow(sqlSessionFactory, items);
+            long batch = runBatch(sqlSessionFactory, items);
+            logger.info("KNDB2030 Writer 基准 - 件数: {}, 逐件: {} ms, BATCH: {} ms, 倍率: {}",
+                    rows, rowByRow, batch, String.format("%.1f", (double) rowByRow / Math.max(batch, 1)));
+        }
+    }
+
+    private long runRowByRow(SqlSessionFactory sqlSessionFactory, List<KNDB2030Entity> items) {
+        long startTime = System.currentTimeMillis();
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.SIMPLE, false)) {
+            for (KNDB2030Entity item : items) {
+                assertEquals(0, session.update(UPDATE_STATEMENT, item));
+                assertEquals(0, session.delete(DELETE_STATEMENT, item));
+            }
+            session.rollback(true);
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    private long runBatch(SqlSessionFactory sqlSessionFactory, List<KNDB2030Entity> items) {
+        long startTime = System.currentTimeMillis();
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            // 与 CompositeItemWriter 相同：先全部更新，再全部删除
+            for (KNDB2030Entity item : items) {
+                session.update(UPDATE_STATEMENT, item);
+            }
+            for (KNDB2030Entity item : items) {
+                session.delete(DELETE_STATEMENT, item);
+            }
+            List<BatchResult> results = session.flushStatements();
+            assertEquals(2, results.size());
+            assertEquals(items.size(), results.get(0).getParameterObjects().size());
+            session.rollback(true);
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    private static List<KNDB2030Entity> items(int rows) {
+        List<KNDB2030Entity> items = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            KNDB2030Entity item = new KNDB2030Entity();
+            item.setLessonId(String.format("BENCH-%06d", i));
+            item.setValidLessonId(String.format("BENCH-V-%06d", i));
+            item.setLsnFeeId(String.format("BENCH-F-%06d", i));
+            item.setLsnPayId(String.format("BENCH-P-%06d", i));
+            items.add(item);
+        }
+        return items;
+    }
+}
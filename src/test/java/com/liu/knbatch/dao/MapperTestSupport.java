@@ -0,0 +1,54 @@
+package com.liu.knbatch.dao;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+import java.util.Properties;
+
+/**
+ * 需要数据库的测试用的 MyBatis 设定
+ *
+ * 与应用相同的 mybatis-config.xml 和映射文件（mybatis/mapper/*.xml），连接测试用的 MySQL。
+ * 只有设定了环境变量 KNBATCH_DB_TEST_URL 时执行（不要指定正式环境的数据库）：
+ *   KNBATCH_DB_TEST_URL      : jdbc:mysql://host:3306/数据库名
+ *   KNBATCH_DB_TEST_USERNAME : 用户名
+ *   KNBATCH_DB_TEST_PASSWORD : 密码
+ * 事务由测试自己控制（openSession(false) → rollback），不依赖 Spring 的事务管理。
+ */
+public final class MapperTestSupport {
+
+    public static final String URL_ENV = "KNBATCH_DB_TEST_URL";
+
+    private MapperTestSupport() {
+    }
+
+    public static SqlSessionFactory sqlSessionFactory() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getenv(URL_ENV),
+                System.getenv("KNBATCH_DB_TEST_USERNAME"), System.getenv("KNBATCH_DB_TEST_PASSWORD"));
+        dataSource.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        // 与 application.properties 相同，BATCH执行器的批量语句由驱动改写成多值/多语句发送
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("rewriteBatchedStatements", "true");
+        dataSource.setConnectionProperties(connectionProperties);
+        return sqlSessionFactory(dataSource);
+    }
+
+    /**
+     * 不连接数据库也可以构建（映射文件的解析、SQL的生成用）
+     */
+    public static SqlSessionFactory sqlSessionFactory(DataSource dataSource) throws Exception {
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setTransactionFactory(new JdbcTransactionFactory());
+        factoryBean.setConfigLocation(new ClassPathResource("mybatis/mybatis-config.xml"));
+        factoryBean.setMapperLocations(new PathMatchingResourcePatternResolver().getResources("classpath:mybatis/mapper/*.xml"));
+        factoryBean.setTypeAliasesPackage("com.liu.knbatch.entity");
+        return factoryBean.getObject();
+    }
+}
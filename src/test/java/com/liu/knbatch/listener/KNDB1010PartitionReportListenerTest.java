@@ -0,0 +1,90 @@
+package com.liu.knbatch.listener;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * KNDB1010PartitionReportListener 的分区汇总的单元测试
+ */
+class KNDB1010PartitionReportListenerTest {
+
+    private static final String WORKER = KNDB1010PartitionReportListener.WORKER_STEP_NAME;
+
+    @Test
+    void restartIncludesPartitionsCompletedBeforeRestart() {
+        // 第1次执行：分区1完成，分区2失败
+        JobExecution first = new JobExecution(1L);
+        worker(first, 1, ExitStatus.COMPLETED, 100, 3, 1);
+        worker(first, 2, ExitStatus.FAILED, 40, 2, 1);
+        // 重启：只重新执行分区2（从上次提交的位置继续，无法矫正件数在 ExecutionContext 里累计）
+        JobExecution restart = new JobExecution(2L);
+        worker(restart, 2, ExitStatus.COMPLETED, 60, 1, 2);
+
+        List<KNDB1010PartitionReportListener.PartitionResult> partitions =
+                KNDB1010PartitionReportListener.summarizePartitions(Arrays.asList(first, restart));
+
+        assertEquals(2, partitions.size());
+        KNDB1010PartitionReportListener.PartitionResult partition1 = partitions.get(0);
+        assertEquals(1, partition1.partitionNo);
+        assertEquals("COMPLETED", partition1.exitCode);
+        assertEquals(100, partition1.readCount);
+        assertEquals(1, partition1.executionCount);
+
+        KNDB1010PartitionReportListener.PartitionResult partition2 = partitions.get(1);
+        assertEquals(2, partition2.partitionNo);
+        assertEquals("COMPLETED", partition2.exitCode);
+        assertEquals(100, partition2.readCount);
+        assertEquals(3, partition2.writeCount);
+        assertEquals(2, partition2.uncorrectableCount);
+        assertEquals(2, partition2.executionCount);
+    }
+
+    @Test
+    void partitionsSkippedOnRestartAreNotCountedAgain() {
+        JobExecution first = new JobExecution(1L);
+        worker(first, 1, ExitStatus.COMPLETED, 100, 3, 1);
+        worker(first, 2, ExitStatus.FAILED, 40, 2, 1);
+        // 重启时已完成的分区1也生成执行记录，但不执行也不保存
+        JobExecution restart = new JobExecution(2L);
+        restart.createStepExecution(WORKER + ":partition1").getExecutionContext().putInt("partitionNo", 1);
+        worker(restart, 2, ExitStatus.COMPLETED, 60, 1, 2);
+
+        KNDB1010PartitionReportListener.PartitionResult partition1 =
+                KNDB1010PartitionReportListener.summarizePartitions(Arrays.asList(first, restart)).get(0);
+        assertEquals("COMPLETED", partition1.exitCode);
+        assertEquals(100, partition1.readCount);
+        assertEquals(1, partition1.uncorrectableCount);
+        assertEquals(1, partition1.executionCount);
+    }
+
+    @Test
+    void otherStepsAreIgnored() {
+        JobExecution execution = new JobExecution(1L);
+        execution.createStepExecution(KNDB1010PartitionReportListener.PARTITION_STEP_NAME);
+        execution.createStepExecution("KNDB1010_STEP");
+        worker(execution, 1, ExitStatus.COMPLETED, 5, 0, 0);
+
+        assertEquals(1, KNDB1010PartitionReportListener.summarizePartitions(Arrays.asList(execution)).size());
+    }
+
+    private static void worker(JobExecution jobExecution, int partitionNo, ExitStatus exitStatus,
+                               int readCount, int writeCount, int uncorrectableCount) {
+        StepExecution stepExecution = jobExecution.createStepExecution(WORKER + ":partition" + partitionNo);
+        stepExecution.getExecutionContext().putInt("partitionNo", partitionNo);
+        stepExecution.getExecutionContext().putString("fromStuId", "S" + partitionNo + "0");
+        stepExecution.getExecutionContext().putString("toStuId", "S" + partitionNo + "9");
+        stepExecution.getExecutionContext().putInt("uncorrectableCount", uncorrectableCount);
+        stepExecution.setExitStatus(exitStatus);
+        stepExecution.setReadCount(readCount);
+        stepExecution.setWriteCount(writeCount);
+        // 执行过的分区由 JobRepository 保存并分配ID
+        stepExecution.setId(jobExecution.getId() * 10 + partitionNo);
+    }
+}
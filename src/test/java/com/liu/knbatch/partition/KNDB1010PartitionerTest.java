@@ -0,0 +1,68 @@
+package com.liu.knbatch.partition;
+
+import com.liu.knbatch.dao.KNDB1010Dao;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB1010Partitioner 的单元测试
+ */
+class KNDB1010PartitionerTest {
+
+    @Test
+    void rangesCoverAllStudentsWithoutOverlap() {
+        List<String> stuIds = Arrays.asList("S01", "S02", "S03", "S04", "S05", "S06", "S07");
+        Map<String, ExecutionContext> partitions = new KNDB1010Partitioner(dao(stuIds), "20250315").partition(3);
+
+        assertEquals(3, partitions.size());
+        List<String> covered = new ArrayList<>();
+        int partitionNo = 1;
+        for (ExecutionContext context : partitions.values()) {
+            assertEquals("2025-03", context.getString("targetMonth"));
+            assertEquals(partitionNo++, context.getInt("partitionNo"));
+            int from = stuIds.indexOf(context.getString("fromStuId"));
+            int to = stuIds.indexOf(context.getString("toStuId"));
+            assertTrue(from <= to);
+            covered.addAll(stuIds.subList(from, to + 1));
+        }
+        // 各分区首尾相接，所有学生恰好属于1个分区
+        assertEquals(stuIds, covered);
+    }
+
+    @Test
+    void gridSizeLargerThanStudentsGivesOnePartitionPerStudent() {
+        Map<String, ExecutionContext> partitions =
+                new KNDB1010Partitioner(dao(Arrays.asList("S01", "S02")), "20250301").partition(8);
+
+        assertEquals(2, partitions.size());
+        ExecutionContext first = partitions.get(KNDB1010Partitioner.PARTITION_PREFIX + 1);
+        assertEquals("S01", first.getString("fromStuId"));
+        assertEquals("S01", first.getString("toStuId"));
+    }
+
+    @Test
+    void noStudentsGivesNoPartitions() {
+        assertTrue(new KNDB1010Partitioner(dao(Collections.emptyList()), "20250301").partition(4).isEmpty());
+    }
+
+    private static KNDB1010Dao dao(List<String> stuIds) {
+        return (KNDB1010Dao) Proxy.newProxyInstance(KNDB1010Dao.class.getClassLoader(),
+                new Class<?>[] {KNDB1010Dao.class}, (proxy, method, args) -> {
+                    if (!"selectStudentIdsOfMonth".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return stuIds;
+                });
+    }
+}
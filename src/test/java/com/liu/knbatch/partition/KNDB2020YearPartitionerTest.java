@@ -0,0 +1,47 @@
+package com.liu.knbatch.partition;
+
+import com.liu.knbatch.dao.KNDB2020Dao;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB2020YearPartitioner 的单元测试
+ *
+ * 分区时只查询最早的排课年度，不查询年度指纹（指纹由各分区按年度范围查询）。
+ */
+class KNDB2020YearPartitionerTest {
+
+    @Test
+    void closedYearsFromFirstLessonYear() {
+        Map<String, ExecutionContext> partitions = new KNDB2020YearPartitioner(dao("2022"), "20250315").partition(1);
+
+        assertEquals(Arrays.asList("year2022", "year2023", "year2024"), Arrays.asList(partitions.keySet().toArray()));
+        ExecutionContext last = partitions.get(KNDB2020YearPartitioner.PARTITION_PREFIX + "2024");
+        assertEquals("2024", last.getString("year"));
+        assertEquals(3, last.getInt("partitionNo"));
+    }
+
+    @Test
+    void noClosedYearsGivesNoPartitions() {
+        assertTrue(new KNDB2020YearPartitioner(dao("2025"), "20250315").partition(1).isEmpty());
+        assertTrue(new KNDB2020YearPartitioner(dao(null), "20250315").partition(1).isEmpty());
+    }
+
+    private static KNDB2020Dao dao(String firstYear) {
+        return (KNDB2020Dao) Proxy.newProxyInstance(KNDB2020Dao.class.getClassLoader(),
+                new Class<?>[] {KNDB2020Dao.class}, (proxy, method, args) -> {
+                    if ("selectFirstLessonYear".equals(method.getName())) {
+                        return firstYear;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,83 @@
+package com.liu.knbatch.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * IsoWeekCalendar 的单元测试
+ *
+ * 确认预先计算的周次与 java.time 的ISO周（= MySQL的 WEEKOFYEAR()）一致，
+ * 以及年末年初跨年的周、对象范围外的日期、年度范围的周列表。
+ */
+class IsoWeekCalendarTest {
+
+    private final IsoWeekCalendar calendar = new IsoWeekCalendar();
+
+    @Test
+    void everyDayMatchesJavaTimeIsoWeek() {
+        LocalDate lastDate = LocalDate.of(IsoWeekCalendar.LAST_YEAR, 12, 31);
+        for (LocalDate date = LocalDate.of(IsoWeekCalendar.FIRST_YEAR, 1, 1); !date.isAfter(lastDate);
+                date = date.plusDays(1)) {
+            IsoWeekCalendar.Week week = calendar.weekOf(date);
+            assertEquals(date.get(IsoFields.WEEK_BASED_YEAR), week.getWeekBasedYear(), date.toString());
+            assertEquals(date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR), week.getWeekNumber(), date.toString());
+            assertEquals(date.with(DayOfWeek.MONDAY), week.getStartDate(), date.toString());
+        }
+    }
+
+    @Test
+    void weeksAcrossYearBoundary() {
+        // 2021-01-01（周五）属于2020年第53周
+        IsoWeekCalendar.Week week = calendar.weekOf(LocalDate.of(2021, 1, 1));
+        assertEquals(2020, week.getWeekBasedYear());
+        assertEquals(53, week.getWeekNumber());
+        assertEquals("2020-12-28", week.getStartWeekDate());
+        assertEquals("2021-01-03", week.getEndWeekDate());
+
+        // 2024-12-30（周一）属于2025年第1周
+        week = calendar.weekOf(LocalDate.of(2024, 12, 31));
+        assertEquals(2025, week.getWeekBasedYear());
+        assertEquals(1, week.getWeekNumber());
+        assertEquals("2024-12-30", week.getStartWeekDate());
+    }
+
+    @Test
+    void dateOutsideRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> calendar.weekOf(LocalDate.of(1999, 12, 26)));
+        assertThrows(IllegalArgumentException.class, () -> calendar.weekOf(LocalDate.of(2100, 1, 11)));
+    }
+
+    @Test
+    void weeksOfYearsAreContiguousMondays() {
+        List<IsoWeekCalendar.Week> weeks = calendar.weeksOfYears(2020, 2026);
+
+        // 从2020年1月1日所在周的周一开始
+        assertEquals(LocalDate.of(2019, 12, 30), weeks.get(0).getStartDate());
+        // 到周一在2026年内的最后一周为止
+        assertEquals(LocalDate.of(2026, 12, 28), weeks.get(weeks.size() - 1).getStartDate());
+        for (int i = 0; i < weeks.size(); i++) {
+            assertEquals(DayOfWeek.MONDAY, weeks.get(i).getStartDate().getDayOfWeek());
+            if (i > 0) {
+                assertEquals(weeks.get(i - 1).getStartDate().plusWeeks(1), weeks.get(i).getStartDate());
+            }
+        }
+    }
+
+    @Test
+    void singleYearIncludesWeekOfJanuaryFirst() {
+        // 2020年1月1日所在周（2019-12-30）～ 2020-12-28 的周：53周
+        assertEquals(53, calendar.weeksOfYears(2020, 2020).size());
+        // 2012年1月1日是周日：所在周（2011-12-26）+ 2012年内的53个周一 = 54周
+        List<IsoWeekCalendar.Week> weeks = calendar.weeksOfYears(2012, 2012);
+        assertEquals(54, weeks.size());
+        assertEquals(52, weeks.get(0).getWeekNumber());
+        assertEquals(1, weeks.get(weeks.size() - 1).getWeekNumber());
+    }
+}
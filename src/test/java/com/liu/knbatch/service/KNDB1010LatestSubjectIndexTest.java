@@ -0,0 +1,138 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB1010Dao;
+import com.liu.knbatch.entity.KNDB1010Entity;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB1010LatestSubjectIndex 的单元测试
+ *
+ * 确认索引的判定与原SQL的 NOT EXISTS 判定一致：
+ * 课程的 (stu_id, subject_id, subject_sub_id) 在最新科目级别视图里不存在时为错误级别课程。
+ */
+class KNDB1010LatestSubjectIndexTest {
+
+    @Test
+    void matchesLatestLevelIsCorrect() {
+        KNDB1010LatestSubjectIndex index = KNDB1010LatestSubjectIndex.load(dao(
+                new KNDB1010Entity("S001", "P", "P-3"),
+                new KNDB1010Entity("S001", "V", "V-1")));
+
+        assertFalse(index.isIncorrect(new KNDB1010Entity("S001", "P", "P-3")));
+        assertFalse(index.isIncorrect(new KNDB1010Entity("S001", "V", "V-1")));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void differentLevelIsIncorrect() {
+        KNDB1010LatestSubjectIndex index = KNDB1010LatestSubjectIndex.load(dao(
+                new KNDB1010Entity("S001", "P", "P-3")));
+
+        assertTrue(index.isIncorrect(new KNDB1010Entity("S001", "P", "P-2")));
+        assertEquals("P-3", index.latestSubjectSubId("S001", "P"));
+    }
+
+    @Test
+    void lessonWithoutDocumentIsIncorrect() {
+        KNDB1010LatestSubjectIndex index = KNDB1010LatestSubjectIndex.load(dao(
+                new KNDB1010Entity("S001", "P", "P-3")));
+
+        // 其他学生、其他科目都没有档案记录（原SQL的 NOT EXISTS 为真）
+        assertTrue(index.isIncorrect(new KNDB1010Entity("S002", "P", "P-3")));
+        assertTrue(index.isIncorrect(new KNDB1010Entity("S001", "V", "P-3")));
+        assertNull(index.latestSubjectSubId("S002", "P"));
+    }
+
+    @Test
+    void keysDoNotCollideAcrossConcatenation() {
+        // "S1"+"0P" 与 "S10"+"P" 拼接后相同，分隔符保证不会混淆
+        KNDB1010LatestSubjectIndex index = KNDB1010LatestSubjectIndex.load(dao(
+                new KNDB1010Entity("S1", "0P", "A"),
+                new KNDB1010Entity("S10", "P", "B")));
+
+        assertEquals("A", index.latestSubjectSubId("S1", "0P"));
+        assertEquals("B", index.latestSubjectSubId("S10", "P"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void duplicateKeepsFirstRowRead() {
+        KNDB1010LatestSubjectIndex index = KNDB1010LatestSubjectIndex.load(dao(
+                new KNDB1010Entity("S001", "P", "P-3"),
+                new KNDB1010Entity("S001", "P", "P-2")));
+
+        assertEquals("P-3", index.latestSubjectSubId("S001", "P"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void rangeAndStudentListArePassedToQuery() {
+        List<Object[]> calls = new ArrayList<>();
+        KNDB1010Dao dao = dao(calls, new KNDB1010Entity("S005", "P", "P-1"));
+
+        KNDB1010LatestSubjectIndex.load(dao, "S001", "S009");
+        KNDB1010LatestSubjectIndex.load(dao, Arrays.asList("S005"));
+
+        assertEquals(Arrays.asList("S001", "S009", null), Arrays.asList(calls.get(0)));
+        assertEquals(Arrays.asList(null, null, Arrays.asList("S005")), Arrays.asList(calls.get(1)));
+    }
+
+    private static KNDB1010Dao dao(KNDB1010Entity... rows) {
+        return dao(new ArrayList<>(), rows);
+    }
+
+    /**
+     * 只实现 streamLatestSubjectInfo 的DAO（把行依次交给 ResultHandler，参数记录到 calls）
+     */
+    @SuppressWarnings("unchecked")
+    private static KNDB1010Dao dao(List<Object[]> calls, KNDB1010Entity... rows) {
+        return (KNDB1010Dao) Proxy.newProxyInstance(KNDB1010Dao.class.getClassLoader(),
+                new Class<?>[] {KNDB1010Dao.class}, (proxy, method, args) -> {
+                    if (!"streamLatestSubjectInfo".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    calls.add(new Object[] {args[0], args[1], args[2]});
+                    ResultHandler<KNDB1010Entity> handler = (ResultHandler<KNDB1010Entity>) args[3];
+                    for (int i = 0; i < rows.length; i++) {
+                        handler.handleResult(context(rows[i], i + 1));
+                    }
+                    return null;
+                });
+    }
+
+    private static ResultContext<KNDB1010Entity> context(KNDB1010Entity row, int count) {
+        return new ResultContext<KNDB1010Entity>() {
+            @Override
+            public KNDB1010Entity getResultObject() {
+                return row;
+            }
+
+            @Override
+            public int getResultCount() {
+                return count;
+            }
+
+            @Override
+            public boolean isStopped() {
+                return false;
+            }
+
+            @Override
+            public void stop() {
+            }
+        };
+    }
+}
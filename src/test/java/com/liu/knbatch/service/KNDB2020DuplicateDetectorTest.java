@@ -0,0 +1,182 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB2020Dao;
+import com.liu.knbatch.entity.KNDB2020FeeErrorEntity;
+import com.liu.knbatch.entity.KNDB2020IdPairEntity;
+import com.liu.knbatch.entity.KNDB2020PayErrorEntity;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB2020DuplicateDetector 的单元测试
+ *
+ * 确认流式重复检查的结果与 getFeeErrorList / getPayErrorList 的 GROUP BY 判定一致：
+ *   费用表：COUNT(DISTINCT lsn_fee_id) > 1（NULL不计数）
+ *   支付表：COUNT(*) > 1
+ */
+class KNDB2020DuplicateDetectorTest {
+
+    @Test
+    void feeCountsDistinctMembersOnly() {
+        List<KNDB2020FeeErrorEntity> errors = KNDB2020DuplicateDetector.detectFeeErrors(dao(
+                pair("L1", "F1"),
+                pair("L1", "F1"),
+                pair("L2", "F2"),
+                pair("L2", "F3"),
+                pair("L3", null),
+                pair("L3", "F4")));
+
+        assertEquals(1, errors.size());
+        assertEquals("L2", errors.get(0).getLessonId());
+        assertEquals(2, errors.get(0).getFeeCount());
+        assertEquals("F2,F3", errors.get(0).getFeeIds());
+    }
+
+    @Test
+    void payCountsEveryRow() {
+        List<KNDB2020PayErrorEntity> errors = KNDB2020DuplicateDetector.detectPayErrors(dao(
+                pair("F1", "P1"),
+                pair("F1", "P1"),
+                pair("F2", "P2"),
+                pair("F3", "P3"),
+                pair("F3", "P4"),
+                pair("F3", "P5")));
+
+        assertEquals(2, errors.size());
+        assertEquals("F1", errors.get(0).getLsnFeeId());
+        assertEquals("P1,P1", errors.get(0).getPayIds());
+        assertEquals("F3", errors.get(1).getLsnFeeId());
+        assertEquals(3, errors.get(1).getPayCount());
+    }
+
+    @Test
+    void lastGroupIsFlushed() {
+        List<KNDB2020FeeErrorEntity> errors = KNDB2020DuplicateDetector.detectFeeErrors(dao(
+                pair("L1", "F1"),
+                pair("L9", "F8"),
+                pair("L9", "F9")));
+
+        assertEquals(1, errors.size());
+        assertEquals("L9", errors.get(0).getLessonId());
+    }
+
+    @Test
+    void idListIsNotTruncated() {
+        // GROUP_CONCAT 默认 group_concat_max_len = 1024 字节，这里的ID列表远超过该长度
+        List<KNDB2020IdPairEntity> pairs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            pairs.add(pair("L1", String.format("FEE-%06d", i)));
+        }
+        List<KNDB2020FeeErrorEntity> errors = KNDB2020DuplicateDetector.detectFeeErrors(dao(pairs));
+
+        assertEquals(300, errors.get(0).getFeeCount());
+        assertEquals(300, errors.get(0).getFeeIds().split(",").length);
+        assertTrue(errors.get(0).getFeeIds().length() > 1024);
+    }
+
+    @Test
+    void matchesGroupByOnRandomData() {
+        Random random = new Random(2020);
+        List<KNDB2020IdPairEntity> pairs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            pairs.add(pair(String.format("G%03d", random.nextInt(800)), String.format("M%02d", random.nextInt(6))));
+        }
+        // SQL 的 ORDER BY group_id, member_id
+        pairs.sort(Comparator.comparing(KNDB2020IdPairEntity::getGroupId).thenComparing(KNDB2020IdPairEntity::getMemberId));
+
+        Map<String, TreeSet<String>> distinct = new TreeMap<>();
+        Map<String, List<String>> all = new TreeMap<>();
+        for (KNDB2020IdPairEntity pair : pairs) {
+            distinct.computeIfAbsent(pair.getGroupId(), key -> new TreeSet<>()).add(pair.getMemberId());
+            all.computeIfAbsent(pair.getGroupId(), key -> new ArrayList<>()).add(pair.getMemberId());
+        }
+
+        List<String> expectedFee = new ArrayList<>();
+        distinct.forEach((groupId, members) -> {
+            if (members.size() > 1) {
+                expectedFee.add(groupId + ":" + String.join(",", members));
+            }
+        });
+        List<String> actualFee = new ArrayList<>();
+        for (KNDB2020FeeErrorEntity error : KNDB2020DuplicateDetector.detectFeeErrors(dao(pairs))) {
+            actualFee.add(error.getLessonId() + ":" + error.getFeeIds());
+        }
+        assertEquals(expectedFee, actualFee);
+
+        List<String> expectedPay = new ArrayList<>();
+        all.forEach((groupId, members) -> {
+            if (members.size() > 1) {
+                expectedPay.add(groupId + ":" + String.join(",", members));
+            }
+        });
+        List<String> actualPay = new ArrayList<>();
+        for (KNDB2020PayErrorEntity error : KNDB2020DuplicateDetector.detectPayErrors(dao(pairs))) {
+            actualPay.add(error.getLsnFeeId() + ":" + error.getPayIds());
+        }
+        assertEquals(expectedPay, actualPay);
+    }
+
+    private static KNDB2020IdPairEntity pair(String groupId, String memberId) {
+        return new KNDB2020IdPairEntity(groupId, memberId);
+    }
+
+    private static KNDB2020Dao dao(KNDB2020IdPairEntity... pairs) {
+        return dao(Arrays.asList(pairs));
+    }
+
+    /**
+     * 只实现 streamFeeIdPairs / streamPayIdPairs 的DAO（把ID对依次交给 ResultHandler）
+     */
+    @SuppressWarnings("unchecked")
+    private static KNDB2020Dao dao(List<KNDB2020IdPairEntity> pairs) {
+        return (KNDB2020Dao) Proxy.newProxyInstance(KNDB2020Dao.class.getClassLoader(),
+                new Class<?>[] {KNDB2020Dao.class}, (proxy, method, args) -> {
+                    if (!"streamFeeIdPairs".equals(method.getName()) && !"streamPayIdPairs".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    ResultHandler<KNDB2020IdPairEntity> handler = (ResultHandler<KNDB2020IdPairEntity>) args[0];
+                    for (int i = 0; i < pairs.size(); i++) {
+                        handler.handleResult(context(pairs.get(i), i + 1));
+                    }
+                    return null;
+                });
+    }
+
+    private static ResultContext<KNDB2020IdPairEntity> context(KNDB2020IdPairEntity pair, int count) {
+        return new ResultContext<KNDB2020IdPairEntity>() {
+            @Override
+            public KNDB2020IdPairEntity getResultObject() {
+                return pair;
+            }
+
+            @Override
+            public int getResultCount() {
+                return count;
+            }
+
+            @Override
+            public boolean isStopped() {
+                return false;
+            }
+
+            @Override
+            public void stop() {
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.entity.KNDB2020MonthSummaryEntity;
+import com.liu.knbatch.entity.KNDB2020StudentDiscrepancyEntity;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB2020StudentBreakdown 的单元测试
+ *
+ * 确认学生别合计与月度汇总一致时才采用明细，以及差额的筛选、排序、件数上限。
+ */
+class KNDB2020StudentBreakdownTest {
+
+    @Test
+    void consistentMonthKeepsStudentsWithDifference() {
+        // 月度汇总：应收 300, 已支付 150, 未支付 100 → 差额 50
+        KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(month("300", "150", "100"), Arrays.asList(
+                student("S001", "100", "100", "0"),
+                student("S002", "120", "50", "40"),
+                student("S003", "80", "0", "60")), 20);
+
+        assertTrue(breakdown.isConsistent());
+        assertEquals(2, breakdown.getDiscrepancyCount());
+        assertEquals(Arrays.asList("S002", "S003"), stuIds(breakdown));
+        assertEquals(0, new BigDecimal("50").compareTo(breakdown.getStudentTotal().getDifference()));
+    }
+
+    @Test
+    void sortsByAbsoluteDifferenceAndCaps() {
+        KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(month("60", "65", "0"), Arrays.asList(
+                student("S001", "10", "5", "0"),
+                student("S002", "20", "40", "0"),
+                student("S003", "30", "20", "0")), 2);
+
+        assertTrue(breakdown.isConsistent());
+        assertEquals(3, breakdown.getDiscrepancyCount());
+        // 差额：S001=5, S002=-20, S003=10
+        assertEquals(Arrays.asList("S002", "S003"), stuIds(breakdown));
+    }
+
+    @Test
+    void mismatchWithMonthTotalDropsRows() {
+        // 学生别应收合计 200 ≠ 月度汇总 300（计算方法与视图不同）
+        KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(month("300", "150", "100"), Arrays.asList(
+                student("S001", "100", "100", "0"),
+                student("S002", "100", "50", "0")), 20);
+
+        assertFalse(breakdown.isConsistent());
+        assertTrue(breakdown.getDiscrepancies().isEmpty());
+        assertEquals(0, new BigDecimal("200").compareTo(breakdown.getStudentTotal().getShouldPayLsnFee()));
+    }
+
+    @Test
+    void mismatchInPaidOrUnpaidAlsoDropsRows() {
+        // 应收一致，已支付/未支付的分配与视图不同
+        KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(month("100", "60", "30"), Arrays.asList(
+                student("S001", "100", "50", "40")), 20);
+
+        assertFalse(breakdown.isConsistent());
+    }
+
+    @Test
+    void roundingBelowToleranceIsIgnored() {
+        KNDB2020StudentBreakdown breakdown = KNDB2020StudentBreakdown.of(month("100.005", "100", "0"), Arrays.asList(
+                student("S001", "100", "99.995", "0")), 20);
+
+        assertTrue(breakdown.isConsistent());
+        assertEquals(0, breakdown.getDiscrepancyCount());
+    }
+
+    private static KNDB2020MonthSummaryEntity month(String should, String paid, String unpaid) {
+        BigDecimal total = new BigDecimal(paid).add(new BigDecimal(unpaid));
+        return new KNDB2020MonthSummaryEntity("2025-01", new BigDecimal(should), new BigDecimal(paid),
+                new BigDecimal(unpaid), total, new BigDecimal(should).subtract(total), "错误");
+    }
+
+    private static KNDB2020StudentDiscrepancyEntity student(String stuId, String should, String paid, String unpaid) {
+        return new KNDB2020StudentDiscrepancyEntity("2025-01", stuId, new BigDecimal(should),
+                new BigDecimal(paid), new BigDecimal(unpaid));
+    }
+
+    private static List<String> stuIds(KNDB2020StudentBreakdown breakdown) {
+        List<String> stuIds = new ArrayList<>();
+        for (KNDB2020StudentDiscrepancyEntity discrepancy : breakdown.getDiscrepancies()) {
+            stuIds.add(discrepancy.getStuId());
+        }
+        return stuIds;
+    }
+}
@@ -0,0 +1,122 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.entity.KNDB4010LessonEntity;
+import com.liu.knbatch.entity.KNDB4010LessonTemplateEntity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB4010JavaScheduleEngine.expandWeek 的单元测试（不访问数据库）
+ *
+ * 确认模板按上课星期和时间展开到该周的日期、已有课程和重复模板不重复生成、
+ * 无法展开的模板作为警告跳过、课程按上课日时/学生ID/科目ID排序。
+ */
+class KNDB4010JavaScheduleEngineTest {
+
+    // 2025-01-06 是周一
+    private static final LocalDate WEEK_START = LocalDate.of(2025, 1, 6);
+
+    @Test
+    void templatesExpandToDatesOfTheWeek() {
+        List<String> warnings = new ArrayList<>();
+        List<KNDB4010LessonEntity> lessons = KNDB4010JavaScheduleEngine.expandWeek(Arrays.asList(
+                template("S001", "P", "Mon", 17, 30),
+                template("S002", "P", "7", 9, 0),
+                template("S003", "V", "wednesday", 18, 5)), WEEK_START, Collections.emptySet(), warnings);
+
+        assertEquals(Arrays.asList(
+                "S001|P|P-3|2025-01-06 17:30",
+                "S003|V|P-3|2025-01-08 18:05",
+                "S002|P|P-3|2025-01-12 09:00"), keys(lessons));
+        assertEquals(45, lessons.get(0).getClassDuration());
+        assertTrue(warnings.isEmpty());
+    }
+
+    @Test
+    void existingLessonsAndDuplicateTemplatesAreSkipped() {
+        Set<String> existingKeys = new HashSet<>(Collections.singletonList("S001\u0001P\u00012025-01-06 17:30"));
+        List<String> warnings = new ArrayList<>();
+        List<KNDB4010LessonEntity> lessons = KNDB4010JavaScheduleEngine.expandWeek(Arrays.asList(
+                template("S001", "P", "Mon", 17, 30),
+                template("S002", "P", "Tue", 16, 0),
+                template("S002", "P", "2", 16, 0)), WEEK_START, existingKeys, warnings);
+
+        assertEquals(Collections.singletonList("S002|P|P-3|2025-01-07 16:00"), keys(lessons));
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).contains("跳过 2 节"));
+    }
+
+    @Test
+    void invalidTemplateIsWarnedAndSkipped() {
+        List<String> warnings = new ArrayList<>();
+        List<KNDB4010LessonEntity> lessons = KNDB4010JavaScheduleEngine.expandWeek(Arrays.asList(
+                template("S001", "P", "X", 17, 30),
+                template("S002", "P", "Fri", null, 0),
+                template("S003", "P", "Fri", 10, 0)), WEEK_START, Collections.emptySet(), warnings);
+
+        assertEquals(Collections.singletonList("S003|P|P-3|2025-01-10 10:00"), keys(lessons));
+        assertEquals(2, warnings.size());
+    }
+
+    @Test
+    void lessonsAreSortedByDateThenStudentThenSubject() {
+        List<KNDB4010LessonEntity> lessons = KNDB4010JavaScheduleEngine.expandWeek(Arrays.asList(
+                template("S002", "V", "Mon", 10, 0),
+                template("S002", "P", "Mon", 10, 0),
+                template("S001", "V", "Mon", 10, 0),
+                template("S001", "P", "Sun", 8, 0)), WEEK_START, Collections.emptySet(), new ArrayList<>());
+
+        assertEquals(Arrays.asList(
+                "S001|V|P-3|2025-01-06 10:00",
+                "S002|P|P-3|2025-01-06 10:00",
+                "S002|V|P-3|2025-01-06 10:00",
+                "S001|P|P-3|2025-01-12 08:00"), keys(lessons));
+    }
+
+    @Test
+    void dayOfWeekFormats() {
+        assertEquals(DayOfWeek.MONDAY, KNDB4010JavaScheduleEngine.parseDayOfWeek("1"));
+        assertEquals(DayOfWeek.SUNDAY, KNDB4010JavaScheduleEngine.parseDayOfWeek("7"));
+        assertEquals(DayOfWeek.TUESDAY, KNDB4010JavaScheduleEngine.parseDayOfWeek(" tue "));
+        assertEquals(DayOfWeek.SATURDAY, KNDB4010JavaScheduleEngine.parseDayOfWeek("Saturday"));
+        assertNull(KNDB4010JavaScheduleEngine.parseDayOfWeek("0"));
+        assertNull(KNDB4010JavaScheduleEngine.parseDayOfWeek("Mo"));
+        assertNull(KNDB4010JavaScheduleEngine.parseDayOfWeek(null));
+    }
+
+    private static KNDB4010LessonTemplateEntity template(String stuId, String subjectId, String fixedWeek,
+                                                         Integer fixedHour, Integer fixedMinute) {
+        KNDB4010LessonTemplateEntity template = new KNDB4010LessonTemplateEntity();
+        template.setStuId(stuId);
+        template.setSubjectId(subjectId);
+        template.setSubjectSubId("P-3");
+        template.setClassDuration(45);
+        template.setLessonType(1);
+        template.setFixedWeek(fixedWeek);
+        template.setFixedHour(fixedHour);
+        template.setFixedMinute(fixedMinute);
+        return template;
+    }
+
+    private static List<String> keys(List<KNDB4010LessonEntity> lessons) {
+        List<String> keys = new ArrayList<>();
+        for (KNDB4010LessonEntity lesson : lessons) {
+            keys.add(String.join("|", lesson.getStuId(), lesson.getSubjectId(), lesson.getSubjectSubId(),
+                    lesson.getSchedualDate()));
+        }
+        return keys;
+    }
+}
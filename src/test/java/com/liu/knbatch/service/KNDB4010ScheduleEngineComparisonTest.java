@@ -0,0 +1,158 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB4010Dao;
+import com.liu.knbatch.dao.MapperTestSupport;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 存储过程与Java排课引擎的排课结果比较（测试库专用）
+ *
+ * 对同一周（环境变量 KNBATCH_DB_TEST_WEEK 指定的周一 yyyy-MM-dd，没有时为下周）分别用两个引擎排课，
+ * 比较新增课程的 (stu_id, subject_id, subject_sub_id, schedual_date) 的集合，
+ * 并记录两个引擎的排课耗时（各执行 RUNS 次，交替执行，比较中位数），确认Java引擎不比存储过程慢。
+ * 每个引擎排课之后都回滚，课程表不变；但序列 nextval 的值会前进，
+ * 存储过程内部有 COMMIT 时也不能回滚，所以只能在测试库执行。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB4010ScheduleEngineComparisonTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB4010ScheduleEngineComparisonTest.class);
+    private static final String SEQ_CODE = "kn-lsn-";
+    // 各引擎的执行次数（第1次包括连接、语句准备的成本，所以比较中位数）
+    private static final int RUNS = 3;
+
+    private static final String WEEK_LESSON_SQL =
+            "SELECT lesson_id, stu_id, subject_id, subject_sub_id, DATE_FORMAT(schedual_date, '%Y-%m-%d %H:%i') AS schedual_date"
+            + " FROM t_info_lesson"
+            + " WHERE schedual_date >= ? AND schedual_date < DATE_ADD(?, INTERVAL 1 DAY)";
+
+    @Test
+    void javaEngineSchedulesTheSameLessonsAsProcedure() throws Exception {
+        LocalDate weekStartDate = targetWeek();
+        String weekStart = weekStartDate.toString();
+        String weekEnd = weekStartDate.plusDays(6).toString();
+
+        List<String> procedureLessons = null;
+        List<String> javaLessons = null;
+        List<Long> procedureMillis = new ArrayList<>();
+        List<Long> javaMillis = new ArrayList<>();
+        try (SqlSession session = MapperTestSupport.sqlSessionFactory().openSession()) {
+            KNDB4010Dao dao = session.getMapper(KNDB4010Dao.class);
+            Connection connection = session.getConnection();
+            KNDB4010JavaScheduleEngine javaEngine = new KNDB4010JavaScheduleEngine();
+            setField(javaEngine, "kndb4010Dao", dao);
+            setField(javaEngine, "insertBatchSize", 500);
+
+            Set<String> existingIds = selectWeekLessons(connection, weekStart, weekEnd, null);
+            for (int run = 0; run < RUNS; run++) {
+                long startTime = System.currentTimeMillis();
+                dao.doLsnWeeklySchedual(weekStart, weekEnd, SEQ_CODE);
+                procedureMillis.add(System.currentTimeMillis() - startTime);
+                List<String> lessons = new ArrayList<>(selectWeekLessons(connection, weekStart, weekEnd, existingIds));
+                session.rollback(true);
+                if (procedureLessons == null) {
+                    procedureLessons = lessons;
+                }
+
+                startTime = System.currentTimeMillis();
+                KNDB4010ScheduleResult result = javaEngine.schedule(weekStart, weekEnd, SEQ_CODE);
+                javaMillis.add(System.currentTimeMillis() - startTime);
+                lessons = new ArrayList<>(selectWeekLessons(connection, weekStart, weekEnd, existingIds));
+                session.rollback(true);
+                if (javaLessons == null) {
+                    javaLessons = lessons;
+                    logger.info("排课引擎比较 - 周: {} 至 {}, 已有课程: {}, 存储过程: {} 节, Java: {} 节, Java警告: {}",
+                            weekStart, weekEnd, existingIds.size(), procedureLessons.size(), javaLessons.size(),
+                            result.getWarnings());
+                }
+            }
+        }
+
+        Collections.sort(procedureLessons);
+        Collections.sort(javaLessons);
+        assertEquals(procedureLessons, javaLessons);
+
+        long procedure = median(procedureMillis);
+        long java = median(javaMillis);
+        logger.info("排课引擎耗时 - 周: {}, 存储过程: {} ms（中位数，各次: {}）, Java: {} ms（中位数，各次: {}）, 倍率: {}",
+                weekStart, procedure, procedureMillis, java, javaMillis,
+                String.format("%.1f", (double) procedure / Math.max(java, 1)));
+        assertEquals(RUNS, procedureMillis.size());
+        assertEquals(RUNS, javaMillis.size());
+        assertTrue(java <= procedure, "Java引擎比存储过程慢 - 存储过程: " + procedure + " ms, Java: " + java + " ms");
+    }
+
+    private static long median(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * 该周的课程
+     *
+     * @param existingIds null 时返回课程ID；否则返回这些课程ID以外的课程的 (学生, 科目, 级别, 上课日时)
+     */
+    private static Set<String> selectWeekLessons(Connection connection, String weekStart, String weekEnd,
+                                                 Set<String> existingIds) throws Exception {
+        Set<String> rows = new HashSet<>();
+        List<String> lessons = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(WEEK_LESSON_SQL)) {
+            statement.setString(1, weekStart);
+            statement.setString(2, weekEnd);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String lessonId = resultSet.getString("lesson_id");
+                    if (existingIds == null) {
+                        rows.add(lessonId);
+                    } else if (!existingIds.contains(lessonId)) {
+                        lessons.add(String.join("|", resultSet.getString("stu_id"), resultSet.getString("subject_id"),
+                                resultSet.getString("subject_sub_id"), resultSet.getString("schedual_date")));
+                    }
+                }
+            }
+        }
+        if (existingIds != null) {
+            // 同一学生、科目、日时不会排2节，集合即可比较
+            assertEquals(lessons.size(), new HashSet<>(lessons).size(), "新增课程有重复: " + weekStart);
+            rows.addAll(lessons);
+        }
+        return rows;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    private static LocalDate targetWeek() {
+        String week = System.getenv("KNBATCH_DB_TEST_WEEK");
+        if (week != null && !week.trim().isEmpty()) {
+            return LocalDate.parse(week.trim()).with(DayOfWeek.MONDAY);
+        }
+        return LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+    }
+}
@@ -0,0 +1,64 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.entity.KNDB5000ManifestEntity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * KNDB5000BackupChain 的全量/增量判定的单元测试
+ *
+ * 增量备份默认不持有全局读锁（清单里 consistent=false），这样的备份也要能作为增量的基准。
+ */
+class KNDB5000BackupChainTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 5);
+
+    @TempDir
+    Path backupPath;
+
+    @Test
+    void backupWithoutGlobalReadLockCanBeIncrementalBase() {
+        KNDB5000ManifestEntity previous = manifest("KNStudent_bk_20250304_020000", "2025-03-04 02:00:00", false);
+
+        assertNull(chain().getFullBackupReason(backupPath, previous, TODAY));
+    }
+
+    @Test
+    void fullBackupIsDueAfterInterval() {
+        KNDB5000ManifestEntity previous = manifest("KNStudent_bk_20250226_020000", "2025-02-26 02:00:00", true);
+
+        assertEquals("距离全量备份 KNStudent_bk_20250226_020000 已达到 7 天",
+                chain().getFullBackupReason(backupPath, previous, TODAY));
+    }
+
+    @Test
+    void noPreviousBackupIsFull() {
+        assertEquals("没有以前的增量备份", chain().getFullBackupReason(backupPath, null, TODAY));
+    }
+
+    private static KNDB5000ManifestEntity manifest(String backupName, String startTime, boolean consistent) {
+        KNDB5000ManifestEntity manifest = new KNDB5000ManifestEntity();
+        manifest.setBackupName(backupName);
+        manifest.setMode(KNDB5000ManifestEntity.MODE_FULL);
+        manifest.setStartTime(startTime);
+        manifest.setConsistent(consistent);
+        return manifest;
+    }
+
+    private static KNDB5000BackupChain chain() {
+        KNDB5000BackupChain chain = new KNDB5000BackupChain();
+        Field field = ReflectionUtils.findField(KNDB5000BackupChain.class, "fullIntervalDays");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, chain, 7);
+        return chain;
+    }
+}
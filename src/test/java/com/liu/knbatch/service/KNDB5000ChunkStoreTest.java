@@ -0,0 +1,191 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.entity.KNDB5000ChunkEntity;
+import com.liu.knbatch.entity.KNDB5000ChunkIndexEntity;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB5000ChunkStore 的单元测试
+ *
+ * mysqldump 用 cat 代替（输出准备好的导出文件），确认：
+ * 切分后恢复的内容与原来相同、只有一部分变化时大部分块被复用、
+ * 清理时只删除没有引用的块、块的内容被改写时恢复失败、导出被中断时不生成块一览。
+ */
+class KNDB5000ChunkStoreTest {
+
+    private static final String DATABASE = "KNStudent";
+
+    @TempDir
+    Path tempDir;
+
+    private KNDB5000ChunkStore chunkStore;
+
+    @BeforeEach
+    void setUp() {
+        KNDB5000DumpStreamer dumpStreamer = new KNDB5000DumpStreamer();
+        setField(dumpStreamer, "compressEnabled", false);
+        setField(dumpStreamer, "compressLevel", 6);
+        setField(dumpStreamer, "bufferSize", 8192);
+
+        chunkStore = new KNDB5000ChunkStore();
+        setField(chunkStore, "dumpStreamer", dumpStreamer);
+        setField(chunkStore, "compressLevel", 6);
+        // 测试用的小的块（平均1KB）
+        setField(chunkStore, "avgSize", 1024);
+        setField(chunkStore, "minSize", 256);
+        setField(chunkStore, "maxSize", 8192);
+    }
+
+    @Test
+    void backupAndRestoreRoundTrip() throws Exception {
+        byte[] dump = dump(2000, -1);
+        Path indexFile = backup("20250101_000000", dump);
+
+        KNDB5000ChunkIndexEntity index = chunkStore.readIndex(indexFile);
+        assertEquals(dump.length, index.getRawBytes());
+        assertTrue(index.getChunks().size() > 10, "块数: " + index.getChunks().size());
+        assertEquals(index.getChunks().size(), index.getNewChunkCount());
+        for (KNDB5000ChunkEntity chunk : index.getChunks().subList(0, index.getChunks().size() - 1)) {
+            assertTrue(chunk.getSize() >= 256 && chunk.getSize() <= 8192, "块的大小: " + chunk.getSize());
+        }
+        assertTrue(chunkStore.findMissingChunks(indexFile, DATABASE).isEmpty());
+
+        assertArrayEquals(dump, restore(indexFile));
+    }
+
+    @Test
+    void unchangedContentReusesChunks() throws Exception {
+        Path first = backup("20250101_000000", dump(2000, -1));
+        // 中间的1行变化
+        byte[] changed = dump(2000, 1000);
+        Path second = backup("20250102_000000", changed);
+
+        KNDB5000ChunkIndexEntity firstIndex = chunkStore.readIndex(first);
+        KNDB5000ChunkIndexEntity secondIndex = chunkStore.readIndex(second);
+        // 变化只影响附近的块
+        assertTrue(secondIndex.getNewChunkCount() <= 3, "新的块: " + secondIndex.getNewChunkCount());
+        Set<String> added = digests(secondIndex);
+        added.removeAll(digests(firstIndex));
+        assertEquals(added.size(), secondIndex.getNewChunkCount());
+
+        assertArrayEquals(changed, restore(second));
+    }
+
+    @Test
+    void garbageCollectionDeletesOnlyUnreferencedChunks() throws Exception {
+        Path first = backup("20250101_000000", dump(2000, -1));
+        Path second = backup("20250102_000000", dump(2000, 1000));
+        Set<String> firstOnly = digests(chunkStore.readIndex(first));
+        firstOnly.removeAll(digests(chunkStore.readIndex(second)));
+        assertFalse(firstOnly.isEmpty());
+
+        // 过期的块一览删除后清理
+        Files.delete(first);
+        KNDB5000ChunkStore.GcResult result = chunkStore.collectGarbage(tempDir, DATABASE);
+
+        assertEquals(1, result.getIndexCount());
+        assertEquals(firstOnly.size(), result.getDeletedChunkCount());
+        assertEquals(digests(chunkStore.readIndex(second)).size(), result.getLiveChunkCount());
+        assertTrue(chunkStore.findMissingChunks(second, DATABASE).isEmpty());
+        assertArrayEquals(dump(2000, 1000), restore(second));
+    }
+
+    @Test
+    void corruptedChunkFailsRestore() throws Exception {
+        Path indexFile = backup("20250101_000000", dump(2000, -1));
+        String digest = chunkStore.readIndex(indexFile).getChunks().get(3).getDigest();
+        Path chunkFile = KNDB5000ChunkStore.getStoreDir(tempDir, DATABASE)
+                .resolve("chunks").resolve(digest.substring(0, 2)).resolve(digest + ".gz");
+
+        ByteArrayOutputStream corrupted = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(corrupted)) {
+            gzip.write("-- corrupted --".getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(chunkFile, corrupted.toByteArray());
+
+        assertThrows(IllegalStateException.class, () -> restore(indexFile));
+    }
+
+    @Test
+    void interruptedDumpWritesNoIndex() throws Exception {
+        // 没有结尾的 "-- Dump completed"
+        byte[] dump = dump(500, -1);
+        byte[] truncated = Arrays.copyOf(dump, dump.length - 40);
+        Path indexFile = tempDir.resolve(DATABASE + "_bk_20250101_000000" + KNDB5000ChunkStore.INDEX_SUFFIX);
+        Path dumpFile = Files.write(tempDir.resolve("truncated.sql"), truncated);
+
+        assertThrows(IllegalStateException.class,
+                () -> chunkStore.backup(Arrays.asList("cat", dumpFile.toString()), DATABASE, indexFile));
+        assertFalse(Files.exists(indexFile));
+    }
+
+    private Path backup(String timestamp, byte[] dump) throws Exception {
+        Path dumpFile = Files.write(tempDir.resolve("dump_" + timestamp + ".sql"), dump);
+        Path indexFile = tempDir.resolve(DATABASE + "_bk_" + timestamp + KNDB5000ChunkStore.INDEX_SUFFIX);
+        chunkStore.backup(Arrays.asList("cat", dumpFile.toString()), DATABASE, indexFile);
+        Files.delete(dumpFile);
+        return indexFile;
+    }
+
+    private byte[] restore(Path indexFile) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long restoredBytes = chunkStore.restore(indexFile, DATABASE, out);
+        assertEquals(out.size(), restoredBytes);
+        return out.toByteArray();
+    }
+
+    /**
+     * 模拟 mysqldump 的输出（changedRow 行的内容改变，-1 时不改变）
+     */
+    private static byte[] dump(int rows, int changedRow) {
+        Random random = new Random(42);
+        StringBuilder dump = new StringBuilder("-- MySQL dump 10.13  Distrib 8.0.36, for Linux (x86_64)\n--\n");
+        dump.append("CREATE TABLE `t_info_lesson` (`lesson_id` varchar(32), `memo` varchar(255));\n");
+        for (int i = 0; i < rows; i++) {
+            String memo = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+            if (i == changedRow) {
+                memo = "changed-" + memo;
+            }
+            dump.append("INSERT INTO `t_info_lesson` VALUES ('kn-lsn-").append(i).append("','").append(memo).append("');\n");
+        }
+        dump.append("-- Dump completed on 2025-01-01  0:00:00\n");
+        return dump.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> digests(KNDB5000ChunkIndexEntity index) {
+        Set<String> digests = new HashSet<>();
+        for (KNDB5000ChunkEntity chunk : index.getChunks()) {
+            digests.add(chunk.getDigest());
+        }
+        return digests;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
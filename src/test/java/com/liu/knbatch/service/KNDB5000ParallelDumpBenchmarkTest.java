@@ -0,0 +1,202 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB5000Dao;
+import com.liu.knbatch.dao.MapperTestSupport;
+import com.liu.knbatch.entity.KNDB5000ManifestEntity;
+
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB5000 并行备份与整库1个 mysqldump 的基准测试（10万件 / 100万件）
+ *
+ * 在测试用的数据库里建立大小不同的8个表（bench_kndb5000_t1～t8，合计为指定的行数），
+ * 用同一个 KNDB5000DumpStreamer 导出整个数据库：
+ *   single   : 与 KNDB5000Tasklet 的 single 方式相同的命令，1个 mysqldump 进程
+ *   parallel : KNDB5000ParallelDumper（不加全局读锁），进程数 1/2/4/8
+ * 输出各自的实际耗时和与 single 相比的倍率。各文件耗时合计 ÷ 实际耗时（并行度）不是这个倍率。
+ * 需要 PATH 上有 mysqldump；会建立和删除表，只能对测试用的数据库执行。
+ * 件数可以用环境变量 KNBATCH_DB_TEST_ROWS 指定（逗号分隔）。
+ */
+@EnabledIfEnvironmentVariable(named = MapperTestSupport.URL_ENV, matches = ".+")
+class KNDB5000ParallelDumpBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KNDB5000ParallelDumpBenchmarkTest.class);
+
+    private static final int TABLE_COUNT = 8;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    @TempDir
+    Path backupPath;
+
+    @Test
+    void parallelVersusSingleMysqldump() throws Exception {
+        SqlSessionFactory sqlSessionFactory = MapperTestSupport.sqlSessionFactory();
+        sqlSessionFactory.getConfiguration().addMapper(KNDB5000Dao.class);
+        DataSource dataSource = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+        URI uri = URI.create(System.getenv(MapperTestSupport.URL_ENV).substring("jdbc:".length()));
+        String databaseName = uri.getPath().substring(1);
+        List<String> connectionArgs = Arrays.asList("mysqldump", "--host=" + uri.getHost(),
+                "--port=" + (uri.getPort() > 0 ? uri.getPort() : 3306),
+                "--user=" + System.getenv("KNBATCH_DB_TEST_USERNAME"),
+                "--password=" + System.getenv("KNBATCH_DB_TEST_PASSWORD"));
+        KNDB5000DumpStreamer dumpStreamer = new KNDB5000DumpStreamer();
+        setField(dumpStreamer, "compressEnabled", false);
+        setField(dumpStreamer, "compressLevel", 6);
+        setField(dumpStreamer, "bufferSize", 1024 * 1024);
+
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            Connection connection = session.getConnection();
+            try {
+                for (int rows : targetRows()) {
+                    loadTables(connection, rows);
+
+                    // 与 KNDB5000Tasklet 的 single 方式相同的命令
+                    List<String> command = new ArrayList<>(connectionArgs);
+                    command.addAll(Arrays.asList("--single-transaction", "--routines", "--triggers", "--quick",
+                            "--lock-tables=false", databaseName));
+                    long startTime = System.currentTimeMillis();
+                    KNDB5000DumpStreamer.DumpResult single = dumpStreamer.dump(command, backupPath.resolve("single_" + rows + ".sql"));
+                    long singleMillis = System.currentTimeMillis() - startTime;
+                    assertTrue(single.isSuccess(), single.getStderr());
+
+                    for (int threads : THREADS) {
+                        ThreadPoolTaskExecutor executor = executor(threads);
+                        KNDB5000ParallelDumper dumper = dumper(session.getMapper(KNDB5000Dao.class), dumpStreamer,
+                                dataSource, executor);
+                        startTime = System.currentTimeMillis();
+                        KNDB5000ManifestEntity manifest;
+                        try {
+                            manifest = dumper.dump(databaseName, connectionArgs,
+                                    backupPath.resolve("parallel_" + rows + "_" + threads));
+                        } finally {
+                            executor.shutdown();
+                        }
+                        long parallelMillis = System.currentTimeMillis() - startTime;
+                        assertTrue(manifest.getFiles().size() > TABLE_COUNT);
+
+                        long sumElapsedMillis = manifest.getFiles().stream().mapToLong(file -> file.getElapsedMillis()).sum();
+                        logger.info("KNDB5000 导出基准 - 行数: {}, single: {} ms, parallel({}进程): {} ms, 倍率: {}, 并行度: {}",
+                                rows, singleMillis, threads, parallelMillis,
+                                String.format("%.2f", (double) singleMillis / Math.max(parallelMillis, 1)),
+                                String.format("%.2f", (double) sumElapsedMillis / Math.max(parallelMillis, 1)));
+                    }
+                }
+            } finally {
+                dropTables(connection);
+            }
+        }
+    }
+
+    /**
+     * 与 kndb5000DumpExecutor 相同的线程池（线程数 = 同时执行的 mysqldump 进程数）
+     */
+    private static ThreadPoolTaskExecutor executor(int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("bench-dump-");
+        executor.initialize();
+        return executor;
+    }
+
+    private static KNDB5000ParallelDumper dumper(KNDB5000Dao kndb5000Dao, KNDB5000DumpStreamer dumpStreamer,
+                                                DataSource dataSource, ThreadPoolTaskExecutor executor) {
+        KNDB5000ParallelDumper dumper = new KNDB5000ParallelDumper();
+        setField(dumper, "kndb5000Dao", kndb5000Dao);
+        setField(dumper, "dumpStreamer", dumpStreamer);
+        setField(dumper, "dataSource", dataSource);
+        setField(dumper, "dumpExecutor", executor);
+        setField(dumper, "globalReadLock", false);
+        setField(dumper, "extraOptions", System.getenv().getOrDefault("KNBATCH_DB_TEST_DUMP_OPTIONS", "--set-gtid-purged=OFF"));
+        setField(dumper, "changeDetection", "update-time");
+        return dumper;
+    }
+
+    /**
+     * 8个表：第n个表的行数与n成比例（大小不同的表，与实际的数据库相同，大的表决定并行的总耗时）
+     */
+    private static void loadTables(Connection connection, int rows) throws SQLException {
+        dropTables(connection);
+        int total = 0;
+        for (int n = 1; n <= TABLE_COUNT; n++) {
+            total += n;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (int n = 1; n <= TABLE_COUNT; n++) {
+                statement.execute("CREATE TABLE bench_kndb5000_t" + n + " ("
+                        + " id INT NOT NULL PRIMARY KEY, stu_id VARCHAR(32) NOT NULL,"
+                        + " amount DECIMAL(10, 2) NOT NULL, note VARCHAR(200) NOT NULL)");
+            }
+        }
+        for (int n = 1; n <= TABLE_COUNT; n++) {
+            int tableRows = (int) ((long) rows * n / total);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO bench_kndb5000_t" + n + " VALUES (?, ?, ?, ?)")) {
+                for (int id = 1; id <= tableRows; id++) {
+                    statement.setInt(1, id);
+                    statement.setString(2, String.format("BENCH-STU-%07d", id % 10_000));
+                    statement.setBigDecimal(3, BigDecimal.valueOf(id % 100_000, 2));
+                    statement.setString(4, "bench row " + id + " of table " + n + " - 钢琴课 课费 备注");
+                    statement.addBatch();
+                    if (id % INSERT_BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static void dropTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (int n = 1; n <= TABLE_COUNT; n++) {
+                statement.execute("DROP TABLE IF EXISTS bench_kndb5000_t" + n);
+            }
+        }
+    }
+
+    private static List<Integer> targetRows() {
+        String rows = System.getenv("KNBATCH_DB_TEST_ROWS");
+        List<Integer> targetRows = new ArrayList<>();
+        if (rows != null && !rows.trim().isEmpty()) {
+            for (String row : rows.split(",")) {
+                targetRows.add(Integer.parseInt(row.trim()));
+            }
+            return targetRows;
+        }
+        targetRows.add(100_000);
+        targetRows.add(1_000_000);
+        return targetRows;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
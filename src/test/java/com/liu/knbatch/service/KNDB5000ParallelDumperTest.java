@@ -0,0 +1,94 @@
+package com.liu.knbatch.service;
+
+import com.liu.knbatch.dao.KNDB5000Dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB5000ParallelDumper 的单元测试
+ *
+ * 更新时间判定（change-detection=update-time）：更新时间只精确到秒，与上次快照同一秒的更新也要视为有变化。
+ * 设定了全局读锁但取不到时，不生成不一致的备份，备份失败。
+ */
+class KNDB5000ParallelDumperTest {
+
+    private static final String CREATE_TIME = "2025-01-01 00:00:00";
+
+    @Test
+    void updateInSameSecondAsSnapshotIsChange() {
+        assertTrue(KNDB5000ParallelDumper.isUpdatedSince(CREATE_TIME + "|2025-03-01 02:00:00", "2025-03-01 02:00:00"));
+        assertTrue(KNDB5000ParallelDumper.isUpdatedSince(CREATE_TIME + "|2025-03-01 02:00:01", "2025-03-01 02:00:00"));
+    }
+
+    @Test
+    void updateBeforeSnapshotIsNotChange() {
+        assertFalse(KNDB5000ParallelDumper.isUpdatedSince(CREATE_TIME + "|2025-03-01 01:59:59", "2025-03-01 02:00:00"));
+    }
+
+    @Test
+    void unknownSnapshotTimeIsChange() {
+        // 没有记录快照时间的以前的清单
+        assertTrue(KNDB5000ParallelDumper.isUpdatedSince(CREATE_TIME + "|2025-01-02 00:00:00", null));
+    }
+
+    @Test
+    void missingGlobalReadLockFailsWhenConfigured(@TempDir Path backupPath) {
+        KNDB5000ParallelDumper dumper = new KNDB5000ParallelDumper();
+        setField(dumper, "kndb5000Dao", proxy(KNDB5000Dao.class));
+        setField(dumper, "dumpStreamer", new KNDB5000DumpStreamer());
+        setField(dumper, "dataSource", proxy(DataSource.class));
+        setField(dumper, "globalReadLock", true);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> dumper.dump("KNStudent",
+                Arrays.asList("mysqldump"), backupPath.resolve("KNStudent_bk_20250301_020000")));
+        assertTrue(e.getMessage().contains("global-read-lock=true"), e.getMessage());
+        // 导出中的目录也删除，什么都不留下
+        assertEquals(0, backupPath.toFile().list().length);
+    }
+
+    /**
+     * 没有 RELOAD 权限的数据库：FLUSH TABLES WITH READ LOCK 以及所有的SQL都失败，表一览为空
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getBackupTables":
+                    return Collections.emptyList();
+                case "getConnection":
+                    return proxy(Connection.class);
+                case "createStatement":
+                    return proxy(Statement.class);
+                case "close":
+                case "abort":
+                    return null;
+                default:
+                    throw new SQLException("Access denied; you need the RELOAD privilege");
+            }
+        });
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
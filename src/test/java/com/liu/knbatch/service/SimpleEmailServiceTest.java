@@ -0,0 +1,102 @@
+package com.liu.knbatch.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SimpleEmailService 的并发测试
+ *
+ * 多个作业同时发送邮件时，每封邮件的发件人、收件人、主题、正文必须都是同一个作业的。
+ */
+class SimpleEmailServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int MAILS_PER_THREAD = 200;
+
+    @Test
+    void concurrentSendsDoNotMixRecipients() throws Exception {
+        Queue<SimpleMailMessage> sent = new ConcurrentLinkedQueue<>();
+        SimpleEmailService emailService = emailService(sent);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String jobName = "KNDB" + (1000 + t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                    emailService.sendBatchNotification(jobName + "@from.example", jobName + "@to.example, admin@to.example",
+                            jobName, "并发测试", i % 2 == 0, "log of " + jobName);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * MAILS_PER_THREAD, sent.size());
+        for (SimpleMailMessage message : sent) {
+            String jobName = message.getSubject().substring("[KNBatch] ".length(), "[KNBatch] ".length() + 8);
+            assertTrue(message.getFrom().contains("<" + jobName + "@from.example>"), message.getFrom());
+            assertEquals(Arrays.asList(jobName + "@to.example", "admin@to.example"), Arrays.asList(message.getTo()));
+            assertTrue(message.getText().contains("log of " + jobName), jobName);
+        }
+    }
+
+    @Test
+    void incompleteAddressSkipsSending() throws Exception {
+        Queue<SimpleMailMessage> sent = new ConcurrentLinkedQueue<>();
+        SimpleEmailService emailService = emailService(sent);
+
+        emailService.sendBatchNotification("", "user@to.example", "KNDB1010", "测试", true, "log");
+        emailService.sendBatchNotification("from@from.example", null, "KNDB1010", "测试", true, "log");
+
+        assertTrue(sent.isEmpty());
+    }
+
+    private static SimpleEmailService emailService(Queue<SimpleMailMessage> sent) {
+        JavaMailSender mailSender = (JavaMailSender) Proxy.newProxyInstance(JavaMailSender.class.getClassLoader(),
+                new Class<?>[] {JavaMailSender.class}, (proxy, method, args) -> {
+                    if ("send".equals(method.getName()) && args.length == 1 && args[0] instanceof SimpleMailMessage) {
+                        sent.add((SimpleMailMessage) args[0]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        SimpleEmailService emailService = new SimpleEmailService();
+        setField(emailService, "mailSender", mailSender);
+        setField(emailService, "sendOnSuccess", true);
+        setField(emailService, "sendOnFailure", true);
+        setField(emailService, "deployEnvironment", "test");
+        return emailService;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,129 @@
+package com.liu.knbatch.tasklet;
+
+import com.liu.knbatch.config.BatchMailInfo;
+import com.liu.knbatch.dao.BatchMailConfigDao;
+import com.liu.knbatch.dao.BatchWatermarkDao;
+import com.liu.knbatch.dao.KNDB1010Dao;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * KNDB1010Tasklet 的增量处理（水位线）的单元测试
+ *
+ * 水位线按目标月份分别保存：某个月份的执行推进了水位线以后，
+ * 其他月份的首次执行也要全量处理，不能跳过水位线以前的变更。
+ */
+class KNDB1010TaskletTest {
+
+    private static final String NOW = "2025-04-01 10:00:00";
+
+    // 水位线表（job_id + ":" + watermark_key → 值）
+    private final Map<String, String> watermarks = new HashMap<>();
+    // 执行过的DAO方法（方法名 + 参数）
+    private final List<String> calls = new ArrayList<>();
+    // 最后一次执行的处理方式（FULL / INCREMENTAL）
+    private String lastSweepMode;
+
+    @Test
+    void anotherMonthStartsWithFullSweep() throws Exception {
+        KNDB1010Tasklet tasklet = tasklet();
+
+        run(tasklet, "20250315");
+        assertEquals("FULL", lastSweepMode);
+        assertTrue(calls.contains("streamLessonsOfMonth 2025-03 null"), calls.toString());
+
+        // 同一月份的第2次执行：只处理水位线以后有变更的学生
+        calls.clear();
+        run(tasklet, "20250320");
+        assertEquals("INCREMENTAL", lastSweepMode);
+        assertTrue(calls.contains("selectTouchedStudentIds " + NOW), calls.toString());
+
+        // 下一个月份：3月份的水位线不能用，执行全量处理
+        calls.clear();
+        run(tasklet, "20250405");
+        assertEquals("FULL", lastSweepMode);
+        assertTrue(calls.contains("streamLessonsOfMonth 2025-04 null"), calls.toString());
+
+        assertEquals(NOW, watermarks.get("KNDB1010:LAST_CHANGE_TIME:2025-03"));
+        assertEquals(NOW, watermarks.get("KNDB1010:LAST_FULL_SWEEP:2025-03"));
+        assertEquals(NOW, watermarks.get("KNDB1010:LAST_CHANGE_TIME:2025-04"));
+        assertEquals(NOW, watermarks.get("KNDB1010:LAST_FULL_SWEEP:2025-04"));
+        assertNull(watermarks.get("KNDB1010:LAST_CHANGE_TIME"));
+    }
+
+    private void run(KNDB1010Tasklet tasklet, String baseDate) throws Exception {
+        JobExecution jobExecution = new JobExecution(1L, new JobParametersBuilder()
+                .addString("baseDate", baseDate)
+                .addString("jobMode", "AUTO")
+                .toJobParameters());
+        StepExecution stepExecution = jobExecution.createStepExecution("KNDB1010_STEP");
+        tasklet.execute(new StepContribution(stepExecution), new ChunkContext(new StepContext(stepExecution)));
+        lastSweepMode = stepExecution.getExecutionContext().getString("sweepMode");
+    }
+
+    private KNDB1010Tasklet tasklet() {
+        KNDB1010Tasklet tasklet = new KNDB1010Tasklet();
+        setField(tasklet, "kndb1010Dao", proxy(KNDB1010Dao.class));
+        setField(tasklet, "mailDao", proxy(BatchMailConfigDao.class));
+        setField(tasklet, "watermarkDao", proxy(BatchWatermarkDao.class));
+        setField(tasklet, "detectMode", "INDEX");
+        setField(tasklet, "incrementalEnabled", true);
+        setField(tasklet, "fullSweepIntervalDays", 7);
+        return tasklet;
+    }
+
+    /**
+     * 没有任何排课和学生档案的DAO（水位线保存在内存里）
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "selectDatabaseNow":
+                    return NOW;
+                case "selectWatermark":
+                    return watermarks.get(args[0] + ":" + args[1]);
+                case "upsertWatermark":
+                    watermarks.put(args[0] + ":" + args[1], (String) args[2]);
+                    return 1;
+                case "selectTouchedStudentIds":
+                    calls.add(method.getName() + " " + args[0]);
+                    return Collections.emptyList();
+                case "streamLatestSubjectInfo":
+                    return null;
+                case "streamLessonsOfMonth":
+                    calls.add(method.getName() + " " + args[0] + " " + args[1]);
+                    return null;
+                case "selectMailInfo":
+                    return new BatchMailInfo("KNDB1010", "batch@from.example", "dev@to.example", "", "");
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}